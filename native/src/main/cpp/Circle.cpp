@@ -10,6 +10,7 @@
 #define CLASS                               CLASSTOKEN( cgal_spherical_Circle3 )
 #define Circle3_init                        CLASSFN( CLASS, init )
 #define Circle3_cleanup                     CLASSFN( CLASS, cleanup )
+#define Circle3_cleanupBatch                CLASSFN( CLASS, cleanupBatch )
 #define Circle3_getCenter                   CLASSFN( CLASS, getCenter )
 #define Circle3_getSquaredRadius            CLASSFN( CLASS, getSquaredRadius )
 #define Circle3_getNormal                   CLASSFN( CLASS, getNormal )
@@ -48,7 +49,21 @@ JNIEXPORT void JNICALL Circle3_init( JNIEnv *jvm, jobject self, jobject a, jobje
 
 JNIEXPORT void JNICALL Circle3_cleanup( JNIEnv *jvm, jclass c, jint id )
 {
-	g_circles.cleanupAll( jvm );
+	g_circles.cleanup( id );
+}
+
+JNIEXPORT void JNICALL Circle3_cleanupBatch( JNIEnv *jvm, jclass c, jintArray ids )
+{
+	START_SIGNAL_HANDLING
+	{
+		// free the whole batch with one JNI transition
+		jsize numIds = jvm->GetArrayLength( ids );
+		jint *pIds = jvm->GetIntArrayElements( ids, NULL );
+		checkException( jvm );
+		g_circles.cleanup( (const int *)pIds, numIds );
+		jvm->ReleaseIntArrayElements( ids, pIds, JNI_ABORT );
+	}
+	STOP_SIGNAL_HANDLING
 }
 
 JNIEXPORT jobject JNICALL Circle3_getCenter( JNIEnv *jvm, jobject self )
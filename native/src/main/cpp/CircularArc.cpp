@@ -10,6 +10,7 @@
 #define CLASS                               CLASSTOKEN( cgal_spherical_CircularArc3 )
 #define CircularArc3_init                   CLASSFN( CLASS, init )
 #define CircularArc3_cleanup                CLASSFN( CLASS, cleanup )
+#define CircularArc3_cleanupBatch           CLASSFN( CLASS, cleanupBatch )
 #define CircularArc3_getSupportingCircle    CLASSFN( CLASS, getSupportingCircle )
 #define CircularArc3_getSource              CLASSFN( CLASS, getSource )
 #define CircularArc3_getTarget              CLASSFN( CLASS, getTarget )
@@ -49,7 +50,21 @@ JNIEXPORT void JNICALL CircularArc3_init( JNIEnv *jvm, jobject self, jobject sup
 
 JNIEXPORT void JNICALL CircularArc3_cleanup( JNIEnv *jvm, jclass c, jint id )
 {
-	g_circularArcs.cleanupAll( jvm );
+	g_circularArcs.cleanup( id );
+}
+
+JNIEXPORT void JNICALL CircularArc3_cleanupBatch( JNIEnv *jvm, jclass c, jintArray ids )
+{
+	START_SIGNAL_HANDLING
+	{
+		// free the whole batch with one JNI transition
+		jsize numIds = jvm->GetArrayLength( ids );
+		jint *pIds = jvm->GetIntArrayElements( ids, NULL );
+		checkException( jvm );
+		g_circularArcs.cleanup( (const int *)pIds, numIds );
+		jvm->ReleaseIntArrayElements( ids, pIds, JNI_ABORT );
+	}
+	STOP_SIGNAL_HANDLING
 }
 
 JNIEXPORT jobject JNICALL CircularArc3_getSupportingCircle( JNIEnv *jvm, jobject self )
@@ -1,16 +1,21 @@
-
 #ifndef STORAGE_H_
 #define STORAGE_H_
 
+#include <vector>
+
+
+// ids handed to java are a slot index plus a few generation bits,
+// so a stale id can't free a newer object that reused the same slot
+#define STORAGE_SLOT_BITS		22
+#define STORAGE_SLOT_MASK		( ( 1 << STORAGE_SLOT_BITS ) - 1 )
+#define STORAGE_GENERATION_MASK	( ( 1 << ( 31 - STORAGE_SLOT_BITS ) ) - 1 )
+
 
 template <class T>
 class Storage
 {
 public:
 
-	typedef std::map<int,T *,std::less<int> > Map;
-	typedef typename std::map<int,T *,std::less<int> >::iterator MapIterator;
-
 	// structors
 	Storage( const char *className, bool deleteValue );
 	~Storage( );
@@ -21,30 +26,33 @@ public:
 	T *get( JNIEnv *jvm, jobject obj );
 	T *get( int id );
 	bool cleanup( int id );
+	int cleanup( const int *ids, int numIds );
 	void cleanupAll( JNIEnv *jvm );
-
-	// wrapper methods
-	MapIterator begin( ) { return m_map.begin(); };
-	MapIterator end( ) { return m_map.end(); };
+	int size( ) { return m_size; };
 
 
 protected:
 
 	// data members
-	Map m_map;
+	std::vector<T *> m_slots;
+	std::vector<int> m_generations;
+	std::vector<int> m_freeSlots;
+	int m_size;
 	const char *m_className;
 	bool m_deleteValue;
 	jclass m_class;
 	jmethodID m_constructorId;
 
 	// functions
-	int insert( T *p );
+	int insert( JNIEnv *jvm, T *p );
+	int getSlot( int id );
 
 };
 
 template <class T>
 Storage<T>::Storage( const char *className, bool deleteValue )
 {
+	m_size = 0;
 	m_className = className;
 	m_deleteValue = deleteValue;
 	m_class = NULL;
@@ -60,7 +68,7 @@ Storage<T>::~Storage( )
 template <class T>
 void Storage<T>::add( JNIEnv *jvm, jobject obj, T *p )
 {
-	int id = insert( p );
+	int id = insert( jvm, p );
 
 	setId( jvm, obj, id );
 	setPointer( jvm, obj, p );
@@ -80,7 +88,7 @@ jobject Storage<T>::addNew( JNIEnv *jvm, T *p )
 		checkException( jvm );
 	}
 
-	int id = insert( p );
+	int id = insert( jvm, p );
 
 	jobject obj = jvm->NewObject( m_class, m_constructorId, id, p );
 	checkException( jvm );
@@ -96,41 +104,66 @@ T *Storage<T>::get( JNIEnv *jvm, jobject obj )
 template <class T>
 T *Storage<T>::get( int id )
 {
-	return m_map[id];
+	int slot = getSlot( id );
+	if( slot < 0 )
+	{
+		return NULL;
+	}
+	return m_slots[slot];
 }
 
 template <class T>
 bool Storage<T>::cleanup( int id )
 {
-	MapIterator iter = m_map.find( id );
+	int slot = getSlot( id );
 	
-	// was the id found in the map?
-	if( iter == m_map.end() )
+	// was the id found in the storage?
+	if( slot < 0 || m_slots[slot] == NULL )
 	{
 		return false;
 	}
 	
 	if( m_deleteValue )
 	{
-		SAFE_DELETE( (*iter).second );
+		SAFE_DELETE( m_slots[slot] );
 	}
-	m_map.erase( iter );
+	m_slots[slot] = NULL;
+	m_generations[slot] = ( m_generations[slot] + 1 ) & STORAGE_GENERATION_MASK;
+	m_freeSlots.push_back( slot );
+	m_size--;
 
 	return true;
 }
 
+template <class T>
+int Storage<T>::cleanup( const int *ids, int numIds )
+{
+	int numCleanedUp = 0;
+	for( int i=0; i<numIds; i++ )
+	{
+		if( cleanup( ids[i] ) )
+		{
+			numCleanedUp++;
+		}
+	}
+	return numCleanedUp;
+}
+
 template <class T>
 void Storage<T>::cleanupAll( JNIEnv *jvm )
 {
 	// cleanup constituent pointers
 	if( m_deleteValue )
 	{
-		for( MapIterator iter = m_map.begin(); iter != m_map.end(); iter++ )
+		for( typename std::vector<T *>::iterator iter = m_slots.begin(); iter != m_slots.end(); iter++ )
 		{
-			SAFE_DELETE( (*iter).second );
+			SAFE_DELETE( *iter );
 		}
 	}
-	m_map.clear();
+	m_slots.clear();
+	m_generations.clear();
+	m_freeSlots.clear();
+	m_size = 0;
 
 	// cleanup cached java metainfo
 	if( m_class != NULL )
@@ -141,28 +174,44 @@ void Storage<T>::cleanupAll( JNIEnv *jvm )
 }
 
 template <class T>
-int Storage<T>::insert( T *p )
+int Storage<T>::insert( JNIEnv *jvm, T *p )
 {
-	// add the pointer to the map using a unique id
-	int id;
-	std::pair<MapIterator,bool> result;
-	do
+	// reuse a free slot if we have one, otherwise grow
+	int slot;
+	if( !m_freeSlots.empty() )
 	{
-		// get a random id
-		id = rand();
-
-		// Why, oh why is windows so terrible...
-		if( RAND_MAX <= 0xffff )
+		slot = m_freeSlots.back();
+		m_freeSlots.pop_back();
+	}
+	else
+	{
+		slot = m_slots.size();
+		if( slot > STORAGE_SLOT_MASK )
 		{
-			id |= ( ( rand() & RAND_MAX ) << 15 );
+			throwException( jvm, "Too many live native objects!" );
 		}
-		
-		// make sure the id is unique to this map
-		result = m_map.insert( std::pair<int,T *>( id, p ) );
+		m_slots.push_back( NULL );
+		m_generations.push_back( 0 );
 	}
-	while( result.second == false );
+	m_slots[slot] = p;
+	m_size++;
+
+	return ( m_generations[slot] << STORAGE_SLOT_BITS ) | slot;
+}
 
-	return id;
+template <class T>
+int Storage<T>::getSlot( int id )
+{
+	if( id < 0 )
+	{
+		return -1;
+	}
+	int slot = id & STORAGE_SLOT_MASK;
+	if( slot >= (int)m_slots.size() || m_generations[slot] != ( id >> STORAGE_SLOT_BITS ) )
+	{
+		return -1;
+	}
+	return slot;
 }
 
 
@@ -476,6 +476,55 @@ void getIntersectionPoints( std::vector<Point_rat_2> *pPoints, const Curve &a, c
 	getIntersectionPoints( pPoints, a.poly, b.poly );
 }
 
+void intersectRdcCircularPoF( JNIEnv *jvm, std::vector<Point_rat_3> *pPoints,
+	double dA, double dB, double dC,
+	double dr,
+	double da, double db, double dc, double dd, double de, double df, double dg, double dh, double di,
+	double dalpha, double dbeta
+)
+{
+	// set up exact number type aliasing
+	Rational A = dA;
+	Rational B = dB;
+	Rational C = dC;
+	Rational r = dr;
+
+	// if the cone height is negative, invert the cone axis
+	double rootFactor = dalpha > 0 ? 1.0 : -1.0;
+
+	Rotation rot(
+		rootFactor * da,
+		rootFactor * db,
+		rootFactor * dc,
+		rootFactor * dd,
+		rootFactor * de,
+		rootFactor * df,
+		rootFactor * dg,
+		rootFactor * dh,
+		rootFactor * di
+	);
+	Rational alpha = rootFactor * dalpha;
+	Rational beta = dbeta;
+
+	// just in case...
+	if( alpha < 0 )
+	{
+		throwException( jvm, "Cone height should always be positive!" );
+	}
+
+	// return the intersections
+	Projection *pProjection = getProjection( rot );
+	RdcCurve rdcCurve = pProjection->getRdcCurve( A, B, C, r );
+	RotatedCircularCurve circularCurve = pProjection->getRotatedCircularCurve( alpha, beta, rot );
+	std::vector<Point_rat_2> points;
+	getIntersectionPoints( &points, rdcCurve, circularCurve );
+	for( std::vector<Point_rat_2>::iterator iter = points.begin(); iter != points.end(); iter++ )
+	{
+		pPoints->push_back( pProjection->liftPoint( *iter, rdcCurve, circularCurve ) );
+	}
+	delete pProjection;
+}
+
 JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_intersectRdcCircularPoF( JNIEnv *jvm, jclass clazz,
 	jobject out,
 	jdouble dA, jdouble dB, jdouble dC,
@@ -486,46 +535,50 @@ JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_inter
 {
 	START_SIGNAL_HANDLING
 	{
-		// set up exact number type aliasing
-		Rational A = dA;
-		Rational B = dB;
-		Rational C = dC;
-		Rational r = dr;
-
-		// if the cone height is negative, invert the cone axis
-		double rootFactor = dalpha > 0 ? 1.0 : -1.0;
-
-		Rotation rot(
-			rootFactor * da,
-			rootFactor * db,
-			rootFactor * dc,
-			rootFactor * dd,
-			rootFactor * de,
-			rootFactor * df,
-			rootFactor * dg,
-			rootFactor * dh,
-			rootFactor * di
-		);
-		Rational alpha = rootFactor * dalpha;
-		Rational beta = dbeta;
-
-		// just in case...
-		if( alpha < 0 )
+		std::vector<Point_rat_3> points;
+		intersectRdcCircularPoF( jvm, &points, dA, dB, dC, dr, da, db, dc, dd, de, df, dg, dh, di, dalpha, dbeta );
+		for( std::vector<Point_rat_3>::iterator iter = points.begin(); iter != points.end(); iter++ )
 		{
-			throwException( jvm, "Cone height should always be positive!" );
+			addPoint3ToList( jvm, out, *iter );
 		}
+	}
+	STOP_SIGNAL_HANDLING
+}
 
-		// return the intersections
-		Projection *pProjection = getProjection( rot );
-		RdcCurve rdcCurve = pProjection->getRdcCurve( A, B, C, r );
-		RotatedCircularCurve circularCurve = pProjection->getRotatedCircularCurve( alpha, beta, rot );
-		std::vector<Point_rat_2> points;
-		getIntersectionPoints( &points, rdcCurve, circularCurve );
-		for( std::vector<Point_rat_2>::iterator iter = points.begin(); iter != points.end(); iter++ )
+JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_intersectRdcCircularPoFBatch( JNIEnv *jvm, jclass clazz,
+	jdoubleArray jparams, jint numPairs, jdoubleArray outPoints, jintArray outOffsets
+)
+{
+	START_SIGNAL_HANDLING
+	{
+		const int NumParams = 15;
+		std::vector<double> params;
+		getBatchParams( jvm, jparams, numPairs*NumParams, &params );
+
+		std::vector<double> coords;
+		std::vector<jint> offsets;
+		offsets.push_back( 0 );
+		std::vector<Point_rat_3> points;
+		for( int i=0; i<numPairs; i++ )
 		{
-			addPoint3ToList( jvm, out, pProjection->liftPoint( *iter, rdcCurve, circularCurve ) );
+			const double *p = &params[i*NumParams];
+			points.clear();
+			intersectRdcCircularPoF( jvm, &points,
+				p[0], p[1], p[2],
+				p[3],
+				p[4], p[5], p[6], p[7], p[8], p[9], p[10], p[11], p[12],
+				p[13], p[14]
+			);
+			for( std::vector<Point_rat_3>::iterator iter = points.begin(); iter != points.end(); iter++ )
+			{
+				coords.push_back( CGAL::to_double( iter->x() ) );
+				coords.push_back( CGAL::to_double( iter->y() ) );
+				coords.push_back( CGAL::to_double( iter->z() ) );
+			}
+			offsets.push_back( coords.size()/3 );
 		}
-		delete pProjection;
+
+		setBatchOutput( jvm, outPoints, outOffsets, coords, offsets );
 	}
 	STOP_SIGNAL_HANDLING
 }
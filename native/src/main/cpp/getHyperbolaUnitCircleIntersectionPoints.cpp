@@ -8,6 +8,34 @@
 #include "AlgebraicCurveIntersector.h"
 
 
+void getHyperbolaUnitCircleIntersectionPoints( std::vector<Point_rat_2> *pPoints,
+	double da, double db, double dc, double dd
+)
+{
+	// set up exact number type aliasing
+	Rational a = da;
+	Rational b = db;
+	Rational c = dc;
+	Rational d = dd;
+	
+	Rational a2 = a*a;
+	Rational b2 = b*b;
+	
+	Rational A = -1/a2;
+	Rational B = 1/b2;
+	Rational C = 2*c/a2;
+	Rational D = -2*d/b2;
+	Rational E = d*d/b2 - c*c/a2 - 1;
+	
+	Poly_rat_2 x = CGAL::shift( Poly_rat_2( 1 ), 1, 0 );
+	Poly_rat_2 y = CGAL::shift( Poly_rat_2( 1 ), 1, 1 );
+	
+	AlgebraicCurveIntersector intersector;
+	intersector.add( intersector.constructCurve( x*x + y*y - 1 ) );
+	intersector.add( intersector.constructCurve( A*x*x + B*y*y + C*x + D*y + E ) );
+	intersector.getIntersectionPoints( pPoints );
+}
+
 JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getHyperbolaUnitCircleIntersectionPoints( JNIEnv *jvm, jclass clazz,
 	jobject out,
 	jdouble da, jdouble db, jdouble dc, jdouble dd
@@ -15,30 +43,8 @@ JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getHy
 {
 	START_SIGNAL_HANDLING
 	{
-		// set up exact number type aliasing
-		Rational a = da;
-		Rational b = db;
-		Rational c = dc;
-		Rational d = dd;
-		
-		Rational a2 = a*a;
-		Rational b2 = b*b;
-		
-		Rational A = -1/a2;
-		Rational B = 1/b2;
-		Rational C = 2*c/a2;
-		Rational D = -2*d/b2;
-		Rational E = d*d/b2 - c*c/a2 - 1;
-		
-		Poly_rat_2 x = CGAL::shift( Poly_rat_2( 1 ), 1, 0 );
-		Poly_rat_2 y = CGAL::shift( Poly_rat_2( 1 ), 1, 1 );
-		
-		AlgebraicCurveIntersector intersector;
-		intersector.add( intersector.constructCurve( x*x + y*y - 1 ) );
-		intersector.add( intersector.constructCurve( A*x*x + B*y*y + C*x + D*y + E ) );
-		
 		std::vector<Point_rat_2> points;
-		intersector.getIntersectionPoints( &points );
+		getHyperbolaUnitCircleIntersectionPoints( &points, da, db, dc, dd );
 		for( std::vector<Point_rat_2>::iterator iter = points.begin(); iter != points.end(); iter++ )
 		{
 			Point_rat_2 point = *iter;
@@ -51,3 +57,36 @@ JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getHy
 	}
 	STOP_SIGNAL_HANDLING
 }
+
+JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getHyperbolaUnitCircleIntersectionPointsBatch( JNIEnv *jvm, jclass clazz,
+	jdoubleArray jparams, jint numPairs, jdoubleArray outPoints, jintArray outOffsets
+)
+{
+	START_SIGNAL_HANDLING
+	{
+		const int NumParams = 4;
+		std::vector<double> params;
+		getBatchParams( jvm, jparams, numPairs*NumParams, &params );
+
+		std::vector<double> coords;
+		std::vector<jint> offsets;
+		offsets.push_back( 0 );
+		std::vector<Point_rat_2> points;
+		for( int i=0; i<numPairs; i++ )
+		{
+			const double *p = &params[i*NumParams];
+			points.clear();
+			getHyperbolaUnitCircleIntersectionPoints( &points, p[0], p[1], p[2], p[3] );
+			for( std::vector<Point_rat_2>::iterator iter = points.begin(); iter != points.end(); iter++ )
+			{
+				coords.push_back( CGAL::to_double( iter->x() ) );
+				coords.push_back( CGAL::to_double( iter->y() ) );
+				coords.push_back( 0 );
+			}
+			offsets.push_back( coords.size()/3 );
+		}
+
+		setBatchOutput( jvm, outPoints, outOffsets, coords, offsets );
+	}
+	STOP_SIGNAL_HANDLING
+}
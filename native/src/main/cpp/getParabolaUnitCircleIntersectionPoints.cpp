@@ -7,6 +7,28 @@
 #include "global.h"
 #include "AlgebraicCurveIntersector.h"
 
+void getParabolaUnitCircleIntersectionPoints( std::vector<Point_rat_2> *pPoints,
+	double da, double db, double dc
+)
+{
+	// set up exact number type aliasing
+	Rational a = da;
+	Rational b = db;
+	Rational c = dc;
+	
+	Rational A = 1/a;
+	Rational B = -2*b/a;
+	Rational C = b*b/a + c;
+	
+	Poly_rat_2 x = CGAL::shift( Poly_rat_2( 1 ), 1, 0 );
+	Poly_rat_2 y = CGAL::shift( Poly_rat_2( 1 ), 1, 1 );
+	
+	AlgebraicCurveIntersector intersector;
+	intersector.add( intersector.constructCurve( x*x + y*y - 1 ) );
+	intersector.add( intersector.constructCurve( A*x*x + B*x - 1*y + C ) );
+	intersector.getIntersectionPoints( pPoints );
+}
+
 JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getParabolaUnitCircleIntersectionPoints( JNIEnv *jvm, jclass clazz,
 	jobject out,
 	jdouble da, jdouble db, jdouble dc
@@ -14,24 +36,8 @@ JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getPa
 {
 	START_SIGNAL_HANDLING
 	{
-		// set up exact number type aliasing
-		Rational a = da;
-		Rational b = db;
-		Rational c = dc;
-		
-		Rational A = 1/a;
-		Rational B = -2*b/a;
-		Rational C = b*b/a + c;
-		
-		Poly_rat_2 x = CGAL::shift( Poly_rat_2( 1 ), 1, 0 );
-		Poly_rat_2 y = CGAL::shift( Poly_rat_2( 1 ), 1, 1 );
-		
-		AlgebraicCurveIntersector intersector;
-		intersector.add( intersector.constructCurve( x*x + y*y - 1 ) );
-		intersector.add( intersector.constructCurve( A*x*x + B*x - 1*y + C ) );
-		
 		std::vector<Point_rat_2> points;
-		intersector.getIntersectionPoints( &points );
+		getParabolaUnitCircleIntersectionPoints( &points, da, db, dc );
 		for( std::vector<Point_rat_2>::iterator iter = points.begin(); iter != points.end(); iter++ )
 		{
 			Point_rat_2 point = *iter;
@@ -44,3 +50,36 @@ JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getPa
 	}
 	STOP_SIGNAL_HANDLING
 }
+
+JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getParabolaUnitCircleIntersectionPointsBatch( JNIEnv *jvm, jclass clazz,
+	jdoubleArray jparams, jint numPairs, jdoubleArray outPoints, jintArray outOffsets
+)
+{
+	START_SIGNAL_HANDLING
+	{
+		const int NumParams = 3;
+		std::vector<double> params;
+		getBatchParams( jvm, jparams, numPairs*NumParams, &params );
+
+		std::vector<double> coords;
+		std::vector<jint> offsets;
+		offsets.push_back( 0 );
+		std::vector<Point_rat_2> points;
+		for( int i=0; i<numPairs; i++ )
+		{
+			const double *p = &params[i*NumParams];
+			points.clear();
+			getParabolaUnitCircleIntersectionPoints( &points, p[0], p[1], p[2] );
+			for( std::vector<Point_rat_2>::iterator iter = points.begin(); iter != points.end(); iter++ )
+			{
+				coords.push_back( CGAL::to_double( iter->x() ) );
+				coords.push_back( CGAL::to_double( iter->y() ) );
+				coords.push_back( 0 );
+			}
+			offsets.push_back( coords.size()/3 );
+		}
+
+		setBatchOutput( jvm, outPoints, outOffsets, coords, offsets );
+	}
+	STOP_SIGNAL_HANDLING
+}
@@ -341,6 +341,43 @@ void addDoubleToList( JNIEnv *jvm, jobject out, double x )
 	checkException( jvm );
 }
 
+void getBatchParams( JNIEnv *jvm, jdoubleArray params, int count, std::vector<double> *pOut )
+{
+	if( jvm->GetArrayLength( params ) < count )
+	{
+		throwIllegalArgumentException( jvm, "Not enough batch parameters!" );
+	}
+
+	// copy the params out of the java heap in one call
+	pOut->resize( count );
+	if( count > 0 )
+	{
+		jvm->GetDoubleArrayRegion( params, 0, count, &(*pOut)[0] );
+		checkException( jvm );
+	}
+}
+
+void setBatchOutput( JNIEnv *jvm, jdoubleArray outPoints, jintArray outOffsets, const std::vector<double> &coords, const std::vector<jint> &offsets )
+{
+	if( jvm->GetArrayLength( outPoints ) < (jsize)coords.size() )
+	{
+		throwIllegalArgumentException( jvm, "Batch output array is too small!" );
+	}
+	if( jvm->GetArrayLength( outOffsets ) < (jsize)offsets.size() )
+	{
+		throwIllegalArgumentException( jvm, "Batch offsets array is too small!" );
+	}
+
+	// copy the results back to the java heap in one call each
+	if( !coords.empty() )
+	{
+		jvm->SetDoubleArrayRegion( outPoints, 0, coords.size(), &coords[0] );
+		checkException( jvm );
+	}
+	jvm->SetIntArrayRegion( outOffsets, 0, offsets.size(), &offsets[0] );
+	checkException( jvm );
+}
+
 
 // prototypes for the cleanup functions
 void circlesCleanup( JNIEnv *jvm );
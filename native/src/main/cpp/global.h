@@ -3,6 +3,8 @@
 #ifndef GLOBAL_H_
 #define GLOBAL_H_
 
+#include <vector>
+
 #define UNDER( a, b ) a##_##b
 
 #define CLASSTOKEN( name )      UNDER(Java_edu_duke_cs_libprotnmr, name)
@@ -40,5 +42,7 @@ void addVector2ToList( JNIEnv *jvm, jobject out, double x, double y );
 void addVector3ToList( JNIEnv *jvm, jobject out, double x, double y, double z );
 jobject newDouble( JNIEnv *jvm, double x );
 void addDoubleToList( JNIEnv *jvm, jobject out, double x );
+void getBatchParams( JNIEnv *jvm, jdoubleArray params, int count, std::vector<double> *pOut );
+void setBatchOutput( JNIEnv *jvm, jdoubleArray outPoints, jintArray outOffsets, const std::vector<double> &coords, const std::vector<jint> &offsets );
 
 #endif /* GLOBAL_H_ */
@@ -34,6 +34,14 @@ extern "C" {
 JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_spherical_Circle3_cleanup
   (JNIEnv *, jclass, jint);
 
+/*
+ * Class:     edu_duke_cs_libprotnmr_cgal_spherical_Circle3
+ * Method:    cleanupBatch
+ * Signature: ([I)V
+ */
+JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_spherical_Circle3_cleanupBatch
+  (JNIEnv *, jclass, jintArray);
+
 /*
  * Class:     edu_duke_cs_libprotnmr_cgal_spherical_Circle3
  * Method:    getCenter
@@ -85,6 +93,14 @@ extern "C" {
 JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_spherical_CircularArc3_cleanup
   (JNIEnv *, jclass, jint);
 
+/*
+ * Class:     edu_duke_cs_libprotnmr_cgal_spherical_CircularArc3
+ * Method:    cleanupBatch
+ * Signature: ([I)V
+ */
+JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_spherical_CircularArc3_cleanupBatch
+  (JNIEnv *, jclass, jintArray);
+
 /*
  * Class:     edu_duke_cs_libprotnmr_cgal_spherical_CircularArc3
  * Method:    getSupportingCircle
@@ -155,6 +171,14 @@ extern "C" {
 JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_intersectRdcCircularPoF
   (JNIEnv *, jclass, jobject, jdouble, jdouble, jdouble, jdouble, jdouble, jdouble, jdouble, jdouble, jdouble, jdouble, jdouble, jdouble, jdouble, jdouble, jdouble);
 
+/*
+ * Class:     edu_duke_cs_libprotnmr_cgal_curves_Intersector
+ * Method:    intersectRdcCircularPoFBatch
+ * Signature: ([DI[D[I)V
+ */
+JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_intersectRdcCircularPoFBatch
+  (JNIEnv *, jclass, jdoubleArray, jint, jdoubleArray, jintArray);
+
 /*
  * Class:     edu_duke_cs_libprotnmr_cgal_curves_Intersector
  * Method:    intersectRdcGeodesicPoF
@@ -227,6 +251,14 @@ JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getRd
 JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getHyperbolaUnitCircleIntersectionPoints
   (JNIEnv *, jclass, jobject, jdouble, jdouble, jdouble, jdouble);
 
+/*
+ * Class:     edu_duke_cs_libprotnmr_cgal_curves_Intersector
+ * Method:    getHyperbolaUnitCircleIntersectionPointsBatch
+ * Signature: ([DI[D[I)V
+ */
+JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getHyperbolaUnitCircleIntersectionPointsBatch
+  (JNIEnv *, jclass, jdoubleArray, jint, jdoubleArray, jintArray);
+
 /*
  * Class:     edu_duke_cs_libprotnmr_cgal_curves_Intersector
  * Method:    getParabolaUnitCircleIntersectionPoints
@@ -235,6 +267,14 @@ JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getHy
 JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getParabolaUnitCircleIntersectionPoints
   (JNIEnv *, jclass, jobject, jdouble, jdouble, jdouble);
 
+/*
+ * Class:     edu_duke_cs_libprotnmr_cgal_curves_Intersector
+ * Method:    getParabolaUnitCircleIntersectionPointsBatch
+ * Signature: ([DI[D[I)V
+ */
+JNIEXPORT void JNICALL Java_edu_duke_cs_libprotnmr_cgal_curves_Intersector_getParabolaUnitCircleIntersectionPointsBatch
+  (JNIEnv *, jclass, jdoubleArray, jint, jdoubleArray, jintArray);
+
 /*
  * Class:     edu_duke_cs_libprotnmr_cgal_curves_Intersector
  * Method:    getEllipseOptima
@@ -27,22 +27,130 @@
 package edu.duke.cs.libprotnmr.analysis;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.io.HashCalculator;
 import edu.duke.cs.libprotnmr.nmr.Assignment;
 import edu.duke.cs.libprotnmr.nmr.DistanceRestraint;
-import edu.duke.cs.libprotnmr.protein.Atom;
 import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
 import edu.duke.cs.libprotnmr.protein.Element;
 import edu.duke.cs.libprotnmr.protein.HasAtoms;
 import edu.duke.cs.libprotnmr.protein.Protein;
+import edu.duke.cs.libprotnmr.protein.SymmetricOligomer;
 
 
 public class DistanceRestraintCalculator
 {
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	private static class SymmetricRestraintKey
+	{
+		// the assignments of a restraint, each moved by the symmetry so its left side is in subunit 0
+		// copies of a restraint in other subunits all get the same key
+		
+		private static final int MaxOffset = 1 << 8;
+		private static final int MaxResidueId = 1 << 16;
+		private static final int MaxAtomId = 1 << 8;
+		
+		private long[] m_assignments;
+		private double m_minDistance;
+		private double m_maxDistance;
+		
+		private SymmetricRestraintKey( long[] assignments, double minDistance, double maxDistance )
+		{
+			m_assignments = assignments;
+			m_minDistance = minDistance;
+			m_maxDistance = maxDistance;
+		}
+		
+		public static SymmetricRestraintKey get( SymmetricOligomer oligomer, DistanceRestraint<AtomAddressInternal> restraint )
+		{
+			if( oligomer.getNumSubunits() > MaxOffset )
+			{
+				return null;
+			}
+			List<Long> assignments = new ArrayList<Long>();
+			for( Assignment<AtomAddressInternal> assignment : restraint )
+			{
+				AtomAddressInternal left = assignment.getLeft();
+				AtomAddressInternal right = assignment.getRight();
+				if( left.getResidueId() >= MaxResidueId || right.getResidueId() >= MaxResidueId
+					|| left.getAtomId() >= MaxAtomId || right.getAtomId() >= MaxAtomId )
+				{
+					return null;
+				}
+				
+				// distances don't care about direction, so either side can be moved to subunit 0
+				long forward = pack( oligomer.getSubunitOffset( left.getSubunitId(), right.getSubunitId() ), left, right );
+				long backward = pack( oligomer.getSubunitOffset( right.getSubunitId(), left.getSubunitId() ), right, left );
+				assignments.add( Math.min( forward, backward ) );
+			}
+			long[] packed = new long[assignments.size()];
+			for( int i=0; i<packed.length; i++ )
+			{
+				packed[i] = assignments.get( i );
+			}
+			Arrays.sort( packed );
+			return new SymmetricRestraintKey( packed, restraint.getMinDistance(), restraint.getMaxDistance() );
+		}
+		
+		public double getMinViolation( SymmetricOligomer oligomer, DistanceRestraint<AtomAddressInternal> restraint, Vector3 left, Vector3 right )
+		{
+			double minViolation = Double.POSITIVE_INFINITY;
+			for( long assignment : m_assignments )
+			{
+				int offset = (int)( assignment >>> 48 );
+				oligomer.getPosition( left, 0, (int)( assignment >>> 32 ) & 0xffff, (int)( assignment >>> 24 ) & 0xff );
+				oligomer.getPosition( right, offset, (int)( assignment >>> 8 ) & 0xffff, (int)assignment & 0xff );
+				minViolation = Math.min( minViolation, restraint.getViolation( left.getDistance( right ) ) );
+			}
+			return minViolation;
+		}
+		
+		@Override
+		public int hashCode( )
+		{
+			return HashCalculator.combineHashes(
+				Arrays.hashCode( m_assignments ),
+				Double.valueOf( m_minDistance ).hashCode(),
+				Double.valueOf( m_maxDistance ).hashCode()
+			);
+		}
+		
+		@Override
+		public boolean equals( Object other )
+		{
+			if( other instanceof SymmetricRestraintKey )
+			{
+				return equals( (SymmetricRestraintKey)other );
+			}
+			return false;
+		}
+		
+		public boolean equals( SymmetricRestraintKey other )
+		{
+			return Arrays.equals( m_assignments, other.m_assignments )
+				&& m_minDistance == other.m_minDistance
+				&& m_maxDistance == other.m_maxDistance;
+		}
+		
+		private static long pack( int offset, AtomAddressInternal left, AtomAddressInternal right )
+		{
+			return (long)offset << 48
+				| (long)left.getResidueId() << 32
+				| (long)left.getAtomId() << 24
+				| (long)right.getResidueId() << 8
+				| (long)right.getAtomId();
+		}
+	}
+	
+	
 	/**************************
 	 *   Static Methods
 	 **************************/
@@ -97,6 +205,46 @@ public class DistanceRestraintCalculator
 		return violations;
 	}
 	
+	public static Map<DistanceRestraint<AtomAddressInternal>,Double> getViolations( SymmetricOligomer oligomer, List<DistanceRestraint<AtomAddressInternal>> restraints )
+	{
+		return getViolations( oligomer, restraints, 0.0 );
+	}
+	
+	public static Map<DistanceRestraint<AtomAddressInternal>,Double> getViolations( SymmetricOligomer oligomer, List<DistanceRestraint<AtomAddressInternal>> restraints, double allowedViolation )
+	{
+		// symmetric copies of a restraint always have the same violation, so only evaluate one of each
+		Map<SymmetricRestraintKey,Double> uniqueViolations = new HashMap<SymmetricRestraintKey,Double>();
+		Map<DistanceRestraint<AtomAddressInternal>,Double> violations = new HashMap<DistanceRestraint<AtomAddressInternal>,Double>();
+		Vector3 left = new Vector3();
+		Vector3 right = new Vector3();
+		for( DistanceRestraint<AtomAddressInternal> restraint : restraints )
+		{
+			SymmetricRestraintKey key = SymmetricRestraintKey.get( oligomer, restraint );
+			Double minViolation = null;
+			if( key == null )
+			{
+				// the addresses are too big to pack, just evaluate this one directly
+				minViolation = DistanceRestraint.getMinViolation( restraint, oligomer );
+			}
+			else
+			{
+				minViolation = uniqueViolations.get( key );
+				if( minViolation == null )
+				{
+					minViolation = key.getMinViolation( oligomer, restraint, left, right );
+					uniqueViolations.put( key, minViolation );
+				}
+			}
+			
+			// if the violation passes our threshold, add it
+			if( minViolation > allowedViolation )
+			{
+				violations.put( restraint, minViolation );
+			}
+		}
+		return violations;
+	}
+	
 	public static double getViolation( Protein protein, DistanceRestraint<AtomAddressInternal> restraint, AssignmentFilter<AtomAddressInternal> filter )
 	{
 		double minViolation = Double.POSITIVE_INFINITY;
@@ -130,19 +278,77 @@ public class DistanceRestraintCalculator
 		);
 	}
 	
+	public static List<DistanceRestraint<AtomAddressInternal>> getSimulatedIntersubunitRestraints( SymmetricOligomer oligomer, double maxDistance, double tolerance )
+	{
+		// only subunit 0 against subunits 1 to n/2 are unique, the other pairs are symmetric copies
+		int numSubunits = oligomer.getNumSubunits();
+		List<AtomAddressInternal> hydrogenAddresses = getHydrogenAddresses( oligomer );
+		int numSubunitAddresses = hydrogenAddresses.size()/numSubunits;
+		List<List<DistanceRestraint<AtomAddressInternal>>> uniqueRestraints = new ArrayList<List<DistanceRestraint<AtomAddressInternal>>>();
+		uniqueRestraints.add( null );
+		for( int offset=1; offset<=numSubunits/2; offset++ )
+		{
+			uniqueRestraints.add( getSimulatedRestraints(
+				oligomer,
+				oligomer,
+				hydrogenAddresses.subList( 0, numSubunitAddresses ),
+				hydrogenAddresses.subList( offset*numSubunitAddresses, ( offset + 1 )*numSubunitAddresses ),
+				maxDistance,
+				tolerance
+			) );
+		}
+		
+		// expand the copies to every pair of subunits
+		List<DistanceRestraint<AtomAddressInternal>> restraints = new ArrayList<DistanceRestraint<AtomAddressInternal>>();
+		for( int leftSubunitId=0; leftSubunitId<numSubunits; leftSubunitId++ )
+		{
+			for( int rightSubunitId=leftSubunitId+1; rightSubunitId<numSubunits; rightSubunitId++ )
+			{
+				int offset = rightSubunitId - leftSubunitId;
+				if( offset <= numSubunits/2 )
+				{
+					for( DistanceRestraint<AtomAddressInternal> restraint : uniqueRestraints.get( offset ) )
+					{
+						restraints.add( getSubunitCopy( restraint, leftSubunitId, rightSubunitId ) );
+					}
+				}
+				else
+				{
+					// the mirror offset has the same contacts, but with the sides swapped
+					for( DistanceRestraint<AtomAddressInternal> restraint : uniqueRestraints.get( numSubunits - offset ) )
+					{
+						DistanceRestraint<AtomAddressInternal> copy = getSubunitCopy( restraint, rightSubunitId, leftSubunitId );
+						copy.swap();
+						restraints.add( copy );
+					}
+				}
+			}
+		}
+		return restraints;
+	}
+	
 	public static List<DistanceRestraint<AtomAddressInternal>> getSimulatedRestraints( HasAtoms leftStructure, HasAtoms rightStructure, List<AtomAddressInternal> leftAddresses, List<AtomAddressInternal> rightAddresses, double maxDistance, double tolerance )
 	{
 		ArrayList<DistanceRestraint<AtomAddressInternal>> restraints = new ArrayList<DistanceRestraint<AtomAddressInternal>>();
 		double thresholdDistanceSq = maxDistance * maxDistance;
 		
+		// look up the right positions once, since oligomer views have to transform them on every lookup
+		Vector3[] rightPositions = new Vector3[rightAddresses.size()];
+		for( int i=0; i<rightPositions.length; i++ )
+		{
+			rightPositions[i] = new Vector3();
+			getPosition( rightPositions[i], rightStructure, rightAddresses.get( i ) );
+		}
+		Vector3 leftPosition = new Vector3();
+		
 		// for every pair of atoms, create a restraint if their distance is less than some distance
 		// this is a simple brute force implementation. Proteins aren't that big
 		for( AtomAddressInternal leftAddress : leftAddresses )
 		{
-			Atom leftAtom = leftStructure.getAtom( leftAddress );
-			for( AtomAddressInternal rightAddress : rightAddresses )
+			getPosition( leftPosition, leftStructure, leftAddress );
+			for( int i=0; i<rightPositions.length; i++ )
 			{
-				Atom rightAtom = rightStructure.getAtom( rightAddress );
+				AtomAddressInternal rightAddress = rightAddresses.get( i );
 				
 				// make sure we have a pair of distinct atoms
 				if( leftAddress.equals( rightAddress ) )
@@ -151,7 +357,7 @@ public class DistanceRestraintCalculator
 				}
 				
 				// if the atoms are close enough
-				double distSq = rightAtom.getPosition().getSquaredDistance( leftAtom.getPosition() );
+				double distSq = rightPositions[i].getSquaredDistance( leftPosition );
 				if( distSq < thresholdDistanceSq )
 				{
 					double dist = Math.sqrt( distSq );
@@ -267,6 +473,27 @@ public class DistanceRestraintCalculator
 		return sum;
 	}
 	
+	private static DistanceRestraint<AtomAddressInternal> getSubunitCopy( DistanceRestraint<AtomAddressInternal> restraint, int leftSubunitId, int rightSubunitId )
+	{
+		DistanceRestraint<AtomAddressInternal> copy = new DistanceRestraint<AtomAddressInternal>( restraint );
+		AtomAddressInternal.mapAddressesToSubunit( copy.getLefts(), leftSubunitId );
+		AtomAddressInternal.mapAddressesToSubunit( copy.getRights(), rightSubunitId );
+		return copy;
+	}
+	
+	private static void getPosition( Vector3 out, HasAtoms structure, AtomAddressInternal address )
+	{
+		if( structure instanceof SymmetricOligomer )
+		{
+			// don't make a copy of the atom just to read its position
+			( (SymmetricOligomer)structure ).getPosition( out, address );
+		}
+		else
+		{
+			out.set( structure.getAtom( address ).getPosition() );
+		}
+	}
+	
 	private static List<AtomAddressInternal> getHydrogenAddresses( HasAtoms structure )
 	{
 		List<AtomAddressInternal> addresses = new ArrayList<AtomAddressInternal>();
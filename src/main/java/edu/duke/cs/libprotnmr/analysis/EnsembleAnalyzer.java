@@ -52,12 +52,12 @@ import edu.duke.cs.libprotnmr.nmr.DistanceRestraint;
 import edu.duke.cs.libprotnmr.nmr.Rdc;
 import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
 import edu.duke.cs.libprotnmr.protein.AtomAddressReadable;
+import edu.duke.cs.libprotnmr.protein.Ensemble;
 import edu.duke.cs.libprotnmr.protein.HasAtoms;
 import edu.duke.cs.libprotnmr.protein.Protein;
-import edu.duke.cs.libprotnmr.protein.Residue;
 import edu.duke.cs.libprotnmr.protein.Subunit;
 import edu.duke.cs.libprotnmr.protein.tools.ProteinGeometry;
-import edu.duke.cs.libprotnmr.rama.RamaCase;
+import edu.duke.cs.libprotnmr.rama.RamaBatch;
 import edu.duke.cs.libprotnmr.rama.RamaSatisfaction;
 import edu.duke.cs.libprotnmr.xplor.EnergyCalculator;
 import edu.duke.cs.libprotnmr.xplor.XplorException;
@@ -225,6 +225,12 @@ public class EnsembleAnalyzer
 		return ensemble.get( bestIndex );
 	}
 	
+	public static HasAtoms getMedoidStructure( List<HasAtoms> ensemble, List<AtomAddressInternal> addresses, int numWorkers )
+	{
+		// same as getMedianStructure(), but scales to large ensembles
+		return ensemble.get( new MedoidFinder( ensemble, addresses, numWorkers ).getMedoidIndex() );
+	}
+	
 	public static HasAtoms getMeanStructure( List<HasAtoms> ensemble )
 	{
 		HasAtoms meanStructure = ensemble.get( 0 ).clone();
@@ -373,6 +379,14 @@ public class EnsembleAnalyzer
 		return scores;
 	}
 	
+	public static List<AlignmentScore> compareEnsembles( List<HasAtoms> referenceEnsemble, List<HasAtoms> compareEnsemble, List<AtomAddressInternal> referenceAddresses, List<AtomAddressInternal> compareAddresses, int numWorkers )
+	{
+		// same as above, but in parallel, and pairs that can't beat the best match are skipped
+		EnsembleComparator comparator = new EnsembleComparator( referenceEnsemble, compareEnsemble, referenceAddresses, compareAddresses );
+		comparator.setNumWorkers( numWorkers );
+		return comparator.getBestMatches();
+	}
+	
 	public static List<Protein> getSubEnsemble( List<Protein> ensemble, int startResidueNumber, int stopResidueNumber )
 	{
 		List<Protein> subEnsemble = new ArrayList<Protein>();
@@ -419,6 +433,12 @@ public class EnsembleAnalyzer
 		return energies;
 	}
 	
+	public static List<Double> getRepelEnergies( List<Protein> ensemble, int numWorkers )
+	{
+		// doesn't need XPLOR, but it's a repel-style clash score, not the same energy as getVdwEnergies()
+		return RepelEnergyCalculator.getEnergies( new Ensemble( ensemble ), numWorkers );
+	}
+	
 	public static List<List<Double>> getDistanceRestraintViolations( List<Protein> ensemble, List<DistanceRestraint<AtomAddressInternal>> restraints )
 	{
 		return getDistanceRestraintViolations( ensemble, restraints, 0.0 );
@@ -696,38 +716,22 @@ public class EnsembleAnalyzer
 	
 	public static List<Map<RamaSatisfaction,Integer>> getRamaSatisfactionCounts( List<Protein> ensemble )
 	{
-		List<Map<RamaSatisfaction,Integer>> allCounts = new ArrayList<Map<RamaSatisfaction,Integer>>();
-		for( Protein protein : ensemble )
+		if( ensemble.isEmpty() )
 		{
-			// init the counts
-			Map<RamaSatisfaction,Integer> counts = new TreeMap<RamaSatisfaction,Integer>();
-			for( RamaSatisfaction satisfaction : RamaSatisfaction.values() )
-			{
-				counts.put( satisfaction, 0 );
-			}
-			allCounts.add( counts );
-			
-			// count the rama satisfaction
-			for( Subunit subunit : protein.getSubunits() )
-			{
-				for( Residue residue : subunit.getResidues() )
-				{
-					// skip the first and last residues
-					if( residue.getId() == 0 || residue.getId() == subunit.getResidues().size() - 1 )
-					{
-						continue;
-					}
-					
-					RamaCase ramaCase = RamaCase.getCaseByNumber( subunit.getSequence(), residue.getNumber() );
-					RamaSatisfaction residueSatisfaction = ramaCase.getSatisfaction(
-						Math.toDegrees( subunit.getPhiAngleByNumber( residue.getNumber() ) ),
-						Math.toDegrees( subunit.getPsiAngleByNumber( residue.getNumber() ) )
-					);
-					counts.put( residueSatisfaction, counts.get( residueSatisfaction ) + 1 ); 
-				}
-			}
+			return new ArrayList<Map<RamaSatisfaction,Integer>>();
 		}
-		return allCounts;
+		
+		// all the models share a topology, so only look up the backbone atoms and rama cases once
+		return new RamaBatch( ensemble.get( 0 ) ).getSatisfactionCounts( ensemble );
+	}
+	
+	public static List<Map<RamaSatisfaction,Integer>> getRamaSatisfactionCounts( List<Protein> ensemble, int numWorkers )
+	{
+		if( ensemble.isEmpty() )
+		{
+			return new ArrayList<Map<RamaSatisfaction,Integer>>();
+		}
+		return new RamaBatch( ensemble.get( 0 ) ).getSatisfactionCounts( ensemble, numWorkers );
 	}
 	
 	public static int getRamaResiduesCount( List<Protein> ensemble )
@@ -783,29 +787,22 @@ public class EnsembleAnalyzer
 	public static List<Map<Integer,Integer>> getRamaDisallowedResidues( List<Protein> ensemble )
 	{
 		List<Map<Integer,Integer>> allResidueCounts = new ArrayList<Map<Integer,Integer>>();
+		if( ensemble.isEmpty() )
+		{
+			return allResidueCounts;
+		}
+		RamaBatch batch = new RamaBatch( ensemble.get( 0 ) );
+		RamaSatisfaction[] satisfactions = new RamaSatisfaction[batch.getNumResidues()];
 		for( Protein protein : ensemble )
 		{
 			Map<Integer,Integer> residueCounts = new TreeMap<Integer,Integer>();
-			for( Subunit subunit : protein.getSubunits() )
+			batch.getSatisfactions( satisfactions, protein );
+			for( int i=0; i<satisfactions.length; i++ )
 			{
-				for( Residue residue : subunit.getResidues() )
+				if( satisfactions[i] == RamaSatisfaction.Disallowed )
 				{
-					// skip the first and last residues
-					if( residue.getId() == 0 || residue.getId() == subunit.getResidues().size() - 1 )
-					{
-						continue;
-					}
-					
-					RamaCase ramaCase = RamaCase.getCaseByNumber( subunit.getSequence(), residue.getNumber() );
-					RamaSatisfaction residueSatisfaction = ramaCase.getSatisfaction(
-						Math.toDegrees( subunit.getPhiAngleByNumber( residue.getNumber() ) ),
-						Math.toDegrees( subunit.getPsiAngleByNumber( residue.getNumber() ) )
-					);
-					if( residueSatisfaction == RamaSatisfaction.Disallowed )
-					{
-						Integer currentCount = residueCounts.get( residue.getNumber() );
-						residueCounts.put( residue.getNumber(), currentCount != null ? currentCount + 1 : 1 );
-					}
+					Integer currentCount = residueCounts.get( batch.getResidueNumber( i ) );
+					residueCounts.put( batch.getResidueNumber( i ), currentCount != null ? currentCount + 1 : 1 );
 				}
 			}
 			allResidueCounts.add( residueCounts );
@@ -0,0 +1,355 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import edu.duke.cs.libprotnmr.analysis.EnsembleAnalyzer.AlignmentScore;
+import edu.duke.cs.libprotnmr.perf.WorkCrew;
+import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
+import edu.duke.cs.libprotnmr.protein.HasAtoms;
+
+
+public class EnsembleComparator
+{
+	// compares every reference structure to every compare structure by optimal-superposition RMSD,
+	// in parallel, on packed coordinates. Pairs whose shape-based lower bound can't beat the
+	// current cutoff never get superimposed.
+	
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	public static interface Listener
+	{
+		// called once per reference structure, with its matches ordered best first
+		// calls are serialized, but can come from any thread, in any reference order
+		public void matchesFound( int referenceId, List<AlignmentScore> scores );
+	}
+	
+	// don't let rounding prune a pair that ties the cutoff
+	// the QCP RMSDs themselves have a bigger (absolute) error, see PackedRmsdCalculator.getRmsdTolerance()
+	private static final double RelativeBoundSlack = 1e-9;
+	
+	private static final Comparator<AlignmentScore> ScoreComparator = new Comparator<AlignmentScore>( )
+	{
+		@Override
+		public int compare( AlignmentScore a, AlignmentScore b )
+		{
+			// break ties by index like compareEnsembles() does
+			int diff = Double.compare( a.rmsd, b.rmsd );
+			if( diff == 0 )
+			{
+				diff = a.compareId - b.compareId;
+			}
+			return diff;
+		}
+	};
+	
+	private class Scratch
+	{
+		public double[] bounds;
+		public Integer[] order;
+		public Comparator<Integer> comparator;
+		
+		public Scratch( )
+		{
+			bounds = new double[m_compareCoords.length];
+			order = new Integer[m_compareCoords.length];
+			for( int i=0; i<order.length; i++ )
+			{
+				order[i] = i;
+			}
+			comparator = new Comparator<Integer>( )
+			{
+				@Override
+				public int compare( Integer a, Integer b )
+				{
+					return Double.compare( bounds[a], bounds[b] );
+				}
+			};
+		}
+	}
+	
+	
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private int m_numAtoms;
+	private double[][] m_referenceCoords;
+	private double[] m_referenceSumSquares;
+	private double[][] m_referenceShapes;
+	private double[][] m_compareCoords;
+	private double[] m_compareSumSquares;
+	private double[][] m_compareShapes;
+	private double m_maxCompareSumSquares;
+	private int m_numWorkers;
+	private long m_numRmsdsComputed;
+	private ThreadLocal<Scratch> m_scratch;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public EnsembleComparator( List<? extends HasAtoms> referenceEnsemble, List<? extends HasAtoms> compareEnsemble, List<AtomAddressInternal> referenceAddresses, List<AtomAddressInternal> compareAddresses )
+	{
+		if( referenceAddresses.size() != compareAddresses.size() )
+		{
+			throw new IllegalArgumentException( "Must have the same number of reference and compare addresses!" );
+		}
+		
+		m_numAtoms = referenceAddresses.size();
+		m_referenceCoords = new double[referenceEnsemble.size()][];
+		m_referenceSumSquares = new double[referenceEnsemble.size()];
+		m_referenceShapes = new double[referenceEnsemble.size()][];
+		pack( m_referenceCoords, m_referenceSumSquares, m_referenceShapes, referenceEnsemble, referenceAddresses );
+		m_compareCoords = new double[compareEnsemble.size()][];
+		m_compareSumSquares = new double[compareEnsemble.size()];
+		m_compareShapes = new double[compareEnsemble.size()][];
+		pack( m_compareCoords, m_compareSumSquares, m_compareShapes, compareEnsemble, compareAddresses );
+		m_maxCompareSumSquares = 0.0;
+		for( double sumSquares : m_compareSumSquares )
+		{
+			m_maxCompareSumSquares = Math.max( m_maxCompareSumSquares, sumSquares );
+		}
+		
+		m_numWorkers = 1;
+		m_numRmsdsComputed = 0;
+		m_scratch = new ThreadLocal<Scratch>( )
+		{
+			@Override
+			protected Scratch initialValue( )
+			{
+				return new Scratch();
+			}
+		};
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public int getNumWorkers( )
+	{
+		return m_numWorkers;
+	}
+	public void setNumWorkers( int val )
+	{
+		m_numWorkers = val;
+	}
+	
+	public synchronized long getNumRmsdsComputed( )
+	{
+		return m_numRmsdsComputed;
+	}
+	private synchronized void addNumRmsdsComputed( long num )
+	{
+		m_numRmsdsComputed += num;
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public List<AlignmentScore> getBestMatches( )
+	{
+		// same as EnsembleAnalyzer.compareEnsembles()
+		final AlignmentScore[] bestScores = new AlignmentScore[m_referenceCoords.length];
+		compare( 1, Double.POSITIVE_INFINITY, new Listener( )
+		{
+			@Override
+			public void matchesFound( int referenceId, List<AlignmentScore> scores )
+			{
+				bestScores[referenceId] = scores.isEmpty() ? new AlignmentScore( referenceId, -1, Double.POSITIVE_INFINITY ) : scores.get( 0 );
+			}
+		} );
+		
+		// compare() throws if a worker fails, but make sure a partial result can't slip through as nulls
+		for( int i=0; i<bestScores.length; i++ )
+		{
+			if( bestScores[i] == null )
+			{
+				throw new IllegalStateException( "No matches were delivered for reference structure " + i + "!" );
+			}
+		}
+		return Arrays.asList( bestScores );
+	}
+	
+	public void getBestMatches( int numMatches, Listener listener )
+	{
+		compare( numMatches, Double.POSITIVE_INFINITY, listener );
+	}
+	
+	public void getMatchesWithin( double maxRmsd, Listener listener )
+	{
+		compare( Integer.MAX_VALUE, maxRmsd, listener );
+	}
+	
+	public List<AlignmentScore> getMatchesWithin( double maxRmsd )
+	{
+		final List<AlignmentScore> out = new ArrayList<AlignmentScore>();
+		getMatchesWithin( maxRmsd, new Listener( )
+		{
+			@Override
+			public void matchesFound( int referenceId, List<AlignmentScore> scores )
+			{
+				out.addAll( scores );
+			}
+		} );
+		Collections.sort( out, new Comparator<AlignmentScore>( )
+		{
+			@Override
+			public int compare( AlignmentScore a, AlignmentScore b )
+			{
+				int diff = a.referenceId - b.referenceId;
+				if( diff == 0 )
+				{
+					diff = ScoreComparator.compare( a, b );
+				}
+				return diff;
+			}
+		} );
+		return out;
+	}
+	
+	public void compare( final int numMatches, final double maxRmsd, final Listener listener )
+	{
+		// keep the best numMatches matches for each reference that are within maxRmsd
+		// if any comparison (or the listener) fails, this throws once the other workers stop,
+		// and the listener will have seen only some of the references
+		if( m_numWorkers <= 1 || m_referenceCoords.length <= 1 )
+		{
+			for( int i=0; i<m_referenceCoords.length; i++ )
+			{
+				deliver( listener, i, compare( i, numMatches, maxRmsd ) );
+			}
+			return;
+		}
+		
+		WorkCrew<Integer> workCrew = new WorkCrew<Integer>( )
+		{
+			@Override
+			protected void processInWorkerThread( Integer referenceId )
+			{
+				deliver( listener, referenceId, compare( referenceId, numMatches, maxRmsd ) );
+			}
+		};
+		workCrew.startWorkers( m_numWorkers );
+		for( int i=0; i<m_referenceCoords.length; i++ )
+		{
+			workCrew.addWork( i );
+		}
+		workCrew.waitUntilWorkIsFinished();
+	}
+	
+	
+	/**************************
+	 *   Static Functions
+	 **************************/
+	
+	private static void pack( double[][] coords, double[] sumSquares, double[][] shapes, List<? extends HasAtoms> ensemble, List<AtomAddressInternal> addresses )
+	{
+		for( int i=0; i<ensemble.size(); i++ )
+		{
+			coords[i] = PackedRmsdCalculator.getCenteredCoords( ensemble.get( i ), addresses );
+			sumSquares[i] = PackedRmsdCalculator.getSumSquares( coords[i] );
+			shapes[i] = PackedRmsdCalculator.getShape( coords[i] );
+		}
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private synchronized void deliver( Listener listener, int referenceId, List<AlignmentScore> scores )
+	{
+		listener.matchesFound( referenceId, scores );
+	}
+	
+	private List<AlignmentScore> compare( int referenceId, int numMatches, double maxRmsd )
+	{
+		Scratch scratch = m_scratch.get();
+		double[] referenceShape = m_referenceShapes[referenceId];
+		for( int j=0; j<m_compareCoords.length; j++ )
+		{
+			scratch.bounds[j] = PackedRmsdCalculator.getRmsdLowerBound( referenceShape, m_compareShapes[j], m_numAtoms );
+		}
+		
+		// visit the most promising structures first so the cutoff drops quickly
+		Arrays.sort( scratch.order, scratch.comparator );
+		
+		// no RMSD for this reference can be off by more than this
+		double rmsdTolerance = m_numAtoms == 0 ? 0.0 : PackedRmsdCalculator.getRmsdTolerance( m_referenceSumSquares[referenceId], m_maxCompareSumSquares, m_numAtoms );
+		
+		List<AlignmentScore> scores = new ArrayList<AlignmentScore>();
+		double cutoff = maxRmsd;
+		long numRmsds = 0;
+		for( int j : scratch.order )
+		{
+			// the rest of the structures can't do any better
+			if( scratch.bounds[j] > cutoff*( 1.0 + RelativeBoundSlack ) + rmsdTolerance )
+			{
+				break;
+			}
+			
+			double rmsd = PackedRmsdCalculator.getRmsd(
+				m_referenceCoords[referenceId], m_referenceSumSquares[referenceId],
+				m_compareCoords[j], m_compareSumSquares[j]
+			);
+			numRmsds++;
+			if( rmsd > maxRmsd )
+			{
+				continue;
+			}
+			
+			// insert the new score in order
+			AlignmentScore score = new AlignmentScore( referenceId, j, rmsd );
+			int index = Collections.binarySearch( scores, score, ScoreComparator );
+			scores.add( -index - 1, score );
+			if( scores.size() > numMatches )
+			{
+				scores.remove( scores.size() - 1 );
+			}
+			if( scores.size() == numMatches )
+			{
+				cutoff = scores.get( numMatches - 1 ).rmsd;
+			}
+		}
+		addNumRmsdsComputed( numRmsds );
+		return scores;
+	}
+}
@@ -0,0 +1,276 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
+import edu.duke.cs.libprotnmr.protein.HasAtoms;
+
+
+public class MedoidFinder
+{
+	// finds the structure with the minimum sum RMSD to the others (same as EnsembleAnalyzer.getMedianStructure)
+	// without the full distance matrix, using the trimed algorithm (Newling and Fleuret, 2017):
+	// the RMSD after optimal superposition is a metric, so once we know all the distances from
+	// structure i, the triangle inequality bounds the sum for every structure j:
+	//    sum(j) >= | sum(i) - n*d(i,j) |
+	// and structures whose bound is already worse than the best sum never need their own row.
+	// When the bounds don't prune anything, this degrades to computing the whole matrix, one row at a time.
+	
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	// don't let rounding in the sums prune a structure that ties the best one
+	// the QCP RMSDs themselves have a bigger (absolute) error, see m_rmsdTolerance
+	private static final double RelativeBoundSlack = 1e-9;
+	
+	// fixed seed so the results (and the work done) are reproducible
+	private static final long ShuffleSeed = 12345;
+	
+	private static final int MinStructuresPerWork = 16;
+	
+	
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private double[][] m_coords;
+	private double[] m_sumSquares;
+	private double m_rmsdTolerance;
+	private int m_numWorkers;
+	private int m_numRowsComputed;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public MedoidFinder( List<? extends HasAtoms> ensemble, List<AtomAddressInternal> addresses )
+	{
+		this( ensemble, addresses, 1 );
+	}
+	
+	public MedoidFinder( List<? extends HasAtoms> ensemble, List<AtomAddressInternal> addresses, int numWorkers )
+	{
+		// pack and center everything once, so the RMSDs don't need to clone or align anything
+		m_coords = new double[ensemble.size()][];
+		m_sumSquares = new double[ensemble.size()];
+		for( int i=0; i<ensemble.size(); i++ )
+		{
+			m_coords[i] = PackedRmsdCalculator.getCenteredCoords( ensemble.get( i ), addresses );
+			m_sumSquares[i] = PackedRmsdCalculator.getSumSquares( m_coords[i] );
+		}
+		
+		// every RMSD is within this of the true value, so bounds can't be trusted any closer than that
+		double maxSumSquares = 0.0;
+		for( double sumSquares : m_sumSquares )
+		{
+			maxSumSquares = Math.max( maxSumSquares, sumSquares );
+		}
+		m_rmsdTolerance = addresses.isEmpty() ? 0.0 : PackedRmsdCalculator.getRmsdTolerance( maxSumSquares, maxSumSquares, addresses.size() );
+		m_numWorkers = numWorkers;
+		m_numRowsComputed = 0;
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public int getNumRowsComputed( )
+	{
+		return m_numRowsComputed;
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public int getMedoidIndex( )
+	{
+		// use one pool for all the rows, rather than starting new threads for every row
+		int numWorks = Math.min( m_numWorkers, m_coords.length/MinStructuresPerWork );
+		if( numWorks <= 1 )
+		{
+			return getMedoidIndex( null, 1 );
+		}
+		ExecutorService executor = Executors.newFixedThreadPool( numWorks, new ThreadFactory( )
+		{
+			@Override
+			public Thread newThread( Runnable runnable )
+			{
+				Thread thread = new Thread( runnable, "medoid" );
+				thread.setDaemon( true );
+				return thread;
+			}
+		} );
+		try
+		{
+			return getMedoidIndex( executor, numWorks );
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+	
+	/**************************
+	 *   Static Functions
+	 **************************/
+	
+	private static int[] getShuffledIndices( int n )
+	{
+		int[] indices = new int[n];
+		for( int i=0; i<n; i++ )
+		{
+			indices[i] = i;
+		}
+		Random rand = new Random( ShuffleSeed );
+		for( int i=n - 1; i>0; i-- )
+		{
+			int j = rand.nextInt( i + 1 );
+			int swap = indices[i];
+			indices[i] = indices[j];
+			indices[j] = swap;
+		}
+		return indices;
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private int getMedoidIndex( ExecutorService executor, int numWorks )
+	{
+		int n = m_coords.length;
+		double[] lowerBounds = new double[n];
+		double[] row = new double[n];
+		double bestSum = Double.POSITIVE_INFINITY;
+		int bestIndex = -1;
+		m_numRowsComputed = 0;
+		
+		// a bound uses two sums of n RMSDs, so it can be off by up to 2n RMSD errors
+		double boundTolerance = 2.0*n*m_rmsdTolerance;
+		
+		// visiting the structures in random order keeps the expected number of rows low
+		for( int i : getShuffledIndices( n ) )
+		{
+			if( lowerBounds[i] > bestSum*( 1.0 + RelativeBoundSlack ) + boundTolerance )
+			{
+				continue;
+			}
+			
+			computeRow( executor, numWorks, row, i );
+			m_numRowsComputed++;
+			double sum = 0.0;
+			for( int j=0; j<n; j++ )
+			{
+				sum += row[j];
+			}
+			
+			// break ties by index like the distance matrix version does
+			if( sum < bestSum || ( sum == bestSum && i < bestIndex ) )
+			{
+				bestSum = sum;
+				bestIndex = i;
+			}
+			
+			// tighten the bounds of everything else
+			lowerBounds[i] = sum;
+			for( int j=0; j<n; j++ )
+			{
+				lowerBounds[j] = Math.max( lowerBounds[j], Math.abs( sum - n*row[j] ) );
+			}
+		}
+		return bestIndex;
+	}
+	
+	private void computeRow( ExecutorService executor, int numWorks, final double[] row, final int i )
+	{
+		final int n = m_coords.length;
+		if( executor == null )
+		{
+			computeRow( row, i, 0, n );
+			return;
+		}
+		
+		final int worksize = ( n + numWorks - 1 )/numWorks;
+		List<Future<?>> futures = new ArrayList<Future<?>>( numWorks );
+		for( int w=0; w<numWorks; w++ )
+		{
+			final int start = w*worksize;
+			futures.add( executor.submit( new Runnable( )
+			{
+				@Override
+				public void run( )
+				{
+					// each task writes to a different part of the row, and waiting on the futures publishes the results
+					computeRow( row, i, start, Math.min( n, start + worksize ) );
+				}
+			} ) );
+		}
+		
+		// every part of the row has to finish, or the row would mix in RMSDs from the last one
+		try
+		{
+			for( Future<?> future : futures )
+			{
+				future.get();
+			}
+		}
+		catch( InterruptedException ex )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( "Interrupted while computing RMSDs", ex );
+		}
+		catch( ExecutionException ex )
+		{
+			throw new RuntimeException( "Work failed in a worker thread", ex.getCause() );
+		}
+	}
+	
+	private void computeRow( double[] row, int i, int start, int stop )
+	{
+		for( int j=start; j<stop; j++ )
+		{
+			row[j] = j == i ? 0.0 : PackedRmsdCalculator.getRmsd( m_coords[i], m_sumSquares[i], m_coords[j], m_sumSquares[j] );
+		}
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.analysis;
+
+import java.util.List;
+
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.math.Matrix3;
+import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
+import edu.duke.cs.libprotnmr.protein.HasAtoms;
+
+public class PackedRmsdCalculator
+{
+	// optimal-superposition RMSDs between structures packed into centered coordinate arrays,
+	// using Theobald's QCP method so no structure has to be rotated (or cloned)
+	
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	private static final double EigenvaluePrecision = 1e-11;
+	private static final int MaxIterations = 50;
+	
+	
+	/**************************
+	 *   Static Methods
+	 **************************/
+	
+	public static double[] getCenteredCoords( HasAtoms structure, List<AtomAddressInternal> addresses )
+	{
+		double[] coords = new double[addresses.size()*3];
+		getCenteredCoords( coords, structure, addresses );
+		return coords;
+	}
+	
+	public static void getCenteredCoords( double[] out, HasAtoms structure, List<AtomAddressInternal> addresses )
+	{
+		double cx = 0.0;
+		double cy = 0.0;
+		double cz = 0.0;
+		for( int i=0; i<addresses.size(); i++ )
+		{
+			Vector3 pos = structure.getAtom( addresses.get( i ) ).getPosition();
+			out[i*3] = pos.x;
+			out[i*3 + 1] = pos.y;
+			out[i*3 + 2] = pos.z;
+			cx += pos.x;
+			cy += pos.y;
+			cz += pos.z;
+		}
+		cx /= addresses.size();
+		cy /= addresses.size();
+		cz /= addresses.size();
+		for( int i=0; i<addresses.size()*3; i+=3 )
+		{
+			out[i] -= cx;
+			out[i + 1] -= cy;
+			out[i + 2] -= cz;
+		}
+	}
+	
+	public static double getSumSquares( double[] coords )
+	{
+		double sum = 0.0;
+		for( double val : coords )
+		{
+			sum += val*val;
+		}
+		return sum;
+	}
+	
+	public static double getRmsd( double[] a, double[] b )
+	{
+		return getRmsd( a, getSumSquares( a ), b, getSumSquares( b ) );
+	}
+	
+	public static double getRmsd( double[] a, double aSumSquares, double[] b, double bSumSquares )
+	{
+		// both coordinate arrays must be centered
+		assert( a.length == b.length );
+		
+		// cross-covariance matrix
+		double sxx = 0.0;
+		double sxy = 0.0;
+		double sxz = 0.0;
+		double syx = 0.0;
+		double syy = 0.0;
+		double syz = 0.0;
+		double szx = 0.0;
+		double szy = 0.0;
+		double szz = 0.0;
+		for( int i=0; i<a.length; i+=3 )
+		{
+			double ax = a[i];
+			double ay = a[i + 1];
+			double az = a[i + 2];
+			double bx = b[i];
+			double by = b[i + 1];
+			double bz = b[i + 2];
+			sxx += ax*bx;
+			sxy += ax*by;
+			sxz += ax*bz;
+			syx += ay*bx;
+			syy += ay*by;
+			syz += ay*bz;
+			szx += az*bx;
+			szy += az*by;
+			szz += az*bz;
+		}
+		
+		double e0 = ( aSumSquares + bSumSquares )/2.0;
+		double maxEigenvalue = getMaxEigenvalue( e0, sxx, sxy, sxz, syx, syy, syz, szx, szy, szz );
+		return Math.sqrt( Math.abs( 2.0*( e0 - maxEigenvalue )/( a.length/3 ) ) );
+	}
+	
+	public static double getRmsdTolerance( double aSumSquares, double bSumSquares, int numAtoms )
+	{
+		// Newton's method only pins the eigenvalue down to EigenvaluePrecision relative to e0 (call it 2x for safety),
+		// and |sqrt(x) - sqrt(y)| <= sqrt(|x - y|), so this is the most getRmsd() can be off by
+		// NOTE: it's much bigger than the relative precision when the RMSD is small compared to the structures
+		double e0 = ( aSumSquares + bSumSquares )/2.0;
+		return Math.sqrt( 2.0*2.0*EigenvaluePrecision*e0/numAtoms );
+	}
+	
+	
+	public static double[] getShape( double[] coords )
+	{
+		// returns the singular values of the centered coordinates (largest first),
+		// ie the square roots of the eigenvalues of the scatter matrix
+		Matrix3 scatter = new Matrix3();
+		for( int i=0; i<coords.length; i+=3 )
+		{
+			for( int p=0; p<3; p++ )
+			{
+				for( int q=0; q<3; q++ )
+				{
+					scatter.data[p][q] += coords[i + p]*coords[i + q];
+				}
+			}
+		}
+		double[] eigenvalues = new double[3];
+		scatter.getEigenSymmetric( eigenvalues, new Matrix3() );
+		double[] shape = new double[3];
+		for( int i=0; i<3; i++ )
+		{
+			shape[i] = Math.sqrt( Math.max( 0.0, eigenvalues[2 - i] ) );
+		}
+		return shape;
+	}
+	
+	public static double getRmsdLowerBound( double[] aShape, double[] bShape, int numAtoms )
+	{
+		// by von Neumann's trace inequality, no rotation (or even reflection) can do better than
+		// lining up the principal axes: N*rmsd^2 >= sum_k ( sa_k - sb_k )^2
+		double sum = 0.0;
+		for( int i=0; i<3; i++ )
+		{
+			double d = aShape[i] - bShape[i];
+			sum += d*d;
+		}
+		return Math.sqrt( sum/numAtoms );
+	}
+	
+	
+	/**************************
+	 *   Static Functions
+	 **************************/
+	
+	private static double getMaxEigenvalue( double e0, double sxx, double sxy, double sxz, double syx, double syy, double syz, double szx, double szy, double szz )
+	{
+		// find the largest root of the characteristic polynomial of Horn's key matrix
+		// with Newton's method, starting from an upper bound
+		
+		double sxx2 = sxx*sxx;
+		double syy2 = syy*syy;
+		double szz2 = szz*szz;
+		double sxy2 = sxy*sxy;
+		double syz2 = syz*syz;
+		double sxz2 = sxz*sxz;
+		double syx2 = syx*syx;
+		double szy2 = szy*szy;
+		double szx2 = szx*szx;
+		
+		double syzSzymSyySzz2 = 2.0*( syz*szy - syy*szz );
+		double sxx2Syy2Szz2Syz2Szy2 = syy2 + szz2 - sxx2 + syz2 + szy2;
+		
+		double c2 = -2.0*( sxx2 + syy2 + szz2 + sxy2 + syx2 + sxz2 + szx2 + syz2 + szy2 );
+		double c1 = 8.0*( sxx*syz*szy + syy*szx*sxz + szz*sxy*syx - sxx*syy*szz - syz*szx*sxy - szy*syx*sxz );
+		
+		double sxzpSzx = sxz + szx;
+		double syzpSzy = syz + szy;
+		double sxypSyx = sxy + syx;
+		double syzmSzy = syz - szy;
+		double sxzmSzx = sxz - szx;
+		double sxymSyx = sxy - syx;
+		double sxxpSyy = sxx + syy;
+		double sxxmSyy = sxx - syy;
+		double sxy2Sxz2Syx2Szx2 = sxy2 + sxz2 - syx2 - szx2;
+		
+		double c0 = sxy2Sxz2Syx2Szx2*sxy2Sxz2Syx2Szx2
+			+ ( sxx2Syy2Szz2Syz2Szy2 + syzSzymSyySzz2 )*( sxx2Syy2Szz2Syz2Szy2 - syzSzymSyySzz2 )
+			+ ( -sxzpSzx*syzmSzy + sxymSyx*( sxxmSyy - szz ) )*( -sxzmSzx*syzpSzy + sxymSyx*( sxxmSyy + szz ) )
+			+ ( -sxzpSzx*syzpSzy - sxypSyx*( sxxpSyy - szz ) )*( -sxzmSzx*syzmSzy - sxypSyx*( sxxpSyy + szz ) )
+			+ ( sxypSyx*syzpSzy + sxzpSzx*( sxxmSyy + szz ) )*( -sxymSyx*syzmSzy + sxzpSzx*( sxxpSyy + szz ) )
+			+ ( sxypSyx*syzmSzy + sxzmSzx*( sxxmSyy - szz ) )*( -sxymSyx*syzpSzy + sxzmSzx*( sxxpSyy - szz ) );
+		
+		double eigenvalue = e0;
+		for( int i=0; i<MaxIterations; i++ )
+		{
+			double old = eigenvalue;
+			double x2 = eigenvalue*eigenvalue;
+			double b = ( x2 + c2 )*eigenvalue;
+			double a = b + c1;
+			eigenvalue -= ( a*eigenvalue + c0 )/( 2.0*x2*eigenvalue + b + a );
+			if( Math.abs( eigenvalue - old ) < Math.abs( EigenvaluePrecision*eigenvalue ) )
+			{
+				break;
+			}
+		}
+		return eigenvalue;
+	}
+}
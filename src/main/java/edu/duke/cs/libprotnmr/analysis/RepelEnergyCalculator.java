@@ -0,0 +1,477 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.duke.cs.libprotnmr.atomType.AtomType;
+import edu.duke.cs.libprotnmr.atomType.AtomTypeMap;
+import edu.duke.cs.libprotnmr.bond.BondGraph;
+import edu.duke.cs.libprotnmr.bond.BondGraphBuilder;
+import edu.duke.cs.libprotnmr.bond.BreadthFirstAtomIterator;
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.perf.WorkCrew;
+import edu.duke.cs.libprotnmr.protein.Atom;
+import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
+import edu.duke.cs.libprotnmr.protein.Ensemble;
+import edu.duke.cs.libprotnmr.protein.HasAtoms;
+import edu.duke.cs.libprotnmr.protein.Protein;
+
+
+public class RepelEnergyCalculator
+{
+	// computes a repel-style clash score in-process:
+	//    E = k * max( 0, (s*Rmin)^2 - R^2 )^2
+	// where Rmin is the sum of the conservative vdw.radius radii of the two atoms
+	// NOTE: this is NOT the energy xplor/vdw.py.tmpl reports. That script uses repel = 0 (ie the full
+	// Lennard-Jones term with XPLOR's own parameters and nbxmod 5 exclusions), so this can't replace it.
+	
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	public static final double DefaultForceConstant = 100.0; // k
+	public static final double DefaultRadiusScale = 1.0; // s, multiplies Rmin
+	
+	// same as the StericChecker, pairs within 3 bonds of each other don't interact
+	private static final int IgnoredWithinNumBonds = 3;
+	
+	// cell lists stop paying off when most of the cells are empty
+	private static final int MaxCellsPerAtom = 8;
+	
+	private static class Scratch
+	{
+		public double[] x;
+		public double[] y;
+		public double[] z;
+		public int[] cellIds;
+		public int[] cellStarts;
+		public int[] cellAtoms;
+		public Vector3 position;
+		
+		public Scratch( int numAtoms )
+		{
+			x = new double[numAtoms];
+			y = new double[numAtoms];
+			z = new double[numAtoms];
+			cellIds = new int[numAtoms];
+			cellStarts = new int[0];
+			cellAtoms = new int[numAtoms];
+			position = new Vector3();
+		}
+	}
+	
+	
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private AtomAddressInternal[] m_addresses;
+	private double[] m_radii;
+	private int[][] m_excludedAtoms;
+	private double m_maxRadius;
+	private double m_forceConstant;
+	private double m_radiusScale;
+	private ThreadLocal<Scratch> m_scratch;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public RepelEnergyCalculator( Protein topology )
+	{
+		this( topology, BondGraphBuilder.getInstance().build( topology ) );
+	}
+	
+	public RepelEnergyCalculator( Ensemble ensemble )
+	{
+		this( ensemble.getTopology(), ensemble.getBondGraphs() );
+	}
+	
+	public RepelEnergyCalculator( Protein topology, List<BondGraph> bondGraphs )
+	{
+		m_forceConstant = DefaultForceConstant;
+		m_radiusScale = DefaultRadiusScale;
+		
+		// pick the atoms that feel the potential: real atoms with a known type
+		AtomTypeMap atomTypeMap = AtomTypeMap.getInstance();
+		List<AtomAddressInternal> addresses = new ArrayList<AtomAddressInternal>();
+		List<Double> radii = new ArrayList<Double>();
+		for( AtomAddressInternal address : topology.atoms() )
+		{
+			Atom atom = topology.getAtom( address );
+			if( atom.isPseudoatom() )
+			{
+				continue;
+			}
+			AtomType atomType = atomTypeMap.getAtomType( topology, address );
+			if( atomType == null || atomType == AtomType.Unknown )
+			{
+				continue;
+			}
+			addresses.add( address );
+			radii.add( atomType.getRadius() );
+		}
+		m_addresses = addresses.toArray( new AtomAddressInternal[addresses.size()] );
+		m_radii = new double[m_addresses.length];
+		m_maxRadius = 0.0;
+		for( int i=0; i<m_addresses.length; i++ )
+		{
+			m_radii[i] = radii.get( i );
+			m_maxRadius = Math.max( m_maxRadius, m_radii[i] );
+		}
+		
+		m_excludedAtoms = getExcludedAtoms( topology, bondGraphs, m_addresses );
+		
+		final int numAtoms = m_addresses.length;
+		m_scratch = new ThreadLocal<Scratch>( )
+		{
+			@Override
+			protected Scratch initialValue( )
+			{
+				return new Scratch( numAtoms );
+			}
+		};
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public int getNumAtoms( )
+	{
+		return m_addresses.length;
+	}
+	
+	public double getForceConstant( )
+	{
+		return m_forceConstant;
+	}
+	public void setForceConstant( double value )
+	{
+		m_forceConstant = value;
+	}
+	
+	public double getRadiusScale( )
+	{
+		return m_radiusScale;
+	}
+	public void setRadiusScale( double value )
+	{
+		m_radiusScale = value;
+	}
+	
+	
+	/**************************
+	 *   Static Methods
+	 **************************/
+	
+	public static List<Double> getEnergies( Ensemble ensemble, int numWorkers )
+	{
+		return new RepelEnergyCalculator( ensemble ).getModelEnergies( ensemble, numWorkers );
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public double getEnergy( Ensemble.Model model )
+	{
+		Scratch scratch = m_scratch.get();
+		for( int i=0; i<m_addresses.length; i++ )
+		{
+			model.getPosition( scratch.position, m_addresses[i] );
+			scratch.x[i] = scratch.position.x;
+			scratch.y[i] = scratch.position.y;
+			scratch.z[i] = scratch.position.z;
+		}
+		return getEnergy( scratch );
+	}
+	
+	public double getEnergy( HasAtoms protein )
+	{
+		Scratch scratch = m_scratch.get();
+		for( int i=0; i<m_addresses.length; i++ )
+		{
+			Vector3 position = protein.getAtom( m_addresses[i] ).getPosition();
+			scratch.x[i] = position.x;
+			scratch.y[i] = position.y;
+			scratch.z[i] = position.z;
+		}
+		return getEnergy( scratch );
+	}
+	
+	public List<Double> getEnergies( List<? extends HasAtoms> proteins, int numWorkers )
+	{
+		return getEnergies( proteins, null, proteins.size(), numWorkers );
+	}
+	
+	public List<Double> getModelEnergies( Ensemble ensemble, int numWorkers )
+	{
+		return getEnergies( null, ensemble, ensemble.getNumModels(), numWorkers );
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private List<Double> getEnergies( final List<? extends HasAtoms> proteins, final Ensemble ensemble, int numStructures, int numWorkers )
+	{
+		final double[] energies = new double[numStructures];
+		if( numWorkers <= 1 )
+		{
+			for( int i=0; i<numStructures; i++ )
+			{
+				energies[i] = getEnergy( proteins, ensemble, i );
+			}
+		}
+		else
+		{
+			WorkCrew<Integer> workCrew = new WorkCrew<Integer>( )
+			{
+				@Override
+				protected void processInWorkerThread( Integer index )
+				{
+					// each worker writes to a different slot, and joining the workers publishes the results
+					energies[index] = getEnergy( proteins, ensemble, index );
+				}
+			};
+			workCrew.startWorkers( numWorkers );
+			for( int i=0; i<numStructures; i++ )
+			{
+				workCrew.addWork( i );
+			}
+			workCrew.waitUntilWorkIsFinished();
+		}
+		
+		List<Double> out = new ArrayList<Double>( energies.length );
+		for( double energy : energies )
+		{
+			out.add( energy );
+		}
+		return out;
+	}
+	
+	private double getEnergy( List<? extends HasAtoms> proteins, Ensemble ensemble, int index )
+	{
+		// exactly one of the proteins or the ensemble is given
+		return ensemble != null ? getEnergy( ensemble.getModel( index ) ) : getEnergy( proteins.get( index ) );
+	}
+	
+	private double getEnergy( Scratch scratch )
+	{
+		int numAtoms = m_addresses.length;
+		if( numAtoms == 0 )
+		{
+			return 0.0;
+		}
+		
+		// no pair can interact beyond this distance
+		double cellSize = Math.max( 2.0*m_maxRadius*m_radiusScale, 1e-3 );
+		
+		// get the bounding box
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		double maxZ = Double.NEGATIVE_INFINITY;
+		for( int i=0; i<numAtoms; i++ )
+		{
+			minX = Math.min( minX, scratch.x[i] );
+			minY = Math.min( minY, scratch.y[i] );
+			minZ = Math.min( minZ, scratch.z[i] );
+			maxX = Math.max( maxX, scratch.x[i] );
+			maxY = Math.max( maxY, scratch.y[i] );
+			maxZ = Math.max( maxZ, scratch.z[i] );
+		}
+		
+		// cells don't make sense for infinite or overflowing extents, so just check all the pairs
+		if( !isFinite( maxX - minX ) || !isFinite( maxY - minY ) || !isFinite( maxZ - minZ ) )
+		{
+			return getEnergyAllPairs( scratch );
+		}
+		
+		// size the grid, growing the cells if the atoms are very spread out
+		// NOTE: count the cells in floating point so huge extents can't overflow an int
+		while( ( Math.floor( ( maxX - minX )/cellSize ) + 1 )*( Math.floor( ( maxY - minY )/cellSize ) + 1 )*( Math.floor( ( maxZ - minZ )/cellSize ) + 1 ) > (double)numAtoms*MaxCellsPerAtom )
+		{
+			cellSize *= 2.0;
+		}
+		int numCellsX = (int)( ( maxX - minX )/cellSize ) + 1;
+		int numCellsY = (int)( ( maxY - minY )/cellSize ) + 1;
+		int numCellsZ = (int)( ( maxZ - minZ )/cellSize ) + 1;
+		int numCells = numCellsX*numCellsY*numCellsZ;
+		
+		// bin the atoms into cells with a counting sort
+		if( scratch.cellStarts.length < numCells + 1 )
+		{
+			scratch.cellStarts = new int[numCells + 1];
+		}
+		int[] cellStarts = scratch.cellStarts;
+		Arrays.fill( cellStarts, 0, numCells + 1, 0 );
+		for( int i=0; i<numAtoms; i++ )
+		{
+			int cx = (int)( ( scratch.x[i] - minX )/cellSize );
+			int cy = (int)( ( scratch.y[i] - minY )/cellSize );
+			int cz = (int)( ( scratch.z[i] - minZ )/cellSize );
+			int cellId = ( cx*numCellsY + cy )*numCellsZ + cz;
+			scratch.cellIds[i] = cellId;
+			cellStarts[cellId + 1]++;
+		}
+		for( int i=0; i<numCells; i++ )
+		{
+			cellStarts[i + 1] += cellStarts[i];
+		}
+		for( int i=0; i<numAtoms; i++ )
+		{
+			scratch.cellAtoms[cellStarts[scratch.cellIds[i]]++] = i;
+		}
+		// filling shifted the starts down a cell, so shift them back
+		for( int i=numCells; i>0; i-- )
+		{
+			cellStarts[i] = cellStarts[i - 1];
+		}
+		cellStarts[0] = 0;
+		
+		// sum over pairs in neighboring cells
+		double energy = 0.0;
+		for( int i=0; i<numAtoms; i++ )
+		{
+			int cellId = scratch.cellIds[i];
+			int cz = cellId % numCellsZ;
+			int cy = ( cellId/numCellsZ ) % numCellsY;
+			int cx = cellId/numCellsZ/numCellsY;
+			for( int nx=Math.max( cx - 1, 0 ); nx<=Math.min( cx + 1, numCellsX - 1 ); nx++ )
+			{
+				for( int ny=Math.max( cy - 1, 0 ); ny<=Math.min( cy + 1, numCellsY - 1 ); ny++ )
+				{
+					for( int nz=Math.max( cz - 1, 0 ); nz<=Math.min( cz + 1, numCellsZ - 1 ); nz++ )
+					{
+						int neighborCellId = ( nx*numCellsY + ny )*numCellsZ + nz;
+						for( int k=cellStarts[neighborCellId]; k<cellStarts[neighborCellId + 1]; k++ )
+						{
+							int j = scratch.cellAtoms[k];
+							if( j > i )
+							{
+								energy += getPairEnergy( scratch, i, j );
+							}
+						}
+					}
+				}
+			}
+		}
+		return energy;
+	}
+	
+	private double getEnergyAllPairs( Scratch scratch )
+	{
+		double energy = 0.0;
+		for( int i=0; i<m_addresses.length; i++ )
+		{
+			for( int j=i+1; j<m_addresses.length; j++ )
+			{
+				energy += getPairEnergy( scratch, i, j );
+			}
+		}
+		return energy;
+	}
+	
+	private static boolean isFinite( double value )
+	{
+		return !Double.isInfinite( value ) && !Double.isNaN( value );
+	}
+	
+	private double getPairEnergy( Scratch scratch, int i, int j )
+	{
+		double minDist = ( m_radii[i] + m_radii[j] )*m_radiusScale;
+		double dx = scratch.x[i] - scratch.x[j];
+		double dy = scratch.y[i] - scratch.y[j];
+		double dz = scratch.z[i] - scratch.z[j];
+		
+		// irex = 2, so we never need the square root
+		double overlap = minDist*minDist - ( dx*dx + dy*dy + dz*dz );
+		if( overlap <= 0.0 || Arrays.binarySearch( m_excludedAtoms[i], j ) >= 0 )
+		{
+			return 0.0;
+		}
+		return m_forceConstant*overlap*overlap;
+	}
+	
+	private static int[][] getExcludedAtoms( Protein topology, List<BondGraph> bondGraphs, AtomAddressInternal[] addresses )
+	{
+		// map the topology atoms to our indices
+		int[][][] indices = new int[topology.getSubunits().size()][][];
+		for( int i=0; i<indices.length; i++ )
+		{
+			indices[i] = new int[topology.getSubunit( i ).getResidues().size()][];
+			for( int j=0; j<indices[i].length; j++ )
+			{
+				indices[i][j] = new int[topology.getResidue( i, j ).getAtoms().size()];
+				Arrays.fill( indices[i][j], -1 );
+			}
+		}
+		for( int i=0; i<addresses.length; i++ )
+		{
+			indices[addresses[i].getSubunitId()][addresses[i].getResidueId()][addresses[i].getAtomId()] = i;
+		}
+		
+		// collect the higher-indexed atoms within a few bonds of each atom
+		int[][] excludedAtoms = new int[addresses.length][];
+		int[] buf = new int[16];
+		for( int i=0; i<addresses.length; i++ )
+		{
+			int numExcluded = 0;
+			BreadthFirstAtomIterator iter = new BreadthFirstAtomIterator( bondGraphs.get( addresses[i].getSubunitId() ), addresses[i] );
+			for( int level=1; level<=IgnoredWithinNumBonds && iter.hasNext(); level++ )
+			{
+				for( AtomAddressInternal address : iter.next() )
+				{
+					int j = indices[address.getSubunitId()][address.getResidueId()][address.getAtomId()];
+					if( j > i )
+					{
+						if( numExcluded == buf.length )
+						{
+							buf = Arrays.copyOf( buf, buf.length*2 );
+						}
+						buf[numExcluded++] = j;
+					}
+				}
+			}
+			excludedAtoms[i] = Arrays.copyOf( buf, numExcluded );
+			Arrays.sort( excludedAtoms[i] );
+		}
+		return excludedAtoms;
+	}
+}
@@ -32,7 +32,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import edu.duke.cs.libprotnmr.chart.Plotter;
-import edu.duke.cs.libprotnmr.geom.GeodesicGrid;
+import edu.duke.cs.libprotnmr.geom.CompactGeodesicGrid;
 import edu.duke.cs.libprotnmr.geom.Vector3;
 import edu.duke.cs.libprotnmr.math.Quaternion;
 import edu.duke.cs.libprotnmr.nmr.AlignmentTensor;
@@ -125,13 +125,13 @@ public class RotationRdcFitCalculator
 		Subunit helixToyB = new Subunit( helix );
 		
 		Quaternion q = new Quaternion();
-		GeodesicGrid grid = new GeodesicGrid( gridDepth );
+		List<Vector3> gridAxes = CompactGeodesicGrid.get( gridDepth ).getVertices();
 		int numSteps = (int)(2.0*Math.PI/axialRotationResolution);
 		
 		// sample axis orientations
-		Progress progress = new Progress( grid.vertices().size(), 5000 );
+		Progress progress = new Progress( gridAxes.size(), 5000 );
 		List<ScoredAxis> scoredAxes = new ArrayList<ScoredAxis>();
-		for( Vector3 newAxis : grid.vertices() )
+		for( Vector3 newAxis : gridAxes )
 		{
 			// rotate the toy helical axis
 			Quaternion.getRotation( q, axis, newAxis );
@@ -212,9 +212,9 @@ public class RotationRdcFitCalculator
 		
 		// score all the axes using the work crew
 		List<ScoredAxis> scoredAxes = new ArrayList<ScoredAxis>();
-		GeodesicGrid grid = new GeodesicGrid( gridDepth );
-		workCrew.setProgress( new Progress( grid.vertices().size(), 5000 ) );
-		for( Vector3 axis : grid.vertices() )
+		List<Vector3> gridAxes = CompactGeodesicGrid.get( gridDepth ).getVertices();
+		workCrew.setProgress( new Progress( gridAxes.size(), 5000 ) );
+		for( Vector3 axis : gridAxes )
 		{
 			// add the work for this axis
 			ScoredAxis scoredAxis = new ScoredAxis( axis );
@@ -0,0 +1,269 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.analysis;
+
+import java.util.List;
+
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.perf.WorkCrew;
+import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
+import edu.duke.cs.libprotnmr.protein.HasAtoms;
+
+
+public class StructureAccumulator
+{
+	// one-pass mean and variance of atom positions using Welford's algorithm,
+	// so ensembles can be streamed one model at a time and partial results can be merged
+	
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private HasAtoms m_template;
+	private List<AtomAddressInternal> m_addresses;
+	private int m_count;
+	private double[] m_means;
+	private double[] m_sumSquaredDeviations;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public StructureAccumulator( HasAtoms template )
+	{
+		this( template, template.atoms() );
+	}
+	
+	public StructureAccumulator( HasAtoms template, List<AtomAddressInternal> addresses )
+	{
+		m_template = template;
+		m_addresses = addresses;
+		m_count = 0;
+		m_means = new double[m_addresses.size()*3];
+		m_sumSquaredDeviations = new double[m_addresses.size()];
+	}
+	
+	public StructureAccumulator( StructureAccumulator other )
+	{
+		m_template = other.m_template;
+		m_addresses = other.m_addresses;
+		m_count = other.m_count;
+		m_means = other.m_means.clone();
+		m_sumSquaredDeviations = other.m_sumSquaredDeviations.clone();
+	}
+	
+	
+	/**************************
+	 *   Static Methods
+	 **************************/
+	
+	public static StructureAccumulator accumulate( final List<? extends HasAtoms> structures, final List<AtomAddressInternal> addresses, int numWorkers )
+	{
+		HasAtoms template = null;
+		for( HasAtoms structure : structures )
+		{
+			if( structure != null )
+			{
+				template = structure;
+				break;
+			}
+		}
+		if( template == null )
+		{
+			throw new IllegalArgumentException( "Need at least one structure to accumulate!" );
+		}
+		
+		// each worker accumulates a contiguous chunk, then the chunks get merged in order
+		int numChunks = Math.max( 1, Math.min( numWorkers, structures.size() ) );
+		final int chunkSize = ( structures.size() + numChunks - 1 )/numChunks;
+		final StructureAccumulator[] chunks = new StructureAccumulator[numChunks];
+		for( int i=0; i<numChunks; i++ )
+		{
+			chunks[i] = new StructureAccumulator( template, addresses );
+		}
+		if( numChunks == 1 )
+		{
+			chunks[0].add( structures );
+		}
+		else
+		{
+			WorkCrew<Integer> workCrew = new WorkCrew<Integer>( )
+			{
+				@Override
+				protected void processInWorkerThread( Integer index )
+				{
+					// each worker writes to a different accumulator, and joining the workers publishes the results
+					// if any worker fails, waiting throws instead of merging a partial result
+					int end = Math.min( structures.size(), ( index + 1 )*chunkSize );
+					chunks[index].add( structures.subList( index*chunkSize, end ) );
+				}
+			};
+			workCrew.startWorkers( numChunks );
+			for( int i=0; i<numChunks; i++ )
+			{
+				workCrew.addWork( i );
+			}
+			workCrew.waitUntilWorkIsFinished();
+		}
+		
+		for( int i=1; i<numChunks; i++ )
+		{
+			chunks[0].merge( chunks[i] );
+		}
+		return chunks[0];
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public int getCount( )
+	{
+		return m_count;
+	}
+	
+	public List<AtomAddressInternal> getAddresses( )
+	{
+		return m_addresses;
+	}
+	
+	public void getMean( Vector3 out, int index )
+	{
+		out.set( m_means[index*3], m_means[index*3 + 1], m_means[index*3 + 2] );
+	}
+	
+	public double getVariance( int index )
+	{
+		// mean squared distance to the mean position, same as VarianceCalculator.Metric.Variance
+		return m_sumSquaredDeviations[index]/m_count;
+	}
+	
+	public double getRmsf( int index )
+	{
+		return Math.sqrt( getVariance( index ) );
+	}
+	
+	public double getAverageVariance( )
+	{
+		double sum = 0.0;
+		for( int i=0; i<m_addresses.size(); i++ )
+		{
+			sum += getVariance( i );
+		}
+		return sum/m_addresses.size();
+	}
+	
+	public double getAverageRmsf( )
+	{
+		double sum = 0.0;
+		for( int i=0; i<m_addresses.size(); i++ )
+		{
+			sum += getRmsf( i );
+		}
+		return sum/m_addresses.size();
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public void add( HasAtoms structure )
+	{
+		// skip missing models, like VarianceCalculator does
+		if( structure == null )
+		{
+			return;
+		}
+		
+		m_count++;
+		double invCount = 1.0/m_count;
+		for( int i=0; i<m_addresses.size(); i++ )
+		{
+			Vector3 pos = structure.getAtom( m_addresses.get( i ) ).getPosition();
+			int j = i*3;
+			double dx = pos.x - m_means[j];
+			double dy = pos.y - m_means[j + 1];
+			double dz = pos.z - m_means[j + 2];
+			m_means[j] += dx*invCount;
+			m_means[j + 1] += dy*invCount;
+			m_means[j + 2] += dz*invCount;
+			m_sumSquaredDeviations[i] += dx*( pos.x - m_means[j] ) + dy*( pos.y - m_means[j + 1] ) + dz*( pos.z - m_means[j + 2] );
+		}
+	}
+	
+	public void add( Iterable<? extends HasAtoms> structures )
+	{
+		for( HasAtoms structure : structures )
+		{
+			add( structure );
+		}
+	}
+	
+	public void merge( StructureAccumulator other )
+	{
+		if( other.m_addresses.size() != m_addresses.size() )
+		{
+			throw new IllegalArgumentException( "Accumulators must cover the same atoms!" );
+		}
+		if( other.m_count == 0 )
+		{
+			return;
+		}
+		
+		// Chan et al.'s update for combining two partial results
+		int count = m_count + other.m_count;
+		double otherWeight = (double)other.m_count/count;
+		double crossWeight = (double)m_count*other.m_count/count;
+		for( int i=0; i<m_addresses.size(); i++ )
+		{
+			int j = i*3;
+			double dx = other.m_means[j] - m_means[j];
+			double dy = other.m_means[j + 1] - m_means[j + 1];
+			double dz = other.m_means[j + 2] - m_means[j + 2];
+			m_means[j] += dx*otherWeight;
+			m_means[j + 1] += dy*otherWeight;
+			m_means[j + 2] += dz*otherWeight;
+			m_sumSquaredDeviations[i] += other.m_sumSquaredDeviations[i] + ( dx*dx + dy*dy + dz*dz )*crossWeight;
+		}
+		m_count = count;
+	}
+	
+	public HasAtoms getMeanStructure( )
+	{
+		// atoms that aren't accumulated keep the template's positions
+		HasAtoms meanStructure = m_template.clone();
+		for( int i=0; i<m_addresses.size(); i++ )
+		{
+			getMean( meanStructure.getAtom( m_addresses.get( i ) ).getPosition(), i );
+		}
+		return meanStructure;
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
+import edu.duke.cs.libprotnmr.protein.Protein;
+import edu.duke.cs.libprotnmr.protein.Subunit;
+
+import Jama.Matrix;
+
+
+public class SymmetricRmsdCalculator
+{
+	// computes the optimal-superposition RMSD between two homo-oligomers, minimized over subunit relabelings
+	// the cross-covariance between every pair of subunits is computed once, so each relabeling only costs
+	// a sum of 3x3 blocks and a 4x4 eigenvalue problem instead of a whole re-alignment
+	
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	public static class Result
+	{
+		public double rmsd;
+		
+		// computed subunit subunitOrder[i] is matched to reference subunit i
+		public int[] subunitOrder;
+		
+		@Override
+		public String toString( )
+		{
+			StringBuilder buf = new StringBuilder();
+			for( int i=0; i<subunitOrder.length; i++ )
+			{
+				if( i > 0 )
+				{
+					buf.append( "," );
+				}
+				buf.append( subunitOrder[i] );
+			}
+			return String.format( "%.3f [%s]", rmsd, buf.toString() );
+		}
+	}
+	
+	
+	/**************************
+	 *   Static Methods
+	 **************************/
+	
+	public static Result getRmsd( Protein reference, Protein computed, boolean allowReflections )
+	{
+		return getRmsd( reference, computed, getAtoms( reference ), getAtoms( computed ), allowReflections );
+	}
+	
+	public static Result getBackboneRmsd( Protein reference, Protein computed, boolean allowReflections )
+	{
+		return getRmsd( reference, computed, getBackboneAtoms( reference ), getBackboneAtoms( computed ), allowReflections );
+	}
+	
+	public static Result getRmsd( Protein reference, Protein computed, List<List<AtomAddressInternal>> referenceAddresses, List<List<AtomAddressInternal>> computedAddresses, boolean allowReflections )
+	{
+		int numSubunits = referenceAddresses.size();
+		if( computedAddresses.size() != numSubunits )
+		{
+			throw new IllegalArgumentException( "Proteins must have the same number of subunits!" );
+		}
+		int numSubunitAtoms = referenceAddresses.get( 0 ).size();
+		for( int i=0; i<numSubunits; i++ )
+		{
+			if( referenceAddresses.get( i ).size() != numSubunitAtoms || computedAddresses.get( i ).size() != numSubunitAtoms )
+			{
+				throw new IllegalArgumentException( "All subunits must have the same number of atoms!" );
+			}
+		}
+		int numAtoms = numSubunits*numSubunitAtoms;
+		
+		// get centered coordinates. The centroids don't depend on the subunit order
+		double[][] referenceCoords = getCenteredCoords( reference, referenceAddresses );
+		double[][] computedCoords = getCenteredCoords( computed, computedAddresses );
+		double sumSquares = getSumSquares( referenceCoords ) + getSumSquares( computedCoords );
+		
+		// compute the cross-covariance blocks for every (reference,computed) subunit pair
+		double[][][] blocks = new double[numSubunits][numSubunits][];
+		for( int i=0; i<numSubunits; i++ )
+		{
+			for( int j=0; j<numSubunits; j++ )
+			{
+				blocks[i][j] = getCrossCovariance( referenceCoords[i], computedCoords[j] );
+			}
+		}
+		
+		// try all the cyclic relabelings, and the reflected ones if needed
+		Result best = new Result();
+		best.rmsd = Double.POSITIVE_INFINITY;
+		double[] covariance = new double[9];
+		int[] order = new int[numSubunits];
+		for( int reflect=0; reflect<( allowReflections ? 2 : 1 ); reflect++ )
+		{
+			for( int shift=0; shift<numSubunits; shift++ )
+			{
+				for( int i=0; i<numSubunits; i++ )
+				{
+					order[i] = reflect == 0 ? ( i + shift )%numSubunits : ( shift - i + numSubunits )%numSubunits;
+				}
+				
+				// sum up the blocks for this relabeling
+				Arrays.fill( covariance, 0.0 );
+				for( int i=0; i<numSubunits; i++ )
+				{
+					double[] block = blocks[i][order[i]];
+					for( int k=0; k<9; k++ )
+					{
+						covariance[k] += block[k];
+					}
+				}
+				
+				double sumSquaredDeviations = Math.max( 0.0, sumSquares - 2.0*getMaxEigenvalue( covariance ) );
+				double rmsd = Math.sqrt( sumSquaredDeviations/numAtoms );
+				if( rmsd < best.rmsd )
+				{
+					best.rmsd = rmsd;
+					best.subunitOrder = order.clone();
+				}
+			}
+		}
+		return best;
+	}
+	
+	
+	/**************************
+	 *   Static Functions
+	 **************************/
+	
+	private static List<List<AtomAddressInternal>> getAtoms( Protein protein )
+	{
+		List<List<AtomAddressInternal>> addresses = new ArrayList<List<AtomAddressInternal>>();
+		for( Subunit subunit : protein.getSubunits() )
+		{
+			addresses.add( subunit.atoms() );
+		}
+		return addresses;
+	}
+	
+	private static List<List<AtomAddressInternal>> getBackboneAtoms( Protein protein )
+	{
+		List<List<AtomAddressInternal>> addresses = new ArrayList<List<AtomAddressInternal>>();
+		for( Subunit subunit : protein.getSubunits() )
+		{
+			addresses.add( subunit.backboneAtoms() );
+		}
+		return addresses;
+	}
+	
+	private static double[][] getCenteredCoords( Protein protein, List<List<AtomAddressInternal>> addresses )
+	{
+		// pack the coords by subunit, and find the centroid
+		double[][] coords = new double[addresses.size()][];
+		Vector3 centroid = new Vector3();
+		int numAtoms = 0;
+		for( int i=0; i<addresses.size(); i++ )
+		{
+			List<AtomAddressInternal> subunitAddresses = addresses.get( i );
+			coords[i] = new double[subunitAddresses.size()*3];
+			for( int j=0; j<subunitAddresses.size(); j++ )
+			{
+				Vector3 position = protein.getAtom( subunitAddresses.get( j ) ).getPosition();
+				coords[i][j*3 + 0] = position.x;
+				coords[i][j*3 + 1] = position.y;
+				coords[i][j*3 + 2] = position.z;
+				centroid.add( position );
+				numAtoms++;
+			}
+		}
+		centroid.scale( 1.0/numAtoms );
+		
+		for( double[] subunitCoords : coords )
+		{
+			for( int j=0; j<subunitCoords.length; j+=3 )
+			{
+				subunitCoords[j + 0] -= centroid.x;
+				subunitCoords[j + 1] -= centroid.y;
+				subunitCoords[j + 2] -= centroid.z;
+			}
+		}
+		return coords;
+	}
+	
+	private static double getSumSquares( double[][] coords )
+	{
+		double sum = 0.0;
+		for( double[] subunitCoords : coords )
+		{
+			for( double val : subunitCoords )
+			{
+				sum += val*val;
+			}
+		}
+		return sum;
+	}
+	
+	private static double[] getCrossCovariance( double[] referenceCoords, double[] computedCoords )
+	{
+		// S[3*p + q] = sum over atoms of computed_p*reference_q
+		double[] covariance = new double[9];
+		for( int i=0; i<referenceCoords.length; i+=3 )
+		{
+			for( int p=0; p<3; p++ )
+			{
+				for( int q=0; q<3; q++ )
+				{
+					covariance[p*3 + q] += computedCoords[i + p]*referenceCoords[i + q];
+				}
+			}
+		}
+		return covariance;
+	}
+	
+	private static double getMaxEigenvalue( double[] s )
+	{
+		// build the same N matrix as the RotationOptimizer, from the summed cross-covariance
+		double sxx = s[0];
+		double sxy = s[1];
+		double sxz = s[2];
+		double syx = s[3];
+		double syy = s[4];
+		double syz = s[5];
+		double szx = s[6];
+		double szy = s[7];
+		double szz = s[8];
+		Matrix n = new Matrix( new double[][] {
+			{ sxx + syy + szz, syz - szy, szx - sxz, sxy - syx },
+			{ syz - szy, sxx - syy - szz, sxy + syx, sxz + szx },
+			{ szx - sxz, sxy + syx, syy - sxx - szz, syz + szy },
+			{ sxy - syx, sxz + szx, syz + szy, szz - sxx - syy }
+		} );
+		double[] eigenvalues = n.eig().getRealEigenvalues();
+		double max = Double.NEGATIVE_INFINITY;
+		for( double eigenvalue : eigenvalues )
+		{
+			max = Math.max( max, eigenvalue );
+		}
+		return max;
+	}
+}
@@ -36,6 +36,7 @@ import edu.duke.cs.libprotnmr.math.PrincipalComponents;
 import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
 import edu.duke.cs.libprotnmr.protein.Protein;
 import edu.duke.cs.libprotnmr.protein.Subunit;
+import edu.duke.cs.libprotnmr.protein.SymmetricOligomer;
 import edu.duke.cs.libprotnmr.protein.tools.ProteinGeometry;
 
 
@@ -82,7 +83,8 @@ public class SymmetryAxisCalculator
 		}
 		
 		// do PCA to get the axis orientation
-		Vector3 orientation = PrincipalComponents.getPrincipalComponents( points ).lastEntry().getValue();
+		Vector3 orientation = new Vector3();
+		PrincipalComponents.getMajorAxis( orientation, points );
 		
 		// build the axis
 		Vector3 start = ProteinGeometry.getCentroid( protein, protein.backboneAtoms() );
@@ -90,4 +92,40 @@ public class SymmetryAxisCalculator
 		stop.add( orientation );
 		return new Line3( start, stop );
 	}
+	
+	public static SymmetricOligomer getSymmetricOligomer( Protein protein )
+	{
+		// the PCA axis could point either way, so pick the direction that best rotates subunit 0 onto subunit 1
+		Line3 axis = getSymmetryAxis( protein );
+		int numSubunits = protein.getSubunits().size();
+		SymmetricOligomer oligomer = new SymmetricOligomer( protein.getSubunit( 0 ), axis, numSubunits );
+		if( numSubunits < 2 )
+		{
+			return oligomer;
+		}
+		SymmetricOligomer flippedOligomer = new SymmetricOligomer( protein.getSubunit( 0 ), new Line3( axis.stop, axis.start ), numSubunits );
+		if( getBackboneDeviation( flippedOligomer, protein ) < getBackboneDeviation( oligomer, protein ) )
+		{
+			return flippedOligomer;
+		}
+		return oligomer;
+	}
+	
+	
+	/**************************
+	 *   Static Functions
+	 **************************/
+	
+	private static double getBackboneDeviation( SymmetricOligomer oligomer, Protein protein )
+	{
+		double sum = 0.0;
+		Vector3 position = new Vector3();
+		Subunit subunit = protein.getSubunit( 1 );
+		for( AtomAddressInternal address : subunit.backboneAtoms() )
+		{
+			oligomer.getPosition( position, 1, address.getResidueId(), address.getAtomId() );
+			sum += position.getSquaredDistance( subunit.getAtom( address ).getPosition() );
+		}
+		return sum;
+	}
 }
@@ -42,6 +42,7 @@ public abstract class Cgal implements AutoCloseable
 	
 	private ReferenceQueue<AbstractCleanable> m_referenceQueue;
 	private Set<CleanablePhantomReference> m_references;
+	private ThreadLocal<CgalArena> m_arenas;
 	
 	
 	/**************************
@@ -55,6 +56,7 @@ public abstract class Cgal implements AutoCloseable
 		// init defaults
 		m_referenceQueue = new ReferenceQueue<AbstractCleanable>();
 		m_references = Collections.synchronizedSet( new HashSet<CleanablePhantomReference>() );
+		m_arenas = new ThreadLocal<CgalArena>();
 		
 		// add a jvm shutdown hook to make sure resources get cleaned up
 		Runtime.getRuntime().addShutdownHook( new Thread( )
@@ -74,7 +76,15 @@ public abstract class Cgal implements AutoCloseable
 	
 	public void addReference( AbstractCleanable obj, Cleaner cleaner )
 	{
-		m_references.add( new CleanablePhantomReference( obj, m_referenceQueue, cleaner ) );
+		addReference( obj, cleaner, m_arenas.get() );
+	}
+	
+	public CgalArena openArena( )
+	{
+		// native objects created on this thread until the arena is closed belong to the arena
+		CgalArena arena = new CgalArena( this, m_arenas.get() );
+		m_arenas.set( arena );
+		return arena;
 	}
 	
 	public void cleanup( )
@@ -135,6 +145,27 @@ public abstract class Cgal implements AutoCloseable
 	 *   Functions
 	 **************************/
 	
+	void addReference( AbstractCleanable obj, Cleaner cleaner, CgalArena arena )
+	{
+		if( arena != null )
+		{
+			arena.add( obj, cleaner );
+		}
+		else
+		{
+			m_references.add( new CleanablePhantomReference( obj, m_referenceQueue, cleaner ) );
+		}
+	}
+	
+	void closeArena( CgalArena arena )
+	{
+		if( m_arenas.get() != arena )
+		{
+			throw new IllegalStateException( "Arenas must be closed in the reverse order they were opened." );
+		}
+		m_arenas.set( arena.getParent() );
+	}
+	
 	protected void cleanupJavaResources( )
 	{
 		// clear out all references
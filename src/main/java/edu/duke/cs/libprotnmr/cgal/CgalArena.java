@@ -0,0 +1,178 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.cgal;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CgalArena implements AutoCloseable
+{
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private Cgal m_cgal;
+	private CgalArena m_parent;
+	private Thread m_thread;
+	private Map<Cleaner,List<AbstractCleanable>> m_objects;
+	private boolean m_isClosed;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	CgalArena( Cgal cgal, CgalArena parent )
+	{
+		m_cgal = cgal;
+		m_parent = parent;
+		m_thread = Thread.currentThread();
+		m_objects = new IdentityHashMap<Cleaner,List<AbstractCleanable>>();
+		m_isClosed = false;
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public int size( )
+	{
+		int size = 0;
+		for( List<AbstractCleanable> objects : m_objects.values() )
+		{
+			size += objects.size();
+		}
+		return size;
+	}
+	
+	public boolean isClosed( )
+	{
+		return m_isClosed;
+	}
+	
+	CgalArena getParent( )
+	{
+		return m_parent;
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public void keep( AbstractCleanable obj )
+	{
+		// let the object outlive this arena, it goes to the enclosing arena or back to the garbage collector
+		if( m_isClosed )
+		{
+			throw new IllegalStateException( "Arena is already closed." );
+		}
+		for( Map.Entry<Cleaner,List<AbstractCleanable>> entry : m_objects.entrySet() )
+		{
+			if( removeByIdentity( entry.getValue(), obj ) )
+			{
+				m_cgal.addReference( obj, entry.getKey(), m_parent );
+				return;
+			}
+		}
+		throw new IllegalArgumentException( "Object does not belong to this arena!" );
+	}
+	
+	@Override
+	public void close( )
+	{
+		if( m_isClosed )
+		{
+			return;
+		}
+		if( Thread.currentThread() != m_thread )
+		{
+			throw new IllegalStateException( "Arenas must be closed by the thread that opened them." );
+		}
+		m_cgal.closeArena( this );
+		m_isClosed = true;
+		
+		// free the native objects with one call per type
+		for( Map.Entry<Cleaner,List<AbstractCleanable>> entry : m_objects.entrySet() )
+		{
+			List<AbstractCleanable> objects = entry.getValue();
+			int[] ids = new int[objects.size()];
+			int numIds = 0;
+			for( AbstractCleanable obj : objects )
+			{
+				if( obj.getId() >= 0 )
+				{
+					ids[numIds++] = obj.getId();
+					obj.setId( -1 );
+				}
+			}
+			if( numIds < ids.length )
+			{
+				int[] validIds = new int[numIds];
+				System.arraycopy( ids, 0, validIds, 0, numIds );
+				ids = validIds;
+			}
+			if( ids.length > 0 )
+			{
+				entry.getKey().cleanup( ids );
+			}
+		}
+		m_objects.clear();
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	void add( AbstractCleanable obj, Cleaner cleaner )
+	{
+		List<AbstractCleanable> objects = m_objects.get( cleaner );
+		if( objects == null )
+		{
+			objects = new ArrayList<AbstractCleanable>();
+			m_objects.put( cleaner, objects );
+		}
+		objects.add( obj );
+	}
+	
+	private static boolean removeByIdentity( List<AbstractCleanable> objects, AbstractCleanable obj )
+	{
+		for( int i=0; i<objects.size(); i++ )
+		{
+			if( objects.get( i ) == obj )
+			{
+				objects.remove( i );
+				return true;
+			}
+		}
+		return false;
+	}
+}
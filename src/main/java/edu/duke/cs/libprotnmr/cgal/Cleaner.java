@@ -29,4 +29,5 @@ package edu.duke.cs.libprotnmr.cgal;
 public interface Cleaner
 {
 	public void cleanup( int id );
+	public void cleanup( int[] ids );
 }
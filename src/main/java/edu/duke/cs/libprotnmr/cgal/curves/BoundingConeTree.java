@@ -0,0 +1,225 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.cgal.curves;
+
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.math.IndexPair;
+import edu.duke.cs.libprotnmr.util.CircularList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+public class BoundingConeTree
+{
+	/*********************************
+	 *   Data Members
+	 *********************************/
+	
+	private GeodesicCurveArc[] m_arcs;
+	
+	// nodes are stored in flat arrays, the root is node 0
+	private double[] m_axes;
+	private double[] m_angles;
+	private int[] m_left;
+	private int[] m_right;
+	private int[] m_arcIndex;
+	private int m_numNodes;
+	
+	
+	/*********************************
+	 *   Constructors
+	 *********************************/
+	
+	public BoundingConeTree( List<Vector3> samples )
+	{
+		// build the geodesic arcs between consecutive samples (the samples form a closed loop)
+		int numArcs = samples.size();
+		m_arcs = new GeodesicCurveArc[numArcs];
+		for( int i=0; i<numArcs; i++ )
+		{
+			m_arcs[i] = GeodesicCurveArc.newByPointsWithArbitraryNormal(
+				CircularList.get( samples, i ),
+				CircularList.getNext( samples, i )
+			);
+		}
+		
+		// a binary tree with n leaves has 2n-1 nodes
+		int maxNodes = Math.max( 1, 2*numArcs - 1 );
+		m_axes = new double[maxNodes*3];
+		m_angles = new double[maxNodes];
+		m_left = new int[maxNodes];
+		m_right = new int[maxNodes];
+		m_arcIndex = new int[maxNodes];
+		m_numNodes = 0;
+		if( numArcs > 0 )
+		{
+			build( 0, numArcs );
+		}
+	}
+	
+	
+	/*********************************
+	 *   Accessors
+	 *********************************/
+	
+	public int getNumArcs( )
+	{
+		return m_arcs.length;
+	}
+	
+	public GeodesicCurveArc getArc( int i )
+	{
+		return m_arcs[i];
+	}
+	
+	public int getNumNodes( )
+	{
+		return m_numNodes;
+	}
+	
+	
+	/*********************************
+	 *   Methods
+	 *********************************/
+	
+	public List<IndexPair> getOverlappingArcs( BoundingConeTree other )
+	{
+		List<IndexPair> pairs = new ArrayList<IndexPair>();
+		if( m_numNodes > 0 && other.m_numNodes > 0 )
+		{
+			collectOverlaps( pairs, other, 0, 0 );
+		}
+		
+		// report pairs in the same order as a brute force double loop would
+		Collections.sort( pairs, new Comparator<IndexPair>( )
+		{
+			@Override
+			public int compare( IndexPair a, IndexPair b )
+			{
+				if( a.left != b.left )
+				{
+					return a.left < b.left ? -1 : 1;
+				}
+				return a.right < b.right ? -1 : ( a.right == b.right ? 0 : 1 );
+			}
+		} );
+		return pairs;
+	}
+	
+	
+	/*********************************
+	 *   Functions
+	 *********************************/
+	
+	private int build( int start, int stop )
+	{
+		int node = m_numNodes++;
+		if( stop - start == 1 )
+		{
+			// leaf: the cone is centered on the arc midpoint and wide enough to hold the whole arc
+			GeodesicCurveArc arc = m_arcs[start];
+			Vector3 axis = arc.getMidpoint();
+			m_axes[node*3] = axis.x;
+			m_axes[node*3 + 1] = axis.y;
+			m_axes[node*3 + 2] = axis.z;
+			m_angles[node] = Math.acos( arc.getSource().getDot( arc.getTarget() ) );
+			m_left[node] = -1;
+			m_right[node] = -1;
+			m_arcIndex[node] = start;
+			return node;
+		}
+		
+		int mid = ( start + stop )/2;
+		int left = build( start, mid );
+		int right = build( mid, stop );
+		m_left[node] = left;
+		m_right[node] = right;
+		m_arcIndex[node] = -1;
+		
+		// the axis is the normalized average of the child axes
+		double x = m_axes[left*3] + m_axes[right*3];
+		double y = m_axes[left*3 + 1] + m_axes[right*3 + 1];
+		double z = m_axes[left*3 + 2] + m_axes[right*3 + 2];
+		double length = Math.sqrt( x*x + y*y + z*z );
+		if( length == 0.0 )
+		{
+			// the children point in opposite directions, so this cone covers everything
+			m_axes[node*3] = m_axes[left*3];
+			m_axes[node*3 + 1] = m_axes[left*3 + 1];
+			m_axes[node*3 + 2] = m_axes[left*3 + 2];
+			m_angles[node] = Math.PI;
+			return node;
+		}
+		m_axes[node*3] = x/length;
+		m_axes[node*3 + 1] = y/length;
+		m_axes[node*3 + 2] = z/length;
+		
+		// the cone must contain both child cones
+		m_angles[node] = Math.min( Math.PI, Math.max(
+			getAngle( this, node, this, left ) + m_angles[left],
+			getAngle( this, node, this, right ) + m_angles[right]
+		) );
+		return node;
+	}
+	
+	private void collectOverlaps( List<IndexPair> pairs, BoundingConeTree other, int node, int otherNode )
+	{
+		// do the cones intersect?
+		if( getAngle( this, node, other, otherNode ) - m_angles[node] - other.m_angles[otherNode] > 0 )
+		{
+			return;
+		}
+		
+		boolean isLeaf = m_left[node] < 0;
+		boolean isOtherLeaf = other.m_left[otherNode] < 0;
+		if( isLeaf && isOtherLeaf )
+		{
+			pairs.add( new IndexPair( m_arcIndex[node], other.m_arcIndex[otherNode] ) );
+		}
+		else if( isOtherLeaf || ( !isLeaf && m_angles[node] >= other.m_angles[otherNode] ) )
+		{
+			// descend into the wider cone
+			collectOverlaps( pairs, other, m_left[node], otherNode );
+			collectOverlaps( pairs, other, m_right[node], otherNode );
+		}
+		else
+		{
+			collectOverlaps( pairs, other, node, other.m_left[otherNode] );
+			collectOverlaps( pairs, other, node, other.m_right[otherNode] );
+		}
+	}
+	
+	private static double getAngle( BoundingConeTree a, int aNode, BoundingConeTree b, int bNode )
+	{
+		double dot = a.m_axes[aNode*3]*b.m_axes[bNode*3]
+			+ a.m_axes[aNode*3 + 1]*b.m_axes[bNode*3 + 1]
+			+ a.m_axes[aNode*3 + 2]*b.m_axes[bNode*3 + 2];
+		return Math.acos( Math.max( -1.0, Math.min( 1.0, dot ) ) );
+	}
+}
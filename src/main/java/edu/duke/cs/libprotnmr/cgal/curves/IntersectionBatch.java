@@ -0,0 +1,216 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.cgal.curves;
+
+import edu.duke.cs.libprotnmr.geom.Vector3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class IntersectionBatch
+{
+	/*********************************
+	 *   Definitions
+	 *********************************/
+	
+	// two conics (or a quadric, a plane, and the sphere) meet in at most four points
+	public static final int MaxPointsPerPair = 4;
+	
+	
+	/*********************************
+	 *   Data Members
+	 *********************************/
+	
+	private int m_numParams;
+	private int m_numPairs;
+	private double[] m_params;
+	private double[] m_points;
+	private int[] m_offsets;
+	
+	
+	/*********************************
+	 *   Constructors
+	 *********************************/
+	
+	public IntersectionBatch( int numParams )
+	{
+		this( numParams, 16 );
+	}
+	
+	public IntersectionBatch( int numParams, int capacity )
+	{
+		m_numParams = numParams;
+		m_numPairs = 0;
+		m_params = new double[numParams*capacity];
+		m_points = new double[MaxPointsPerPair*3*capacity];
+		m_offsets = new int[capacity + 1];
+	}
+	
+	
+	/*********************************
+	 *   Accessors
+	 *********************************/
+	
+	public int getNumParams( )
+	{
+		return m_numParams;
+	}
+	
+	public int getNumPairs( )
+	{
+		return m_numPairs;
+	}
+	
+	public int getNumPoints( int pair )
+	{
+		return m_offsets[pair + 1] - m_offsets[pair];
+	}
+	
+	public int getNumPoints( )
+	{
+		return m_offsets[m_numPairs];
+	}
+	
+	public void getPoint( Vector3 out, int pair, int index )
+	{
+		int i = ( m_offsets[pair] + index )*3;
+		out.set( m_points[i], m_points[i + 1], m_points[i + 2] );
+	}
+	
+	public List<Vector3> getPoints( int pair )
+	{
+		List<Vector3> points = new ArrayList<Vector3>( getNumPoints( pair ) );
+		for( int i=0; i<getNumPoints( pair ); i++ )
+		{
+			Vector3 p = new Vector3();
+			getPoint( p, pair, i );
+			points.add( p );
+		}
+		return points;
+	}
+	
+	
+	/*********************************
+	 *   Methods
+	 *********************************/
+	
+	public int add( double ... params )
+	{
+		if( params.length != m_numParams )
+		{
+			throw new IllegalArgumentException( "Expected " + m_numParams + " params, not " + params.length );
+		}
+		ensureCapacity( m_numPairs + 1 );
+		System.arraycopy( params, 0, m_params, m_numPairs*m_numParams, m_numParams );
+		m_offsets[m_numPairs + 1] = m_offsets[m_numPairs];
+		return m_numPairs++;
+	}
+	
+	public void clear( )
+	{
+		// keep the buffers around so the batch can be reused without allocating
+		m_numPairs = 0;
+	}
+	
+	
+	/*********************************
+	 *   Functions
+	 *********************************/
+	
+	double[] getParams( )
+	{
+		return m_params;
+	}
+	
+	double[] getPointsBuffer( )
+	{
+		return m_points;
+	}
+	
+	int[] getOffsets( )
+	{
+		return m_offsets;
+	}
+	
+	void setPoints( int pair, List<Vector3> points )
+	{
+		// PRECONDITION: pairs are set in order
+		int offset = m_offsets[pair];
+		for( Vector3 p : points )
+		{
+			m_points[offset*3] = p.x;
+			m_points[offset*3 + 1] = p.y;
+			m_points[offset*3 + 2] = p.z;
+			offset++;
+		}
+		m_offsets[pair + 1] = offset;
+	}
+	
+	void removePoints( Filter filter )
+	{
+		// compact the points array in place, keeping only the points that pass the filter
+		int dest = 0;
+		int src = 0;
+		Vector3 p = new Vector3();
+		for( int pair=0; pair<m_numPairs; pair++ )
+		{
+			int end = m_offsets[pair + 1];
+			m_offsets[pair] = dest;
+			for( ; src<end; src++ )
+			{
+				p.set( m_points[src*3], m_points[src*3 + 1], m_points[src*3 + 2] );
+				if( filter.keep( pair, p ) )
+				{
+					m_points[dest*3] = p.x;
+					m_points[dest*3 + 1] = p.y;
+					m_points[dest*3 + 2] = p.z;
+					dest++;
+				}
+			}
+		}
+		m_offsets[m_numPairs] = dest;
+	}
+	
+	interface Filter
+	{
+		// the filter may also transform the point in place
+		boolean keep( int pair, Vector3 p );
+	}
+	
+	private void ensureCapacity( int numPairs )
+	{
+		if( m_offsets.length > numPairs )
+		{
+			return;
+		}
+		int capacity = Math.max( numPairs, m_offsets.length*2 );
+		m_params = Arrays.copyOf( m_params, m_numParams*capacity );
+		m_points = Arrays.copyOf( m_points, MaxPointsPerPair*3*capacity );
+		m_offsets = Arrays.copyOf( m_offsets, capacity + 1 );
+	}
+}
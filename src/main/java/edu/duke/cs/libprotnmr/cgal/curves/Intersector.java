@@ -34,10 +34,10 @@ import edu.duke.cs.libprotnmr.kinemage.KinemageBuilder;
 import edu.duke.cs.libprotnmr.kinemage.KinemageColor;
 import edu.duke.cs.libprotnmr.kinemage.KinemageWriter;
 import edu.duke.cs.libprotnmr.math.CompareReal;
+import edu.duke.cs.libprotnmr.math.IndexPair;
 import edu.duke.cs.libprotnmr.math.Matrix3;
 import edu.duke.cs.libprotnmr.math.Quadratic;
 import edu.duke.cs.libprotnmr.nmr.AlignmentTensor;
-import edu.duke.cs.libprotnmr.util.CircularList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -62,6 +62,36 @@ public class Intersector
 		TooManyIntersections // even if the curves are a little apart, still call it a hit
 	}
 	
+	// A, B, C, d, the PoF-to-cone rotation, then alpha and beta
+	public static final int RdcCircularBatchParams = 15;
+	
+	public static enum Backend
+	{
+		Cgal, // exact arithmetic in the native library
+		Java // double precision in java, falls back to Cgal for near-degenerate cases
+	}
+	
+	
+	/*********************************
+	 *   Data Members
+	 *********************************/
+	
+	private static Backend m_backend = Backend.Cgal;
+	
+	
+	/*********************************
+	 *   Accessors
+	 *********************************/
+	
+	public static Backend getBackend( )
+	{
+		return m_backend;
+	}
+	public static void setBackend( Backend backend )
+	{
+		m_backend = backend;
+	}
+	
 	
 	/*********************************
 	 *   Static Methods
@@ -181,28 +211,35 @@ public class Intersector
 	{
 		// get the rotation from the PoF to the cone space
 		Matrix3 rotPofToMol = new Matrix3();
-		rdcCurve.getTensor().getRotPofToMol( rotPofToMol );
-		Matrix3 rotMolToCone = new Matrix3( circularCurve.getRotConeToMol() );
-		rotMolToCone.transpose();
 		Matrix3 rotPofToCone = new Matrix3();
-		rotPofToMol.multiplyLeft( rotPofToCone, rotMolToCone );
+		getRotPofToCone( rotPofToCone, rotPofToMol, rdcCurve, circularCurve );
 		
 		// compute the intersection points
 		double alpha = circularCurve.getConeHeight();
 		double beta = circularCurve.getConeHalfWidth() * circularCurve.getConeHalfWidth();
 		assert( !Double.isNaN( alpha ) );
 		assert( !Double.isNaN( beta ) );
-		CurvesCgal.getInstance();
 		List<Vector3> intersectionPoints = new ArrayList<Vector3>();
-		intersectRdcCircularPoF(
+		boolean isSolved = m_backend == Backend.Java && NumericIntersector.intersectRdcCircularPoF(
 			intersectionPoints,
 			rdcCurve.getTensor().getDxx(), rdcCurve.getTensor().getDyy(), rdcCurve.getTensor().getDzz(),
 			rdcCurve.getD(),
-			rotPofToCone.data[0][0], rotPofToCone.data[0][1], rotPofToCone.data[0][2],
-			rotPofToCone.data[1][0], rotPofToCone.data[1][1], rotPofToCone.data[1][2],
-			rotPofToCone.data[2][0], rotPofToCone.data[2][1], rotPofToCone.data[2][2],
-			alpha, beta
+			rotPofToCone, alpha, circularCurve.getConeHalfWidth()
 		);
+		if( !isSolved )
+		{
+			CurvesCgal.getInstance();
+			intersectionPoints.clear();
+			intersectRdcCircularPoF(
+				intersectionPoints,
+				rdcCurve.getTensor().getDxx(), rdcCurve.getTensor().getDyy(), rdcCurve.getTensor().getDzz(),
+				rdcCurve.getD(),
+				rotPofToCone.data[0][0], rotPofToCone.data[0][1], rotPofToCone.data[0][2],
+				rotPofToCone.data[1][0], rotPofToCone.data[1][1], rotPofToCone.data[1][2],
+				rotPofToCone.data[2][0], rotPofToCone.data[2][1], rotPofToCone.data[2][2],
+				alpha, beta
+			);
+		}
 		
 		// rotate the points back into the molecular frame
 		for( Vector3 p : intersectionPoints )
@@ -251,6 +288,68 @@ public class Intersector
 		return intersectionPoints;
 	}
 	
+	public static IntersectionBatch getIntersectionPoints( List<RdcCurve> rdcCurves, List<CircularCurve> circularCurves )
+	{
+		IntersectionBatch batch = new IntersectionBatch( RdcCircularBatchParams, rdcCurves.size() );
+		getIntersectionPoints( batch, rdcCurves, circularCurves );
+		return batch;
+	}
+	
+	public static void getIntersectionPoints( IntersectionBatch batch, final List<RdcCurve> rdcCurves, final List<CircularCurve> circularCurves )
+	{
+		if( rdcCurves.size() != circularCurves.size() )
+		{
+			throw new IllegalArgumentException( "Need the same number of RDC curves and circular curves!" );
+		}
+		checkBatch( batch, RdcCircularBatchParams );
+		batch.clear();
+		
+		if( m_backend == Backend.Java )
+		{
+			// no JNI transitions to amortize, just solve the pairs one at a time
+			for( int i=0; i<rdcCurves.size(); i++ )
+			{
+				int pair = batch.add( new double[RdcCircularBatchParams] );
+				batch.setPoints( pair, getIntersectionPoints( rdcCurves.get( i ), circularCurves.get( i ) ) );
+			}
+			return;
+		}
+		
+		// pack the curve parameters
+		final Matrix3[] rotsPofToMol = new Matrix3[rdcCurves.size()];
+		Matrix3 rotPofToCone = new Matrix3();
+		for( int i=0; i<rdcCurves.size(); i++ )
+		{
+			RdcCurve rdcCurve = rdcCurves.get( i );
+			CircularCurve circularCurve = circularCurves.get( i );
+			rotsPofToMol[i] = new Matrix3();
+			getRotPofToCone( rotPofToCone, rotsPofToMol[i], rdcCurve, circularCurve );
+			batch.add(
+				rdcCurve.getTensor().getDxx(), rdcCurve.getTensor().getDyy(), rdcCurve.getTensor().getDzz(),
+				rdcCurve.getD(),
+				rotPofToCone.data[0][0], rotPofToCone.data[0][1], rotPofToCone.data[0][2],
+				rotPofToCone.data[1][0], rotPofToCone.data[1][1], rotPofToCone.data[1][2],
+				rotPofToCone.data[2][0], rotPofToCone.data[2][1], rotPofToCone.data[2][2],
+				circularCurve.getConeHeight(), circularCurve.getConeHalfWidth() * circularCurve.getConeHalfWidth()
+			);
+		}
+		
+		// compute all the intersection points in one native call
+		CurvesCgal.getInstance();
+		intersectRdcCircularPoFBatch( batch.getParams(), batch.getNumPairs(), batch.getPointsBuffer(), batch.getOffsets() );
+		
+		// rotate the points back into the molecular frame and filter them
+		batch.removePoints( new IntersectionBatch.Filter( )
+		{
+			@Override
+			public boolean keep( int pair, Vector3 p )
+			{
+				rotsPofToMol[pair].multiply( p );
+				return rdcCurves.get( pair ).containsPoint( p ) && circularCurves.get( pair ).containsPoint( p );
+			}
+		} );
+	}
+	
 	public static List<Vector3> getIntersectionPoints( CircularCurve a, CircularCurve b )
 	{
 		checkDistinctCurves( a, b );
@@ -277,16 +376,26 @@ public class Intersector
 		rotPofToMol.multiplyLeft( rotPofToParam, rotMolToParam );
 		
 		// compute the intersection points
-		CurvesCgal.getInstance();
 		List<Vector3> intersectionPoints = new ArrayList<Vector3>();
-		intersectRdcGeodesicPoF(
+		boolean isSolved = m_backend == Backend.Java && NumericIntersector.intersectRdcGeodesicPoF(
 			intersectionPoints,
 			rdcCurve.getTensor().getDxx(), rdcCurve.getTensor().getDyy(), rdcCurve.getTensor().getDzz(),
 			rdcCurve.getD(),
-			rotPofToParam.data[0][0], rotPofToParam.data[0][1], rotPofToParam.data[0][2],
-			rotPofToParam.data[1][0], rotPofToParam.data[1][1], rotPofToParam.data[1][2],
-			rotPofToParam.data[2][0], rotPofToParam.data[2][1], rotPofToParam.data[2][2]
+			rotPofToParam
 		);
+		if( !isSolved )
+		{
+			CurvesCgal.getInstance();
+			intersectionPoints.clear();
+			intersectRdcGeodesicPoF(
+				intersectionPoints,
+				rdcCurve.getTensor().getDxx(), rdcCurve.getTensor().getDyy(), rdcCurve.getTensor().getDzz(),
+				rdcCurve.getD(),
+				rotPofToParam.data[0][0], rotPofToParam.data[0][1], rotPofToParam.data[0][2],
+				rotPofToParam.data[1][0], rotPofToParam.data[1][1], rotPofToParam.data[1][2],
+				rotPofToParam.data[2][0], rotPofToParam.data[2][1], rotPofToParam.data[2][2]
+			);
+		}
 		
 		// rotate the points back into the molecular frame
 		for( Vector3 p : intersectionPoints )
@@ -643,6 +752,14 @@ public class Intersector
 		return points;
 	}
 	
+	public static void getHyperbolaUnitCircleIntersectionPoints( IntersectionBatch batch )
+	{
+		// PRECONDITION: the batch params are a, b, c, d for each hyperbola
+		checkBatch( batch, 4 );
+		CurvesCgal.getInstance();
+		getHyperbolaUnitCircleIntersectionPointsBatch( batch.getParams(), batch.getNumPairs(), batch.getPointsBuffer(), batch.getOffsets() );
+	}
+	
 	public static List<Vector3> getParabolaUnitCircleIntersectionPoints( double a, double b, double c )
 	{
 		CurvesCgal.getInstance();
@@ -676,6 +793,14 @@ public class Intersector
 		return points;
 	}
 	
+	public static void getParabolaUnitCircleIntersectionPoints( IntersectionBatch batch )
+	{
+		// PRECONDITION: the batch params are a, b, c for each parabola
+		checkBatch( batch, 3 );
+		CurvesCgal.getInstance();
+		getParabolaUnitCircleIntersectionPointsBatch( batch.getParams(), batch.getNumPairs(), batch.getPointsBuffer(), batch.getOffsets() );
+	}
+	
 	public static List<Vector2> sampleRdcCurveProjectionZ( AlignmentTensor tensor, double rdcValue, Matrix3 rotPoFZToProjectAxis )
 	{
 		CurvesCgal.getInstance();
@@ -944,40 +1069,18 @@ public class Intersector
 	{
 		checkDistinctCurves( a, b );
 		
-		List<Vector3> aSamples = a.samplePoints( resolutionRadians );
-		List<Vector3> bSamples = b.samplePoints( resolutionRadians );
-		
-		// brute force intersect all geodesic segments
+		BoundingConeTree aTree = new BoundingConeTree( a.samplePoints( resolutionRadians ) );
+		BoundingConeTree bTree = new BoundingConeTree( b.samplePoints( resolutionRadians ) );
+		return getApproximateIntersectionPoints( aTree, bTree );
+	}
+	
+	public static List<Vector3> getApproximateIntersectionPoints( BoundingConeTree aTree, BoundingConeTree bTree )
+	{
+		// only intersect the geodesic segments whose bounding cones overlap
 		List<Vector3> intersections = new ArrayList<Vector3>();
-		for( int i=0; i<aSamples.size(); i++ )
+		for( IndexPair pair : aTree.getOverlappingArcs( bTree ) )
 		{
-			GeodesicCurveArc aArc = GeodesicCurveArc.newByPointsWithArbitraryNormal(
-				CircularList.get( aSamples, i ),
-				CircularList.getNext( aSamples, i )
-			);
-			
-			// get the bounding cone
-			Vector3 aAxis = aArc.getMidpoint();
-			double aAngle = Math.acos( aArc.getSource().getDot( aArc.getTarget() ) );
-			
-			for( int j=0; j<bSamples.size(); j++ )
-			{
-				GeodesicCurveArc bArc = GeodesicCurveArc.newByPointsWithArbitraryNormal(
-					CircularList.get( bSamples, j ),
-					CircularList.getNext( bSamples, j )
-				);
-				
-				// get the bounding cone
-				Vector3 bAxis = bArc.getMidpoint();
-				double bAngle = Math.acos( bArc.getSource().getDot( bArc.getTarget() ) );
-				
-				// do the cones intersect?
-				double angle = Math.acos( aAxis.getDot( bAxis ) );
-				if( angle - aAngle - bAngle <= 0 )
-				{
-					intersections.addAll( Intersector.getIntersectionPoints( aArc, bArc ) );
-				}
-			}
+			intersections.addAll( Intersector.getIntersectionPoints( aTree.getArc( pair.left ), bTree.getArc( pair.right ) ) );
 		}
 		return intersections;
 	}
@@ -996,6 +1099,22 @@ public class Intersector
 		}
 	}
 
+	private static void checkBatch( IntersectionBatch batch, int numParams )
+	{
+		if( batch.getNumParams() != numParams )
+		{
+			throw new IllegalArgumentException( "Batch should have " + numParams + " params per pair, not " + batch.getNumParams() );
+		}
+	}
+	
+	private static void getRotPofToCone( Matrix3 outRotPofToCone, Matrix3 outRotPofToMol, RdcCurve rdcCurve, CircularCurve circularCurve )
+	{
+		rdcCurve.getTensor().getRotPofToMol( outRotPofToMol );
+		Matrix3 rotMolToCone = new Matrix3( circularCurve.getRotConeToMol() );
+		rotMolToCone.transpose();
+		outRotPofToMol.multiplyLeft( outRotPofToCone, rotMolToCone );
+	}
+	
 	private static Kinemage getSphereKin( EllipticalCurve ellipse, Vector3 apex, Matrix3 rotEConeToMol, CircularCurve circle, double r, double s, double t, double u, double v, double w, double z, double minRadius, double maxRadius )
 	{
 		Kinemage kin = new Kinemage();
@@ -1068,6 +1187,10 @@ public class Intersector
 		double alpha, double beta
 	);
 	
+	private static native void intersectRdcCircularPoFBatch(
+		double[] params, int numPairs, double[] outPoints, int[] outOffsets
+	);
+	
 	private static native void intersectRdcGeodesicPoF(
 		List<Vector3> out,
 		double A, double B, double C,
@@ -1127,11 +1250,19 @@ public class Intersector
 		double a, double b, double c, double d
 	);
 	
+	private static native void getHyperbolaUnitCircleIntersectionPointsBatch(
+		double[] params, int numPairs, double[] outPoints, int[] outOffsets
+	);
+	
 	private static native void getParabolaUnitCircleIntersectionPoints(
 		List<Vector3> out,
 		double a, double b, double c
 	);
 	
+	private static native void getParabolaUnitCircleIntersectionPointsBatch(
+		double[] params, int numPairs, double[] outPoints, int[] outOffsets
+	);
+	
 	private static native void getEllipseOptima(
 		List<Vector3> optima,
 		double a2, double b2,
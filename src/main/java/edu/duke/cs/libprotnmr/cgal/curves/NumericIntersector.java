@@ -0,0 +1,185 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.cgal.curves;
+
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.math.Matrix3;
+import edu.duke.cs.libprotnmr.math.Polynomial;
+
+import java.util.List;
+
+public class NumericIntersector
+{
+	/*********************************
+	 *   Definitions
+	 *********************************/
+	
+	// if the curves agree everywhere to within this (relative) tolerance, they overlap
+	private static final double OverlapEpsilon = 1e-12;
+	
+	private static final int NumPivotSamples = 8;
+	private static final int NumPolishSteps = 2;
+	
+	
+	/*********************************
+	 *   Static Methods
+	 *********************************/
+	
+	public static boolean intersectRdcCircularPoF( List<Vector3> out, double A, double B, double C, double d, Matrix3 rotPofToCone, double alpha, double halfWidth )
+	{
+		// returns false if the intersection is too close to degenerate to compute in double precision
+		
+		// parameterize the circle in the PoF: p(theta) = w + cos(theta)*u + sin(theta)*v
+		double[] u = new double[3];
+		double[] v = new double[3];
+		double[] w = new double[3];
+		for( int i=0; i<3; i++ )
+		{
+			u[i] = halfWidth*rotPofToCone.data[0][i];
+			v[i] = halfWidth*rotPofToCone.data[1][i];
+			w[i] = alpha*rotPofToCone.data[2][i];
+		}
+		
+		// substitute into the rdc quadric A*x^2 + B*y^2 + C*z^2 - d
+		// to get a trigonometric polynomial of degree 2 in theta
+		double[] D = { A, B, C };
+		double[] f = new double[5];
+		f[0] = -d;
+		for( int i=0; i<3; i++ )
+		{
+			f[0] += D[i]*( w[i]*w[i] + ( u[i]*u[i] + v[i]*v[i] )/2.0 );
+			f[1] += D[i]*2.0*w[i]*u[i];
+			f[2] += D[i]*2.0*w[i]*v[i];
+			f[3] += D[i]*( u[i]*u[i] - v[i]*v[i] )/2.0;
+			f[4] += D[i]*u[i]*v[i];
+		}
+		
+		// pick the sample angle farthest from a root to send to infinity in the tangent half-angle substitution
+		double pivot = 0.0;
+		double maxVal = 0.0;
+		for( int i=0; i<NumPivotSamples; i++ )
+		{
+			double theta = 2.0*Math.PI*i/NumPivotSamples;
+			double val = Math.abs( evaluate( f, theta ) );
+			if( val > maxVal )
+			{
+				maxVal = val;
+				pivot = theta;
+			}
+		}
+		double scale = Math.max( Math.max( Math.abs( A ), Math.abs( B ) ), Math.max( Math.abs( C ), Math.abs( d ) ) );
+		if( maxVal <= scale*OverlapEpsilon )
+		{
+			// the curves overlap
+			return false;
+		}
+		
+		// shift the parameterization so theta = offset + 2*atan( t ) never reaches the pivot for finite t
+		double offset = pivot + Math.PI;
+		double cos1 = Math.cos( offset );
+		double sin1 = Math.sin( offset );
+		double cos2 = Math.cos( 2.0*offset );
+		double sin2 = Math.sin( 2.0*offset );
+		double c0 = f[0];
+		double c1 = f[1]*cos1 + f[2]*sin1;
+		double s1 = f[2]*cos1 - f[1]*sin1;
+		double c2 = f[3]*cos2 + f[4]*sin2;
+		double s2 = f[4]*cos2 - f[3]*sin2;
+		
+		// multiply through by (1 + t^2)^2 to get a quartic in t
+		double[] quartic = {
+			c0 + c1 + c2,
+			2.0*s1 + 4.0*s2,
+			2.0*c0 - 6.0*c2,
+			2.0*s1 - 4.0*s2,
+			c0 - c1 + c2
+		};
+		List<Double> roots = Polynomial.solve( quartic );
+		if( roots == null )
+		{
+			// tangencies or nearly coincident roots
+			return false;
+		}
+		
+		for( double t : roots )
+		{
+			double theta = polish( f, offset + 2.0*Math.atan( t ) );
+			double cos = Math.cos( theta );
+			double sin = Math.sin( theta );
+			out.add( new Vector3(
+				w[0] + cos*u[0] + sin*v[0],
+				w[1] + cos*u[1] + sin*v[1],
+				w[2] + cos*u[2] + sin*v[2]
+			) );
+		}
+		return true;
+	}
+	
+	public static boolean intersectRdcGeodesicPoF( List<Vector3> out, double A, double B, double C, double d, Matrix3 rotPofToParam )
+	{
+		// a geodesic is just a circle with no height
+		return intersectRdcCircularPoF( out, A, B, C, d, rotPofToParam, 0.0, 1.0 );
+	}
+	
+	
+	/*********************************
+	 *   Static Functions
+	 *********************************/
+	
+	private static double evaluate( double[] f, double theta )
+	{
+		return f[0]
+			+ f[1]*Math.cos( theta ) + f[2]*Math.sin( theta )
+			+ f[3]*Math.cos( 2.0*theta ) + f[4]*Math.sin( 2.0*theta );
+	}
+	
+	private static double evaluateDerivative( double[] f, double theta )
+	{
+		return -f[1]*Math.sin( theta ) + f[2]*Math.cos( theta )
+			- 2.0*f[3]*Math.sin( 2.0*theta ) + 2.0*f[4]*Math.cos( 2.0*theta );
+	}
+	
+	private static double polish( double[] f, double theta )
+	{
+		// the roots are simple, so a couple newton steps recover any precision lost in the substitution
+		for( int i=0; i<NumPolishSteps; i++ )
+		{
+			double derivative = evaluateDerivative( f, theta );
+			if( derivative == 0.0 )
+			{
+				break;
+			}
+			double step = evaluate( f, theta )/derivative;
+			if( Double.isNaN( step ) || Math.abs( step ) > 1e-3 )
+			{
+				break;
+			}
+			theta -= step;
+		}
+		return theta;
+	}
+}
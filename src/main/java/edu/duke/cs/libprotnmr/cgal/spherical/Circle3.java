@@ -64,14 +64,23 @@ public class Circle3 extends AbstractCleanable
 			{
 				Circle3.cleanup( id );
 			}
+			
+			@Override
+			public void cleanup( int[] ids )
+			{
+				Circle3.cleanupBatch( ids );
+			}
 		};
 	}
 	
 	public Circle3( Vector3 a, Vector3 b, Vector3 c )
 	{
 		super( m_cleaner );
-		SphericalCgal.getInstance().addReference( this, m_cleaner );
+		SphericalCgal cgal = SphericalCgal.getInstance();
 		init( a, b, c );
+		
+		// register after init so the reference knows our native id
+		cgal.addReference( this, m_cleaner );
 	}
 	
 	private Circle3( int id, long pointer )
@@ -86,6 +95,7 @@ public class Circle3 extends AbstractCleanable
 	 **************************/
 	
 	public static native void cleanup( int id );
+	public static native void cleanupBatch( int[] ids );
 	
 	
 	/**************************
@@ -64,14 +64,23 @@ public class CircularArc3 extends AbstractCleanable
 			{
 				CircularArc3.cleanup( id );
 			}
+			
+			@Override
+			public void cleanup( int[] ids )
+			{
+				CircularArc3.cleanupBatch( ids );
+			}
 		};
 	}
 	
 	public CircularArc3( Circle3 supportingCircle, Vector3 source, Vector3 target )
 	{
 		super( m_cleaner );
-		SphericalCgal.getInstance().addReference( this, m_cleaner );
+		SphericalCgal cgal = SphericalCgal.getInstance();
 		init( supportingCircle, source, target );
+		
+		// register after init so the reference knows our native id
+		cgal.addReference( this, m_cleaner );
 	}
 	
 	
@@ -80,6 +89,7 @@ public class CircularArc3 extends AbstractCleanable
 	 **************************/
 	
 	public static native void cleanup( int id );
+	public static native void cleanupBatch( int[] ids );
 	
 	
 	/**************************
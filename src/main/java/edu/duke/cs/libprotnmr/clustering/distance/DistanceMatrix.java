@@ -64,6 +64,17 @@ public class DistanceMatrix
 		m_numDistances = getSize( numPoints );
 	}
 	
+	DistanceMatrix( double[][] rows )
+	{
+		// rows[i] holds the distances from point i+1 to points 0..i, like the compacted matrix
+		if( rows.length < 1 )
+		{
+			throw new IllegalArgumentException( "Can only compute a distance matrix for two or more points!" );
+		}
+		m_distances = rows;
+		m_numDistances = getSize( rows.length + 1 );
+	}
+	
 	public DistanceMatrix( DistanceMatrix other )
 	{
 		this( other.getNumPoints() );
@@ -26,12 +26,15 @@
 
 package edu.duke.cs.libprotnmr.clustering.distance;
 
-import java.io.BufferedInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
+import edu.duke.cs.libprotnmr.io.Compression;
 import edu.duke.cs.libprotnmr.math.CompareReal;
 import edu.duke.cs.libprotnmr.math.IndexPairIterator;
 import edu.duke.cs.libprotnmr.perf.MessageListener;
@@ -65,20 +68,34 @@ public class DistanceMatrixReader
 	}
 	
 	public static long getNumDistances( File file )
+	throws IOException
 	{
-		return file.length() / BytesPerDouble;
+		if( !Compression.isCompressed( file ) )
+		{
+			// just in case...
+			assert( file.length() % BytesPerDouble == 0 );
+			
+			return file.length() / BytesPerDouble;
+		}
+		
+		// compressed files don't know their uncompressed size, so count the bytes
+		// NOTE: this has to decompress the whole file, read() doesn't need it
+		InputStream in = Compression.openInput( file );
+		byte[] buf = new byte[1 << 16];
+		long numBytes = 0;
+		int numRead = 0;
+		while( ( numRead = in.read( buf ) ) >= 0 )
+		{
+			numBytes += numRead;
+		}
+		in.close();
+		return numBytes / BytesPerDouble;
 	}
 	
 	public static int getNumPoints( File file )
+	throws IOException
 	{
-		long numDistances = getNumDistances( file );
-		double dNumPoints = ( 1.0 + Math.sqrt( 1.0 + 8.0 * numDistances ) ) / 2.0;
-		int numPoints = (int)dNumPoints;
-		
-		// just in case, make sure we got something extremely close to an integer
-		assert( CompareReal.eq( dNumPoints - (double)numPoints, 0.0 ) );
-		
-		return numPoints;
+		return getNumPoints( getNumDistances( file ) );
 	}
 	
 	public static DistanceMatrix read( String path )
@@ -90,12 +107,14 @@ public class DistanceMatrixReader
 	public static DistanceMatrix read( File file )
 	throws IOException
 	{
-		// just in case...
-		assert( file.length() % BytesPerDouble == 0 );
-				
+		if( Compression.isCompressed( file ) )
+		{
+			return readCompressed( file );
+		}
+		
 		// get the number of points
 		long numDistances = getNumDistances( file );
-		int numPoints = getNumPoints( file );
+		int numPoints = getNumPoints( numDistances );
 		
 		// allocate memory for the distance matrix
 		DistanceMatrix distances = new DistanceMatrix( numPoints );
@@ -109,7 +128,7 @@ public class DistanceMatrixReader
 		}
 		
 		// open the file
-		DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+		DataInputStream in = new DataInputStream( Compression.openInput( file ) );
 		IndexPairIterator iter = new IndexPairIterator( distances.getNumPoints() );
 		long i = 0;
 		final int step = 1000;
@@ -127,4 +146,64 @@ public class DistanceMatrixReader
 		
 		return distances;
 	}
+	
+	
+	/**************************
+	 *   Static Functions
+	 **************************/
+	
+	private static DistanceMatrix readCompressed( File file )
+	throws IOException
+	{
+		// we don't know the number of points up front, but distances are stored one matrix row at a time
+		// and each row is one longer than the last, so grow the matrix row by row in a single pass
+		DataInputStream in = new DataInputStream( Compression.openInput( file ) );
+		List<double[]> rows = new ArrayList<double[]>();
+		try
+		{
+			while( true )
+			{
+				double[] row = new double[rows.size() + 1];
+				try
+				{
+					row[0] = in.readDouble();
+				}
+				catch( EOFException ex )
+				{
+					break;
+				}
+				for( int i=1; i<row.length; i++ )
+				{
+					row[i] = in.readDouble();
+				}
+				rows.add( row );
+				
+				// ALERT
+				if( m_progressListener != null && rows.size() % 1000 == 0 )
+				{
+					m_progressListener.message( "Read " + rows.size() + " rows..." );
+				}
+			}
+		}
+		catch( EOFException ex )
+		{
+			throw new IOException( "Distance matrix " + file + " ends in the middle of row " + rows.size() + "!", ex );
+		}
+		finally
+		{
+			in.close();
+		}
+		return new DistanceMatrix( rows.toArray( new double[rows.size()][] ) );
+	}
+	
+	private static int getNumPoints( long numDistances )
+	{
+		double dNumPoints = ( 1.0 + Math.sqrt( 1.0 + 8.0 * numDistances ) ) / 2.0;
+		int numPoints = (int)dNumPoints;
+		
+		// just in case, make sure we got something extremely close to an integer
+		assert( CompareReal.eq( dNumPoints - (double)numPoints, 0.0 ) );
+		
+		return numPoints;
+	}
 }
@@ -29,9 +29,9 @@ package edu.duke.cs.libprotnmr.clustering.distance;
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
+import edu.duke.cs.libprotnmr.io.Compression;
 import edu.duke.cs.libprotnmr.math.IndexPairIterator;
 
 
@@ -51,7 +51,7 @@ public class DistanceMatrixWriter
 	throws IOException
 	{
 		// open the file for binary writing
-		DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+		DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Compression.openOutput( file ) ) );
 		
 		IndexPairIterator iter = new IndexPairIterator( distances.getNumPoints() );
 		while( iter.hasNext() )
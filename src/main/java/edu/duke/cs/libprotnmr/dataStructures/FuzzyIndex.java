@@ -0,0 +1,300 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.dataStructures;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import edu.duke.cs.libprotnmr.math.CompareReal;
+
+class FuzzyIndex<K extends Fuzzy<K>,V> implements Iterable<FuzzyIndex.Entry<K,V>>
+{
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	public static class Entry<K,V> implements Map.Entry<K,V>
+	{
+		private K m_key;
+		private V m_value;
+		private long m_order;
+		private long m_cellKey;
+		
+		private Entry( K key, V value, long order )
+		{
+			m_key = key;
+			m_value = value;
+			m_order = order;
+		}
+		
+		@Override
+		public K getKey( )
+		{
+			return m_key;
+		}
+		
+		@Override
+		public V getValue( )
+		{
+			return m_value;
+		}
+		
+		@Override
+		public V setValue( V val )
+		{
+			m_value = val;
+			return m_value;
+		}
+	}
+	
+	
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private LinkedHashSet<Entry<K,V>> m_entries;
+	private HashMap<Long,ArrayList<Entry<K,V>>> m_cells;
+	private Double m_epsilon;
+	private double m_cellEpsilon;
+	private long m_nextOrder;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public FuzzyIndex( Double epsilon )
+	{
+		m_entries = new LinkedHashSet<Entry<K,V>>();
+		m_cells = new HashMap<Long,ArrayList<Entry<K,V>>>();
+		m_epsilon = epsilon;
+		m_cellEpsilon = getEpsilon();
+		m_nextOrder = 0;
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public int size( )
+	{
+		return m_entries.size();
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public Entry<K,V> find( Fuzzy<K> key )
+	{
+		// NOTE: lookups must not touch any shared state so concurrent readers are safe
+		double epsilon = getEpsilon();
+		if( !( key instanceof FuzzyHashable ) || epsilon != m_cellEpsilon )
+		{
+			// no cells (or the cells were built for a different epsilon and won't be rebuilt until the next insert),
+			// so check everything in insertion order
+			for( Entry<K,V> entry : m_entries )
+			{
+				if( key.approximatelyEquals( entry.m_key, epsilon ) )
+				{
+					return entry;
+				}
+			}
+			return null;
+		}
+		
+		FuzzyHashable<?> hashable = (FuzzyHashable<?>)key;
+		int numDimensions = hashable.getNumCellDimensions();
+		long[] cell = new long[numDimensions];
+		long[] neighbor = new long[numDimensions];
+		hashable.getCell( cell, epsilon );
+		
+		// probe the cell and all its neighbors, but keep the earliest match
+		// so we agree with a linear scan when several entries are close
+		Entry<K,V> match = null;
+		int numNeighbors = 1;
+		for( int i=0; i<numDimensions; i++ )
+		{
+			numNeighbors *= 3;
+		}
+		for( int n=0; n<numNeighbors; n++ )
+		{
+			int offsets = n;
+			for( int i=0; i<numDimensions; i++ )
+			{
+				neighbor[i] = cell[i] + offsets % 3 - 1;
+				offsets /= 3;
+			}
+			ArrayList<Entry<K,V>> bucket = m_cells.get( getCellKey( neighbor, numDimensions ) );
+			if( bucket == null )
+			{
+				continue;
+			}
+			for( Entry<K,V> entry : bucket )
+			{
+				if( ( match == null || entry.m_order < match.m_order ) && key.approximatelyEquals( entry.m_key, epsilon ) )
+				{
+					match = entry;
+				}
+			}
+		}
+		return match;
+	}
+	
+	public Entry<K,V> add( K key, V value )
+	{
+		Entry<K,V> entry = new Entry<K,V>( key, value, m_nextOrder++ );
+		m_entries.add( entry );
+		if( key instanceof FuzzyHashable )
+		{
+			checkCells( getEpsilon() );
+			addToCell( entry );
+		}
+		return entry;
+	}
+	
+	public void remove( Entry<K,V> entry )
+	{
+		m_entries.remove( entry );
+		removeFromCell( entry );
+	}
+	
+	public void clear( )
+	{
+		m_entries.clear();
+		m_cells.clear();
+	}
+	
+	@Override
+	public Iterator<Entry<K,V>> iterator( )
+	{
+		final Iterator<Entry<K,V>> iter = m_entries.iterator();
+		return new Iterator<Entry<K,V>>( )
+		{
+			private Entry<K,V> m_current = null;
+			
+			@Override
+			public boolean hasNext( )
+			{
+				return iter.hasNext();
+			}
+			
+			@Override
+			public Entry<K,V> next( )
+			{
+				m_current = iter.next();
+				return m_current;
+			}
+			
+			@Override
+			public void remove( )
+			{
+				iter.remove();
+				removeFromCell( m_current );
+			}
+		};
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private double getEpsilon( )
+	{
+		return m_epsilon != null ? m_epsilon : CompareReal.getEpsilon();
+	}
+	
+	private void checkCells( double epsilon )
+	{
+		// cells are only valid for the epsilon they were built with
+		// the global epsilon can change under us, so rebuild if needed
+		if( epsilon == m_cellEpsilon )
+		{
+			return;
+		}
+		m_cellEpsilon = epsilon;
+		m_cells.clear();
+		for( Entry<K,V> entry : m_entries )
+		{
+			if( entry.m_key instanceof FuzzyHashable )
+			{
+				addToCell( entry );
+			}
+		}
+	}
+	
+	private void addToCell( Entry<K,V> entry )
+	{
+		FuzzyHashable<?> hashable = (FuzzyHashable<?>)entry.m_key;
+		int numDimensions = hashable.getNumCellDimensions();
+		long[] cell = new long[numDimensions];
+		hashable.getCell( cell, m_cellEpsilon );
+		entry.m_cellKey = getCellKey( cell, numDimensions );
+		ArrayList<Entry<K,V>> bucket = m_cells.get( entry.m_cellKey );
+		if( bucket == null )
+		{
+			bucket = new ArrayList<Entry<K,V>>( 1 );
+			m_cells.put( entry.m_cellKey, bucket );
+		}
+		bucket.add( entry );
+	}
+	
+	private void removeFromCell( Entry<K,V> entry )
+	{
+		if( !( entry.m_key instanceof FuzzyHashable ) )
+		{
+			return;
+		}
+		ArrayList<Entry<K,V>> bucket = m_cells.get( entry.m_cellKey );
+		if( bucket == null )
+		{
+			return;
+		}
+		bucket.remove( entry );
+		if( bucket.isEmpty() )
+		{
+			m_cells.remove( entry.m_cellKey );
+		}
+	}
+	
+	private static long getCellKey( long[] cell, int numDimensions )
+	{
+		// collisions just merge buckets, the fuzzy comparison sorts them out
+		long key = 17;
+		for( int i=0; i<numDimensions; i++ )
+		{
+			key = key*0x9E3779B97F4A7C15L + cell[i];
+		}
+		return key;
+	}
+}
@@ -27,7 +27,7 @@
 package edu.duke.cs.libprotnmr.dataStructures;
 
 import java.util.AbstractMap;
-import java.util.HashSet;
+import java.util.AbstractSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -38,85 +38,44 @@ public class FuzzyMap<K extends Fuzzy<K>,V> extends AbstractMap<K,V>
 	 *   Definitions
 	 **************************/
 	
-	private class Entry implements Map.Entry<K,V>
+	private class EntrySet extends AbstractSet<Map.Entry<K,V>>
 	{
-		private K m_key;
-		private V m_value;
-		
-		public Entry( K key, V value )
-		{
-			m_key = key;
-			m_value = value;
-		}
-		
-		@Override
-		public K getKey( )
-		{
-			return m_key;
-		}
-		
-		@Override
-		public V getValue( )
-		{
-			return m_value;
-		}
-		
 		@Override
-		public V setValue( V val )
+		public Iterator<Map.Entry<K,V>> iterator( )
 		{
-			m_value = val;
-			return m_value;
+			final Iterator<FuzzyIndex.Entry<K,V>> iter = m_index.iterator();
+			return new Iterator<Map.Entry<K,V>>( )
+			{
+				@Override
+				public boolean hasNext( )
+				{
+					return iter.hasNext();
+				}
+				
+				@Override
+				public Map.Entry<K,V> next( )
+				{
+					return iter.next();
+				}
+				
+				@Override
+				public void remove( )
+				{
+					iter.remove();
+				}
+			};
 		}
 		
 		@Override
-		public int hashCode( )
+		public int size( )
 		{
-			// yes, we want to disable hash code comparisons
-			// yes, I know this is slow
-			// it essentially turns the hash table into a linked list
-			// we need to call equals() on all entries for fuzzy comparisons to work properly
-			// unless I wanted to implement some kind of range query thingy...
-			// which I don't think is worth the effort right now
-			return 1;
+			return m_index.size();
 		}
 		
 		@Override
-		@SuppressWarnings( "unchecked" )
-		public boolean equals( Object other )
-		{
-			if( other instanceof FuzzyMap.Entry )
-			{
-				return equals( (Entry)other );
-			}
-			if( other instanceof Fuzzy )
-			{
-				return equals( (K)other );
-			}
-			return false;
-		}
-		
-		public boolean equals( Entry other )
+		public void clear( )
 		{
-			if( m_epsilon != null )
-			{
-				return m_key.approximatelyEquals( other.m_key, m_epsilon );
-			}
-			else
-			{
-				return m_key.approximatelyEquals( other.m_key );
-			}
-		}
-		
-		public boolean equals( K other )
-		{
-			if( m_epsilon != null )
-			{
-				return m_key.approximatelyEquals( (K)other, m_epsilon );
-			}
-			else
-			{
-				return m_key.approximatelyEquals( (K)other );
-			}
+			m_index.clear();
 		}
 	}
 	
@@ -125,8 +84,10 @@ public class FuzzyMap<K extends Fuzzy<K>,V> extends AbstractMap<K,V>
 	 *   Data Members
 	 **************************/
 	
-	private HashSet<Map.Entry<K,V>> m_entries;
-	private Double m_epsilon;
+	// keys that implement FuzzyHashable (like Vector3) get bucketed into grid cells
+	// otherwise, lookups fall back to a linear scan
+	private FuzzyIndex<K,V> m_index;
+	private EntrySet m_entries;
 	
 	
 	/**************************
@@ -140,8 +101,8 @@ public class FuzzyMap<K extends Fuzzy<K>,V> extends AbstractMap<K,V>
 	
 	public FuzzyMap( Double epsilon )
 	{
-		m_entries = new HashSet<Map.Entry<K,V>>();
-		m_epsilon = epsilon;
+		m_index = new FuzzyIndex<K,V>( epsilon );
+		m_entries = new EntrySet();
 	}
 	
 	
@@ -155,15 +116,27 @@ public class FuzzyMap<K extends Fuzzy<K>,V> extends AbstractMap<K,V>
 		return m_entries;
 	}
 	
+	@Override
+	public int size( )
+	{
+		return m_index.size();
+	}
+	
+	@Override
+	public void clear( )
+	{
+		m_index.clear();
+	}
+	
 	@Override
 	public V put( K key, V value )
 	{
-		Entry entry = new Entry( key, value );
-		if( m_entries.contains( entry ) )
+		FuzzyIndex.Entry<K,V> entry = m_index.find( key );
+		if( entry != null )
 		{
-			m_entries.remove( entry );
+			m_index.remove( entry );
 		}
-		m_entries.add( entry );
+		m_index.add( key, value );
 		return value;
 	}
 	
@@ -180,12 +153,10 @@ public class FuzzyMap<K extends Fuzzy<K>,V> extends AbstractMap<K,V>
 	
 	public V get( K key )
 	{
-		for( Map.Entry<K,V> entry : m_entries )
+		FuzzyIndex.Entry<K,V> entry = m_index.find( key );
+		if( entry != null )
 		{
-			if( entry.equals( key ) )
-			{
-				return entry.getValue();
-			}
+			return entry.getValue();
 		}
 		return null;
 	}
@@ -203,14 +174,7 @@ public class FuzzyMap<K extends Fuzzy<K>,V> extends AbstractMap<K,V>
 	
 	public boolean containsKey( K key )
 	{
-		for( Map.Entry<K,V> entry : m_entries )
-		{
-			if( entry.equals( key ) )
-			{
-				return true;
-			}
-		}
-		return false;
+		return m_index.find( key ) != null;
 	}
 	
 	@Override
@@ -226,15 +190,11 @@ public class FuzzyMap<K extends Fuzzy<K>,V> extends AbstractMap<K,V>
 	
 	public V remove( K key )
 	{
-		Iterator<Map.Entry<K,V>> iter = m_entries.iterator();
-		while( iter.hasNext() )
+		FuzzyIndex.Entry<K,V> entry = m_index.find( key );
+		if( entry != null )
 		{
-			Map.Entry<K,V> entry = iter.next();
-			if( entry.equals( key ) )
-			{
-				iter.remove();
-				return entry.getValue();
-			}
+			m_index.remove( entry );
+			return entry.getValue();
 		}
 		return null;
 	}
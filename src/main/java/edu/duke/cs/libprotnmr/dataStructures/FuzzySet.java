@@ -37,8 +37,9 @@ public class FuzzySet<T extends Fuzzy<T>> implements Set<T>
 	 *   Data Members
 	 **************************/
 	
-	private ArrayList<T> m_objects;
-	private Double m_epsilon;
+	// objects that implement FuzzyHashable (like Vector3) get bucketed into grid cells
+	// otherwise, lookups fall back to a linear scan
+	private FuzzyIndex<T,Object> m_index;
 	
 	
 	/**************************
@@ -52,8 +53,7 @@ public class FuzzySet<T extends Fuzzy<T>> implements Set<T>
 	
 	public FuzzySet( Double epsilon )
 	{
-		m_epsilon = epsilon;
-		m_objects = new ArrayList<T>();
+		m_index = new FuzzyIndex<T,Object>( epsilon );
 	}
 	
 	
@@ -66,7 +66,8 @@ public class FuzzySet<T extends Fuzzy<T>> implements Set<T>
 	{
 		if( !contains( obj ) )
 		{
-			return m_objects.add( obj );
+			m_index.add( obj, null );
+			return true;
 		}
 		return false;
 	}
@@ -85,7 +86,7 @@ public class FuzzySet<T extends Fuzzy<T>> implements Set<T>
 	@Override
 	public void clear( )
 	{
-		m_objects.clear();
+		m_index.clear();
 	}
 	
 	@Override
@@ -101,7 +102,7 @@ public class FuzzySet<T extends Fuzzy<T>> implements Set<T>
 	
 	public boolean contains( Fuzzy<T> obj )
 	{
-		return find( obj ) != null;
+		return m_index.find( obj ) != null;
 	}
 	
 	@Override
@@ -120,13 +121,33 @@ public class FuzzySet<T extends Fuzzy<T>> implements Set<T>
 	@Override
 	public boolean isEmpty( )
 	{
-		return m_objects.isEmpty();
+		return m_index.size() == 0;
 	}
 	
 	@Override
 	public Iterator<T> iterator( )
 	{
-		return m_objects.iterator();
+		final Iterator<FuzzyIndex.Entry<T,Object>> iter = m_index.iterator();
+		return new Iterator<T>( )
+		{
+			@Override
+			public boolean hasNext( )
+			{
+				return iter.hasNext();
+			}
+			
+			@Override
+			public T next( )
+			{
+				return iter.next().getKey();
+			}
+			
+			@Override
+			public void remove( )
+			{
+				iter.remove();
+			}
+		};
 	}
 	
 	@Override
@@ -142,10 +163,11 @@ public class FuzzySet<T extends Fuzzy<T>> implements Set<T>
 	
 	public boolean remove( Fuzzy<T> obj )
 	{
-		T target = find( obj );
-		if( target != null )
+		FuzzyIndex.Entry<T,Object> entry = m_index.find( obj );
+		if( entry != null )
 		{
-			return m_objects.remove( target );
+			m_index.remove( entry );
+			return true;
 		}
 		return false;
 	}
@@ -171,19 +193,19 @@ public class FuzzySet<T extends Fuzzy<T>> implements Set<T>
 	@Override
 	public int size( )
 	{
-		return m_objects.size();
+		return m_index.size();
 	}
 	
 	@Override
 	public Object[] toArray( )
 	{
-		return m_objects.toArray();
+		return getObjects().toArray();
 	}
 	
 	@Override
 	public <U> U[] toArray( U[] array )
 	{
-		return m_objects.toArray( array );
+		return getObjects().toArray( array );
 	}
 	
 	
@@ -191,16 +213,13 @@ public class FuzzySet<T extends Fuzzy<T>> implements Set<T>
 	 *   Functions
 	 **************************/
 	
-	private T find( Fuzzy<T> target )
+	private ArrayList<T> getObjects( )
 	{
-		for( T obj : m_objects )
+		ArrayList<T> objects = new ArrayList<T>( m_index.size() );
+		for( FuzzyIndex.Entry<T,Object> entry : m_index )
 		{
-			boolean found = m_epsilon != null ? target.approximatelyEquals( obj, m_epsilon ) : target.approximatelyEquals( obj );
-			if( found )
-			{
-				return obj;
-			}
+			objects.add( entry.getKey() );
 		}
-		return null;
+		return objects;
 	}
 }
@@ -0,0 +1,299 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.geom;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public class CompactGeodesicGrid
+{
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private static Map<Integer,CompactGeodesicGrid> m_cache = new HashMap<Integer,CompactGeodesicGrid>();
+	
+	private int m_numSubdivisions;
+	private double[] m_vertices; // x,y,z for each vertex
+	private int[][] m_faces; // vertex index triples (always ccw) for each level
+	private int[] m_neighbors; // first edge b/w first two vertices, then ccw
+	private int m_numVertices;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public CompactGeodesicGrid( int numSubdivisions )
+	{
+		m_numSubdivisions = numSubdivisions;
+		
+		// |V| = 10*4^n + 2, |F| = 20*4^n
+		int numFinalFaces = 20 * ( 1 << ( numSubdivisions * 2 ) );
+		m_vertices = new double[( numFinalFaces/2 + 2 )*3];
+		m_numVertices = 0;
+		
+		// compute the vertices of a regular icosahedron
+		final double x = 0.525731112119133606;
+		final double z = 0.850650808352039932;
+		addVertex( -x, 0, z ); addVertex( x, 0, z ); addVertex( -x, 0, -z ); addVertex( x, 0, -z );
+		addVertex( 0, z, x ); addVertex( 0, z, -x ); addVertex( 0, -z, x ); addVertex( 0, -z, -x );
+		addVertex( z, x, 0 ); addVertex( -z, x, 0 ); addVertex( z, -x, 0 ); addVertex( -z, -x, 0 );
+		
+		// same faces, in the same order, as GeodesicGrid
+		m_faces = new int[numSubdivisions + 1][];
+		m_faces[0] = new int[] {
+			1, 6, 10,   1, 10, 8,   1, 8, 4,   1, 4, 0,   1, 0, 6,
+			6, 7, 10,   10, 3, 8,   8, 5, 4,   4, 9, 0,   0, 11, 6,
+			10, 7, 3,   8, 3, 5,   4, 5, 9,   0, 9, 11,   6, 11, 7,
+			7, 2, 3,   3, 2, 5,   5, 2, 9,   9, 2, 11,   11, 2, 7
+		};
+		
+		// subdivide, children of face i are always faces 4i to 4i+3 on the next level
+		for( int level=1; level<=numSubdivisions; level++ )
+		{
+			int[] parents = m_faces[level - 1];
+			int[] children = new int[parents.length*4];
+			Map<Long,Integer> midpoints = new HashMap<Long,Integer>();
+			for( int i=0; i<parents.length/3; i++ )
+			{
+				int a = parents[i*3 + 0];
+				int b = parents[i*3 + 1];
+				int c = parents[i*3 + 2];
+				int ab = getEdgeMidpoint( a, b, midpoints );
+				int bc = getEdgeMidpoint( b, c, midpoints );
+				int ca = getEdgeMidpoint( c, a, midpoints );
+				setFace( children, i*4 + 0, a, ab, ca );
+				setFace( children, i*4 + 1, ab, bc, ca );
+				setFace( children, i*4 + 2, ab, b, bc );
+				setFace( children, i*4 + 3, ca, bc, c );
+			}
+			m_faces[level] = children;
+		}
+		
+		// do the connectivity for the finest level
+		int[] faces = m_faces[numSubdivisions];
+		m_neighbors = new int[faces.length];
+		Map<Long,Integer> edgeLookup = new HashMap<Long,Integer>();
+		for( int i=0; i<faces.length; i++ )
+		{
+			int face = i/3;
+			int source = faces[i];
+			int target = faces[face*3 + ( i + 1 )%3];
+			Long key = getEdgeKey( source, target );
+			Integer other = edgeLookup.remove( key );
+			if( other != null )
+			{
+				m_neighbors[i] = other/3;
+				m_neighbors[other] = face;
+			}
+			else
+			{
+				edgeLookup.put( key, i );
+			}
+		}
+		assert( edgeLookup.isEmpty() );
+	}
+	
+	
+	/**************************
+	 *   Static Methods
+	 **************************/
+	
+	public static synchronized CompactGeodesicGrid get( int numSubdivisions )
+	{
+		// grids are immutable, so everyone can share them
+		CompactGeodesicGrid grid = m_cache.get( numSubdivisions );
+		if( grid == null )
+		{
+			grid = new CompactGeodesicGrid( numSubdivisions );
+			m_cache.put( numSubdivisions, grid );
+		}
+		return grid;
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public int getNumSubdivisions( )
+	{
+		return m_numSubdivisions;
+	}
+	
+	public int getNumVertices( )
+	{
+		return m_numVertices;
+	}
+	
+	public void getVertex( Vector3 out, int index )
+	{
+		out.set( m_vertices[index*3 + 0], m_vertices[index*3 + 1], m_vertices[index*3 + 2] );
+	}
+	
+	public List<Vector3> getVertices( )
+	{
+		// return copies so callers can't change the shared grid
+		List<Vector3> vertices = new ArrayList<Vector3>( m_numVertices );
+		for( int i=0; i<m_numVertices; i++ )
+		{
+			Vector3 v = new Vector3();
+			getVertex( v, i );
+			vertices.add( v );
+		}
+		return vertices;
+	}
+	
+	public int getNumFaces( )
+	{
+		return m_faces[m_numSubdivisions].length/3;
+	}
+	
+	public int getFaceVertex( int face, int i )
+	{
+		return m_faces[m_numSubdivisions][face*3 + i];
+	}
+	
+	public int getNeighbor( int face, int i )
+	{
+		return m_neighbors[face*3 + i];
+	}
+	
+	public void getFaceMidpoint( Vector3 out, int face )
+	{
+		int[] faces = m_faces[m_numSubdivisions];
+		out.set( 0, 0, 0 );
+		for( int i=0; i<3; i++ )
+		{
+			int v = faces[face*3 + i]*3;
+			out.x += m_vertices[v + 0];
+			out.y += m_vertices[v + 1];
+			out.z += m_vertices[v + 2];
+		}
+		out.scale( 1.0 / 3.0 );
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public int getFaceIndex( Vector3 q )
+	{
+		// find the icosahedron face, then walk down the children
+		int face = getBestFace( m_faces[0], 0, 20, q );
+		for( int level=1; level<=m_numSubdivisions; level++ )
+		{
+			face = getBestFace( m_faces[level], face*4, 4, q );
+		}
+		return face;
+	}
+	
+	public boolean isPointInFaces( BitSet faces, Vector3 q )
+	{
+		return faces.get( getFaceIndex( q ) );
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private int getBestFace( int[] faces, int firstFace, int numFaces, Vector3 q )
+	{
+		// q is inside the spherical triangle iff it's on the inner side of all three edge planes
+		// pick the face where q is most inside, so points on shared edges still land somewhere
+		int bestFace = -1;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for( int face=firstFace; face<firstFace + numFaces; face++ )
+		{
+			int a = faces[face*3 + 0]*3;
+			int b = faces[face*3 + 1]*3;
+			int c = faces[face*3 + 2]*3;
+			double score = Math.min( getTripleProduct( a, b, q ), Math.min( getTripleProduct( b, c, q ), getTripleProduct( c, a, q ) ) );
+			if( score > bestScore )
+			{
+				bestScore = score;
+				bestFace = face;
+			}
+		}
+		return bestFace;
+	}
+	
+	private double getTripleProduct( int a, int b, Vector3 q )
+	{
+		double[] v = m_vertices;
+		double x = v[a + 1]*v[b + 2] - v[a + 2]*v[b + 1];
+		double y = v[a + 2]*v[b + 0] - v[a + 0]*v[b + 2];
+		double z = v[a + 0]*v[b + 1] - v[a + 1]*v[b + 0];
+		return x*q.x + y*q.y + z*q.z;
+	}
+	
+	private int addVertex( double x, double y, double z )
+	{
+		double length = Math.sqrt( x*x + y*y + z*z );
+		int index = m_numVertices++;
+		m_vertices[index*3 + 0] = x/length;
+		m_vertices[index*3 + 1] = y/length;
+		m_vertices[index*3 + 2] = z/length;
+		return index;
+	}
+	
+	private int getEdgeMidpoint( int a, int b, Map<Long,Integer> midpoints )
+	{
+		Long key = getEdgeKey( a, b );
+		Integer index = midpoints.get( key );
+		if( index == null )
+		{
+			index = addVertex(
+				m_vertices[a*3 + 0] + m_vertices[b*3 + 0],
+				m_vertices[a*3 + 1] + m_vertices[b*3 + 1],
+				m_vertices[a*3 + 2] + m_vertices[b*3 + 2]
+			);
+			midpoints.put( key, index );
+		}
+		return index;
+	}
+	
+	private static Long getEdgeKey( int a, int b )
+	{
+		// edges are undirected
+		return ( (long)Math.min( a, b ) << 32 ) | Math.max( a, b );
+	}
+	
+	private static void setFace( int[] faces, int index, int a, int b, int c )
+	{
+		faces[index*3 + 0] = a;
+		faces[index*3 + 1] = b;
+		faces[index*3 + 2] = c;
+	}
+}
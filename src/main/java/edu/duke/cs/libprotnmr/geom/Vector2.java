@@ -28,13 +28,13 @@ package edu.duke.cs.libprotnmr.geom;
 
 import java.io.Serializable;
 
-import edu.duke.cs.libprotnmr.dataStructures.Fuzzy;
+import edu.duke.cs.libprotnmr.dataStructures.FuzzyHashable;
 import edu.duke.cs.libprotnmr.io.HashCalculator;
 import edu.duke.cs.libprotnmr.math.CompareReal;
 import edu.duke.cs.libprotnmr.math.Matrix2;
 
 
-public class Vector2 implements Serializable, Fuzzy<Vector2>
+public class Vector2 implements Serializable, FuzzyHashable<Vector2>
 {
 	/**************************
 	 *   Definitions
@@ -282,4 +282,19 @@ public class Vector2 implements Serializable, Fuzzy<Vector2>
 	{
 		return CompareReal.eq( getSquaredDistance( other ), 0.0, epsilon );
 	}
+	
+	@Override
+	public int getNumCellDimensions( )
+	{
+		return 2;
+	}
+	
+	@Override
+	public void getCell( long[] out, double epsilon )
+	{
+		// approximatelyEquals() compares squared distances
+		double cellSize = Math.sqrt( epsilon );
+		out[0] = (long)Math.floor( x/cellSize );
+		out[1] = (long)Math.floor( y/cellSize );
+	}
 }
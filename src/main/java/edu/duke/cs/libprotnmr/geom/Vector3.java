@@ -30,14 +30,14 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
-import edu.duke.cs.libprotnmr.dataStructures.Fuzzy;
+import edu.duke.cs.libprotnmr.dataStructures.FuzzyHashable;
 import edu.duke.cs.libprotnmr.io.HashCalculator;
 import edu.duke.cs.libprotnmr.math.CompareReal;
 import edu.duke.cs.libprotnmr.math.Matrix3;
 import edu.duke.cs.libprotnmr.math.Quaternion;
 
 
-public class Vector3 implements Serializable, Comparable<Vector3>, Fuzzy<Vector3>
+public class Vector3 implements Serializable, Comparable<Vector3>, FuzzyHashable<Vector3>
 {
 	/**************************
 	 *   Definitions
@@ -430,6 +430,20 @@ public class Vector3 implements Serializable, Comparable<Vector3>, Fuzzy<Vector3
 		return CompareReal.eq( getDistance( other ), 0.0, epsilon );
 	}
 	
+	@Override
+	public int getNumCellDimensions( )
+	{
+		return 3;
+	}
+	
+	@Override
+	public void getCell( long[] out, double epsilon )
+	{
+		out[0] = (long)Math.floor( x/epsilon );
+		out[1] = (long)Math.floor( y/epsilon );
+		out[2] = (long)Math.floor( z/epsilon );
+	}
+	
 	@Override
 	public int hashCode( )
 	{
@@ -0,0 +1,119 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPInputStream;
+
+
+public class Compression
+{
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	public static final String GzipExtension = ".gz";
+	
+	private static final int GzipMagic0 = 0x1f;
+	private static final int GzipMagic1 = 0x8b;
+	private static final int BufferSize = 1 << 16;
+	
+	
+	/**************************
+	 *   Static Methods
+	 **************************/
+	
+	public static boolean isCompressed( File file )
+	throws IOException
+	{
+		InputStream in = new FileInputStream( file );
+		try
+		{
+			return in.read() == GzipMagic0 && in.read() == GzipMagic1;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	public static boolean shouldCompress( File file )
+	{
+		return file.getName().toLowerCase().endsWith( GzipExtension );
+	}
+	
+	public static InputStream decompress( InputStream in )
+	throws IOException
+	{
+		// peek at the magic bytes to see if the stream is gzipped
+		if( !in.markSupported() )
+		{
+			in = new BufferedInputStream( in, BufferSize );
+		}
+		in.mark( 2 );
+		boolean isGzipped = in.read() == GzipMagic0 && in.read() == GzipMagic1;
+		in.reset();
+		
+		if( isGzipped )
+		{
+			return new BufferedInputStream( new GZIPInputStream( in, BufferSize ), BufferSize );
+		}
+		return in;
+	}
+	
+	public static InputStream openInput( File file )
+	throws IOException
+	{
+		return decompress( new FileInputStream( file ) );
+	}
+	
+	public static OutputStream openOutput( File file )
+	throws IOException
+	{
+		OutputStream out = new FileOutputStream( file );
+		if( shouldCompress( file ) )
+		{
+			return new ParallelGzipOutputStream( out );
+		}
+		return out;
+	}
+	
+	public static Writer openWriter( File file )
+	throws IOException
+	{
+		// NOTE: use the default charset, just like FileWriter
+		return new OutputStreamWriter( openOutput( file ) );
+	}
+}
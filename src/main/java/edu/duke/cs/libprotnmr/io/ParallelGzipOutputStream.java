@@ -0,0 +1,284 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+
+public class ParallelGzipOutputStream extends OutputStream
+{
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	// each block becomes its own gzip member, and concatenated members are still a valid gzip file
+	public static final int DefaultBlockSize = 1 << 20;
+	
+	private static final byte[] MemberHeader = {
+		0x1f, (byte)0x8b, // magic
+		Deflater.DEFLATED, // compression method
+		0, // flags
+		0, 0, 0, 0, // modification time
+		0, // extra flags
+		(byte)0xff // unknown OS
+	};
+	
+	private static class CompressTask implements Callable<byte[]>
+	{
+		private byte[] m_block;
+		private int m_size;
+		private int m_level;
+		
+		public CompressTask( byte[] block, int size, int level )
+		{
+			m_block = block;
+			m_size = size;
+			m_level = level;
+		}
+		
+		@Override
+		public byte[] call( )
+		{
+			CRC32 crc = new CRC32();
+			crc.update( m_block, 0, m_size );
+			
+			// deflate the block without a zlib wrapper
+			Deflater deflater = new Deflater( m_level, true );
+			deflater.setInput( m_block, 0, m_size );
+			deflater.finish();
+			byte[] member = new byte[MemberHeader.length + m_size + m_size/1000 + 64];
+			System.arraycopy( MemberHeader, 0, member, 0, MemberHeader.length );
+			int length = MemberHeader.length;
+			while( !deflater.finished() )
+			{
+				if( length == member.length )
+				{
+					member = Arrays.copyOf( member, member.length*2 );
+				}
+				length += deflater.deflate( member, length, member.length - length );
+			}
+			deflater.end();
+			
+			// add the trailer
+			if( length + 8 > member.length )
+			{
+				member = Arrays.copyOf( member, length + 8 );
+			}
+			length = writeInt( member, length, (int)crc.getValue() );
+			length = writeInt( member, length, m_size );
+			return Arrays.copyOf( member, length );
+		}
+		
+		private int writeInt( byte[] buf, int offset, int value )
+		{
+			// gzip is little-endian
+			buf[offset++] = (byte)value;
+			buf[offset++] = (byte)( value >>> 8 );
+			buf[offset++] = (byte)( value >>> 16 );
+			buf[offset++] = (byte)( value >>> 24 );
+			return offset;
+		}
+	}
+	
+	
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private OutputStream m_out;
+	private int m_blockSize;
+	private int m_level;
+	private int m_maxPendingBlocks;
+	private ExecutorService m_executor;
+	private Queue<Future<byte[]>> m_pendingBlocks;
+	private byte[] m_block;
+	private int m_blockLength;
+	private boolean m_wroteMember;
+	private boolean m_isClosed;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public ParallelGzipOutputStream( OutputStream out )
+	{
+		this( out, Runtime.getRuntime().availableProcessors(), DefaultBlockSize, Deflater.DEFAULT_COMPRESSION );
+	}
+	
+	public ParallelGzipOutputStream( OutputStream out, int numThreads, int blockSize, int level )
+	{
+		m_out = out;
+		m_blockSize = blockSize;
+		m_level = level;
+		
+		// don't let the writer get too far ahead of the compressors
+		m_maxPendingBlocks = numThreads*2;
+		m_executor = Executors.newFixedThreadPool( numThreads, new ThreadFactory( )
+		{
+			@Override
+			public Thread newThread( Runnable runnable )
+			{
+				Thread thread = new Thread( runnable, "gzip" );
+				thread.setDaemon( true );
+				return thread;
+			}
+		} );
+		m_pendingBlocks = new ArrayDeque<Future<byte[]>>();
+		m_block = new byte[blockSize];
+		m_blockLength = 0;
+		m_wroteMember = false;
+		m_isClosed = false;
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	@Override
+	public void write( int b )
+	throws IOException
+	{
+		if( m_blockLength == m_blockSize )
+		{
+			submitBlock();
+		}
+		m_block[m_blockLength++] = (byte)b;
+	}
+	
+	@Override
+	public void write( byte[] buf, int offset, int length )
+	throws IOException
+	{
+		while( length > 0 )
+		{
+			if( m_blockLength == m_blockSize )
+			{
+				submitBlock();
+			}
+			int numToCopy = Math.min( length, m_blockSize - m_blockLength );
+			System.arraycopy( buf, offset, m_block, m_blockLength, numToCopy );
+			m_blockLength += numToCopy;
+			offset += numToCopy;
+			length -= numToCopy;
+		}
+	}
+	
+	@Override
+	public void flush( )
+	throws IOException
+	{
+		// like GZIPOutputStream, flushing doesn't end the current block early
+		// otherwise frequent flushes would fragment the output into lots of tiny members
+		// so just pass along any blocks that are already compressed
+		while( !m_pendingBlocks.isEmpty() && m_pendingBlocks.peek().isDone() )
+		{
+			writeNextBlock();
+		}
+		m_out.flush();
+	}
+	
+	@Override
+	public void close( )
+	throws IOException
+	{
+		if( m_isClosed )
+		{
+			return;
+		}
+		try
+		{
+			// an empty file still needs one member to be valid gzip
+			if( m_blockLength > 0 || !m_wroteMember )
+			{
+				submitBlock();
+			}
+			while( !m_pendingBlocks.isEmpty() )
+			{
+				writeNextBlock();
+			}
+			m_out.flush();
+		}
+		finally
+		{
+			m_isClosed = true;
+			m_executor.shutdownNow();
+			m_out.close();
+		}
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private void submitBlock( )
+	throws IOException
+	{
+		// wait for room in the pipeline
+		while( m_pendingBlocks.size() >= m_maxPendingBlocks )
+		{
+			writeNextBlock();
+		}
+		
+		m_pendingBlocks.add( m_executor.submit( new CompressTask( m_block, m_blockLength, m_level ) ) );
+		m_wroteMember = true;
+		m_block = new byte[m_blockSize];
+		m_blockLength = 0;
+	}
+	
+	private void writeNextBlock( )
+	throws IOException
+	{
+		try
+		{
+			m_out.write( m_pendingBlocks.remove().get() );
+		}
+		catch( InterruptedException ex )
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException( "Interrupted while compressing", ex );
+		}
+		catch( ExecutionException ex )
+		{
+			throw new IOException( "Unable to compress block", ex.getCause() );
+		}
+	}
+}
@@ -31,7 +31,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.regex.Pattern;
 
 import edu.duke.cs.libprotnmr.nmr.DistanceRestraint;
 import edu.duke.cs.libprotnmr.protein.AminoAcid;
@@ -121,54 +120,19 @@ public class AddressMapper
 	
 	public static Integer mapAtomNameToId( Subunit subunit, int residueId, String atomName )
 	{
-		// get the residue
-		Residue residue = subunit.getResidue( residueId );
-		if( residue == null )
-		{
-			return null;
-		}
-		
-		// do a sequential search through the atoms of the residue to find the atom
-		for( Atom atom : residue.getAtoms() )
-		{
-			if( atom.getName().equalsIgnoreCase( atomName ) )
-			{
-				return atom.getId();
-			}
-		}
-		
-		return null;
+		// the subunit keeps a hashed index of the atom names in each residue
+		return subunit.getAtomNameIndex().getAtomId( residueId, atomName );
 	}
 	
-	public static ArrayList<Integer> mapAmbiguousAtomNameToIds( Protein protein, int subunitId, int residueId, String atomName )
+	public static List<Integer> mapAmbiguousAtomNameToIds( Protein protein, int subunitId, int residueId, String atomName )
 	{
 		return mapAmbiguousAtomNameToIds( protein.getSubunit( subunitId ), residueId, atomName );
 	}
 	
-	public static ArrayList<Integer> mapAmbiguousAtomNameToIds( Subunit subunit, int residueId, String atomName )
+	public static List<Integer> mapAmbiguousAtomNameToIds( Subunit subunit, int residueId, String atomName )
 	{
-		// get the residue
-		if( residueId < 0 || residueId >= subunit.getResidues().size() )
-		{
-			return null;
-		}
-		Residue residue = subunit.getResidues().get( residueId );
-		
-		String pattern = "^" + atomName.replaceAll( "[#\\*]", "\\\\d+" ) + "$";
-		Pattern regex = Pattern.compile( pattern, Pattern.CASE_INSENSITIVE );
-		
-		// do a sequential search through the atoms of the residue to find the matching atoms
-		ArrayList<Integer> atomIds = new ArrayList<Integer>();
-		for( Atom atom : residue.getAtoms() )
-		{
-			// transform the atom name into a regex
-			if( regex.matcher( atom.getName() ).matches() )
-			{
-				atomIds.add( atom.getId() );
-			}
-		}
-		
-		return atomIds;
+		// wildcards (# or *) match one or more digits
+		return subunit.getAtomNameIndex().getAmbiguousAtomIds( residueId, atomName );
 	}
 	
 	public static String mapAtomIdToName( Protein protein, AtomAddressInternal address )
@@ -295,20 +259,8 @@ public class AddressMapper
 			return null;
 		}
 		
-		Integer residueId = mapResidueNumberToId( subunit, readableAddress.getResidueNumber() );
-		if( residueId == null )
-		{
-			return null;
-		}
-		
-		// get the atom id
-		Integer atomId = mapAtomNameToId( subunit, residueId, readableAddress.getAtomName() );
-		if( atomId == null )
-		{
-			return null;
-		}
-		
-		return new AtomAddressInternal( subunit.getId(), residueId, atomId );
+		// the name index is keyed on residue number, so this skips the residue number lookup
+		return subunit.getAtomNameIndex().getAddress( readableAddress.getResidueNumber(), readableAddress.getAtomName() );
 	}
 	
 	public static ArrayList<AtomAddressInternal> mapAddressExpandPseudoatoms( HasAtoms protein, AtomAddressReadable readableAddress )
@@ -352,27 +304,7 @@ public class AddressMapper
 			return new ArrayList<AtomAddressInternal>();
 		}
 		
-		Integer residueId = mapResidueNumberToId( subunit, readableAddress.getResidueNumber() );
-		if( residueId == null )
-		{
-			return new ArrayList<AtomAddressInternal>();
-		}
-		
-		// get the atom IDs
-		ArrayList<Integer> atomIds = mapAmbiguousAtomNameToIds( subunit, residueId, readableAddress.getAtomName() );
-		if( atomIds == null )
-		{
-			return new ArrayList<AtomAddressInternal>();
-		}
-		
-		// build the list of addresses
-		ArrayList<AtomAddressInternal> addresses = new ArrayList<AtomAddressInternal>();
-		for( Integer atomId : atomIds )
-		{
-			addresses.add( new AtomAddressInternal( subunit.getId(), residueId, atomId ) );
-		}
-		
-		return addresses;
+		return subunit.getAtomNameIndex().getAmbiguousAddresses( readableAddress.getResidueNumber(), readableAddress.getAtomName() );
 	}
 	
 	public static AtomAddressInternal mapAddressToResidue( Protein protein, AtomAddressReadable readableAddress )
@@ -33,6 +33,7 @@ import edu.duke.cs.libprotnmr.protein.Atom;
 import edu.duke.cs.libprotnmr.protein.AtomAddressReadable;
 import edu.duke.cs.libprotnmr.protein.HasAddresses;
 import edu.duke.cs.libprotnmr.protein.Protein;
+import edu.duke.cs.libprotnmr.protein.Residue;
 import edu.duke.cs.libprotnmr.protein.ResidueType;
 import edu.duke.cs.libprotnmr.protein.Sequences;
 import edu.duke.cs.libprotnmr.protein.Subunit;
@@ -103,9 +104,9 @@ public class NameMapper
 		return m_mapper.mapName( m_source, m_destination, aminoAcid, residueType, atomName );
 	}
 	
-	public void mapAtom( AminoAcid aminoAcid, ResidueType residueType, Atom atom )
+	public void mapAtom( Subunit subunit, Residue residue, Atom atom )
 	{
-		m_mapper.mapAtom( m_source, m_destination, aminoAcid, residueType, atom );
+		m_mapper.mapAtom( m_source, m_destination, subunit, residue, atom );
 	}
 	
 	public void mapProtein( Protein protein )
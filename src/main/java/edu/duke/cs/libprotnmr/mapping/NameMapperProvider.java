@@ -151,9 +151,12 @@ public class NameMapperProvider
 		return atomName;
 	}
 	
-	public void mapAtom( NameScheme source, NameScheme destination, AminoAcid aminoAcid, ResidueType residueType, Atom atom )
+	public void mapAtom( NameScheme source, NameScheme destination, Subunit subunit, Residue residue, Atom atom )
 	{
-		atom.setName( mapName( source, destination, aminoAcid, residueType, atom.getName() ) );
+		atom.setName( mapName( source, destination, residue.getAminoAcid(), ResidueType.valueOf( subunit, residue ), atom.getName() ) );
+		
+		// the atom name changed, so the subunit's name lookups are stale
+		subunit.invalidateAtomNameIndex();
 	}
 	
 	public void mapProtein( NameScheme source, NameScheme destination, Protein protein )
@@ -165,7 +168,7 @@ public class NameMapperProvider
 			Atom atom = protein.getAtom( address );
 			
 			// map it
-			mapAtom( source, destination, residue.getAminoAcid(), ResidueType.valueOf( subunit, residue ), atom );
+			mapAtom( source, destination, subunit, residue, atom );
 		}
 	}
 	
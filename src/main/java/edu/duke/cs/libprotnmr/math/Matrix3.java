@@ -43,6 +43,9 @@ public class Matrix3 implements Serializable
 	
 	public static final int Dimension = 3;
 	
+	private static final int MaxJacobiSweeps = 50;
+	private static final double JacobiEpsilon = 1e-15;
+	
 	
 	/**************************
 	 *   Fields
@@ -420,6 +423,97 @@ public class Matrix3 implements Serializable
 		data[2][1] = swap;
 	}
 	
+	public void getEigenSymmetric( double[] outEigenvalues, Matrix3 outEigenvectors )
+	{
+		// cyclic Jacobi for symmetric matrices (only the upper triangle is read)
+		// eigenvalues come out in increasing order, eigenvectors are the matching columns
+		// doesn't allocate anything, so it's much cheaper than Jama for lots of small problems
+		double a00 = data[0][0];
+		double a11 = data[1][1];
+		double a22 = data[2][2];
+		double a01 = data[0][1];
+		double a02 = data[0][2];
+		double a12 = data[1][2];
+		outEigenvectors.setIdentity();
+		double[][] v = outEigenvectors.data;
+		
+		for( int sweep=0; sweep<MaxJacobiSweeps; sweep++ )
+		{
+			double off = a01*a01 + a02*a02 + a12*a12;
+			double diag = a00*a00 + a11*a11 + a22*a22;
+			if( off <= JacobiEpsilon*JacobiEpsilon*diag || off == 0.0 )
+			{
+				break;
+			}
+			
+			// pivot (0,1)
+			if( a01 != 0.0 )
+			{
+				double t = getJacobiTangent( a00, a11, a01 );
+				double c = 1.0/Math.sqrt( t*t + 1.0 );
+				double s = t*c;
+				a00 -= t*a01;
+				a11 += t*a01;
+				a01 = 0.0;
+				double r0 = a02;
+				double r1 = a12;
+				a02 = c*r0 - s*r1;
+				a12 = s*r0 + c*r1;
+				rotateColumns( v, 0, 1, c, s );
+			}
+			
+			// pivot (0,2)
+			if( a02 != 0.0 )
+			{
+				double t = getJacobiTangent( a00, a22, a02 );
+				double c = 1.0/Math.sqrt( t*t + 1.0 );
+				double s = t*c;
+				a00 -= t*a02;
+				a22 += t*a02;
+				a02 = 0.0;
+				double r0 = a01;
+				double r2 = a12;
+				a01 = c*r0 - s*r2;
+				a12 = s*r0 + c*r2;
+				rotateColumns( v, 0, 2, c, s );
+			}
+			
+			// pivot (1,2)
+			if( a12 != 0.0 )
+			{
+				double t = getJacobiTangent( a11, a22, a12 );
+				double c = 1.0/Math.sqrt( t*t + 1.0 );
+				double s = t*c;
+				a11 -= t*a12;
+				a22 += t*a12;
+				a12 = 0.0;
+				double r1 = a01;
+				double r2 = a02;
+				a01 = c*r1 - s*r2;
+				a02 = s*r1 + c*r2;
+				rotateColumns( v, 1, 2, c, s );
+			}
+		}
+		
+		outEigenvalues[0] = a00;
+		outEigenvalues[1] = a11;
+		outEigenvalues[2] = a22;
+		
+		// sort by eigenvalue
+		if( outEigenvalues[0] > outEigenvalues[1] )
+		{
+			swapEigenpairs( outEigenvalues, v, 0, 1 );
+		}
+		if( outEigenvalues[1] > outEigenvalues[2] )
+		{
+			swapEigenpairs( outEigenvalues, v, 1, 2 );
+		}
+		if( outEigenvalues[0] > outEigenvalues[1] )
+		{
+			swapEigenpairs( outEigenvalues, v, 0, 1 );
+		}
+	}
+	
 	public void toJama( Matrix out )
 	{
 		assert( out.getRowDimension() == 3 && out.getColumnDimension() == 3 );
@@ -492,4 +586,41 @@ public class Matrix3 implements Serializable
 			&& data[2][1] == other.data[2][1]
 			&& data[2][2] == other.data[2][2];
 	}
+	
+	
+	/**************************
+	 *   Static Functions
+	 **************************/
+	
+	private static double getJacobiTangent( double app, double aqq, double apq )
+	{
+		// the smaller root of t^2 + 2*theta*t - 1 = 0, so the rotation angle is at most pi/4
+		double theta = ( aqq - app )/( 2.0*apq );
+		double t = 1.0/( Math.abs( theta ) + Math.sqrt( theta*theta + 1.0 ) );
+		return theta < 0.0 ? -t : t;
+	}
+	
+	private static void rotateColumns( double[][] v, int p, int q, double c, double s )
+	{
+		for( int k=0; k<Dimension; k++ )
+		{
+			double vp = v[k][p];
+			double vq = v[k][q];
+			v[k][p] = c*vp - s*vq;
+			v[k][q] = s*vp + c*vq;
+		}
+	}
+	
+	private static void swapEigenpairs( double[] eigenvalues, double[][] v, int a, int b )
+	{
+		double swap = eigenvalues[a];
+		eigenvalues[a] = eigenvalues[b];
+		eigenvalues[b] = swap;
+		for( int k=0; k<Dimension; k++ )
+		{
+			swap = v[k][a];
+			v[k][a] = v[k][b];
+			v[k][b] = swap;
+		}
+	}
 }
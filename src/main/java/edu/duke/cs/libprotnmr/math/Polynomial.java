@@ -0,0 +1,311 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.math;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class Polynomial
+{
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	// remainders smaller than this (relative to the dividend) are treated as zero
+	private static final double RelativeEpsilon = 1e-10;
+	
+	private static final int MaxBisections = 200;
+	
+	
+	/**************************
+	 *   Static Methods
+	 **************************/
+	
+	// NOTE: coefficients are stored lowest degree first, ie c[0] + c[1]*x + c[2]*x^2 + ...
+	
+	public static double evaluate( double[] coefficients, double x )
+	{
+		double val = 0.0;
+		for( int i=coefficients.length-1; i>=0; i-- )
+		{
+			val = val*x + coefficients[i];
+		}
+		return val;
+	}
+	
+	public static double[] getDerivative( double[] coefficients )
+	{
+		if( coefficients.length <= 1 )
+		{
+			return new double[] { 0.0 };
+		}
+		double[] derivative = new double[coefficients.length - 1];
+		for( int i=1; i<coefficients.length; i++ )
+		{
+			derivative[i-1] = coefficients[i]*i;
+		}
+		return derivative;
+	}
+	
+	public static List<double[]> getSturmSequence( double[] coefficients )
+	{
+		// returns null if the sequence degenerates, ie the polynomial has (nearly) repeated roots
+		List<double[]> sequence = new ArrayList<double[]>();
+		double[] a = trim( coefficients );
+		if( a == null || a.length <= 1 )
+		{
+			return null;
+		}
+		double[] b = getDerivative( a );
+		sequence.add( a );
+		sequence.add( b );
+		while( b.length > 1 )
+		{
+			double[] r = getRemainder( a, b );
+			
+			// if the remainder vanishes before we reach a constant, a and b share a root
+			double scale = getMaxAbs( a );
+			if( getMaxAbs( r ) <= scale*RelativeEpsilon )
+			{
+				return null;
+			}
+			
+			// negate the remainder
+			for( int i=0; i<r.length; i++ )
+			{
+				r[i] = -r[i];
+			}
+			r = trim( r, scale*RelativeEpsilon );
+			sequence.add( r );
+			a = b;
+			b = r;
+		}
+		return sequence;
+	}
+	
+	public static double getRootBound( double[] coefficients )
+	{
+		// Cauchy's bound
+		int n = coefficients.length - 1;
+		double max = 0.0;
+		for( int i=0; i<n; i++ )
+		{
+			max = Math.max( max, Math.abs( coefficients[i]/coefficients[n] ) );
+		}
+		return 1.0 + max;
+	}
+	
+	public static List<Double> solve( double[] coefficients )
+	{
+		// returns null if the roots cannot be isolated reliably at double precision
+		double[] trimmed = trim( coefficients );
+		if( trimmed == null )
+		{
+			return null;
+		}
+		if( trimmed.length <= 1 )
+		{
+			return new ArrayList<Double>();
+		}
+		double bound = getRootBound( trimmed );
+		return solve( trimmed, -bound, bound );
+	}
+	
+	public static List<Double> solve( double[] coefficients, double min, double max )
+	{
+		// returns null if the roots cannot be isolated reliably at double precision
+		List<double[]> sequence = getSturmSequence( coefficients );
+		if( sequence == null )
+		{
+			return null;
+		}
+		
+		// the sturm sequence must not vanish at the endpoints
+		int minChanges = countSignChanges( sequence, min );
+		int maxChanges = countSignChanges( sequence, max );
+		List<Double> roots = new ArrayList<Double>();
+		if( !isolateRoots( roots, sequence, min, max, minChanges, maxChanges, 0 ) )
+		{
+			return null;
+		}
+		Collections.sort( roots );
+		return roots;
+	}
+	
+	public static int countSignChanges( List<double[]> sequence, double x )
+	{
+		int numChanges = 0;
+		double lastSign = 0.0;
+		for( double[] p : sequence )
+		{
+			double sign = Math.signum( evaluate( p, x ) );
+			if( sign == 0.0 )
+			{
+				continue;
+			}
+			if( lastSign != 0.0 && sign != lastSign )
+			{
+				numChanges++;
+			}
+			lastSign = sign;
+		}
+		return numChanges;
+	}
+	
+	
+	/**************************
+	 *   Static Functions
+	 **************************/
+	
+	private static boolean isolateRoots( List<Double> roots, List<double[]> sequence, double min, double max, int minChanges, int maxChanges, int depth )
+	{
+		int numRoots = minChanges - maxChanges;
+		if( numRoots < 0 )
+		{
+			// the sturm sequence lost precision
+			return false;
+		}
+		else if( numRoots == 0 )
+		{
+			return true;
+		}
+		else if( numRoots == 1 )
+		{
+			Double root = refineRoot( sequence.get( 0 ), min, max );
+			if( root == null )
+			{
+				return false;
+			}
+			roots.add( root );
+			return true;
+		}
+		
+		// several roots in this interval, split it
+		double mid = ( min + max )/2.0;
+		if( depth >= MaxBisections || mid <= min || mid >= max )
+		{
+			// these roots are too close to separate
+			return false;
+		}
+		int midChanges = countSignChanges( sequence, mid );
+		return isolateRoots( roots, sequence, min, mid, minChanges, midChanges, depth + 1 )
+			&& isolateRoots( roots, sequence, mid, max, midChanges, maxChanges, depth + 1 );
+	}
+	
+	private static Double refineRoot( double[] coefficients, double min, double max )
+	{
+		// the interval (min,max] contains exactly one simple root
+		double minVal = evaluate( coefficients, min );
+		double maxVal = evaluate( coefficients, max );
+		if( maxVal == 0.0 )
+		{
+			return max;
+		}
+		if( Math.signum( minVal ) == Math.signum( maxVal ) )
+		{
+			// a simple root must produce a sign change
+			return null;
+		}
+		
+		// bisect until the interval can't shrink any further
+		for( int i=0; i<MaxBisections; i++ )
+		{
+			double mid = ( min + max )/2.0;
+			if( mid <= min || mid >= max )
+			{
+				break;
+			}
+			double midVal = evaluate( coefficients, mid );
+			if( midVal == 0.0 )
+			{
+				return mid;
+			}
+			if( Math.signum( midVal ) == Math.signum( minVal ) )
+			{
+				min = mid;
+				minVal = midVal;
+			}
+			else
+			{
+				max = mid;
+			}
+		}
+		return ( min + max )/2.0;
+	}
+	
+	private static double[] getRemainder( double[] a, double[] b )
+	{
+		// polynomial long division, keeping only the remainder
+		double[] r = a.clone();
+		int degB = b.length - 1;
+		for( int i=r.length-1; i>=degB; i-- )
+		{
+			double factor = r[i]/b[degB];
+			for( int j=0; j<=degB; j++ )
+			{
+				r[i - degB + j] -= factor*b[j];
+			}
+			r[i] = 0.0;
+		}
+		double[] out = new double[Math.max( degB, 1 )];
+		System.arraycopy( r, 0, out, 0, out.length );
+		return out;
+	}
+	
+	private static double[] trim( double[] coefficients )
+	{
+		return trim( coefficients, getMaxAbs( coefficients )*RelativeEpsilon );
+	}
+	
+	private static double[] trim( double[] coefficients, double epsilon )
+	{
+		// drop leading coefficients that are effectively zero
+		int n = coefficients.length;
+		while( n > 0 && Math.abs( coefficients[n - 1] ) <= epsilon )
+		{
+			n--;
+		}
+		if( n == 0 )
+		{
+			return null;
+		}
+		double[] out = new double[n];
+		System.arraycopy( coefficients, 0, out, 0, n );
+		return out;
+	}
+	
+	private static double getMaxAbs( double[] coefficients )
+	{
+		double max = 0.0;
+		for( double c : coefficients )
+		{
+			max = Math.max( max, Math.abs( c ) );
+		}
+		return max;
+	}
+}
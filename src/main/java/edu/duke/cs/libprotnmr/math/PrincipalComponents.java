@@ -32,9 +32,6 @@ import java.util.TreeMap;
 
 import edu.duke.cs.libprotnmr.geom.Vector3;
 
-import Jama.EigenvalueDecomposition;
-import Jama.Matrix;
-
 public class PrincipalComponents
 {
 	/*********************************
@@ -42,6 +39,52 @@ public class PrincipalComponents
 	 *********************************/
 	
 	public static TreeMap<Double,Vector3> getPrincipalComponents( List<Vector3> points )
+	{
+		double[] eigenvalues = new double[3];
+		Matrix3 eigenvectors = new Matrix3();
+		getPrincipalComponents( eigenvalues, eigenvectors, points );
+		
+		// put the eigenthings in a map
+		TreeMap<Double,Vector3> principalComponents = new TreeMap<Double,Vector3>( new Comparator<Double>( )
+		{
+			@Override
+			public int compare( Double a, Double b )
+			{
+				// we must compare eigenvalues by magnitude only
+				return Double.compare( Math.abs( a ), Math.abs( b ) );
+			}
+		} );
+		for( int i=0; i<3; i++ )
+		{
+			Vector3 eigenvector = new Vector3();
+			eigenvectors.getAxis( eigenvector, i );
+			principalComponents.put( eigenvalues[i], eigenvector );
+		}
+		return principalComponents;
+	}
+	
+	public static void getPrincipalComponents( double[] outEigenvalues, Matrix3 outEigenvectors, List<Vector3> points )
+	{
+		// eigenvalues in increasing order, eigenvectors in the matching columns
+		getCovariance( outEigenvectors, points );
+		outEigenvectors.getEigenSymmetric( outEigenvalues, outEigenvectors );
+	}
+	
+	public static void getMajorAxis( Vector3 out, List<Vector3> points )
+	{
+		// the covariance matrix is positive semi-definite, so the largest eigenvalue is also the largest in magnitude
+		double[] eigenvalues = new double[3];
+		Matrix3 eigenvectors = new Matrix3();
+		getPrincipalComponents( eigenvalues, eigenvectors, points );
+		eigenvectors.getAxis( out, 2 );
+	}
+	
+	
+	/*********************************
+	 *   Static Functions
+	 *********************************/
+	
+	private static void getCovariance( Matrix3 out, List<Vector3> points )
 	{
 		// compute the means
 		double[] means = new double[3];
@@ -58,7 +101,6 @@ public class PrincipalComponents
 		// compute the covariance matrix
 		// see following URL for mathematical definition
 		// http://en.wikipedia.org/wiki/Covariance_matrix
-		Matrix cov = new Matrix( 3, 3 );
 		for( int i=0; i<3; i++ )
 		{
 			for( int j=0; j<=i; j++ )
@@ -70,32 +112,9 @@ public class PrincipalComponents
 				}
 				c /= points.size();
 				
-				cov.set( i, j, c );
-				cov.set( j, i, c );
-			}
-		}
-		
-		// put the eigenthings in a map
-		EigenvalueDecomposition eig = cov.eig();
-		TreeMap<Double,Vector3> principalComponents = new TreeMap<Double,Vector3>( new Comparator<Double>( )
-		{
-			@Override
-			public int compare( Double a, Double b )
-			{
-				// we must compare eigenvalues by magnitude only
-				return Double.compare( Math.abs( a ), Math.abs( b ) );
+				out.data[i][j] = c;
+				out.data[j][i] = c;
 			}
-		} );
-		for( int i=0; i<3; i++ )
-		{
-			double eigenvalue = eig.getD().get( i, i );
-			Vector3 eigenvector = new Vector3(
-				eig.getV().get( 0, i ),
-				eig.getV().get( 1, i ),
-				eig.getV().get( 2, i )
-			);
-			principalComponents.put( eigenvalue, eigenvector );
 		}
-		return principalComponents;
 	}
 }
@@ -49,7 +49,6 @@ import edu.duke.cs.libprotnmr.protein.HasAtoms;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.Logger;
 
-import Jama.EigenvalueDecomposition;
 import Jama.Matrix;
 
 public class AlignmentTensor implements Serializable
@@ -84,16 +83,19 @@ public class AlignmentTensor implements Serializable
 		m_Syz = Syz;
 		m_Szz = Szz;
 		
-		// construct the saupe matrix
-		Matrix saupe = new Matrix( 3, 3 );
-		getSaupe().toJama( saupe );
+		// diagonalize the saupe matrix
+		double[] eigenvalues = new double[3];
+		Matrix3 eigenvectors = new Matrix3();
+		getSaupe().getEigenSymmetric( eigenvalues, eigenvectors );
 		
 		// sort eigenvalues (along with eigenvectors) in order of increasing magnitude
-		EigenvalueDecomposition eig = saupe.eig();
 		PriorityQueue<EigPair> q = new PriorityQueue<EigPair>( 3 );
-		q.add( new EigPair( eig, 0 ) );
-		q.add( new EigPair( eig, 1 ) );
-		q.add( new EigPair( eig, 2 ) );
+		for( int i=0; i<3; i++ )
+		{
+			Vector3 eigenvector = new Vector3();
+			eigenvectors.getAxis( eigenvector, i );
+			q.add( new EigPair( eigenvalues[i], eigenvector ) );
+		}
 		m_eigs = new EigPair[3];
 		m_eigs[AlignmentTensorAxis.X.ordinal()] = q.poll();
 		m_eigs[AlignmentTensorAxis.Y.ordinal()] = q.poll();
@@ -0,0 +1,409 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.nmr;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.NoSuchElementException;
+
+
+class AssignLexer
+{
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	public enum Token
+	{
+		Assign,
+		Segid,
+		Resid,
+		Name,
+		Or,
+		And,
+		OpenGroup,
+		CloseGroup,
+		UnambiguousComment,
+		AmbiguousComment,
+		Number,
+		Word;
+	}
+	
+	private static final double[] PowersOfTen = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+	};
+	
+	
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private char[] m_buf;
+	private int m_length;
+	private int m_pos;
+	private int m_lineStart;
+	private int m_lineNumber;
+	private int m_tokenStart;
+	private int m_tokenStop;
+	private boolean m_isTokenFirstOnLine;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public AssignLexer( Reader reader )
+	throws IOException
+	{
+		// slurp the whole input into one buffer
+		m_buf = new char[8192];
+		m_length = 0;
+		while( true )
+		{
+			if( m_length == m_buf.length )
+			{
+				char[] newBuf = new char[m_buf.length*2];
+				System.arraycopy( m_buf, 0, newBuf, 0, m_length );
+				m_buf = newBuf;
+			}
+			int numRead = reader.read( m_buf, m_length, m_buf.length - m_length );
+			if( numRead < 0 )
+			{
+				break;
+			}
+			m_length += numRead;
+		}
+		
+		m_pos = 0;
+		m_lineStart = 0;
+		m_lineNumber = 1;
+		m_tokenStart = 0;
+		m_tokenStop = 0;
+		m_isTokenFirstOnLine = false;
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public int getLineNumber( )
+	{
+		return m_lineNumber;
+	}
+	
+	public String getLine( )
+	{
+		int stop = m_lineStart;
+		while( stop < m_length && m_buf[stop] != '\n' && m_buf[stop] != '\r' )
+		{
+			stop++;
+		}
+		return new String( m_buf, m_lineStart, stop - m_lineStart );
+	}
+	
+	public boolean isTokenFirstOnLine( )
+	{
+		return m_isTokenFirstOnLine;
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public Token next( )
+	{
+		// skip whitespace, including line breaks
+		boolean isFirstOnLine = m_pos == m_lineStart;
+		while( m_pos < m_length && m_buf[m_pos] <= ' ' )
+		{
+			if( skipLineBreak() )
+			{
+				isFirstOnLine = true;
+			}
+			else
+			{
+				m_pos++;
+			}
+		}
+		if( m_pos >= m_length )
+		{
+			return null;
+		}
+		
+		m_isTokenFirstOnLine = isFirstOnLine;
+		readToken();
+		return classifyToken();
+	}
+	
+	public String nextValue( )
+	{
+		readValue();
+		return new String( m_buf, m_tokenStart, m_tokenStop - m_tokenStart );
+	}
+	
+	public char nextValueChar( )
+	{
+		readValue();
+		return m_buf[m_tokenStart];
+	}
+	
+	public int nextValueInt( )
+	{
+		readValue();
+		
+		// parse simple integers in place, defer anything unusual to the JDK
+		int i = m_tokenStart;
+		boolean isNegative = false;
+		if( m_buf[i] == '-' || m_buf[i] == '+' )
+		{
+			isNegative = m_buf[i] == '-';
+			i++;
+		}
+		int numDigits = m_tokenStop - i;
+		if( numDigits <= 0 || numDigits > 9 )
+		{
+			return Integer.parseInt( getText() );
+		}
+		int value = 0;
+		for( ; i<m_tokenStop; i++ )
+		{
+			char c = m_buf[i];
+			if( c < '0' || c > '9' )
+			{
+				return Integer.parseInt( getText() );
+			}
+			value = value*10 + ( c - '0' );
+		}
+		return isNegative ? -value : value;
+	}
+	
+	public double getNumber( )
+	{
+		// the token matches -?\d*\.?\d*
+		int i = m_tokenStart;
+		boolean isNegative = false;
+		if( m_buf[i] == '-' )
+		{
+			isNegative = true;
+			i++;
+		}
+		long mantissa = 0;
+		int numDigits = 0;
+		int numFractionDigits = 0;
+		boolean isFraction = false;
+		for( ; i<m_tokenStop; i++ )
+		{
+			char c = m_buf[i];
+			if( c == '.' )
+			{
+				isFraction = true;
+			}
+			else
+			{
+				mantissa = mantissa*10 + ( c - '0' );
+				numDigits++;
+				if( isFraction )
+				{
+					numFractionDigits++;
+				}
+			}
+		}
+		
+		// with at most 15 digits, both the mantissa and the power of ten are exact doubles,
+		// so one correctly-rounded division gives the same answer as Double.parseDouble()
+		if( numDigits == 0 || numDigits > 15 )
+		{
+			return Double.parseDouble( getText() );
+		}
+		double value = mantissa/PowersOfTen[numFractionDigits];
+		return isNegative ? -value : value;
+	}
+	
+	public void skipRestOfLine( )
+	{
+		while( m_pos < m_length && m_buf[m_pos] != '\n' && m_buf[m_pos] != '\r' )
+		{
+			m_pos++;
+		}
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private boolean skipLineBreak( )
+	{
+		char c = m_buf[m_pos];
+		if( c == '\n' || c == '\r' )
+		{
+			m_pos++;
+			if( c == '\r' && m_pos < m_length && m_buf[m_pos] == '\n' )
+			{
+				m_pos++;
+			}
+			m_lineStart = m_pos;
+			m_lineNumber++;
+			return true;
+		}
+		return false;
+	}
+	
+	private void readToken( )
+	{
+		m_tokenStart = m_pos;
+		if( isSeparator( m_buf[m_pos] ) )
+		{
+			m_pos++;
+		}
+		else
+		{
+			while( m_pos < m_length && m_buf[m_pos] > ' ' && !isSeparator( m_buf[m_pos] ) )
+			{
+				m_pos++;
+			}
+		}
+		m_tokenStop = m_pos;
+	}
+	
+	private void readValue( )
+	{
+		// values must be on the same line as their keyword
+		while( m_pos < m_length && m_buf[m_pos] <= ' ' && m_buf[m_pos] != '\n' && m_buf[m_pos] != '\r' )
+		{
+			m_pos++;
+		}
+		if( m_pos >= m_length || m_buf[m_pos] == '\n' || m_buf[m_pos] == '\r' )
+		{
+			throw new NoSuchElementException( "Missing value for " + getText() );
+		}
+		m_isTokenFirstOnLine = false;
+		readToken();
+	}
+	
+	private boolean isSeparator( char c )
+	{
+		return c == '(' || c == ')' || c == '!';
+	}
+	
+	private String getText( )
+	{
+		return new String( m_buf, m_tokenStart, m_tokenStop - m_tokenStart );
+	}
+	
+	private Token classifyToken( )
+	{
+		int length = m_tokenStop - m_tokenStart;
+		if( length == 1 )
+		{
+			switch( m_buf[m_tokenStart] )
+			{
+				case '(': return Token.OpenGroup;
+				case ')': return Token.CloseGroup;
+				case '!': return Token.UnambiguousComment;
+				case '#': return Token.AmbiguousComment;
+			}
+		}
+		if( isKeyword( "assign" ) )
+		{
+			return Token.Assign;
+		}
+		else if( isKeyword( "segid" ) )
+		{
+			return Token.Segid;
+		}
+		else if( isKeyword( "resid" ) || isKeyword( "residue" ) )
+		{
+			return Token.Resid;
+		}
+		else if( isKeyword( "name" ) )
+		{
+			return Token.Name;
+		}
+		else if( isKeyword( "or" ) )
+		{
+			return Token.Or;
+		}
+		else if( isKeyword( "and" ) )
+		{
+			return Token.And;
+		}
+		else if( isNumber() )
+		{
+			return Token.Number;
+		}
+		return Token.Word;
+	}
+	
+	private boolean isKeyword( String keyword )
+	{
+		// keywords are ASCII and case-insensitive
+		if( m_tokenStop - m_tokenStart != keyword.length() )
+		{
+			return false;
+		}
+		for( int i=0; i<keyword.length(); i++ )
+		{
+			char c = m_buf[m_tokenStart + i];
+			if( c >= 'A' && c <= 'Z' )
+			{
+				c += 'a' - 'A';
+			}
+			if( c != keyword.charAt( i ) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private boolean isNumber( )
+	{
+		// match -?\d*\.?\d*
+		int i = m_tokenStart;
+		if( m_buf[i] == '-' )
+		{
+			i++;
+		}
+		boolean sawPoint = false;
+		for( ; i<m_tokenStop; i++ )
+		{
+			char c = m_buf[i];
+			if( c == '.' && !sawPoint )
+			{
+				sawPoint = true;
+			}
+			else if( c < '0' || c > '9' )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -26,86 +26,20 @@
 
 package edu.duke.cs.libprotnmr.nmr;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.StringTokenizer;
-import java.util.regex.Pattern;
 
-import edu.duke.cs.libprotnmr.io.Transformer;
+import edu.duke.cs.libprotnmr.io.Compression;
+import edu.duke.cs.libprotnmr.io.ParseException;
 import edu.duke.cs.libprotnmr.protein.AtomAddressReadable;
 
 
 public class AssignReader
 {
-	/**************************
-	 *   Definitions
-	 **************************/
-	
-	private enum Token
-	{
-		Assign( null, true, "assign" ),
-		Segid( null, true, "segid" ),
-		Resid( null, true, "resid", "residue" ),
-		Name( null, true, "name" ),
-		Or( null, true, "or" ),
-		And( null, true, "and" ),
-		OpenGroup( "(", true, "\\(" ),
-		CloseGroup( ")", true, "\\)" ),
-		UnambiguousComment( "!", true, "\\!" ),
-		AmbiguousComment( "#", false, "#" ),
-		Number( null, true, "\\-?\\d*\\.?\\d*" );
-		
-		private String m_replace;
-		private boolean m_doSpacing;
-		private ArrayList<String> m_patterns;
-		
-		public static Token lookup( String in )
-		{
-			for( Token token : Token.values() )
-			{
-				for( String pattern : token.getPatterns() )
-				{
-					Pattern regex = Pattern.compile( pattern, Pattern.CASE_INSENSITIVE );
-					if( regex.matcher( in ).matches() )
-					{
-						return token;
-					}
-				}
-			}
-			return null;
-		}
-		
-		private Token( String replace, boolean doSpacing, String ... patterns )
-		{
-			m_replace = replace;
-			m_doSpacing = doSpacing;
-			m_patterns = Transformer.toArrayList( patterns );
-		}
-		
-		public String getReplace( )
-		{
-			return m_replace;
-		}
-		
-		public boolean doSpacing( )
-		{
-			return m_doSpacing;
-		}
-		
-		public List<String> getPatterns( )
-		{
-			return Collections.unmodifiableList( m_patterns );
-		}
-	}
-	
-	
 	/**************************
 	 *   Methods
 	 **************************/
@@ -137,33 +71,13 @@ public class AssignReader
 		AtomAddressReadable address = new AtomAddressReadable();
 		int groupDepth = 0;
 		
-		// for each line...
-		BufferedReader reader = new BufferedReader( new InputStreamReader( in ) );
-		String line = null;
-		while( ( line = reader.readLine() ) != null )
+		// for each token...
+		AssignLexer lexer = new AssignLexer( new InputStreamReader( Compression.decompress( in ) ) );
+		AssignLexer.Token token = null;
+		while( ( token = lexer.next() ) != null )
 		{
-			// skip blank lines
-			line = line.trim();
-			if( line.length() <= 0 )
+			try
 			{
-				continue;
-			}
-			
-			// preprocess to make sure tokens are spaced out
-			line = performSpacing( line );
-			
-			// tokenize
-			StringTokenizer tokenizer = new StringTokenizer( line );
-			while( tokenizer.hasMoreTokens() )
-			{
-				// get the next token
-				String stringToken = tokenizer.nextToken();
-				Token token = Token.lookup( stringToken );
-				if( token == null )
-				{
-					continue;
-				}
-				
 				switch( token )
 				{
 					case Assign:
@@ -179,15 +93,18 @@ public class AssignReader
 					break;
 					
 					case Segid:
-						address.setSubunitName( tokenizer.nextToken().charAt( 0 ) );
+						checkAddress( address );
+						address.setSubunitName( lexer.nextValueChar() );
 					break;
 					
 					case Resid:
-						address.setResidueNumber( Integer.parseInt( tokenizer.nextToken() ) );
+						checkAddress( address );
+						address.setResidueNumber( lexer.nextValueInt() );
 					break;
 					
 					case Name:
-						address.setAtomName( tokenizer.nextToken() );
+						checkAddress( address );
+						address.setAtomName( lexer.nextValue() );
 					break;
 					
 					case OpenGroup:
@@ -222,43 +139,36 @@ public class AssignReader
 					break;
 					
 					case And:
-						// just ignore
-					break;
-					
 					case Or:
+					case Word:
 						// just ignore
 					break;
 					
 					case UnambiguousComment:
 						// skip the rest of this line
-						while( tokenizer.hasMoreTokens() )
-						{
-							tokenizer.nextToken();
-						}
+						lexer.skipRestOfLine();
 					break;
 					
 					case AmbiguousComment:
 						// only process this comment if it's the first token on the line
-						String firstToken = new StringTokenizer( line ).nextToken();
-						if( firstToken.equals( stringToken ) )
+						if( lexer.isTokenFirstOnLine() )
 						{
-							// skip the rest of this line
-							while( tokenizer.hasMoreTokens() )
-							{
-								tokenizer.nextToken();
-							}
+							lexer.skipRestOfLine();
 						}
 					break;
 					
 					case Number:
 						if( assign != null )
 						{
-							assign.getNumbers().add( Double.parseDouble( stringToken ) );
+							assign.getNumbers().add( lexer.getNumber() );
 						}
 					break;
 				}
 			}
-			
+			catch( RuntimeException ex )
+			{
+				throw new ParseException( lexer.getLine(), lexer.getLineNumber(), ex );
+			}
 		}
 		
 		// do we need to close the current assign?
@@ -271,52 +181,16 @@ public class AssignReader
 		return assigns;
 	}
 	
-	/*
-	private Assign processComment( ArrayList<Assign> assigns, Assign assign, StringTokenizer tokenizer )
-	{
-		// skip the rest of the line
-		while( tokenizer.hasMoreTokens() )
-		{
-			//tokenizer.nextToken();
-			// but if we commented an assign, close the current assign if necessary
-			if( Token.lookup( tokenizer.nextToken() ) == Token.Assign )
-			{
-				if( assign != null )
-				{
-					if( assign.getNumbers().size() > 0 )
-					{
-						assigns.add( assign );
-					}
-					assign = null;
-				}
-			}
-		}
-		return assign;
-	}
-	*/
-	
 	
 	/**************************
 	 *   Functions
 	 **************************/
 	
-	private String performSpacing( String in )
+	private void checkAddress( AtomAddressReadable address )
 	{
-		for( Token token : Token.values() )
+		if( address == null )
 		{
-			if( token.doSpacing() )
-			{
-				String replace = token.getReplace();
-				if( replace != null )
-				{
-					for( String pattern : token.getPatterns() )
-					{
-						in = in.replaceAll( pattern, " " + replace + " " );
-					}
-				}
-			}
+			throw new IllegalArgumentException( "Atom selection is outside of a group!" );
 		}
-		
-		return in;
 	}
 }
@@ -28,7 +28,6 @@ package edu.duke.cs.libprotnmr.nmr;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -37,6 +36,7 @@ import java.text.DecimalFormat;
 import java.util.Collection;
 import java.util.List;
 
+import edu.duke.cs.libprotnmr.io.Compression;
 import edu.duke.cs.libprotnmr.protein.AtomAddressReadable;
 
 
@@ -106,7 +106,7 @@ public class AssignWriter
 	public void write( File file, List<Assign> assigns )
 	throws IOException
 	{
-		Writer out = new BufferedWriter( new FileWriter( file ) );
+		Writer out = new BufferedWriter( Compression.openWriter( file ) );
 		write( out, assigns );
 		out.close();
 	}
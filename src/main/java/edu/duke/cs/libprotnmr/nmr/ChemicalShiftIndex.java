@@ -0,0 +1,159 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.nmr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import edu.duke.cs.libprotnmr.protein.AtomAddress;
+
+
+public class ChemicalShiftIndex<T extends AtomAddress<T>>
+{
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private double[] m_values;
+	private List<T> m_addresses;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public ChemicalShiftIndex( Iterable<ChemicalShift<T>> shifts )
+	{
+		// sort the shifts by value
+		List<ChemicalShift<T>> sortedShifts = new ArrayList<ChemicalShift<T>>();
+		for( ChemicalShift<T> shift : shifts )
+		{
+			// NaN shifts are never near anything, and they would break the ordering
+			if( !Double.isNaN( shift.getValue() ) )
+			{
+				sortedShifts.add( shift );
+			}
+		}
+		Collections.sort( sortedShifts, new Comparator<ChemicalShift<T>>( )
+		{
+			@Override
+			public int compare( ChemicalShift<T> a, ChemicalShift<T> b )
+			{
+				return Double.compare( a.getValue(), b.getValue() );
+			}
+		} );
+		
+		// flatten them into parallel arrays
+		m_values = new double[sortedShifts.size()];
+		m_addresses = new ArrayList<T>( sortedShifts.size() );
+		for( int i=0; i<sortedShifts.size(); i++ )
+		{
+			m_values[i] = sortedShifts.get( i ).getValue();
+			m_addresses.add( sortedShifts.get( i ).getAddress() );
+		}
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public int size( )
+	{
+		return m_values.length;
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public void getAddressesNear( Collection<T> out, double value, double windowWidth )
+	{
+		// NOTE: value - shift is monotone in the shift value even after rounding,
+		// so the shifts with |value - shift| <= windowWidth/2 form one contiguous run
+		double halfWidth = windowWidth/2;
+		for( int i=getFirstIndexAbove( m_values, 0, m_values.length, value, halfWidth ); i<m_values.length; i++ )
+		{
+			if( value - m_values[i] < -halfWidth )
+			{
+				break;
+			}
+			out.add( m_addresses.get( i ) );
+		}
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	// returns the first index in [start,stop) whose value satisfies value - values[i] <= halfWidth
+	// values in [start,stop) must be sorted ascending
+	protected static int getFirstIndexAbove( double[] values, int start, int stop, double value, double halfWidth )
+	{
+		int lo = start;
+		int hi = stop;
+		while( lo < hi )
+		{
+			int mid = ( lo + hi ) >>> 1;
+			if( value - values[mid] <= halfWidth )
+			{
+				hi = mid;
+			}
+			else
+			{
+				lo = mid + 1;
+			}
+		}
+		return lo;
+	}
+	
+	// returns the first index in [start,stop) whose value satisfies value - values[i] < -halfWidth
+	// values in [start,stop) must be sorted ascending
+	protected static int getFirstIndexBeyond( double[] values, int start, int stop, double value, double halfWidth )
+	{
+		int lo = start;
+		int hi = stop;
+		while( lo < hi )
+		{
+			int mid = ( lo + hi ) >>> 1;
+			if( value - values[mid] < -halfWidth )
+			{
+				hi = mid;
+			}
+			else
+			{
+				lo = mid + 1;
+			}
+		}
+		return lo;
+	}
+}
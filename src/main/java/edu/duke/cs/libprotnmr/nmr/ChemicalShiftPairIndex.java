@@ -0,0 +1,182 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.nmr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import edu.duke.cs.libprotnmr.protein.AtomAddress;
+
+
+public class ChemicalShiftPairIndex<T extends AtomAddress<T>>
+{
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	// pairs sorted by hydrogen shift
+	private double[] m_hydrogenValues;
+	private List<T> m_addresses;
+	
+	// merge sort tree: at level k, each aligned block of 2^k pairs is sorted by heavy shift
+	private int[][] m_orders;
+	private double[][] m_heavyValues;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public ChemicalShiftPairIndex( Iterable<ChemicalShiftPair<T>> pairs )
+	{
+		// sort the pairs by hydrogen shift
+		List<ChemicalShiftPair<T>> sortedPairs = new ArrayList<ChemicalShiftPair<T>>();
+		for( ChemicalShiftPair<T> pair : pairs )
+		{
+			// NaN shifts are never near anything, and they would break the ordering
+			if( !Double.isNaN( pair.getHydrogenShift().getValue() ) && !Double.isNaN( pair.getHeavyShift().getValue() ) )
+			{
+				sortedPairs.add( pair );
+			}
+		}
+		Collections.sort( sortedPairs, new Comparator<ChemicalShiftPair<T>>( )
+		{
+			@Override
+			public int compare( ChemicalShiftPair<T> a, ChemicalShiftPair<T> b )
+			{
+				return Double.compare( a.getHydrogenShift().getValue(), b.getHydrogenShift().getValue() );
+			}
+		} );
+		int numPairs = sortedPairs.size();
+		m_hydrogenValues = new double[numPairs];
+		m_addresses = new ArrayList<T>( numPairs );
+		double[] heavyValues = new double[numPairs];
+		for( int i=0; i<numPairs; i++ )
+		{
+			ChemicalShiftPair<T> pair = sortedPairs.get( i );
+			m_hydrogenValues[i] = pair.getHydrogenShift().getValue();
+			heavyValues[i] = pair.getHeavyShift().getValue();
+			m_addresses.add( pair.getHydrogenShift().getAddress() );
+		}
+		
+		// build the levels of the tree bottom-up by merging pairs of blocks
+		int numLevels = 1;
+		while( ( 1 << ( numLevels - 1 ) ) < numPairs )
+		{
+			numLevels++;
+		}
+		m_orders = new int[numLevels][];
+		m_heavyValues = new double[numLevels][];
+		m_orders[0] = new int[numPairs];
+		for( int i=0; i<numPairs; i++ )
+		{
+			m_orders[0][i] = i;
+		}
+		m_heavyValues[0] = heavyValues;
+		for( int k=1; k<numLevels; k++ )
+		{
+			int[] prevOrder = m_orders[k-1];
+			double[] prevValues = m_heavyValues[k-1];
+			int[] order = new int[numPairs];
+			double[] values = new double[numPairs];
+			int halfSize = 1 << ( k - 1 );
+			for( int start=0; start<numPairs; start+=halfSize*2 )
+			{
+				int mid = Math.min( start + halfSize, numPairs );
+				int stop = Math.min( start + halfSize*2, numPairs );
+				int a = start;
+				int b = mid;
+				for( int i=start; i<stop; i++ )
+				{
+					if( b >= stop || ( a < mid && prevValues[a] <= prevValues[b] ) )
+					{
+						order[i] = prevOrder[a];
+						values[i] = prevValues[a++];
+					}
+					else
+					{
+						order[i] = prevOrder[b];
+						values[i] = prevValues[b++];
+					}
+				}
+			}
+			m_orders[k] = order;
+			m_heavyValues[k] = values;
+		}
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public int size( )
+	{
+		return m_hydrogenValues.length;
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public void getAddressesNear( Collection<T> out, double hydrogenValue, double heavyValue, double hydrogenWindowWidth, double heavyWindowWidth )
+	{
+		// find the run of pairs inside the hydrogen window
+		double hydrogenHalfWidth = hydrogenWindowWidth/2;
+		int start = ChemicalShiftIndex.getFirstIndexAbove( m_hydrogenValues, 0, m_hydrogenValues.length, hydrogenValue, hydrogenHalfWidth );
+		int stop = ChemicalShiftIndex.getFirstIndexBeyond( m_hydrogenValues, start, m_hydrogenValues.length, hydrogenValue, hydrogenHalfWidth );
+		
+		// cover the run with aligned blocks and search each block on the heavy shift
+		double heavyHalfWidth = heavyWindowWidth/2;
+		while( start < stop )
+		{
+			int k = 0;
+			while( k + 1 < m_orders.length
+				&& ( start & ( ( 1 << ( k + 1 ) ) - 1 ) ) == 0
+				&& start + ( 1 << ( k + 1 ) ) <= stop )
+			{
+				k++;
+			}
+			int blockStop = start + ( 1 << k );
+			int[] order = m_orders[k];
+			double[] values = m_heavyValues[k];
+			for( int i=ChemicalShiftIndex.getFirstIndexAbove( values, start, blockStop, heavyValue, heavyHalfWidth ); i<blockStop; i++ )
+			{
+				if( heavyValue - values[i] < -heavyHalfWidth )
+				{
+					break;
+				}
+				out.add( m_addresses.get( order[i] ) );
+			}
+			start = blockStop;
+		}
+	}
+}
@@ -37,6 +37,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 
+import edu.duke.cs.libprotnmr.io.Compression;
 import edu.duke.cs.libprotnmr.protein.AminoAcid;
 import edu.duke.cs.libprotnmr.protein.AtomAddressReadable;
 import edu.duke.cs.libprotnmr.protein.Element;
@@ -65,7 +66,7 @@ public class ChemicalShiftReader
 	{
 		ArrayList<ChemicalShift<AtomAddressReadable>> shifts = new ArrayList<ChemicalShift<AtomAddressReadable>>();
 		
-		BufferedReader reader = new BufferedReader( new InputStreamReader( in ) );
+		BufferedReader reader = new BufferedReader( new InputStreamReader( Compression.decompress( in ) ) );
 		String line = null;
 		while( ( line = reader.readLine() ) != null )
 		{
@@ -36,6 +36,7 @@ import edu.duke.cs.libprotnmr.mapping.AddressMapper;
 import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
 import edu.duke.cs.libprotnmr.protein.AtomAddressReadable;
 import edu.duke.cs.libprotnmr.protein.AtomAddressSubunitResidue;
+import edu.duke.cs.libprotnmr.protein.Ensemble;
 import edu.duke.cs.libprotnmr.protein.Protein;
 import edu.duke.cs.libprotnmr.protein.Residue;
 import edu.duke.cs.libprotnmr.protein.Sequences;
@@ -101,6 +102,21 @@ public class DistanceRestraintMapper
 		return internals;
 	}
 	
+	public static ArrayList<DistanceRestraint<AtomAddressInternal>> mapReadableToInternal( List<DistanceRestraint<AtomAddressReadable>> readables, Ensemble ensemble )
+	{
+		// handle pseudoatoms
+		PseudoatomBuilder builder = PseudoatomBuilder.getInstance();
+		boolean hasPseudoatoms = builder.buildDistanceRestraints( ensemble.getTopology().getSequences(), readables ) > 0;
+		if( hasPseudoatoms && !builder.hasPseudoatoms( ensemble.getTopology() ) )
+		{
+			// the coordinates are already packed, so we can't add atoms now
+			throw new IllegalArgumentException( "Restraints need pseudoatoms! Build pseudoatoms before creating the ensemble." );
+		}
+		
+		// all the models share the topology, so we only have to map once
+		return mapReadableToInternal( readables, ensemble.getTopology() );
+	}
+	
 	public static ArrayList<DistanceRestraint<AtomAddressInternal>> mapReadableToInternal( List<DistanceRestraint<AtomAddressReadable>> readables, Protein protein )
 	{
 		return mapReadableToInternal( readables, protein, false );
@@ -28,13 +28,16 @@ package edu.duke.cs.libprotnmr.nmr;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
 
 import edu.duke.cs.libprotnmr.bond.BondGraphBuilder;
 import edu.duke.cs.libprotnmr.io.Transformer;
+import edu.duke.cs.libprotnmr.perf.WorkCrew;
 import edu.duke.cs.libprotnmr.protein.AminoAcid;
 import edu.duke.cs.libprotnmr.protein.AtomAddressReadable;
 import edu.duke.cs.libprotnmr.protein.Element;
@@ -50,6 +53,137 @@ public class DistanceRestraintReassigner
 	private static Logger m_log = LogManager.getLogger(DistanceRestraintReassigner.class);
 	
 	
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	private static final int ChunkSize = 256;
+	private static final int ChunksInFlightPerWorker = 4;
+	
+	// read-only lookup structures shared by all the workers
+	private static class Lookups
+	{
+		public Sequence sequence;
+		public boolean shiftsHaveSubunitAssignments;
+		public Map<AtomAddressReadable,ChemicalShift<AtomAddressReadable>> hydrogenLookup;
+		public Map<AtomAddressReadable,ChemicalShiftPair<AtomAddressReadable>> carbonPairsLookup;
+		public Map<AtomAddressReadable,ChemicalShiftPair<AtomAddressReadable>> nitrogenPairsLookup;
+		public ChemicalShiftIndex<AtomAddressReadable> hydrogenIndex;
+		public ChemicalShiftPairIndex<AtomAddressReadable> carbonPairsIndex;
+		public ChemicalShiftPairIndex<AtomAddressReadable> nitrogenPairsIndex;
+		public double hydrogenWindowWidth;
+		public double carbonWindowWidth;
+		public double nitrogenWindowWidth;
+		
+		public Lookups( Sequence sequence, Iterable<ChemicalShift<AtomAddressReadable>> hydrogenShifts, Iterable<ChemicalShiftPair<AtomAddressReadable>> carbonPairs, Iterable<ChemicalShiftPair<AtomAddressReadable>> nitrogenPairs, double hydrogenWindowWidth, double carbonWindowWidth, double nitrogenWindowWidth )
+		{
+			this.sequence = sequence;
+			
+			// do the chemical shifts have subunit assignments?
+			shiftsHaveSubunitAssignments = doShiftsHaveSubunitAssignments( hydrogenShifts );
+			
+			// build the lookup structures
+			hydrogenLookup = ChemicalShiftMapper.buildShiftLookup( hydrogenShifts );
+			carbonPairsLookup = ChemicalShiftMapper.buildPairLookup( carbonPairs );
+			nitrogenPairsLookup = ChemicalShiftMapper.buildPairLookup( nitrogenPairs );
+			hydrogenIndex = new ChemicalShiftIndex<AtomAddressReadable>( hydrogenLookup.values() );
+			carbonPairsIndex = new ChemicalShiftPairIndex<AtomAddressReadable>( carbonPairsLookup.values() );
+			nitrogenPairsIndex = new ChemicalShiftPairIndex<AtomAddressReadable>( nitrogenPairsLookup.values() );
+			
+			this.hydrogenWindowWidth = hydrogenWindowWidth;
+			this.carbonWindowWidth = carbonWindowWidth;
+			this.nitrogenWindowWidth = nitrogenWindowWidth;
+		}
+	}
+	
+	// temporary storage that gets reused from one restraint to the next
+	private static class Scratch
+	{
+		public HashSet<AtomAddressReadable> nearbyAddresses = new HashSet<AtomAddressReadable>();
+		public List<ChemicalShift<AtomAddressReadable>> shifts = new ArrayList<ChemicalShift<AtomAddressReadable>>();
+		public List<ChemicalShiftPair<AtomAddressReadable>> pairs = new ArrayList<ChemicalShiftPair<AtomAddressReadable>>();
+	}
+	
+	private static class Chunk
+	{
+		public int index;
+		public List<DistanceRestraint<AtomAddressReadable>> restraints;
+		public List<DistanceRestraint<AtomAddressReadable>> reassignedRestraints;
+		
+		public Chunk( int index )
+		{
+			this.index = index;
+			restraints = new ArrayList<DistanceRestraint<AtomAddressReadable>>( ChunkSize );
+			reassignedRestraints = null;
+		}
+	}
+	
+	// hands finished chunks to the listener in input order
+	private static class ChunkSequencer
+	{
+		private ReassignmentListener m_listener;
+		private Map<Integer,Chunk> m_finishedChunks;
+		private int m_nextIndex;
+		private Semaphore m_window;
+		private boolean m_failed;
+		
+		public ChunkSequencer( ReassignmentListener listener, int maxChunksInFlight )
+		{
+			m_listener = listener;
+			m_finishedChunks = new HashMap<Integer,Chunk>();
+			m_nextIndex = 0;
+			m_window = new Semaphore( maxChunksInFlight );
+			m_failed = false;
+		}
+		
+		public void start( )
+		{
+			// blocks until there's room in the window, so one slow chunk can't make the others pile up forever
+			m_window.acquireUninterruptibly();
+		}
+		
+		public synchronized void finish( Chunk chunk )
+		{
+			if( m_failed )
+			{
+				return;
+			}
+			m_finishedChunks.put( chunk.index, chunk );
+			while( true )
+			{
+				Chunk nextChunk = m_finishedChunks.remove( m_nextIndex );
+				if( nextChunk == null )
+				{
+					break;
+				}
+				for( DistanceRestraint<AtomAddressReadable> restraint : nextChunk.reassignedRestraints )
+				{
+					m_listener.restraintReassigned( restraint );
+				}
+				m_nextIndex++;
+				m_window.release();
+			}
+		}
+		
+		public synchronized void fail( )
+		{
+			// the missing chunk will never show up, so drop everything and unblock the producer for good
+			if( m_failed )
+			{
+				return;
+			}
+			m_failed = true;
+			m_finishedChunks.clear();
+			m_window.release( Integer.MAX_VALUE/2 );
+		}
+		
+		public synchronized boolean isEmpty( )
+		{
+			return m_finishedChunks.isEmpty();
+		}
+	}
+	
+	
 	/**************************
 	 *   Static Methods
 	 **************************/
@@ -60,12 +194,14 @@ public class DistanceRestraintReassigner
 		boolean shiftsHaveSubunitAssignments = doShiftsHaveSubunitAssignments( hydrogenShifts );
 		
 		Map<AtomAddressReadable,ChemicalShift<AtomAddressReadable>> lookup = ChemicalShiftMapper.buildShiftLookup( hydrogenShifts );
+		ChemicalShiftIndex<AtomAddressReadable> index = new ChemicalShiftIndex<AtomAddressReadable>( lookup.values() );
+		Scratch scratch = new Scratch();
 		ArrayList<DistanceRestraint<AtomAddressReadable>> reassignedRestraints = new ArrayList<DistanceRestraint<AtomAddressReadable>>( restraints.size() );
 		for( DistanceRestraint<AtomAddressReadable> restraint : restraints )
 		{
 			DistanceRestraint<AtomAddressReadable> reassignedRestraint = new DistanceRestraint<AtomAddressReadable>( restraint );
-			reassignedRestraint.setLefts( getAddressesNearAddress1D( sequence, restraint.getLefts(), lookup, hydrogenWindowWidth, shiftsHaveSubunitAssignments ) );
-			reassignedRestraint.setRights( getAddressesNearAddress1D( sequence, restraint.getRights(), lookup, hydrogenWindowWidth, shiftsHaveSubunitAssignments ) );
+			reassignedRestraint.setLefts( getAddressesNearAddress1D( sequence, restraint.getLefts(), lookup, index, hydrogenWindowWidth, shiftsHaveSubunitAssignments, scratch ) );
+			reassignedRestraint.setRights( getAddressesNearAddress1D( sequence, restraint.getRights(), lookup, index, hydrogenWindowWidth, shiftsHaveSubunitAssignments, scratch ) );
 			reassignedRestraints.add( reassignedRestraint );
 			restorePseudoatoms( sequence, restraint, reassignedRestraint );
 		}
@@ -86,108 +222,105 @@ public class DistanceRestraintReassigner
 	
 	public static List<DistanceRestraint<AtomAddressReadable>> reassignDouble2DWithPairs( Sequence sequence, List<DistanceRestraint<AtomAddressReadable>> restraints, Iterable<ChemicalShift<AtomAddressReadable>> hydrogenShifts, Iterable<ChemicalShiftPair<AtomAddressReadable>> carbonPairs, Iterable<ChemicalShiftPair<AtomAddressReadable>> nitrogenPairs, double hydrogenWindowWidth, double carbonWindowWidth, double nitrogenWindowWidth )
 	{
-		// do the chemical shifts have subunit assignments?
-		boolean shiftsHaveSubunitAssignments = doShiftsHaveSubunitAssignments( hydrogenShifts );
-		
-		// build the lookup structures
-		Map<AtomAddressReadable,ChemicalShift<AtomAddressReadable>> hydrogenLookup = ChemicalShiftMapper.buildShiftLookup( hydrogenShifts );
-		Map<AtomAddressReadable,ChemicalShiftPair<AtomAddressReadable>> carbonPairsLookup = ChemicalShiftMapper.buildPairLookup( carbonPairs );
-		Map<AtomAddressReadable,ChemicalShiftPair<AtomAddressReadable>> nitrogenPairsLookup = ChemicalShiftMapper.buildPairLookup( nitrogenPairs );
-		
+		Lookups lookups = new Lookups( sequence, hydrogenShifts, carbonPairs, nitrogenPairs, hydrogenWindowWidth, carbonWindowWidth, nitrogenWindowWidth );
+		Scratch scratch = new Scratch();
 		ArrayList<DistanceRestraint<AtomAddressReadable>> reassignedRestraints = new ArrayList<DistanceRestraint<AtomAddressReadable>>( restraints.size() );
 		for( DistanceRestraint<AtomAddressReadable> restraint : restraints )
 		{
-			DistanceRestraint<AtomAddressReadable> reassignedRestraint = new DistanceRestraint<AtomAddressReadable>( restraint );
-			
-			// which was the 2D side? It probably only has one assignment
-			// NOTE: we can't ever really know which one was the 2D side, so it's not critical that we get it right here
-			boolean swapSides = false;
-			Set<AtomAddressReadable> side2D = null;
-			Set<AtomAddressReadable> side1D = null;
-			if( restraint.getLefts().size() == 1 )
-			{
-				side2D = restraint.getLefts();
-				side1D = restraint.getRights();
-			}
-			else
-			{
-				side2D = restraint.getRights();
-				side1D = restraint.getLefts();
-				swapSides = true;
-			}
-			
-			// make sure we always add the original assignments (need a deep copy)
-			Set<AtomAddressReadable> side2DCopy = new HashSet<AtomAddressReadable>();
-			for( AtomAddressReadable address : side2D )
-			{
-				side2DCopy.add( new AtomAddressReadable( address ) );
-			}
-			reassignedRestraint.setLefts( side2DCopy );
-			Set<AtomAddressReadable> side1DCopy = new HashSet<AtomAddressReadable>();
-			for( AtomAddressReadable address : side1D )
+			reassignedRestraints.add( reassignDouble2D( lookups, restraint, scratch ) );
+		}
+		return reassignedRestraints;
+	}
+	
+	public static List<DistanceRestraint<AtomAddressReadable>> reassignDouble2DWithPairs( Sequence sequence, List<DistanceRestraint<AtomAddressReadable>> restraints, Iterable<ChemicalShift<AtomAddressReadable>> hydrogenShifts, Iterable<ChemicalShiftPair<AtomAddressReadable>> carbonPairs, Iterable<ChemicalShiftPair<AtomAddressReadable>> nitrogenPairs, double hydrogenWindowWidth, double carbonWindowWidth, double nitrogenWindowWidth, int numWorkers )
+	{
+		final ArrayList<DistanceRestraint<AtomAddressReadable>> reassignedRestraints = new ArrayList<DistanceRestraint<AtomAddressReadable>>( restraints.size() );
+		reassignDouble2DWithPairs( sequence, restraints, hydrogenShifts, carbonPairs, nitrogenPairs, hydrogenWindowWidth, carbonWindowWidth, nitrogenWindowWidth, numWorkers, new ReassignmentListener( )
+		{
+			@Override
+			public void restraintReassigned( DistanceRestraint<AtomAddressReadable> restraint )
 			{
-				side1DCopy.add( new AtomAddressReadable( address ) );
+				reassignedRestraints.add( restraint );
 			}
-			reassignedRestraint.setRights( side1DCopy );
-			
-			// handle the 2D side
-			Element heavyElement = getHeavyElement( sequence, side2D.iterator().next() );
-			if( heavyElement == Element.Carbon )
+		} );
+		return reassignedRestraints;
+	}
+	
+	public static void reassignDouble2DWithPairs( Sequence sequence, Iterable<DistanceRestraint<AtomAddressReadable>> restraints, Iterable<ChemicalShift<AtomAddressReadable>> hydrogenShifts, Iterable<ChemicalShiftPair<AtomAddressReadable>> carbonPairs, Iterable<ChemicalShiftPair<AtomAddressReadable>> nitrogenPairs, double hydrogenWindowWidth, double carbonWindowWidth, double nitrogenWindowWidth, int numWorkers, ReassignmentListener listener )
+	{
+		// NOTE: the listener gets called from the worker threads, but never concurrently and always in input order
+		// if anything fails (including the listener), the failure is re-thrown here after the workers stop
+		if( numWorkers <= 0 )
+		{
+			throw new IllegalArgumentException( "Need at least one worker, not " + numWorkers );
+		}
+		final Lookups lookups = new Lookups( sequence, hydrogenShifts, carbonPairs, nitrogenPairs, hydrogenWindowWidth, carbonWindowWidth, nitrogenWindowWidth );
+		final ChunkSequencer sequencer = new ChunkSequencer( listener, numWorkers*ChunksInFlightPerWorker );
+		final ThreadLocal<Scratch> scratches = new ThreadLocal<Scratch>( )
+		{
+			@Override
+			protected Scratch initialValue( )
 			{
-				reassignedRestraint.getLefts().addAll( getAddressesNearAddress2D(
-					sequence,
-					side2D,
-					hydrogenLookup,
-					carbonPairsLookup,
-					hydrogenWindowWidth,
-					carbonWindowWidth,
-					shiftsHaveSubunitAssignments
-				) );
+				return new Scratch();
 			}
-			else if( heavyElement == Element.Nitrogen )
+		};
+		
+		// the singletons are built lazily, so build them here before the workers race for them
+		BondGraphBuilder.getInstance();
+		PseudoatomBuilder.getInstance();
+		
+		WorkCrew<Chunk> workCrew = new WorkCrew<Chunk>( )
+		{
+			@Override
+			protected void processInWorkerThread( Chunk chunk )
 			{
-				reassignedRestraint.getLefts().addAll( getAddressesNearAddress2D(
-					sequence,
-					side2D,
-					hydrogenLookup,
-					nitrogenPairsLookup,
-					hydrogenWindowWidth,
-					nitrogenWindowWidth,
-					shiftsHaveSubunitAssignments
-				) );
+				try
+				{
+					Scratch scratch = scratches.get();
+					chunk.reassignedRestraints = new ArrayList<DistanceRestraint<AtomAddressReadable>>( chunk.restraints.size() );
+					for( DistanceRestraint<AtomAddressReadable> restraint : chunk.restraints )
+					{
+						chunk.reassignedRestraints.add( reassignDouble2D( lookups, restraint, scratch ) );
+					}
+					sequencer.finish( chunk );
+				}
+				catch( RuntimeException ex )
+				{
+					sequencer.fail();
+					throw ex;
+				}
 			}
-			else
+		};
+		workCrew.startWorkers( numWorkers );
+		
+		// stream the restraints to the workers in chunks
+		Chunk chunk = new Chunk( 0 );
+		for( DistanceRestraint<AtomAddressReadable> restraint : restraints )
+		{
+			if( workCrew.hasFailed() )
 			{
-				assert( false ) : "Unknown element: " + heavyElement;
+				break;
 			}
-			
-			// handle the 1D side
-			reassignedRestraint.getRights().addAll( getAddressesNearAddress1D(
-				sequence,
-				side1D,
-				hydrogenLookup,
-				hydrogenWindowWidth,
-				shiftsHaveSubunitAssignments
-			) );
-			
-			if( swapSides )
+			chunk.restraints.add( restraint );
+			if( chunk.restraints.size() == ChunkSize )
 			{
-				reassignedRestraint.swap();
+				sequencer.start();
+				workCrew.addWork( chunk );
+				chunk = new Chunk( chunk.index + 1 );
 			}
-			reassignedRestraints.add( reassignedRestraint );
-			
-			restorePseudoatoms( sequence, restraint, reassignedRestraint );
 		}
-		
-		return reassignedRestraints;
+		if( !chunk.restraints.isEmpty() && !workCrew.hasFailed() )
+		{
+			sequencer.start();
+			workCrew.addWork( chunk );
+		}
+		workCrew.waitUntilWorkIsFinished();
+		assert( sequencer.isEmpty() );
 	}
 	
 	public static HashSet<AtomAddressReadable> getAddressesNearShift1D( Iterable<ChemicalShift<AtomAddressReadable>> shifts, double value, double windowSize )
 	{
 		HashSet<AtomAddressReadable> nearbyAddresses = new HashSet<AtomAddressReadable>();
-				
-		// NOTE: this could probably be sped up to O(logn+k) using a geometric algorithm
-		// but it's probably not worth the trouble to implement
 		for( ChemicalShift<AtomAddressReadable> shift : shifts )
 		{		
 			if( isNearby1D( shift, value, windowSize ) )
@@ -198,9 +331,15 @@ public class DistanceRestraintReassigner
 		return nearbyAddresses;
 	}
 	
+	public static HashSet<AtomAddressReadable> getAddressesNearShift1D( ChemicalShiftIndex<AtomAddressReadable> index, double value, double windowSize )
+	{
+		HashSet<AtomAddressReadable> nearbyAddresses = new HashSet<AtomAddressReadable>();
+		index.getAddressesNear( nearbyAddresses, value, windowSize );
+		return nearbyAddresses;
+	}
+	
 	public static HashSet<AtomAddressReadable> getAddressesNearShift2D( Iterable<ChemicalShiftPair<AtomAddressReadable>> pairs, double hydrogenValue, double heavyValue, double hydrogenWindowSize, double heavyWindowSize )
 	{
-		// NOTE: again, we could probably implement a fast geometric algorithm here, but it's probably not worth the trouble
 		HashSet<AtomAddressReadable> nearbyAddresses = new HashSet<AtomAddressReadable>();
 		for( ChemicalShiftPair<AtomAddressReadable> pair : pairs )
 		{
@@ -212,11 +351,110 @@ public class DistanceRestraintReassigner
 		return nearbyAddresses;
 	}
 	
+	public static HashSet<AtomAddressReadable> getAddressesNearShift2D( ChemicalShiftPairIndex<AtomAddressReadable> index, double hydrogenValue, double heavyValue, double hydrogenWindowSize, double heavyWindowSize )
+	{
+		HashSet<AtomAddressReadable> nearbyAddresses = new HashSet<AtomAddressReadable>();
+		index.getAddressesNear( nearbyAddresses, hydrogenValue, heavyValue, hydrogenWindowSize, heavyWindowSize );
+		return nearbyAddresses;
+	}
+	
 	
 	/**************************
 	 *   Static Functions
 	 **************************/
 	
+	private static DistanceRestraint<AtomAddressReadable> reassignDouble2D( Lookups lookups, DistanceRestraint<AtomAddressReadable> restraint, Scratch scratch )
+	{
+		DistanceRestraint<AtomAddressReadable> reassignedRestraint = new DistanceRestraint<AtomAddressReadable>( restraint );
+		
+		// which was the 2D side? It probably only has one assignment
+		// NOTE: we can't ever really know which one was the 2D side, so it's not critical that we get it right here
+		boolean swapSides = false;
+		Set<AtomAddressReadable> side2D = null;
+		Set<AtomAddressReadable> side1D = null;
+		if( restraint.getLefts().size() == 1 )
+		{
+			side2D = restraint.getLefts();
+			side1D = restraint.getRights();
+		}
+		else
+		{
+			side2D = restraint.getRights();
+			side1D = restraint.getLefts();
+			swapSides = true;
+		}
+		
+		// make sure we always add the original assignments (need a deep copy)
+		Set<AtomAddressReadable> side2DCopy = new HashSet<AtomAddressReadable>();
+		for( AtomAddressReadable address : side2D )
+		{
+			side2DCopy.add( new AtomAddressReadable( address ) );
+		}
+		reassignedRestraint.setLefts( side2DCopy );
+		Set<AtomAddressReadable> side1DCopy = new HashSet<AtomAddressReadable>();
+		for( AtomAddressReadable address : side1D )
+		{
+			side1DCopy.add( new AtomAddressReadable( address ) );
+		}
+		reassignedRestraint.setRights( side1DCopy );
+		
+		// handle the 2D side
+		Element heavyElement = getHeavyElement( lookups.sequence, side2D.iterator().next() );
+		if( heavyElement == Element.Carbon )
+		{
+			addAddressesNearAddress2D(
+				side2DCopy,
+				lookups.sequence,
+				side2D,
+				lookups.carbonPairsLookup,
+				lookups.carbonPairsIndex,
+				lookups.hydrogenWindowWidth,
+				lookups.carbonWindowWidth,
+				lookups.shiftsHaveSubunitAssignments,
+				scratch
+			);
+		}
+		else if( heavyElement == Element.Nitrogen )
+		{
+			addAddressesNearAddress2D(
+				side2DCopy,
+				lookups.sequence,
+				side2D,
+				lookups.nitrogenPairsLookup,
+				lookups.nitrogenPairsIndex,
+				lookups.hydrogenWindowWidth,
+				lookups.nitrogenWindowWidth,
+				lookups.shiftsHaveSubunitAssignments,
+				scratch
+			);
+		}
+		else
+		{
+			assert( false ) : "Unknown element: " + heavyElement;
+		}
+		
+		// handle the 1D side
+		addAddressesNearAddress1D(
+			side1DCopy,
+			lookups.sequence,
+			side1D,
+			lookups.hydrogenLookup,
+			lookups.hydrogenIndex,
+			lookups.hydrogenWindowWidth,
+			lookups.shiftsHaveSubunitAssignments,
+			scratch
+		);
+		
+		if( swapSides )
+		{
+			reassignedRestraint.swap();
+		}
+		
+		restorePseudoatoms( lookups.sequence, restraint, reassignedRestraint );
+		
+		return reassignedRestraint;
+	}
+	
 	private static boolean doShiftsHaveSubunitAssignments( Iterable<ChemicalShift<AtomAddressReadable>> shifts )
 	{
 		for( ChemicalShift<AtomAddressReadable> shift : shifts )
@@ -229,17 +467,22 @@ public class DistanceRestraintReassigner
 		return false;
 	}
 	
-	private static Set<AtomAddressReadable> getAddressesNearAddress1D( Sequence sequence, Iterable<AtomAddressReadable> addresses, Map<AtomAddressReadable,ChemicalShift<AtomAddressReadable>> hydrogenShifts, double hydrogenWindowWidth, boolean shiftsHaveSubunitAssignments )
+	private static Set<AtomAddressReadable> getAddressesNearAddress1D( Sequence sequence, Iterable<AtomAddressReadable> addresses, Map<AtomAddressReadable,ChemicalShift<AtomAddressReadable>> hydrogenShifts, ChemicalShiftIndex<AtomAddressReadable> hydrogenIndex, double hydrogenWindowWidth, boolean shiftsHaveSubunitAssignments, Scratch scratch )
 	{
 		HashSet<AtomAddressReadable> relaxedAddresses = new HashSet<AtomAddressReadable>();
+		addAddressesNearAddress1D( relaxedAddresses, sequence, addresses, hydrogenShifts, hydrogenIndex, hydrogenWindowWidth, shiftsHaveSubunitAssignments, scratch );
+		return relaxedAddresses;
+	}
+	
+	private static void addAddressesNearAddress1D( Set<AtomAddressReadable> relaxedAddresses, Sequence sequence, Iterable<AtomAddressReadable> addresses, Map<AtomAddressReadable,ChemicalShift<AtomAddressReadable>> hydrogenShifts, ChemicalShiftIndex<AtomAddressReadable> hydrogenIndex, double hydrogenWindowWidth, boolean shiftsHaveSubunitAssignments, Scratch scratch )
+	{
 		for( AtomAddressReadable address : addresses )
 		{
-			relaxedAddresses.addAll( getAddressesNearAddress1D( sequence, address, hydrogenShifts, hydrogenWindowWidth, shiftsHaveSubunitAssignments ) );
+			addAddressesNearAddress1D( relaxedAddresses, sequence, address, hydrogenShifts, hydrogenIndex, hydrogenWindowWidth, shiftsHaveSubunitAssignments, scratch );
 		}
-		return relaxedAddresses;
 	}
 	
-	private static Set<AtomAddressReadable> getAddressesNearAddress1D( Sequence sequence, AtomAddressReadable address, Map<AtomAddressReadable,ChemicalShift<AtomAddressReadable>> hydrogenShifts, double hydrogenWindowWidth, boolean shiftsHaveSubunitAssignments )
+	private static void addAddressesNearAddress1D( Set<AtomAddressReadable> relaxedAddresses, Sequence sequence, AtomAddressReadable address, Map<AtomAddressReadable,ChemicalShift<AtomAddressReadable>> hydrogenShifts, ChemicalShiftIndex<AtomAddressReadable> hydrogenIndex, double hydrogenWindowWidth, boolean shiftsHaveSubunitAssignments, Scratch scratch )
 	{
 		// if the shifts don't have subunit assignments, remove the subunit assignment of the address
 		AtomAddressReadable addressCopy = new AtomAddressReadable( address );
@@ -249,7 +492,8 @@ public class DistanceRestraintReassigner
 		}
 		
 		// find all the chemical shifts related to this address (pseudoatoms make this complicated)
-		List<ChemicalShift<AtomAddressReadable>> addressShifts = new ArrayList<ChemicalShift<AtomAddressReadable>>();
+		List<ChemicalShift<AtomAddressReadable>> addressShifts = scratch.shifts;
+		addressShifts.clear();
 		
 		// try looking for a shift for the address directly
 		ChemicalShift<AtomAddressReadable> shift = hydrogenShifts.get( addressCopy );
@@ -279,34 +523,32 @@ public class DistanceRestraintReassigner
 		}
 		
 		// always add the original address
-		HashSet<AtomAddressReadable> relaxedAddresses = new HashSet<AtomAddressReadable>(); 
 		relaxedAddresses.add( new AtomAddressReadable( address ) );
 		
 		// then add other addresses of nearby shifts 
 		for( ChemicalShift<AtomAddressReadable> addressShift : addressShifts )
 		{
-			Set<AtomAddressReadable> addresses = getAddressesNearShift1D(
-				hydrogenShifts.values(),
-				addressShift.getValue(),
-				hydrogenWindowWidth
-			);
+			Set<AtomAddressReadable> addresses = scratch.nearbyAddresses;
+			addresses.clear();
+			hydrogenIndex.getAddressesNear( addresses, addressShift.getValue(), hydrogenWindowWidth );
 			addresses.remove( address );
-			relaxedAddresses.addAll( changeToSubunit( address.getSubunitName(), addresses ) );
+			for( AtomAddressReadable nearbyAddress : addresses )
+			{
+				relaxedAddresses.add( changeToSubunit( address.getSubunitName(), nearbyAddress ) );
+			}
 		}
-		return relaxedAddresses;
+		addressShifts.clear();
 	}
 	
-	private static Set<AtomAddressReadable> getAddressesNearAddress2D( Sequence sequence, Iterable<AtomAddressReadable> addresses, Map<AtomAddressReadable,ChemicalShift<AtomAddressReadable>> hydrogenShifts, Map<AtomAddressReadable,ChemicalShiftPair<AtomAddressReadable>> heavyPairs, double hydrogenWindowWidth, double heavyWindowWidth, boolean shiftsHaveSubunitAssignments )
+	private static void addAddressesNearAddress2D( Set<AtomAddressReadable> relaxedAddresses, Sequence sequence, Iterable<AtomAddressReadable> addresses, Map<AtomAddressReadable,ChemicalShiftPair<AtomAddressReadable>> heavyPairs, ChemicalShiftPairIndex<AtomAddressReadable> heavyIndex, double hydrogenWindowWidth, double heavyWindowWidth, boolean shiftsHaveSubunitAssignments, Scratch scratch )
 	{
-		HashSet<AtomAddressReadable> relaxedAddresses = new HashSet<AtomAddressReadable>();
 		for( AtomAddressReadable address : addresses )
 		{
-			relaxedAddresses.addAll( getAddressesNearAddress2D( sequence, address, hydrogenShifts, heavyPairs, hydrogenWindowWidth, heavyWindowWidth, shiftsHaveSubunitAssignments ) );
+			addAddressesNearAddress2D( relaxedAddresses, sequence, address, heavyPairs, heavyIndex, hydrogenWindowWidth, heavyWindowWidth, shiftsHaveSubunitAssignments, scratch );
 		}
-		return relaxedAddresses;
 	}
 	
-	private static Set<AtomAddressReadable> getAddressesNearAddress2D( Sequence sequence, AtomAddressReadable address, Map<AtomAddressReadable,ChemicalShift<AtomAddressReadable>> hydrogenShifts, Map<AtomAddressReadable,ChemicalShiftPair<AtomAddressReadable>> heavyPairs, double hydrogenWindowWidth, double heavyWindowWidth, boolean shiftsHaveSubunitAssignments )
+	private static void addAddressesNearAddress2D( Set<AtomAddressReadable> relaxedAddresses, Sequence sequence, AtomAddressReadable address, Map<AtomAddressReadable,ChemicalShiftPair<AtomAddressReadable>> heavyPairs, ChemicalShiftPairIndex<AtomAddressReadable> heavyIndex, double hydrogenWindowWidth, double heavyWindowWidth, boolean shiftsHaveSubunitAssignments, Scratch scratch )
 	{
 		// if the shifts don't have subunit assignments, remove the subunit assignment of the address
 		AtomAddressReadable addressCopy = new AtomAddressReadable( address );
@@ -316,7 +558,8 @@ public class DistanceRestraintReassigner
 		}
 		
 		// find all the chemical shifts related to this address (pseudoatoms make this complicated)
-		List<ChemicalShiftPair<AtomAddressReadable>> addressPairs = new ArrayList<ChemicalShiftPair<AtomAddressReadable>>();
+		List<ChemicalShiftPair<AtomAddressReadable>> addressPairs = scratch.pairs;
+		addressPairs.clear();
 		
 		// try looking for a shift for the address directly
 		ChemicalShiftPair<AtomAddressReadable> pair = heavyPairs.get( addressCopy );
@@ -345,20 +588,24 @@ public class DistanceRestraintReassigner
 			m_log.warn( "No chemical shift pair found for atom: " + address );
 		}
 		
-		// get all the addresses of nearby shifts 
-		HashSet<AtomAddressReadable> relaxedAddresses = new HashSet<AtomAddressReadable>();
+		// add all the addresses of nearby shifts 
 		for( ChemicalShiftPair<AtomAddressReadable> addressPair : addressPairs )
 		{
-			Set<AtomAddressReadable> addresses = getAddressesNearShift2D(
-				heavyPairs.values(),
+			Set<AtomAddressReadable> addresses = scratch.nearbyAddresses;
+			addresses.clear();
+			heavyIndex.getAddressesNear(
+				addresses,
 				addressPair.getHydrogenShift().getValue(),
 				addressPair.getHeavyShift().getValue(),
 				hydrogenWindowWidth,
 				heavyWindowWidth
 			);
-			relaxedAddresses.addAll( changeToSubunit( address.getSubunitName(), addresses ) );
+			for( AtomAddressReadable nearbyAddress : addresses )
+			{
+				relaxedAddresses.add( changeToSubunit( address.getSubunitName(), nearbyAddress ) );
+			}
 		}
-		return relaxedAddresses;
+		addressPairs.clear();
 	}
 	
 	private static boolean isNearby1D( ChemicalShift<AtomAddressReadable> shift, double value, double windowWidth )
@@ -404,16 +651,6 @@ public class DistanceRestraintReassigner
 		return subAddresses;
 	}
 	
-	private static List<AtomAddressReadable> changeToSubunit( char subunitName, Iterable<AtomAddressReadable> addresses )
-	{
-		List<AtomAddressReadable> changedAddresses = new ArrayList<AtomAddressReadable>();
-		for( AtomAddressReadable address : addresses )
-		{
-			changedAddresses.add( changeToSubunit( subunitName, address ) );
-		}
-		return changedAddresses;
-	}
-	
 	private static AtomAddressReadable changeToSubunit( char subunitName, AtomAddressReadable address )
 	{
 		AtomAddressReadable changedAddress = new AtomAddressReadable( address );
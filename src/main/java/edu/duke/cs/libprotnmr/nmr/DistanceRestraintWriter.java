@@ -27,12 +27,12 @@
 package edu.duke.cs.libprotnmr.nmr;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
+import edu.duke.cs.libprotnmr.io.Compression;
 import edu.duke.cs.libprotnmr.protein.AtomAddressReadable;
 
 
@@ -61,7 +61,7 @@ public class DistanceRestraintWriter
 	public void write( File file, List<DistanceRestraint<AtomAddressReadable>> restraints )
 	throws IOException
 	{
-		FileWriter out = new FileWriter( file );
+		Writer out = Compression.openWriter( file );
 		write( out, restraints );
 		out.close();
 	}
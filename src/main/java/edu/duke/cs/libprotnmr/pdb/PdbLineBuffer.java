@@ -0,0 +1,260 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.pdb;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+
+class PdbLineBuffer
+{
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	private static final long[] PowersOfTen = {
+		1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+	};
+	
+	// beyond this magnitude, scaling to fixed point can't tell which way a value rounds
+	private static final double MaxFastFixed = 1e6;
+	private static final double TieTolerance = 1e-6;
+	
+	
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private char[] m_buf;
+	private int m_length;
+	private char[] m_digits;
+	private char m_zeroDigit;
+	private char m_decimalSeparator;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public PdbLineBuffer( )
+	{
+		m_buf = new char[128];
+		m_length = 0;
+		m_digits = new char[20];
+		
+		// match String.format(), which uses the default locale
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance( Locale.getDefault( Locale.Category.FORMAT ) );
+		m_zeroDigit = symbols.getZeroDigit();
+		m_decimalSeparator = symbols.getDecimalSeparator();
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public int length( )
+	{
+		return m_length;
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public void clear( )
+	{
+		m_length = 0;
+	}
+	
+	public void truncate( int length )
+	{
+		if( length < m_length )
+		{
+			m_length = length;
+		}
+	}
+	
+	public void append( char c )
+	{
+		ensureCapacity( 1 );
+		m_buf[m_length++] = c;
+	}
+	
+	public void append( String s )
+	{
+		ensureCapacity( s.length() );
+		s.getChars( 0, s.length(), m_buf, m_length );
+		m_length += s.length();
+	}
+	
+	// same as String.format( "%<width>s", s )
+	public void appendRight( String s, int width )
+	{
+		s = String.valueOf( (Object)s );
+		appendSpaces( width - s.length() );
+		append( s );
+	}
+	
+	// same as String.format( "%<width>s", c )
+	public void appendRight( char c, int width )
+	{
+		appendSpaces( width - 1 );
+		append( c );
+	}
+	
+	// same as String.format( "%-<width>s", s )
+	public void appendLeft( String s, int width )
+	{
+		s = String.valueOf( (Object)s );
+		append( s );
+		appendSpaces( width - s.length() );
+	}
+	
+	// same as String.format( "%<width>d", value )
+	public void appendInt( int value, int width )
+	{
+		boolean isNegative = value < 0;
+		int numDigits = toDigits( isNegative ? -(long)value : value );
+		appendSpaces( width - numDigits - ( isNegative ? 1 : 0 ) );
+		if( isNegative )
+		{
+			append( '-' );
+		}
+		appendDigits( 0, numDigits );
+	}
+	
+	// same as String.format( "%<width>.<precision>f", value )
+	public void appendFixed( double value, int width, int precision )
+	{
+		// String.format() rounds half-up on the shortest decimal representation of the value,
+		// so defer to it whenever the value is too big or too close to a tie to be sure
+		double scaled = Math.abs( value )*PowersOfTen[precision];
+		double floor = Math.floor( scaled );
+		double fraction = scaled - floor;
+		if( !( Math.abs( value ) < MaxFastFixed ) || Math.abs( fraction - 0.5 ) < TieTolerance )
+		{
+			append( String.format( "%" + width + "." + precision + "f", value ) );
+			return;
+		}
+		long units = (long)floor + ( fraction > 0.5 ? 1 : 0 );
+		
+		// NOTE: String.format() keeps the sign of negative zero and of negative values that round to zero
+		boolean isNegative = Double.doubleToRawLongBits( value ) < 0;
+		int numDigits = toDigits( units );
+		
+		// make sure there's at least one digit before the decimal point
+		int numIntegerDigits = Math.max( numDigits - precision, 1 );
+		int length = ( isNegative ? 1 : 0 ) + numIntegerDigits + ( precision > 0 ? 1 + precision : 0 );
+		appendSpaces( width - length );
+		if( isNegative )
+		{
+			append( '-' );
+		}
+		
+		// write the integer and fraction digits, padding with zeros as needed
+		ensureCapacity( numIntegerDigits + precision + 1 );
+		int numDigitsWithZeros = numIntegerDigits + precision;
+		for( int i=0; i<numDigitsWithZeros; i++ )
+		{
+			if( i == numIntegerDigits )
+			{
+				m_buf[m_length++] = m_decimalSeparator;
+			}
+			int digitIndex = i - ( numDigitsWithZeros - numDigits );
+			m_buf[m_length++] = digitIndex >= 0 ? m_digits[digitIndex] : m_zeroDigit;
+		}
+	}
+	
+	public void appendLine( )
+	{
+		append( '\n' );
+	}
+	
+	public void writeTo( Writer writer )
+	throws IOException
+	{
+		writer.write( m_buf, 0, m_length );
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private void ensureCapacity( int size )
+	{
+		if( m_length + size > m_buf.length )
+		{
+			char[] newBuf = new char[Math.max( m_buf.length*2, m_length + size )];
+			System.arraycopy( m_buf, 0, newBuf, 0, m_length );
+			m_buf = newBuf;
+		}
+	}
+	
+	private void appendSpaces( int num )
+	{
+		if( num <= 0 )
+		{
+			return;
+		}
+		ensureCapacity( num );
+		for( int i=0; i<num; i++ )
+		{
+			m_buf[m_length++] = ' ';
+		}
+	}
+	
+	private int toDigits( long value )
+	{
+		// write the digits into the scratch buffer, most significant first
+		int numDigits = 0;
+		do
+		{
+			m_digits[numDigits++] = (char)( m_zeroDigit + value%10 );
+			value /= 10;
+		}
+		while( value > 0 );
+		for( int i=0, j=numDigits-1; i<j; i++, j-- )
+		{
+			char swap = m_digits[i];
+			m_digits[i] = m_digits[j];
+			m_digits[j] = swap;
+		}
+		return numDigits;
+	}
+	
+	private void appendDigits( int start, int num )
+	{
+		ensureCapacity( num );
+		System.arraycopy( m_digits, start, m_buf, m_length, num );
+		m_length += num;
+	}
+}
@@ -33,18 +33,21 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.regex.Pattern;
 
 import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.io.Compression;
 import edu.duke.cs.libprotnmr.io.Lines;
 import edu.duke.cs.libprotnmr.io.ParseException;
 import edu.duke.cs.libprotnmr.protein.AminoAcid;
 import edu.duke.cs.libprotnmr.protein.Atom;
 import edu.duke.cs.libprotnmr.protein.BackboneConformation;
 import edu.duke.cs.libprotnmr.protein.Element;
+import edu.duke.cs.libprotnmr.protein.Ensemble;
 import edu.duke.cs.libprotnmr.protein.Protein;
 import edu.duke.cs.libprotnmr.protein.Residue;
 import edu.duke.cs.libprotnmr.protein.ResidueRange;
@@ -119,6 +122,69 @@ public class ProteinReader
 		}
 	}
 	
+	private static class EnsembleBuilder implements ModelReadListener
+	{
+		private Ensemble m_ensemble = null;
+		
+		@Override
+		public void modelRead( int modelId, Protein protein )
+		{
+			if( protein == null )
+			{
+				throw new IllegalArgumentException( "Model " + modelId + " has no atoms!" );
+			}
+			if( m_ensemble == null )
+			{
+				m_ensemble = new Ensemble( protein );
+				return;
+			}
+			try
+			{
+				m_ensemble.addModel( protein );
+			}
+			catch( IllegalArgumentException ex )
+			{
+				throw new IllegalArgumentException( "Model " + modelId + " does not have the same atoms as model 0!", ex );
+			}
+		}
+		
+		public Ensemble getEnsemble( )
+		{
+			if( m_ensemble != null )
+			{
+				m_ensemble.trimToSize();
+			}
+			return m_ensemble;
+		}
+	}
+	
+	private static class LineNumbers
+	{
+		private int[] m_lineNumbers = new int[64];
+		private int m_size = 0;
+		
+		public void add( int lineNumber )
+		{
+			if( m_size == m_lineNumbers.length )
+			{
+				m_lineNumbers = Arrays.copyOf( m_lineNumbers, m_size*2 );
+			}
+			m_lineNumbers[m_size++] = lineNumber;
+		}
+		
+		public void clear( )
+		{
+			m_size = 0;
+		}
+		
+		public int[] concat( LineNumbers other )
+		{
+			int[] out = Arrays.copyOf( m_lineNumbers, m_size + other.m_size );
+			System.arraycopy( other.m_lineNumbers, 0, out, m_size, other.m_size );
+			return out;
+		}
+	}
+	
 
 	/**************************
 	 *   Methods
@@ -170,7 +236,7 @@ public class ProteinReader
 	throws IOException
 	{
 		int numModels = 0;
-		for( String line : new Lines( new InputStreamReader( in ) ) )
+		for( String line : new Lines( new InputStreamReader( Compression.decompress( in ) ) ) )
 		{
 			if( Tag.Model.isInLine( line ) )
 			{
@@ -199,6 +265,87 @@ public class ProteinReader
 	}
 	
 	
+	public int readAll( String path, ModelReadListener listener )
+	throws IOException
+	{
+		return readAll( new File( path ), listener );
+	}
+	
+	public int readAll( File file, ModelReadListener listener )
+	throws IOException
+	{
+		return readAll( new FileInputStream( file ), listener );
+	}
+	
+	public int readAll( InputStream in, ModelReadListener listener )
+	throws IOException
+	{
+		// like readAll(), but only one model is in memory at a time
+		// header records (names, SSEs) have to come before the models, like they do in PDB files
+		HashSet<String> backboneNames = getBackboneNames();
+		StringBuffer header = new StringBuffer();
+		StringBuffer buf = new StringBuffer();
+		
+		// remember where each buffered line came from so parse errors report lines in the file, not the chunk
+		LineNumbers headerLineNumbers = new LineNumbers();
+		LineNumbers bufLineNumbers = new LineNumbers();
+		
+		int numModels = 0;
+		int lineNum = 0;
+		for( String line : new Lines( new InputStreamReader( Compression.decompress( in ) ) ) )
+		{
+			lineNum++;
+			if( Tag.Dbref.isInLine( line ) || Tag.Helix.isInLine( line ) || Tag.Sheet.isInLine( line ) )
+			{
+				header.append( line );
+				header.append( "\n" );
+				headerLineNumbers.add( lineNum );
+			}
+			else if( Tag.Endmdl.isInLine( line ) )
+			{
+				listener.modelRead( numModels++, parseModels( header.toString() + buf.toString(), 1, true, backboneNames, headerLineNumbers.concat( bufLineNumbers ) ).get( 0 ) );
+				buf.setLength( 0 );
+				bufLineNumbers.clear();
+			}
+			else
+			{
+				buf.append( line );
+				buf.append( "\n" );
+				bufLineNumbers.add( lineNum );
+			}
+		}
+		
+		// but there's always at least 1 model
+		if( numModels == 0 )
+		{
+			listener.modelRead( numModels++, parseModels( header.toString() + buf.toString(), 1, true, backboneNames, headerLineNumbers.concat( bufLineNumbers ) ).get( 0 ) );
+		}
+		
+		return numModels;
+	}
+	
+	public Ensemble readEnsemble( String path )
+	throws IOException
+	{
+		return readEnsemble( new File( path ) );
+	}
+	
+	public Ensemble readEnsemble( File file )
+	throws IOException
+	{
+		return readEnsemble( new FileInputStream( file ) );
+	}
+	
+	public Ensemble readEnsemble( InputStream in )
+	throws IOException
+	{
+		// stream the models so only the packed coordinates and one model are ever in memory
+		EnsembleBuilder builder = new EnsembleBuilder();
+		readAll( in, builder );
+		return builder.getEnsemble();
+	}
+	
+	
 	/**************************
 	 *   Functions
 	 **************************/
@@ -206,20 +353,14 @@ public class ProteinReader
 	private ArrayList<Protein> readModels( InputStream in, int modelId )
 	throws IOException
 	{
-		// convert atom names into a more efficient format
-		HashSet<String> backboneNames = new HashSet<String>();
-		for( String name : BackboneNames.split( "," ) )
-		{
-			backboneNames.add( name.toUpperCase() );
-		}
-		
+		HashSet<String> backboneNames = getBackboneNames();
 		boolean isSingleModel = modelId != -1;
 		
 		// pass 1: read the parts of the file we care about into a buffer and check model counts
 		// NOTE: not the most efficient, but it gets the job done
 		StringBuffer buf = new StringBuffer();
 		int numModels = 0;
-		for( String line : new Lines( new InputStreamReader( in ) ) )
+		for( String line : new Lines( new InputStreamReader( Compression.decompress( in ) ) ) )
 		{
 			if( !isSingleModel || numModels == modelId || Tag.Dbref.isInLine( line ) )
 			{
@@ -252,6 +393,12 @@ public class ProteinReader
 			numModels = 1;
 		}
 		
+		return parseModels( bufString, numModels, isSingleModel, backboneNames, null );
+	}
+	
+	private ArrayList<Protein> parseModels( String bufString, int numModels, boolean isSingleModel, HashSet<String> backboneNames, int[] lineNumbers )
+	{
+		// NOTE: lineNumbers maps the lines of the buffer back to lines in the file, null means they're the same
 		// allocate our proteins
 		ArrayList<Protein> proteins = new ArrayList<Protein>( numModels );
 		for( int i=0; i<numModels; i++ )
@@ -317,7 +464,7 @@ public class ProteinReader
 			}
 			catch( Exception ex )
 			{
-				throw new ParseException( line, lineNum, ex );
+				throw new ParseException( line, getLineNumber( lineNumbers, lineNum ), ex );
 			}
 		}
 		
@@ -340,7 +487,7 @@ public class ProteinReader
 			}
 			catch( Exception ex )
 			{
-				throw new ParseException( line, lineNum, ex );
+				throw new ParseException( line, getLineNumber( lineNumbers, lineNum ), ex );
 			}
 		}
 		for( Map.Entry<Character,TreeMap<ResidueRange,BackboneConformation>> entry : backboneConformations.entrySet() )
@@ -394,7 +541,7 @@ public class ProteinReader
 			}
 			catch( Exception ex )
 			{
-				throw new ParseException( line, lineNum, ex );
+				throw new ParseException( line, getLineNumber( lineNumbers, lineNum ), ex );
 			}
 		}
 		
@@ -420,6 +567,17 @@ public class ProteinReader
 		return proteins;
 	}
 	
+	private HashSet<String> getBackboneNames( )
+	{
+		// convert atom names into a more efficient format
+		HashSet<String> backboneNames = new HashSet<String>();
+		for( String name : BackboneNames.split( "," ) )
+		{
+			backboneNames.add( name.toUpperCase() );
+		}
+		return backboneNames;
+	}
+	
 	private void parseHelix( TreeMap<Character,TreeMap<ResidueRange,BackboneConformation>> backboneConformations, String line )
 	{
 		/*
@@ -605,4 +763,13 @@ public class ProteinReader
 		
 		return atomInfo;
 	}
+	
+	private static int getLineNumber( int[] lineNumbers, int lineNum )
+	{
+		if( lineNumbers == null || lineNum > lineNumbers.length )
+		{
+			return lineNum;
+		}
+		return lineNumbers[lineNum - 1];
+	}
 }
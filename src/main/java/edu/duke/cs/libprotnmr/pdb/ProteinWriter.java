@@ -26,13 +26,21 @@
 
 package edu.duke.cs.libprotnmr.pdb;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 import java.util.Iterator;
 import java.util.List;
 
+import edu.duke.cs.libprotnmr.io.Compression;
 import edu.duke.cs.libprotnmr.protein.Atom;
+import edu.duke.cs.libprotnmr.protein.Ensemble;
 import edu.duke.cs.libprotnmr.protein.Protein;
 import edu.duke.cs.libprotnmr.protein.Residue;
 import edu.duke.cs.libprotnmr.protein.Subunit;
@@ -45,6 +53,7 @@ public class ProteinWriter
 	 **************************/
 	
 	private static final int MaxResiduesPerSqres = 13;
+	private static final int ChannelBufferSize = 1 << 16;
 	
 	
 	/**************************
@@ -52,6 +61,7 @@ public class ProteinWriter
 	 **************************/
 	
 	private boolean m_writePseudoatoms;
+	private PdbLineBuffer m_line;
 	
 	
 	/**************************
@@ -61,6 +71,7 @@ public class ProteinWriter
 	public ProteinWriter( )
 	{
 		m_writePseudoatoms = false;
+		m_line = new PdbLineBuffer();
 	}
 	
 	
@@ -92,7 +103,7 @@ public class ProteinWriter
 	throws IOException
 	{
 		// open a file for writing
-		FileWriter writer = new FileWriter( file );
+		Writer writer = Compression.openWriter( file );
 		
 		writeProtein( writer, protein );
 		
@@ -111,7 +122,7 @@ public class ProteinWriter
 	throws IOException
 	{
 		// open a file for writing
-		FileWriter writer = new FileWriter( file );
+		Writer writer = Compression.openWriter( file );
 		
 		writeProteins( writer, proteins );
 		
@@ -120,20 +131,49 @@ public class ProteinWriter
 		writer = null;
 	}
 	
+	public void write( Ensemble ensemble, String path )
+	throws IOException
+	{
+		write( ensemble, new File( path ) );
+	}
+	
+	public void write( Ensemble ensemble, File file )
+	throws IOException
+	{
+		// open a file for writing
+		OutputStream out = Compression.openOutput( file );
+		WritableByteChannel channel = out instanceof FileOutputStream ? ( (FileOutputStream)out ).getChannel() : Channels.newChannel( out );
+		
+		write( ensemble, channel );
+		
+		// cleanup
+		channel.close();
+		out.close();
+	}
+	
+	public void write( Ensemble ensemble, WritableByteChannel channel )
+	throws IOException
+	{
+		// NOTE: use the same charset as FileWriter, so the output is the same as writing the models as a list
+		Writer writer = new BufferedWriter( Channels.newWriter( channel, Charset.defaultCharset().newEncoder(), ChannelBufferSize ) );
+		writeEnsemble( writer, ensemble );
+		writer.flush();
+	}
+	
 	
 	/**************************
 	 *   Functions
 	 **************************/
 	
-	private void writeProtein( FileWriter writer, Protein protein )
+	private void writeProtein( Writer writer, Protein protein )
 	throws IOException
 	{
 		writeHeader( writer, protein );
-		writeAtoms( writer, protein );
+		writeAtoms( writer, protein, null, 0 );
 		writeFooter( writer );
 	}
 	
-	private void writeProteins( FileWriter writer, List<Protein> proteins )
+	private void writeProteins( Writer writer, List<Protein> proteins )
 	throws IOException
 	{
 		// HACKHACK: use the first not null protein for the header
@@ -150,16 +190,40 @@ public class ProteinWriter
 		int modelNum = 1;
 		for( Protein protein : proteins )
 		{
-			writer.write( String.format( "MODEL %8d\n", modelNum++ ) );
+			writeModel( writer, modelNum++ );
 			if( protein != null )
 			{
-				writeAtoms( writer, protein );
+				writeAtoms( writer, protein, null, 0 );
 			}
 			writer.write( "ENDMDL\n" );
 		}
 	}
 	
-	protected void writeHeader( FileWriter writer, Protein protein )
+	private void writeEnsemble( Writer writer, Ensemble ensemble )
+	throws IOException
+	{
+		// stream the models straight from the packed coordinates
+		Protein topology = ensemble.getTopology();
+		writeHeader( writer, topology );
+		for( int i=0; i<ensemble.getNumModels(); i++ )
+		{
+			writeModel( writer, i + 1 );
+			writeAtoms( writer, topology, ensemble, i );
+			writer.write( "ENDMDL\n" );
+		}
+	}
+	
+	private void writeModel( Writer writer, int modelNum )
+	throws IOException
+	{
+		m_line.clear();
+		m_line.append( "MODEL " );
+		m_line.appendInt( modelNum, 8 );
+		m_line.appendLine();
+		m_line.writeTo( writer );
+	}
+	
+	protected void writeHeader( Writer writer, Protein protein )
 	throws IOException
 	{
 		// for each subunit...
@@ -173,27 +237,29 @@ public class ProteinWriter
 		}
 	}
 	
-	protected void writeFooter( FileWriter writer )
+	protected void writeFooter( Writer writer )
 	throws IOException
 	{
 		// Jeff: 01/14/2009 - CNS complains unless you end with this
 		writer.write( "END\n" );
 	}
 	
-	protected void writeDbref( FileWriter writer, Protein protein, Subunit subunit )
+	protected void writeDbref( Writer writer, Protein protein, Subunit subunit )
 	throws IOException
 	{
-		writer.write( "DBREF" );
-		writer.write( String.format( "%6s", protein.getName() ) );
-		writer.write( String.format( "%2s", subunit.getName() ) );
-		writer.write( String.format( "%5d", subunit.getFirstResidueNumber() ) );
-		writer.write( String.format( "%6d", subunit.getLastResidueNumber() ) );
-		writer.write( String.format( "%36d", subunit.getFirstResidueNumber() ) );
-		writer.write( String.format( "%7d", subunit.getLastResidueNumber() ) );
-		writer.write( "\n" );
+		m_line.clear();
+		m_line.append( "DBREF" );
+		m_line.appendRight( protein.getName(), 6 );
+		m_line.appendRight( subunit.getName(), 2 );
+		m_line.appendInt( subunit.getFirstResidueNumber(), 5 );
+		m_line.appendInt( subunit.getLastResidueNumber(), 6 );
+		m_line.appendInt( subunit.getFirstResidueNumber(), 36 );
+		m_line.appendInt( subunit.getLastResidueNumber(), 7 );
+		m_line.appendLine();
+		m_line.writeTo( writer );
 	}
 	
-	protected void writeSqres( FileWriter writer, Protein protein, Subunit subunit )
+	protected void writeSqres( Writer writer, Protein protein, Subunit subunit )
 	throws IOException
 	{
 		int lineId = 1;
@@ -207,18 +273,19 @@ public class ProteinWriter
 		// for each line
 		for( lineId=1; lineId <= maxLines; lineId++ )
 		{
-			writer.write( "SEQRES" );
-			writer.write( String.format( "%4d", lineId ) );
-			writer.write( String.format( "%2s", subunit.getName() ) );
-			writer.write( String.format( "%5d", numResidues ) );
-			writer.write( " " );
+			m_line.clear();
+			m_line.append( "SEQRES" );
+			m_line.appendInt( lineId, 4 );
+			m_line.appendRight( subunit.getName(), 2 );
+			m_line.appendInt( numResidues, 5 );
+			m_line.append( ' ' );
 			
 			for( int residuesOnThisLine=0; residuesOnThisLine<MaxResiduesPerSqres; residuesOnThisLine++ )
 			{
 				if( !iterResidue.hasNext() )
 				{
 					// just write out the spaces
-					writer.write( "    " );
+					m_line.append( "    " );
 				}
 				else
 				{
@@ -226,18 +293,21 @@ public class ProteinWriter
 					Residue residue = iterResidue.next();
 	
 					// write out the 3-letter amino acid abbreviation
-					writer.write( " " );
-					writer.write( residue.getAminoAcid().getAbbreviation().toUpperCase() );
+					m_line.append( ' ' );
+					m_line.append( residue.getAminoAcid().getAbbreviation().toUpperCase() );
 				}
 			}
 			
-			writer.write( "\n" );
+			m_line.appendLine();
+			m_line.writeTo( writer );
 		}
 	}
 	
-	private void writeAtoms( FileWriter writer, Protein protein )
+	private void writeAtoms( Writer writer, Protein protein, Ensemble ensemble, int modelId )
 	throws IOException
 	{
+		// NOTE: if an ensemble is given, atom positions come from its coordinates instead of from the protein
+		double[] coords = ensemble == null ? null : ensemble.getCoordinates();
 		int atomId = 0;
 		Residue lastResidue = null;
 		
@@ -247,6 +317,8 @@ public class ProteinWriter
 			// for each residue...
 			for( Residue residue : subunit.getResidues() )
 			{
+				String residueName = residue.getAminoAcid().getAbbreviation().toUpperCase();
+				
 				// for each atom...
 				for( Atom atom : residue.getAtoms() )
 				{
@@ -256,46 +328,70 @@ public class ProteinWriter
 						continue;
 					}
 					
-					writer.write( "ATOM" );
-					writer.write( String.format( "%7d", ++atomId ) );
+					m_line.clear();
+					m_line.append( "ATOM" );
+					m_line.appendInt( ++atomId, 7 );
 					
 					/* HACKHACK: special rules for writing names for KiNG and molprobity
 						Names 3 characters long or less should be written starting at the second position
 						Names 4 characters long should be written starting at the first position
 					*/
-					writer.write( " " );
+					m_line.append( ' ' );
 					if( atom.getName().length() == 4 )
 					{
-						writer.write( atom.getName() );
+						m_line.append( atom.getName() );
 					}
 					else if( atom.getName().length() <= 3 )
 					{
-						writer.write( " " );
-						writer.write( String.format( "%-3s", atom.getName() ) );
+						m_line.append( ' ' );
+						m_line.appendLeft( atom.getName(), 3 );
 					}
 					
-					writer.write( String.format( "%4s", residue.getAminoAcid().getAbbreviation().toUpperCase() ) );
-					writer.write( String.format( "%2s", subunit.getName() ) );
-					writer.write( String.format( "%4d", residue.getNumber() ) );
-					writer.write( String.format( "%12.3f", atom.getPosition().x ).substring( 0, 12 ) );
-					writer.write( String.format( "%8.3f", atom.getPosition().y ).substring( 0, 8 ) );
-					writer.write( String.format( "%8.3f", atom.getPosition().z ).substring( 0, 8 ) );
-					writer.write( String.format( "%6.2f", atom.getOccupancy() ) );
-					writer.write( String.format( "%6.2f", atom.getTempFactor() ) );
-					writer.write( String.format( "%12s", atom.getElement().getCode() ) );
-					writer.write( "\n" );
+					m_line.appendRight( residueName, 4 );
+					m_line.appendRight( subunit.getName(), 2 );
+					m_line.appendInt( residue.getNumber(), 4 );
+					if( coords == null )
+					{
+						appendCoordinates( atom.getPosition().x, atom.getPosition().y, atom.getPosition().z );
+					}
+					else
+					{
+						int i = ensemble.getCoordinateIndex( modelId, ensemble.getAtomIndex( subunit.getId(), residue.getId(), atom.getId() ) );
+						appendCoordinates( coords[i + 0], coords[i + 1], coords[i + 2] );
+					}
+					m_line.appendFixed( atom.getOccupancy(), 6, 2 );
+					m_line.appendFixed( atom.getTempFactor(), 6, 2 );
+					m_line.appendRight( atom.getElement().getCode(), 12 );
+					m_line.appendLine();
+					m_line.writeTo( writer );
 				}
 				
 				lastResidue = residue;
 			}
 			
 			// add the terminating record
-			writer.write( "TER" );
-			writer.write( String.format( "%8d", ++atomId ) );
-			writer.write( String.format( "%9s", lastResidue.getAminoAcid().getAbbreviation().toUpperCase() ) );
-			writer.write( String.format( "%2s", subunit.getName() ) );
-			writer.write( String.format( "%4d", lastResidue.getNumber() ) );
-			writer.write( "\n" );
+			m_line.clear();
+			m_line.append( "TER" );
+			m_line.appendInt( ++atomId, 8 );
+			m_line.appendRight( lastResidue.getAminoAcid().getAbbreviation().toUpperCase(), 9 );
+			m_line.appendRight( subunit.getName(), 2 );
+			m_line.appendInt( lastResidue.getNumber(), 4 );
+			m_line.appendLine();
+			m_line.writeTo( writer );
 		}
 	}
+	
+	private void appendCoordinates( double x, double y, double z )
+	{
+		// overly wide values get cut off to keep the columns fixed
+		int start = m_line.length();
+		m_line.appendFixed( x, 12, 3 );
+		m_line.truncate( start + 12 );
+		start = m_line.length();
+		m_line.appendFixed( y, 8, 3 );
+		m_line.truncate( start + 8 );
+		start = m_line.length();
+		m_line.appendFixed( z, 8, 3 );
+		m_line.truncate( start + 8 );
+	}
 }
@@ -86,9 +86,21 @@ public abstract class WorkCrew<T>
 			}
 			
 			// process the work
+			// once anything fails, just drain the queue so addWork() never blocks on dead workers
 			for( T work : workload )
 			{
-				processInWorkerThread( work );
+				if( m_failure != null )
+				{
+					continue;
+				}
+				try
+				{
+					processInWorkerThread( work );
+				}
+				catch( Throwable ex )
+				{
+					setFailure( ex );
+				}
 			}
 			incrementNumWorksProcessed( workload.size() );
 			workload.clear();
@@ -105,6 +117,7 @@ public abstract class WorkCrew<T>
 	private int m_numWorksAdded;
 	private int m_numWorksProcessed;
 	private Progress m_progress;
+	private volatile Throwable m_failure;
 	
 	
 	/**************************
@@ -118,6 +131,7 @@ public abstract class WorkCrew<T>
 		m_queue = null;
 		m_numWorksAdded = 0;
 		m_numWorksProcessed = 0;
+		m_failure = null;
 	}
 	
 	
@@ -139,6 +153,20 @@ public abstract class WorkCrew<T>
 	{
 		return m_numWorksProcessed;
 	}
+	public boolean hasFailed( )
+	{
+		return m_failure != null;
+	}
+	
+	private synchronized void setFailure( Throwable failure )
+	{
+		// keep the first one, it's usually the most interesting
+		if( m_failure == null )
+		{
+			m_failure = failure;
+		}
+	}
+	
 	private synchronized void incrementNumWorksProcessed( int num )
 	{
 		m_numWorksProcessed += num;
@@ -174,6 +202,11 @@ public abstract class WorkCrew<T>
 	
 	public void startWorkers( int numWorkers, int workloadSize, int queueSize )
 	{
+		if( numWorkers <= 0 )
+		{
+			throw new IllegalArgumentException( "Need at least one worker, not " + numWorkers );
+		}
+		m_failure = null;
 		m_workers = new ArrayList<Worker>( numWorkers );
 		for( int i=0; i<numWorkers; i++ )
 		{
@@ -229,6 +262,12 @@ public abstract class WorkCrew<T>
 		assert( m_queue.size() == 0 );
 		m_queue = null;
 		m_workers = null;
+		
+		// pass any failures along to the calling thread
+		if( m_failure != null )
+		{
+			throw new RuntimeException( "Work failed in a worker thread", m_failure );
+		}
 	}
 	
 	
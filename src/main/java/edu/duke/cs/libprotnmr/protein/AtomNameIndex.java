@@ -0,0 +1,241 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.protein;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+
+public class AtomNameIndex
+{
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	private static final Pattern PlainNameRegex = Pattern.compile( "^[A-Za-z0-9']+$" );
+	
+	private static class ResidueEntry
+	{
+		public final int residueId;
+		public final Residue residue;
+		public final Map<String,List<Integer>> atomIds;
+		public final ConcurrentHashMap<String,List<Integer>> ambiguousAtomIds;
+		
+		public ResidueEntry( int residueId, Residue residue )
+		{
+			this.residueId = residueId;
+			this.residue = residue;
+			this.ambiguousAtomIds = new ConcurrentHashMap<String,List<Integer>>();
+			
+			Map<String,List<Integer>> atomIds = new HashMap<String,List<Integer>>();
+			for( Atom atom : residue.getAtoms() )
+			{
+				if( atom == null )
+				{
+					continue;
+				}
+				String key = normalizeName( atom.getName() );
+				List<Integer> ids = atomIds.get( key );
+				if( ids == null )
+				{
+					ids = new ArrayList<Integer>( 1 );
+					atomIds.put( key, ids );
+				}
+				ids.add( atom.getId() );
+			}
+			for( Map.Entry<String,List<Integer>> mapEntry : atomIds.entrySet() )
+			{
+				mapEntry.setValue( Collections.unmodifiableList( mapEntry.getValue() ) );
+			}
+			this.atomIds = atomIds;
+		}
+	}
+	
+	
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private static Map<String,Pattern> m_patterns = new ConcurrentHashMap<String,Pattern>();
+	
+	private final Subunit m_subunit;
+	private final ResidueEntry[] m_entriesById;
+	private final Map<Integer,ResidueEntry> m_entriesByNumber;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public AtomNameIndex( Subunit subunit )
+	{
+		// the index is a snapshot of the subunit, so Subunit throws it away when atoms get renamed or re-indexed
+		m_subunit = subunit;
+		m_entriesById = new ResidueEntry[subunit.getResidues().size()];
+		m_entriesByNumber = new HashMap<Integer,ResidueEntry>();
+		for( int i=0; i<m_entriesById.length; i++ )
+		{
+			Residue residue = subunit.getResidues().get( i );
+			if( residue == null )
+			{
+				continue;
+			}
+			ResidueEntry entry = new ResidueEntry( i, residue );
+			m_entriesById[i] = entry;
+			m_entriesByNumber.put( residue.getNumber(), entry );
+		}
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public Integer getAtomId( int residueId, String atomName )
+	{
+		return getAtomId( getEntryById( residueId ), atomName );
+	}
+	
+	public List<Integer> getAmbiguousAtomIds( int residueId, String atomName )
+	{
+		return getAmbiguousAtomIds( getEntryById( residueId ), atomName );
+	}
+	
+	public AtomAddressInternal getAddress( int residueNumber, String atomName )
+	{
+		ResidueEntry entry = m_entriesByNumber.get( residueNumber );
+		Integer atomId = getAtomId( entry, atomName );
+		if( atomId == null )
+		{
+			return null;
+		}
+		return new AtomAddressInternal( m_subunit.getId(), entry.residueId, atomId );
+	}
+	
+	public ArrayList<AtomAddressInternal> getAmbiguousAddresses( int residueNumber, String atomName )
+	{
+		ResidueEntry entry = m_entriesByNumber.get( residueNumber );
+		List<Integer> atomIds = getAmbiguousAtomIds( entry, atomName );
+		ArrayList<AtomAddressInternal> addresses = new ArrayList<AtomAddressInternal>( atomIds == null ? 0 : atomIds.size() );
+		if( atomIds != null )
+		{
+			for( Integer atomId : atomIds )
+			{
+				addresses.add( new AtomAddressInternal( m_subunit.getId(), entry.residueId, atomId ) );
+			}
+		}
+		return addresses;
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private ResidueEntry getEntryById( int residueId )
+	{
+		if( residueId < 0 || residueId >= m_entriesById.length )
+		{
+			return null;
+		}
+		return m_entriesById[residueId];
+	}
+	
+	private static Integer getAtomId( ResidueEntry entry, String atomName )
+	{
+		if( entry == null )
+		{
+			return null;
+		}
+		List<Integer> ids = entry.atomIds.get( normalizeName( atomName ) );
+		if( ids == null )
+		{
+			return null;
+		}
+		return ids.get( 0 );
+	}
+	
+	private static List<Integer> getAmbiguousAtomIds( ResidueEntry entry, String atomName )
+	{
+		if( entry == null )
+		{
+			return null;
+		}
+		
+		// plain names can't match anything but themselves
+		String key = normalizeName( atomName );
+		if( PlainNameRegex.matcher( atomName ).matches() )
+		{
+			List<Integer> ids = entry.atomIds.get( key );
+			return ids == null ? Collections.<Integer>emptyList() : ids;
+		}
+		
+		// otherwise, expand wildcards once per residue and name
+		List<Integer> ids = entry.ambiguousAtomIds.get( key );
+		if( ids == null )
+		{
+			Pattern regex = getPattern( atomName );
+			List<Integer> matches = new ArrayList<Integer>();
+			for( Atom atom : entry.residue.getAtoms() )
+			{
+				if( atom != null && regex.matcher( atom.getName() ).matches() )
+				{
+					matches.add( atom.getId() );
+				}
+			}
+			ids = Collections.unmodifiableList( matches );
+			List<Integer> oldIds = entry.ambiguousAtomIds.putIfAbsent( key, ids );
+			if( oldIds != null )
+			{
+				ids = oldIds;
+			}
+		}
+		return ids;
+	}
+	
+	private static String normalizeName( String atomName )
+	{
+		return atomName.toUpperCase();
+	}
+	
+	private static Pattern getPattern( String atomName )
+	{
+		Pattern regex = m_patterns.get( atomName );
+		if( regex == null )
+		{
+			String pattern = "^" + atomName.replaceAll( "[#\\*]", "\\\\d+" ) + "$";
+			regex = Pattern.compile( pattern, Pattern.CASE_INSENSITIVE );
+			m_patterns.put( atomName, regex );
+		}
+		return regex;
+	}
+}
@@ -62,6 +62,9 @@ public class Dipeptide implements HasAtoms
 	private Vector3 m_haAtom;
 	// UNDONE: add cb?
 	
+	// optional cache of the kinematics on a phi/psi grid
+	private DipeptideTable m_table;
+	
 	private List<Atom> m_atoms;
 	private List<AtomAddressInternal> m_atomIndex;
 	private List<AtomAddressInternal> m_backboneIndex;
@@ -92,6 +95,8 @@ public class Dipeptide implements HasAtoms
 		m_caAtom = new Vector3();
 		m_haAtom = new Vector3();
 		
+		m_table = null;
+		
 		computeIndex();
 	}
 	
@@ -115,6 +120,8 @@ public class Dipeptide implements HasAtoms
 		m_caAtom = new Vector3( other.m_caAtom );
 		m_haAtom = new Vector3( other.m_haAtom );
 		
+		m_table = other.m_table;
+		
 		computeIndex();
 	}
 	
@@ -189,6 +196,15 @@ public class Dipeptide implements HasAtoms
 		return m_psi;
 	}
 	
+	public void setTable( DipeptideTable val )
+	{
+		m_table = val;
+	}
+	public DipeptideTable getTable( )
+	{
+		return m_table;
+	}
+	
 	public Vector3 getNwardsCaAtom( )
 	{
 		return m_canAtom;
@@ -380,6 +396,12 @@ public class Dipeptide implements HasAtoms
 		assert( !Double.isNaN( m_phi ) );
 		assert( !Double.isNaN( m_psi ) );
 		
+		// on-grid angles can be read straight from the table
+		if( m_table != null && m_table.updateNwardsPlane( this, m_phi, m_psi ) )
+		{
+			return;
+		}
+		
 		Quaternion q = new Quaternion();
 		Vector3 v = new Vector3();
 		Vector3 w = new Vector3();
@@ -476,6 +498,12 @@ public class Dipeptide implements HasAtoms
 		assert( !Double.isNaN( m_phi ) );
 		assert( !Double.isNaN( m_psi ) );
 		
+		// on-grid angles can be read straight from the table
+		if( m_table != null && m_table.updateCwardsPlane( this, m_phi, m_psi ) )
+		{
+			return;
+		}
+		
 		Quaternion q = new Quaternion();
 		Vector3 v = new Vector3();
 		Vector3 w = new Vector3();
@@ -0,0 +1,361 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.protein;
+
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.rama.RamaMap;
+
+
+// Caches the Dipeptide forward kinematics on a phi/psi grid. For each grid point, it stores the
+// atoms of the new peptide plane in the local frame of the fixed plane. It also stores the bond
+// vectors of a Dipeptide built from the default plane. Angles off the grid fall back to the
+// usual computation, so results never get interpolated.
+public class DipeptideTable
+{
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	private static final double GridEpsilonDegrees = 1e-9;
+	private static final int NumPlaneAtoms = 6;
+	private static final int NumBondTypes = BondType.values().length;
+	
+	
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private double m_resolutionDegrees;
+	private double m_firstDegrees;
+	private int m_numSamplesPerAngle;
+	
+	// indexed by (phi index, psi index, atom, xyz)
+	private double[] m_cwardsAtoms;
+	private double[] m_nwardsAtoms;
+	
+	// indexed by (phi index, psi index, bond type, xyz)
+	private double[] m_cwardsBondVectors;
+	private double[] m_nwardsBondVectors;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public DipeptideTable( double resolutionDegrees )
+	{
+		this( resolutionDegrees, -180.0 );
+	}
+	
+	public DipeptideTable( double resolutionDegrees, double firstDegrees )
+	{
+		double numSamples = 360.0/resolutionDegrees;
+		if( resolutionDegrees <= 0.0 || Math.abs( numSamples - Math.rint( numSamples ) ) > GridEpsilonDegrees )
+		{
+			throw new IllegalArgumentException( "Resolution must divide 360 degrees evenly: " + resolutionDegrees );
+		}
+		
+		m_resolutionDegrees = resolutionDegrees;
+		m_firstDegrees = firstDegrees;
+		m_numSamplesPerAngle = (int)Math.rint( numSamples );
+		
+		int numCells = m_numSamplesPerAngle*m_numSamplesPerAngle;
+		m_cwardsAtoms = new double[numCells*NumPlaneAtoms*3];
+		m_nwardsAtoms = new double[numCells*NumPlaneAtoms*3];
+		m_cwardsBondVectors = new double[numCells*NumBondTypes*3];
+		m_nwardsBondVectors = new double[NumBondTypes*3];
+		
+		buildTables();
+	}
+	
+	public static DipeptideTable newRamaMapTable( )
+	{
+		// use the same grid as the Ramachandran maps
+		return new DipeptideTable( RamaMap.DeltaDegrees, RamaMap.mapIndexToDegrees( 0 ) );
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public double getResolutionDegrees( )
+	{
+		return m_resolutionDegrees;
+	}
+	
+	public int getNumSamplesPerAngle( )
+	{
+		return m_numSamplesPerAngle;
+	}
+	
+	public double getGridDegrees( int index )
+	{
+		return m_firstDegrees + index*m_resolutionDegrees;
+	}
+	
+	public boolean isOnGrid( double phi, double psi )
+	{
+		return getIndex( phi ) >= 0 && getIndex( psi ) >= 0;
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public boolean updateCwardsPlane( Dipeptide dipeptide, double phi, double psi )
+	{
+		int cell = getCell( phi, psi );
+		if( cell < 0 )
+		{
+			return false;
+		}
+		
+		double[] frame = new double[9];
+		getFrame( frame, dipeptide.getNwardsNAtom(), dipeptide.getCaAtom(), dipeptide.getNwardsHAtom() );
+		int offset = cell*NumPlaneAtoms*3;
+		Vector3 origin = dipeptide.getCaAtom();
+		toWorld( dipeptide.getHaAtom(), m_cwardsAtoms, offset, frame, origin );
+		toWorld( dipeptide.getCwardsCAtom(), m_cwardsAtoms, offset + 3, frame, origin );
+		toWorld( dipeptide.getCwardsOAtom(), m_cwardsAtoms, offset + 6, frame, origin );
+		toWorld( dipeptide.getCwardsNAtom(), m_cwardsAtoms, offset + 9, frame, origin );
+		toWorld( dipeptide.getCwardsHAtom(), m_cwardsAtoms, offset + 12, frame, origin );
+		toWorld( dipeptide.getCwardsCaAtom(), m_cwardsAtoms, offset + 15, frame, origin );
+		return true;
+	}
+	
+	public boolean updateNwardsPlane( Dipeptide dipeptide, double phi, double psi )
+	{
+		int cell = getCell( phi, psi );
+		if( cell < 0 )
+		{
+			return false;
+		}
+		
+		double[] frame = new double[9];
+		getFrame( frame, dipeptide.getCwardsCAtom(), dipeptide.getCaAtom(), dipeptide.getCwardsOAtom() );
+		int offset = cell*NumPlaneAtoms*3;
+		Vector3 origin = dipeptide.getCaAtom();
+		toWorld( dipeptide.getHaAtom(), m_nwardsAtoms, offset, frame, origin );
+		toWorld( dipeptide.getNwardsNAtom(), m_nwardsAtoms, offset + 3, frame, origin );
+		toWorld( dipeptide.getNwardsHAtom(), m_nwardsAtoms, offset + 6, frame, origin );
+		toWorld( dipeptide.getNwardsCAtom(), m_nwardsAtoms, offset + 9, frame, origin );
+		toWorld( dipeptide.getNwardsOAtom(), m_nwardsAtoms, offset + 12, frame, origin );
+		toWorld( dipeptide.getNwardsCaAtom(), m_nwardsAtoms, offset + 15, frame, origin );
+		return true;
+	}
+	
+	public double getAngle( BondType aType, ChainDirection aDirection, BondType bType, ChainDirection bDirection, double phi, double psi )
+	{
+		// same as Dipeptide.getAngle(), but reads the bond vectors from the table
+		int cell = getCell( phi, psi );
+		if( cell < 0 )
+		{
+			return Dipeptide.getAngle( aType, aDirection, bType, bDirection, phi, psi );
+		}
+		
+		double[] aVectors = getBondVectors( aType, aDirection );
+		int a = getBondVectorOffset( cell, aType, aDirection );
+		double[] bVectors = getBondVectors( bType, bDirection );
+		int b = getBondVectorOffset( cell, bType, bDirection );
+		return Math.acos( aVectors[a]*bVectors[b] + aVectors[a + 1]*bVectors[b + 1] + aVectors[a + 2]*bVectors[b + 2] );
+	}
+	
+	
+	/**************************
+	 *   Static Functions
+	 **************************/
+	
+	private static void getFrame( double[] out, Vector3 a, Vector3 b, Vector3 c )
+	{
+		// x is a->b, z is normal to the abc plane
+		Vector3 x = new Vector3( b );
+		x.subtract( a );
+		x.normalize();
+		Vector3 ac = new Vector3( c );
+		ac.subtract( a );
+		Vector3 z = new Vector3();
+		x.getCross( z, ac );
+		z.normalize();
+		Vector3 y = new Vector3();
+		z.getCross( y, x );
+		out[0] = x.x;
+		out[1] = x.y;
+		out[2] = x.z;
+		out[3] = y.x;
+		out[4] = y.y;
+		out[5] = y.z;
+		out[6] = z.x;
+		out[7] = z.y;
+		out[8] = z.z;
+	}
+	
+	private static void toLocal( double[] out, int offset, Vector3 pos, double[] frame, Vector3 origin )
+	{
+		double dx = pos.x - origin.x;
+		double dy = pos.y - origin.y;
+		double dz = pos.z - origin.z;
+		for( int i=0; i<3; i++ )
+		{
+			out[offset + i] = dx*frame[i*3] + dy*frame[i*3 + 1] + dz*frame[i*3 + 2];
+		}
+	}
+	
+	private static void toWorld( Vector3 out, double[] local, int offset, double[] frame, Vector3 origin )
+	{
+		double u = local[offset];
+		double v = local[offset + 1];
+		double w = local[offset + 2];
+		out.set(
+			origin.x + u*frame[0] + v*frame[3] + w*frame[6],
+			origin.y + u*frame[1] + v*frame[4] + w*frame[7],
+			origin.z + u*frame[2] + v*frame[5] + w*frame[8]
+		);
+	}
+	
+	private static void setVector( double[] out, int offset, Vector3 v )
+	{
+		out[offset] = v.x;
+		out[offset + 1] = v.y;
+		out[offset + 2] = v.z;
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private int getIndex( double angle )
+	{
+		// returns -1 for angles off the grid
+		double x = ( Math.toDegrees( angle ) - m_firstDegrees )/m_resolutionDegrees;
+		double index = Math.rint( x );
+		if( Math.abs( x - index )*m_resolutionDegrees > GridEpsilonDegrees )
+		{
+			return -1;
+		}
+		int i = (int)index % m_numSamplesPerAngle;
+		if( i < 0 )
+		{
+			i += m_numSamplesPerAngle;
+		}
+		return i;
+	}
+	
+	private int getCell( double phi, double psi )
+	{
+		int phiIndex = getIndex( phi );
+		int psiIndex = getIndex( psi );
+		if( phiIndex < 0 || psiIndex < 0 )
+		{
+			return -1;
+		}
+		return phiIndex*m_numSamplesPerAngle + psiIndex;
+	}
+	
+	private double[] getBondVectors( BondType type, ChainDirection direction )
+	{
+		// the n-wards bonds don't move when building c-wards from the default plane
+		if( direction == ChainDirection.Nwards && type != BondType.CaHa )
+		{
+			return m_nwardsBondVectors;
+		}
+		return m_cwardsBondVectors;
+	}
+	
+	private int getBondVectorOffset( int cell, BondType type, ChainDirection direction )
+	{
+		if( direction == ChainDirection.Nwards && type != BondType.CaHa )
+		{
+			return type.ordinal()*3;
+		}
+		return ( cell*NumBondTypes + type.ordinal() )*3;
+	}
+	
+	private void buildTables( )
+	{
+		Dipeptide dipeptide = new Dipeptide();
+		PeptidePlane plane = new PeptidePlane();
+		double[] frame = new double[9];
+		Vector3 v = new Vector3();
+		
+		// the n-wards bond vectors only depend on the default plane
+		dipeptide.setNwardsPlane( plane );
+		for( BondType type : BondType.values() )
+		{
+			if( type != BondType.CaHa )
+			{
+				type.getBondVector( v, dipeptide, ChainDirection.Nwards );
+				setVector( m_nwardsBondVectors, type.ordinal()*3, v );
+			}
+		}
+		
+		for( int i=0; i<m_numSamplesPerAngle; i++ )
+		{
+			double phi = Math.toRadians( getGridDegrees( i ) );
+			for( int j=0; j<m_numSamplesPerAngle; j++ )
+			{
+				double psi = Math.toRadians( getGridDegrees( j ) );
+				int cell = i*m_numSamplesPerAngle + j;
+				int offset = cell*NumPlaneAtoms*3;
+				
+				// c-wards from the default plane
+				dipeptide.setNwardsPlane( plane );
+				dipeptide.setPhi( phi );
+				dipeptide.setPsi( psi );
+				dipeptide.updateCwardsPlane();
+				getFrame( frame, dipeptide.getNwardsNAtom(), dipeptide.getCaAtom(), dipeptide.getNwardsHAtom() );
+				Vector3 origin = dipeptide.getCaAtom();
+				toLocal( m_cwardsAtoms, offset, dipeptide.getHaAtom(), frame, origin );
+				toLocal( m_cwardsAtoms, offset + 3, dipeptide.getCwardsCAtom(), frame, origin );
+				toLocal( m_cwardsAtoms, offset + 6, dipeptide.getCwardsOAtom(), frame, origin );
+				toLocal( m_cwardsAtoms, offset + 9, dipeptide.getCwardsNAtom(), frame, origin );
+				toLocal( m_cwardsAtoms, offset + 12, dipeptide.getCwardsHAtom(), frame, origin );
+				toLocal( m_cwardsAtoms, offset + 15, dipeptide.getCwardsCaAtom(), frame, origin );
+				for( BondType type : BondType.values() )
+				{
+					type.getBondVector( v, dipeptide, ChainDirection.Cwards );
+					setVector( m_cwardsBondVectors, ( cell*NumBondTypes + type.ordinal() )*3, v );
+				}
+				
+				// n-wards from the default plane
+				dipeptide.setCwardsPlane( plane );
+				dipeptide.updateNwardsPlane();
+				getFrame( frame, dipeptide.getCwardsCAtom(), dipeptide.getCaAtom(), dipeptide.getCwardsOAtom() );
+				origin = dipeptide.getCaAtom();
+				toLocal( m_nwardsAtoms, offset, dipeptide.getHaAtom(), frame, origin );
+				toLocal( m_nwardsAtoms, offset + 3, dipeptide.getNwardsNAtom(), frame, origin );
+				toLocal( m_nwardsAtoms, offset + 6, dipeptide.getNwardsHAtom(), frame, origin );
+				toLocal( m_nwardsAtoms, offset + 9, dipeptide.getNwardsCAtom(), frame, origin );
+				toLocal( m_nwardsAtoms, offset + 12, dipeptide.getNwardsOAtom(), frame, origin );
+				toLocal( m_nwardsAtoms, offset + 15, dipeptide.getNwardsCaAtom(), frame, origin );
+			}
+		}
+	}
+}
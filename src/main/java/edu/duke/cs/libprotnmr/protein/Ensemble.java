@@ -0,0 +1,358 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.protein;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import edu.duke.cs.libprotnmr.bond.BondGraph;
+import edu.duke.cs.libprotnmr.bond.BondGraphBuilder;
+import edu.duke.cs.libprotnmr.geom.Vector3;
+
+
+public class Ensemble implements Iterable<Ensemble.Model>
+{
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	public class Model
+	{
+		// a view of one model's packed coordinates
+		// NOTE: this isn't a HasAtoms on purpose. Atoms can't write their positions through to the packed coordinates,
+		// so read and write positions with getPosition() and setPosition(), or use getProtein() for a full copy
+		private int m_modelId;
+		
+		private Model( int modelId )
+		{
+			m_modelId = modelId;
+		}
+		
+		public int getModelId( )
+		{
+			return m_modelId;
+		}
+		
+		public Ensemble getEnsemble( )
+		{
+			return Ensemble.this;
+		}
+		
+		public void getPosition( Vector3 out, int atomIndex )
+		{
+			int i = getCoordinateIndex( m_modelId, atomIndex );
+			out.set( m_coords[i + 0], m_coords[i + 1], m_coords[i + 2] );
+		}
+		
+		public void getPosition( Vector3 out, AtomAddressInternal address )
+		{
+			getPosition( out, getAtomIndex( address ) );
+		}
+		
+		public void setPosition( int atomIndex, Vector3 position )
+		{
+			int i = getCoordinateIndex( m_modelId, atomIndex );
+			m_coords[i + 0] = position.x;
+			m_coords[i + 1] = position.y;
+			m_coords[i + 2] = position.z;
+		}
+		
+		public void setPosition( AtomAddressInternal address, Vector3 position )
+		{
+			setPosition( getAtomIndex( address ), position );
+		}
+		
+		public Protein getProtein( )
+		{
+			return Ensemble.this.getProtein( m_modelId );
+		}
+	}
+	
+	
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private Protein m_topology;
+	private int[][] m_firstAtomIndices;
+	private int m_numAtoms;
+	private int m_numModels;
+	private double[] m_coords;
+	private List<BondGraph> m_bondGraphs;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public Ensemble( List<Protein> proteins )
+	{
+		if( proteins.isEmpty() )
+		{
+			throw new IllegalArgumentException( "Ensemble must have at least one model!" );
+		}
+		
+		initTopology( proteins.get( 0 ) );
+		
+		// pack the coordinates
+		m_numModels = proteins.size();
+		m_coords = new double[m_numModels*m_numAtoms*3];
+		for( int i=0; i<m_numModels; i++ )
+		{
+			setCoordinates( i, proteins.get( i ) );
+		}
+		
+		m_bondGraphs = null;
+	}
+	
+	public Ensemble( Protein firstModel )
+	{
+		// start an ensemble with one model, then use addModel() for the rest
+		initTopology( firstModel );
+		m_numModels = 1;
+		m_coords = new double[m_numAtoms*3];
+		setCoordinates( 0, firstModel );
+		m_bondGraphs = null;
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public Protein getTopology( )
+	{
+		// NOTE: this is shared by all the models, so don't change it
+		return m_topology;
+	}
+	
+	public int getNumModels( )
+	{
+		return m_numModels;
+	}
+	
+	public int getNumAtoms( )
+	{
+		return m_numAtoms;
+	}
+	
+	public Model getModel( int modelId )
+	{
+		if( modelId < 0 || modelId >= m_numModels )
+		{
+			throw new IndexOutOfBoundsException( "No model " + modelId + "! Ensemble has " + m_numModels + " models." );
+		}
+		return new Model( modelId );
+	}
+	
+	public double[] getCoordinates( )
+	{
+		// packed as x,y,z for each atom, for each model
+		// NOTE: this is the ensemble's own array, not a copy, so changes show up in the models.
+		// After addModel(), it can be longer than getNumModels()*getNumAtoms()*3 until trimToSize() is called
+		return m_coords;
+	}
+	
+	public synchronized List<BondGraph> getBondGraphs( )
+	{
+		if( m_bondGraphs == null )
+		{
+			m_bondGraphs = BondGraphBuilder.getInstance().build( m_topology );
+		}
+		return m_bondGraphs;
+	}
+	
+	@Override
+	public Iterator<Model> iterator( )
+	{
+		return getModels().iterator();
+	}
+	
+	public List<Model> getModels( )
+	{
+		return new AbstractList<Model>( )
+		{
+			@Override
+			public Model get( int index )
+			{
+				return getModel( index );
+			}
+			
+			@Override
+			public int size( )
+			{
+				return m_numModels;
+			}
+		};
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public int getAtomIndex( int subunitId, int residueId, int atomId )
+	{
+		return m_firstAtomIndices[subunitId][residueId] + atomId;
+	}
+	
+	public int getAtomIndex( AtomAddressInternal address )
+	{
+		return getAtomIndex( address.getSubunitId(), address.getResidueId(), address.getAtomId() );
+	}
+	
+	public int getCoordinateIndex( int modelId, int atomIndex )
+	{
+		return ( modelId*m_numAtoms + atomIndex )*3;
+	}
+	
+	public Protein getProtein( int modelId )
+	{
+		Protein protein = new Protein( m_topology );
+		for( AtomAddressInternal address : protein.atoms() )
+		{
+			Vector3 position = new Vector3();
+			getModel( modelId ).getPosition( position, address );
+			protein.getAtom( address ).setPosition( position );
+		}
+		return protein;
+	}
+	
+	public List<Protein> getProteins( )
+	{
+		List<Protein> proteins = new ArrayList<Protein>( m_numModels );
+		for( int i=0; i<m_numModels; i++ )
+		{
+			proteins.add( getProtein( i ) );
+		}
+		return proteins;
+	}
+	
+	public int addModel( Protein protein )
+	{
+		// grow geometrically so adding models one at a time stays linear
+		checkTopology( protein );
+		int modelId = m_numModels;
+		if( ( modelId + 1 )*m_numAtoms*3 > m_coords.length )
+		{
+			m_coords = Arrays.copyOf( m_coords, Math.max( modelId + 1, modelId*2 )*m_numAtoms*3 );
+		}
+		m_numModels++;
+		setCoordinates( modelId, protein );
+		return modelId;
+	}
+	
+	public void trimToSize( )
+	{
+		// drop any spare capacity left over from addModel()
+		if( m_coords.length > m_numModels*m_numAtoms*3 )
+		{
+			m_coords = Arrays.copyOf( m_coords, m_numModels*m_numAtoms*3 );
+		}
+	}
+	
+	public void setCoordinates( int modelId, Protein protein )
+	{
+		checkTopology( protein );
+		for( Subunit subunit : protein.getSubunits() )
+		{
+			for( Residue residue : subunit.getResidues() )
+			{
+				for( Atom atom : residue.getAtoms() )
+				{
+					int i = getCoordinateIndex( modelId, getAtomIndex( subunit.getId(), residue.getId(), atom.getId() ) );
+					m_coords[i + 0] = atom.getPosition().x;
+					m_coords[i + 1] = atom.getPosition().y;
+					m_coords[i + 2] = atom.getPosition().z;
+				}
+			}
+		}
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private void initTopology( Protein protein )
+	{
+		// keep one copy of the topology, without any coordinates
+		m_topology = new Protein( protein );
+		m_firstAtomIndices = new int[m_topology.getSubunits().size()][];
+		m_numAtoms = 0;
+		for( Subunit subunit : m_topology.getSubunits() )
+		{
+			int[] firstAtomIndices = new int[subunit.getResidues().size()];
+			for( Residue residue : subunit.getResidues() )
+			{
+				firstAtomIndices[residue.getId()] = m_numAtoms;
+				for( Atom atom : residue.getAtoms() )
+				{
+					atom.setPosition( Vector3.getOrigin() );
+				}
+				m_numAtoms += residue.getAtoms().size();
+			}
+			m_firstAtomIndices[subunit.getId()] = firstAtomIndices;
+		}
+	}
+	
+	private void checkTopology( Protein protein )
+	{
+		if( protein.getSubunits().size() != m_topology.getSubunits().size() )
+		{
+			throw new IllegalArgumentException( "Ensemble proteins do not have the same number of subunits!" );
+		}
+		for( int i=0; i<m_topology.getSubunits().size(); i++ )
+		{
+			Subunit subunit = protein.getSubunits().get( i );
+			Subunit topologySubunit = m_topology.getSubunits().get( i );
+			if( subunit.getResidues().size() != topologySubunit.getResidues().size() )
+			{
+				throw new IllegalArgumentException( "Ensemble proteins do not have the same residues!" );
+			}
+			for( int j=0; j<topologySubunit.getResidues().size(); j++ )
+			{
+				List<Atom> atoms = subunit.getResidues().get( j ).getAtoms();
+				List<Atom> topologyAtoms = topologySubunit.getResidues().get( j ).getAtoms();
+				if( atoms.size() != topologyAtoms.size() )
+				{
+					throw new IllegalArgumentException( "Ensemble proteins do not have the same atom order!" );
+				}
+				for( int k=0; k<topologyAtoms.size(); k++ )
+				{
+					if( !atoms.get( k ).getName().equalsIgnoreCase( topologyAtoms.get( k ).getName() ) )
+					{
+						throw new IllegalArgumentException( "Ensemble proteins do not have the same atom order!" );
+					}
+				}
+			}
+		}
+	}
+}
@@ -51,6 +51,7 @@ public class Subunit implements HasAtoms
 	private ArrayList<AtomAddressInternal> m_atomIndex;
 	private ArrayList<AtomAddressInternal> m_backboneAtomIndex;
 	private TreeMap<ResidueRange,BackboneConformation> m_backboneConformations;
+	private volatile AtomNameIndex m_atomNameIndex;
 	
 	
 	/**************************
@@ -344,6 +345,24 @@ public class Subunit implements HasAtoms
 		residue.setId( m_residues.size() );
 		m_residues.add( residue );
 		m_residueIndex.put( residue.getNumber(), residue.getId() );
+		invalidateAtomNameIndex();
+	}
+	
+	public AtomNameIndex getAtomNameIndex( )
+	{
+		// racing threads may each build an index, but they're identical and immutable
+		AtomNameIndex index = m_atomNameIndex;
+		if( index == null )
+		{
+			index = new AtomNameIndex( this );
+			m_atomNameIndex = index;
+		}
+		return index;
+	}
+	
+	public void invalidateAtomNameIndex( )
+	{
+		m_atomNameIndex = null;
 	}
 	
 	public void updateAtomIndices( )
@@ -351,6 +370,7 @@ public class Subunit implements HasAtoms
 		// clear any existing indices
 		m_atomIndex.clear();
 		m_backboneAtomIndex.clear();
+		invalidateAtomNameIndex();
 		
 		// for each residue...
 		for( int residueId=0; residueId<m_residues.size(); residueId++ )
@@ -402,6 +422,7 @@ public class Subunit implements HasAtoms
 		
 		// then update the index
 		m_residueIndex.clear();
+		invalidateAtomNameIndex();
 		for( int i=0; i<m_residues.size(); i++ )
 		{
 			Residue residue = m_residues.get( i );
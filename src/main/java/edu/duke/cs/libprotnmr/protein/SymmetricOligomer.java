@@ -0,0 +1,250 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.protein;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.duke.cs.libprotnmr.geom.Line3;
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.math.Matrix3;
+
+
+public class SymmetricOligomer implements HasAtoms
+{
+	// a Cn homo-oligomer stored as one subunit (the asymmetric unit) and the symmetry axis
+	// subunit k is the asymmetric unit rotated by 2*pi*k/n around the axis
+	
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private Subunit m_subunit;
+	private int m_numSubunits;
+	private Vector3 m_axisPoint;
+	private Vector3 m_axisDirection;
+	private Matrix3[] m_rotations;
+	private List<AtomAddressInternal> m_atoms;
+	private List<AtomAddressInternal> m_backboneAtoms;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public SymmetricOligomer( Subunit subunit, Line3 axis, int numSubunits )
+	{
+		if( numSubunits < 1 )
+		{
+			throw new IllegalArgumentException( "Oligomer must have at least one subunit!" );
+		}
+		
+		// keep our own copy of the asymmetric unit as subunit 0
+		m_subunit = new Subunit( subunit );
+		m_subunit.setId( 0 );
+		m_subunit.setName( 'A' );
+		m_subunit.updateAtomIndices();
+		m_numSubunits = numSubunits;
+		
+		m_axisPoint = new Vector3( axis.start );
+		m_axisDirection = new Vector3( axis.stop );
+		m_axisDirection.subtract( axis.start );
+		m_axisDirection.normalize();
+		
+		m_rotations = new Matrix3[numSubunits];
+		for( int i=0; i<numSubunits; i++ )
+		{
+			m_rotations[i] = new Matrix3();
+			Matrix3.getRotation( m_rotations[i], m_axisDirection, 2.0*Math.PI*i/numSubunits );
+		}
+		
+		m_atoms = null;
+		m_backboneAtoms = null;
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public Subunit getAsymmetricUnit( )
+	{
+		return m_subunit;
+	}
+	
+	public int getNumSubunits( )
+	{
+		return m_numSubunits;
+	}
+	
+	public Line3 getAxis( )
+	{
+		Vector3 stop = new Vector3( m_axisPoint );
+		stop.add( m_axisDirection );
+		return new Line3( new Vector3( m_axisPoint ), stop );
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public int getSubunitOffset( int fromSubunitId, int toSubunitId )
+	{
+		// the symmetry operator that takes one subunit to the other
+		return ( ( toSubunitId - fromSubunitId )%m_numSubunits + m_numSubunits )%m_numSubunits;
+	}
+	
+	public void transform( Vector3 position, int subunitId )
+	{
+		// apply the symmetry operator for the subunit to a position in the asymmetric unit
+		if( subunitId == 0 )
+		{
+			return;
+		}
+		position.subtract( m_axisPoint );
+		m_rotations[subunitId].multiply( position );
+		position.add( m_axisPoint );
+	}
+	
+	public boolean getPosition( Vector3 out, int subunitId, int residueId, int atomId )
+	{
+		Atom atom = m_subunit.getAtom( residueId, atomId );
+		if( atom == null || subunitId < 0 || subunitId >= m_numSubunits )
+		{
+			return false;
+		}
+		out.set( atom.getPosition() );
+		transform( out, subunitId );
+		return true;
+	}
+	
+	public boolean getPosition( Vector3 out, AtomAddressInternal address )
+	{
+		return getPosition( out, address.getSubunitId(), address.getResidueId(), address.getAtomId() );
+	}
+	
+	@Override
+	public Atom getAtom( int subunitId, int residueId, int atomId )
+	{
+		// NOTE: the atom is a copy, so changing its position doesn't change the oligomer
+		Atom asymmetricAtom = m_subunit.getAtom( residueId, atomId );
+		if( asymmetricAtom == null || subunitId < 0 || subunitId >= m_numSubunits )
+		{
+			return null;
+		}
+		Atom atom = new Atom( asymmetricAtom );
+		transform( atom.getPosition(), subunitId );
+		return atom;
+	}
+	
+	@Override
+	public Atom getAtom( AtomAddressInternal address )
+	{
+		return getAtom( address.getSubunitId(), address.getResidueId(), address.getAtomId() );
+	}
+	
+	@Override
+	public int getNumAtoms( )
+	{
+		return m_subunit.getNumAtoms()*m_numSubunits;
+	}
+	
+	@Override
+	public int getNumBackboneAtoms( )
+	{
+		return m_subunit.getNumBackboneAtoms()*m_numSubunits;
+	}
+	
+	@Override
+	public synchronized List<AtomAddressInternal> atoms( )
+	{
+		if( m_atoms == null )
+		{
+			m_atoms = getAddresses( m_subunit.atoms() );
+		}
+		return m_atoms;
+	}
+	
+	@Override
+	public synchronized List<AtomAddressInternal> backboneAtoms( )
+	{
+		if( m_backboneAtoms == null )
+		{
+			m_backboneAtoms = getAddresses( m_subunit.backboneAtoms() );
+		}
+		return m_backboneAtoms;
+	}
+	
+	public List<AtomAddressInternal> atoms( int subunitId )
+	{
+		return atoms().subList( subunitId*m_subunit.atoms().size(), ( subunitId + 1 )*m_subunit.atoms().size() );
+	}
+	
+	public Protein getProtein( )
+	{
+		// expand all the copies
+		Protein protein = new Protein();
+		for( int i=0; i<m_numSubunits; i++ )
+		{
+			Subunit subunit = new Subunit( m_subunit );
+			subunit.setName( (char)( 'A' + i ) );
+			for( AtomAddressInternal address : m_subunit.atoms() )
+			{
+				transform( subunit.getAtom( address ).getPosition(), i );
+			}
+			protein.addSubunit( subunit );
+		}
+		return protein;
+	}
+	
+	@Override
+	public Protein clone( )
+	{
+		return getProtein();
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private List<AtomAddressInternal> getAddresses( List<AtomAddressInternal> subunitAddresses )
+	{
+		List<AtomAddressInternal> addresses = new ArrayList<AtomAddressInternal>( subunitAddresses.size()*m_numSubunits );
+		for( int i=0; i<m_numSubunits; i++ )
+		{
+			for( AtomAddressInternal address : subunitAddresses )
+			{
+				addresses.add( new AtomAddressInternal( i, address.getResidueId(), address.getAtomId() ) );
+			}
+		}
+		return Collections.unmodifiableList( addresses );
+	}
+}
@@ -0,0 +1,368 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.protein.tools;
+
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.protein.AminoAcid;
+import edu.duke.cs.libprotnmr.protein.Dipeptide;
+import edu.duke.cs.libprotnmr.protein.IdealGeometry;
+import edu.duke.cs.libprotnmr.protein.PeptidePlane;
+import edu.duke.cs.libprotnmr.protein.Residue;
+import edu.duke.cs.libprotnmr.protein.Subunit;
+
+
+// Builds ideal-geometry backbones from phi/psi angles using NeRF placement (each atom from
+// the three atoms before it) into a flat coordinate buffer. Produces the same atoms as the
+// Dipeptide kinematics used by PolypeptideGenerator, without allocating per residue.
+public class BackboneBuilder
+{
+	/*********************************
+	 *   Definitions
+	 *********************************/
+	
+	// atom order in each residue of the buffer, same as PolypeptideGenerator
+	public static final int H = 0;
+	public static final int N = 1;
+	public static final int CA = 2;
+	public static final int HA = 3;
+	public static final int C = 4;
+	public static final int O = 5;
+	public static final int AtomsPerResidue = 6;
+	
+	private static final String[] AtomNames = { "H", "N", "CA", "HA", "C", "O" };
+	private static final boolean[] IsBackbone = { false, true, true, false, true, false };
+	
+	private static final int ResidueStride = AtomsPerResidue*3;
+	
+	// placement constants for each atom, as (bond length) * ( -cos(angle), sin(angle) )
+	// and the torsion offset that gets added to phi, psi or omega
+	private static final double[] HaPlacement;
+	private static final double[] CPlacement = getPlacement( IdealGeometry.LengthCaC, IdealGeometry.AngleNCaC, 0.0 );
+	private static final double[] OPlacement = getPlacement( IdealGeometry.LengthCO, IdealGeometry.AngleCaCO, Math.PI );
+	private static final double[] NPlacement = getPlacement( IdealGeometry.LengthCN, IdealGeometry.AngleCaCN, 0.0 );
+	private static final double[] HPlacement = getPlacement( IdealGeometry.LengthNH, IdealGeometry.AngleCNH, IdealGeometry.AngleOmega - Math.PI );
+	private static final double[] CaPlacement = getPlacement( IdealGeometry.LengthNCa, IdealGeometry.AngleCNCa, IdealGeometry.AngleOmega );
+	
+	static
+	{
+		// Ha isn't placed by a single bond angle and torsion in IdealGeometry,
+		// so measure its internal coordinates once from the Dipeptide kinematics
+		Dipeptide dipeptide = new Dipeptide();
+		dipeptide.setNwardsPlane( new PeptidePlane() );
+		dipeptide.updateCwardsPlane( 0.0, 0.0 );
+		double[] internal = getInternalCoordinates(
+			dipeptide.getNwardsCAtom(),
+			dipeptide.getNwardsNAtom(),
+			dipeptide.getCaAtom(),
+			dipeptide.getHaAtom()
+		);
+		HaPlacement = getPlacement( IdealGeometry.LengthCaHa, internal[0], internal[1] );
+	}
+	
+	
+	/*********************************
+	 *   Data Members
+	 *********************************/
+	
+	private int m_numResidues;
+	private double[] m_angles;
+	private double[] m_coords;
+	private double[] m_prevC;
+	private int m_firstDirtyResidueId;
+	private double[] m_frame;
+	
+	
+	/*********************************
+	 *   Constructors
+	 *********************************/
+	
+	public BackboneBuilder( int numResidues )
+	{
+		this( numResidues, new PeptidePlane() );
+	}
+	
+	public BackboneBuilder( int numResidues, PeptidePlane firstPlane )
+	{
+		if( numResidues <= 0 )
+		{
+			throw new IllegalArgumentException( "At least one residue must be specified!" );
+		}
+		
+		m_numResidues = numResidues;
+		m_angles = new double[numResidues*2];
+		
+		// the last "residue" only holds the H, N, and CA of the next peptide plane
+		m_coords = new double[( numResidues + 1 )*ResidueStride];
+		m_prevC = new double[3];
+		m_frame = new double[9];
+		setFirstPlane( firstPlane );
+	}
+	
+	
+	/*********************************
+	 *   Accessors
+	 *********************************/
+	
+	public int getNumResidues( )
+	{
+		return m_numResidues;
+	}
+	
+	public double getPhi( int residueId )
+	{
+		return m_angles[residueId*2];
+	}
+	
+	public double getPsi( int residueId )
+	{
+		return m_angles[residueId*2 + 1];
+	}
+	
+	public void setAngles( int residueId, double phi, double psi )
+	{
+		m_angles[residueId*2] = phi;
+		m_angles[residueId*2 + 1] = psi;
+		markDirty( residueId );
+	}
+	
+	public void setAngles( double[] angles )
+	{
+		setAngles( angles, 0 );
+	}
+	
+	public void setAngles( double[] angles, int firstResidueId )
+	{
+		// angles are phi,psi pairs starting at firstResidueId
+		if( angles.length % 2 != 0 )
+		{
+			throw new IllegalArgumentException( "There must be an even number of angles!" );
+		}
+		if( firstResidueId*2 + angles.length > m_angles.length )
+		{
+			throw new IllegalArgumentException( "Too many angles for " + m_numResidues + " residues!" );
+		}
+		System.arraycopy( angles, 0, m_angles, firstResidueId*2, angles.length );
+		markDirty( firstResidueId );
+	}
+	
+	public void setFirstPlane( PeptidePlane plane )
+	{
+		setPosition( m_prevC, 0, plane.getCAtom() );
+		setPosition( m_coords, H*3, plane.getHAtom() );
+		setPosition( m_coords, N*3, plane.getNAtom() );
+		setPosition( m_coords, CA*3, plane.getCanAtom() );
+		markDirty( 0 );
+	}
+	
+	// the raw buffer, laid out as residue, atom (see the atom indices above), xyz
+	// only valid after build()
+	public double[] getCoordinates( )
+	{
+		return m_coords;
+	}
+	
+	public void getPosition( Vector3 out, int residueId, int atomIndex )
+	{
+		int i = residueId*ResidueStride + atomIndex*3;
+		out.set( m_coords[i], m_coords[i + 1], m_coords[i + 2] );
+	}
+	
+	
+	/*********************************
+	 *   Methods
+	 *********************************/
+	
+	public void build( )
+	{
+		// only residues at or after the first changed angle need to move
+		for( int i=m_firstDirtyResidueId; i<m_numResidues; i++ )
+		{
+			buildResidue( i );
+		}
+		m_firstDirtyResidueId = m_numResidues;
+	}
+	
+	public void build( double[] angles )
+	{
+		setAngles( angles );
+		build();
+	}
+	
+	public Subunit newSubunit( )
+	{
+		build();
+		
+		Subunit subunit = new Subunit();
+		subunit.setName( 'A' );
+		Vector3 pos = new Vector3();
+		for( int i=0; i<m_numResidues; i++ )
+		{
+			Residue residue = new Residue();
+			residue.setAminoAcid( AminoAcid.Alanine );
+			residue.setNumber( i );
+			subunit.getResidues().add( residue );
+			
+			for( int j=0; j<AtomsPerResidue; j++ )
+			{
+				getPosition( pos, i, j );
+				residue.getAtoms().add( PolypeptideGenerator.newAtom( AtomNames[j], pos, IsBackbone[j] ) );
+			}
+		}
+		subunit.updateResidueIndex();
+		subunit.updateAtomIndices();
+		return subunit;
+	}
+	
+	
+	/*********************************
+	 *   Static Functions
+	 *********************************/
+	
+	private static double[] getPlacement( double length, double angle, double torsionOffset )
+	{
+		return new double[] {
+			-length*Math.cos( angle ),
+			length*Math.sin( angle ),
+			Math.cos( torsionOffset ),
+			Math.sin( torsionOffset )
+		};
+	}
+	
+	private static double[] getInternalCoordinates( Vector3 a, Vector3 b, Vector3 c, Vector3 d )
+	{
+		// the inverse of place(): returns the b-c-d angle and the a-b-c-d torsion
+		double[] coords = new double[4*3];
+		setPosition( coords, 0, a );
+		setPosition( coords, 3, b );
+		setPosition( coords, 6, c );
+		double[] frame = new double[9];
+		getFrame( frame, coords, 0, coords, 3, coords, 6 );
+		double x = ( d.x - c.x )*frame[0] + ( d.y - c.y )*frame[1] + ( d.z - c.z )*frame[2];
+		double y = ( d.x - c.x )*frame[3] + ( d.y - c.y )*frame[4] + ( d.z - c.z )*frame[5];
+		double z = ( d.x - c.x )*frame[6] + ( d.y - c.y )*frame[7] + ( d.z - c.z )*frame[8];
+		return new double[] {
+			Math.atan2( Math.sqrt( y*y + z*z ), -x ),
+			Math.atan2( z, y )
+		};
+	}
+	
+	private static void setPosition( double[] coords, int i, Vector3 pos )
+	{
+		coords[i] = pos.x;
+		coords[i + 1] = pos.y;
+		coords[i + 2] = pos.z;
+	}
+	
+	private static void getFrame( double[] out, double[] aCoords, int a, double[] bCoords, int b, double[] cCoords, int c )
+	{
+		// bc = unit( c - b )
+		double bcx = cCoords[c] - bCoords[b];
+		double bcy = cCoords[c + 1] - bCoords[b + 1];
+		double bcz = cCoords[c + 2] - bCoords[b + 2];
+		double s = 1.0/Math.sqrt( bcx*bcx + bcy*bcy + bcz*bcz );
+		bcx *= s;
+		bcy *= s;
+		bcz *= s;
+		
+		// n = unit( ( b - a ) x bc )
+		double abx = bCoords[b] - aCoords[a];
+		double aby = bCoords[b + 1] - aCoords[a + 1];
+		double abz = bCoords[b + 2] - aCoords[a + 2];
+		double nx = aby*bcz - abz*bcy;
+		double ny = abz*bcx - abx*bcz;
+		double nz = abx*bcy - aby*bcx;
+		s = 1.0/Math.sqrt( nx*nx + ny*ny + nz*nz );
+		nx *= s;
+		ny *= s;
+		nz *= s;
+		
+		// m = n x bc
+		out[0] = bcx;
+		out[1] = bcy;
+		out[2] = bcz;
+		out[3] = ny*bcz - nz*bcy;
+		out[4] = nz*bcx - nx*bcz;
+		out[5] = nx*bcy - ny*bcx;
+		out[6] = nx;
+		out[7] = ny;
+		out[8] = nz;
+	}
+	
+	private static void place( double[] out, int d, double[] frame, double[] origin, int c, double[] placement, double cosTorsion, double sinTorsion )
+	{
+		// torsion = offset + angle, expanded so we only need the trig of the angle once per residue
+		double cos = placement[2]*cosTorsion - placement[3]*sinTorsion;
+		double sin = placement[3]*cosTorsion + placement[2]*sinTorsion;
+		double u = placement[0];
+		double v = placement[1]*cos;
+		double w = placement[1]*sin;
+		out[d] = origin[c] + u*frame[0] + v*frame[3] + w*frame[6];
+		out[d + 1] = origin[c + 1] + u*frame[1] + v*frame[4] + w*frame[7];
+		out[d + 2] = origin[c + 2] + u*frame[2] + v*frame[5] + w*frame[8];
+	}
+	
+	
+	/*********************************
+	 *   Functions
+	 *********************************/
+	
+	private void markDirty( int residueId )
+	{
+		m_firstDirtyResidueId = Math.min( m_firstDirtyResidueId, residueId );
+	}
+	
+	private void buildResidue( int residueId )
+	{
+		double[] frame = m_frame;
+		double[] prevCoords = residueId == 0 ? m_prevC : m_coords;
+		int prevC = residueId == 0 ? 0 : ( residueId - 1 )*ResidueStride + C*3;
+		int base = residueId*ResidueStride;
+		int next = base + ResidueStride;
+		double phi = m_angles[residueId*2];
+		double psi = m_angles[residueId*2 + 1];
+		double cosPhi = Math.cos( phi );
+		double sinPhi = Math.sin( phi );
+		double cosPsi = Math.cos( psi );
+		double sinPsi = Math.sin( psi );
+		
+		// HA and C hang off the previous C, N, CA and rotate with phi
+		getFrame( frame, prevCoords, prevC, m_coords, base + N*3, m_coords, base + CA*3 );
+		place( m_coords, base + HA*3, frame, m_coords, base + CA*3, HaPlacement, cosPhi, sinPhi );
+		place( m_coords, base + C*3, frame, m_coords, base + CA*3, CPlacement, cosPhi, sinPhi );
+		
+		// O and the next N hang off N, CA, C and rotate with psi
+		getFrame( frame, m_coords, base + N*3, m_coords, base + CA*3, m_coords, base + C*3 );
+		place( m_coords, base + O*3, frame, m_coords, base + C*3, OPlacement, cosPsi, sinPsi );
+		place( m_coords, next + N*3, frame, m_coords, base + C*3, NPlacement, cosPsi, sinPsi );
+		
+		// the next H and CA complete the planar peptide
+		getFrame( frame, m_coords, base + CA*3, m_coords, base + C*3, m_coords, next + N*3 );
+		place( m_coords, next + H*3, frame, m_coords, next + N*3, HPlacement, 1.0, 0.0 );
+		place( m_coords, next + CA*3, frame, m_coords, next + N*3, CaPlacement, 1.0, 0.0 );
+	}
+}
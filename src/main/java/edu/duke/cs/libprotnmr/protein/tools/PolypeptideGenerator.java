@@ -151,7 +151,7 @@ public class PolypeptideGenerator
 	 *   Static Functions
 	 *********************************/
 	
-	private static Atom newAtom( String atomName, Vector3 pos, boolean isBackbone )
+	static Atom newAtom( String atomName, Vector3 pos, boolean isBackbone )
 	{
 		Atom atom = new Atom();
 		atom.setName( atomName );
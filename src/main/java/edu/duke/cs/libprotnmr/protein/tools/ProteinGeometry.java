@@ -175,7 +175,8 @@ public class ProteinGeometry
 	public static Vector3 getBackboneAxis( List<Vector3> points )
 	{
 		// use PCA to get the major axis
-		Vector3 axis = PrincipalComponents.getPrincipalComponents( points ).lastEntry().getValue();
+		Vector3 axis = new Vector3();
+		PrincipalComponents.getMajorAxis( axis, points );
 		
 		// make sure the axis is pointing in the right direction
 		Vector3 backboneDirection = new Vector3( points.get( points.size() - 1 ) );
@@ -0,0 +1,362 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.rama;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import edu.duke.cs.libprotnmr.perf.WorkCrew;
+import edu.duke.cs.libprotnmr.protein.Atom;
+import edu.duke.cs.libprotnmr.protein.HasAtoms;
+import edu.duke.cs.libprotnmr.protein.Protein;
+import edu.duke.cs.libprotnmr.protein.Residue;
+import edu.duke.cs.libprotnmr.protein.Subunit;
+
+
+public class RamaBatch
+{
+	/**************************
+	 *   Definitions
+	 **************************/
+	
+	// C(i-1), N(i), CA(i), C(i), N(i+1)
+	private static final int NumAtomsPerResidue = 5;
+	
+	private static class Work
+	{
+		public HasAtoms model;
+		public Map<RamaSatisfaction,Integer> counts;
+		
+		public Work( HasAtoms model )
+		{
+			this.model = model;
+			this.counts = null;
+		}
+	}
+	
+	
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private int m_numResidues;
+	private int[] m_subunitIds;
+	private int[] m_residueIds;
+	private int[] m_atomIds;
+	private String[] m_atomNames;
+	private int m_numAtoms;
+	private int[] m_residueNumbers;
+	private RamaCase[] m_cases;
+	private int[][] m_residuesByCase;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public RamaBatch( Protein topology )
+	{
+		// find all the residues with phi/psi angles, skipping the first and last residues in each subunit
+		List<Residue> residues = new ArrayList<Residue>();
+		List<Subunit> subunits = new ArrayList<Subunit>();
+		for( Subunit subunit : topology.getSubunits() )
+		{
+			for( Residue residue : subunit.getResidues() )
+			{
+				if( residue.getId() == 0 || residue.getId() == subunit.getResidues().size() - 1 )
+				{
+					continue;
+				}
+				residues.add( residue );
+				subunits.add( subunit );
+			}
+		}
+		m_numResidues = residues.size();
+		m_numAtoms = topology.getNumAtoms();
+		
+		// look up the backbone atoms and rama cases once
+		m_subunitIds = new int[m_numResidues*NumAtomsPerResidue];
+		m_residueIds = new int[m_numResidues*NumAtomsPerResidue];
+		m_atomIds = new int[m_numResidues*NumAtomsPerResidue];
+		m_atomNames = new String[m_numResidues*NumAtomsPerResidue];
+		m_cases = new RamaCase[m_numResidues];
+		m_residueNumbers = new int[m_numResidues];
+		int[] numResiduesByCase = new int[RamaCase.values().length];
+		for( int i=0; i<m_numResidues; i++ )
+		{
+			Subunit subunit = subunits.get( i );
+			int id = residues.get( i ).getId();
+			setAtom( i*NumAtomsPerResidue + 0, subunit, id - 1, "C" );
+			setAtom( i*NumAtomsPerResidue + 1, subunit, id, "N" );
+			setAtom( i*NumAtomsPerResidue + 2, subunit, id, "CA" );
+			setAtom( i*NumAtomsPerResidue + 3, subunit, id, "C" );
+			setAtom( i*NumAtomsPerResidue + 4, subunit, id + 1, "N" );
+			
+			m_residueNumbers[i] = residues.get( i ).getNumber();
+			m_cases[i] = RamaCase.getCaseByNumber( subunit.getSequence(), m_residueNumbers[i] );
+			numResiduesByCase[m_cases[i].ordinal()]++;
+		}
+		
+		// group the residues by case so we can classify them in bulk
+		m_residuesByCase = new int[RamaCase.values().length][];
+		for( RamaCase ramaCase : RamaCase.values() )
+		{
+			m_residuesByCase[ramaCase.ordinal()] = new int[numResiduesByCase[ramaCase.ordinal()]];
+			numResiduesByCase[ramaCase.ordinal()] = 0;
+			
+			// load the maps now so worker threads don't race to do it
+			if( m_residuesByCase[ramaCase.ordinal()].length > 0 )
+			{
+				ramaCase.getMap();
+			}
+		}
+		for( int i=0; i<m_numResidues; i++ )
+		{
+			int c = m_cases[i].ordinal();
+			m_residuesByCase[c][numResiduesByCase[c]++] = i;
+		}
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public int getNumResidues( )
+	{
+		return m_numResidues;
+	}
+	
+	public int getSubunitId( int index )
+	{
+		return m_subunitIds[index*NumAtomsPerResidue + 2];
+	}
+	
+	public int getResidueId( int index )
+	{
+		return m_residueIds[index*NumAtomsPerResidue + 2];
+	}
+	
+	public int getResidueNumber( int index )
+	{
+		return m_residueNumbers[index];
+	}
+	
+	public RamaCase getCase( int index )
+	{
+		return m_cases[index];
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public void getAngles( double[] phiDegrees, double[] psiDegrees, HasAtoms model )
+	{
+		// every model is indexed with the topology's layout, so it had better match
+		if( model.getNumAtoms() != m_numAtoms )
+		{
+			throw new IllegalArgumentException( "Model has " + model.getNumAtoms() + " atoms, but the topology has " + m_numAtoms + "!" );
+		}
+		
+		// gather the backbone positions
+		double[] p = new double[m_numResidues*NumAtomsPerResidue*3];
+		for( int i=0; i<m_atomIds.length; i++ )
+		{
+			Atom atom = model.getAtom( m_subunitIds[i], m_residueIds[i], m_atomIds[i] );
+			if( atom == null || !atom.getName().equals( m_atomNames[i] ) )
+			{
+				throw new IllegalArgumentException( "Model does not have the same backbone atoms as the topology!" );
+			}
+			p[i*3 + 0] = atom.getPosition().x;
+			p[i*3 + 1] = atom.getPosition().y;
+			p[i*3 + 2] = atom.getPosition().z;
+		}
+		
+		// compute all the dihedrals in one pass
+		for( int i=0; i<m_numResidues; i++ )
+		{
+			int a = i*NumAtomsPerResidue*3;
+			phiDegrees[i] = Math.toDegrees( getDihedralAngle( p, a, a + 3, a + 6, a + 9 ) );
+			psiDegrees[i] = Math.toDegrees( getDihedralAngle( p, a + 3, a + 6, a + 9, a + 12 ) );
+		}
+	}
+	
+	public void getSatisfactions( RamaSatisfaction[] out, HasAtoms model )
+	{
+		double[] phiDegrees = new double[m_numResidues];
+		double[] psiDegrees = new double[m_numResidues];
+		double[] values = new double[m_numResidues];
+		getAngles( phiDegrees, psiDegrees, model );
+		for( RamaCase ramaCase : RamaCase.values() )
+		{
+			int[] indices = m_residuesByCase[ramaCase.ordinal()];
+			if( indices.length == 0 )
+			{
+				continue;
+			}
+			ramaCase.getMap().getInterpolatedValues( values, phiDegrees, psiDegrees, indices );
+			for( int i : indices )
+			{
+				if( values[i] >= ramaCase.getFavoredCutoff() )
+				{
+					out[i] = RamaSatisfaction.Favored;
+				}
+				else if( values[i] >= ramaCase.getAllowedCutoff() )
+				{
+					out[i] = RamaSatisfaction.Allowed;
+				}
+				else
+				{
+					out[i] = RamaSatisfaction.Disallowed;
+				}
+			}
+		}
+	}
+	
+	public Map<RamaSatisfaction,Integer> getSatisfactionCounts( HasAtoms model )
+	{
+		RamaSatisfaction[] satisfactions = new RamaSatisfaction[m_numResidues];
+		getSatisfactions( satisfactions, model );
+		int[] counts = new int[RamaSatisfaction.values().length];
+		for( RamaSatisfaction satisfaction : satisfactions )
+		{
+			counts[satisfaction.ordinal()]++;
+		}
+		Map<RamaSatisfaction,Integer> countsMap = new TreeMap<RamaSatisfaction,Integer>();
+		for( RamaSatisfaction satisfaction : RamaSatisfaction.values() )
+		{
+			countsMap.put( satisfaction, counts[satisfaction.ordinal()] );
+		}
+		return countsMap;
+	}
+	
+	public List<Map<RamaSatisfaction,Integer>> getSatisfactionCounts( List<? extends HasAtoms> ensemble )
+	{
+		List<Map<RamaSatisfaction,Integer>> allCounts = new ArrayList<Map<RamaSatisfaction,Integer>>( ensemble.size() );
+		for( HasAtoms model : ensemble )
+		{
+			allCounts.add( getSatisfactionCounts( model ) );
+		}
+		return allCounts;
+	}
+	
+	public List<Map<RamaSatisfaction,Integer>> getSatisfactionCounts( List<? extends HasAtoms> ensemble, int numWorkers )
+	{
+		// check the models up front, so a mismatch isn't buried in a worker failure
+		for( int i=0; i<ensemble.size(); i++ )
+		{
+			if( ensemble.get( i ).getNumAtoms() != m_numAtoms )
+			{
+				throw new IllegalArgumentException( "Model " + i + " does not have the same atoms as the topology!" );
+			}
+		}
+		
+		// models are independent, so spread them across the work crew
+		WorkCrew<Work> workCrew = new WorkCrew<Work>( )
+		{
+			@Override
+			protected void processInWorkerThread( Work work )
+			{
+				work.counts = getSatisfactionCounts( work.model );
+			}
+		};
+		workCrew.startWorkers( numWorkers );
+		List<Work> works = new ArrayList<Work>( ensemble.size() );
+		for( HasAtoms model : ensemble )
+		{
+			Work work = new Work( model );
+			works.add( work );
+			workCrew.addWork( work );
+		}
+		workCrew.waitUntilWorkIsFinished();
+		
+		List<Map<RamaSatisfaction,Integer>> allCounts = new ArrayList<Map<RamaSatisfaction,Integer>>( ensemble.size() );
+		for( Work work : works )
+		{
+			allCounts.add( work.counts );
+		}
+		return allCounts;
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private void setAtom( int index, Subunit subunit, int residueId, String atomName )
+	{
+		Residue residue = subunit.getResidue( residueId );
+		if( residue == null )
+		{
+			throw new IllegalArgumentException( "Missing residue " + subunit.getSequence().getResidueNumber( residueId ) + "!" );
+		}
+		Atom atom = residue.getAtomByName( atomName );
+		if( atom == null )
+		{
+			throw new IllegalArgumentException( "Missing atom " + atomName + " in residue " + subunit.getSequence().getResidueNumber( residueId ) + "!" );
+		}
+		m_subunitIds[index] = subunit.getId();
+		m_residueIds[index] = residueId;
+		m_atomIds[index] = atom.getId();
+		m_atomNames[index] = atom.getName();
+	}
+	
+	private static double getDihedralAngle( double[] p, int a, int b, int c, int d )
+	{
+		// same construction as ProteinGeometry.getDihedralAngle(), without the temporary objects
+		// z = unit bc, x = cd projected orthogonal to z, y = z cross x
+		double zx = p[b + 0] - p[c + 0];
+		double zy = p[b + 1] - p[c + 1];
+		double zz = p[b + 2] - p[c + 2];
+		double zlen = Math.sqrt( zx*zx + zy*zy + zz*zz );
+		zx /= zlen;
+		zy /= zlen;
+		zz /= zlen;
+		
+		double dx = p[d + 0] - p[c + 0];
+		double dy = p[d + 1] - p[c + 1];
+		double dz = p[d + 2] - p[c + 2];
+		double dot = dx*zx + dy*zy + dz*zz;
+		double xx = dx - dot*zx;
+		double xy = dy - dot*zy;
+		double xz = dz - dot*zz;
+		
+		double yx = zy*xz - zz*xy;
+		double yy = zz*xx - zx*xz;
+		double yz = zx*xy - zy*xx;
+		
+		// the normalizations of x and y cancel inside atan2
+		double ax = p[a + 0] - p[b + 0];
+		double ay = p[a + 1] - p[b + 1];
+		double az = p[a + 2] - p[b + 2];
+		return Math.atan2( ax*yx + ay*yy + az*yz, ax*xx + ay*xy + az*xz );
+	}
+}
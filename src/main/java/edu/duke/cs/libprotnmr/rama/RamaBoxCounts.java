@@ -0,0 +1,236 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.rama;
+
+public class RamaBoxCounts
+{
+	/**************************
+	 *   Data Members
+	 **************************/
+	
+	private RamaMap m_map;
+	private double m_cutoff;
+	private int[] m_counts;
+	
+	
+	/**************************
+	 *   Constructors
+	 **************************/
+	
+	public RamaBoxCounts( RamaMap map, double cutoff )
+	{
+		// NOTE: the table is a snapshot, so it won't see any later calls to map.setSample()
+		m_map = map;
+		m_cutoff = cutoff;
+		
+		// build a summed-area table of samples at or above the cutoff
+		// counts[i*(N+1) + j] is the number of such samples with indices < i and < j
+		int n = RamaMap.NumSamplesPerAngle + 1;
+		m_counts = new int[n*n];
+		for( int i=0; i<RamaMap.NumSamplesPerAngle; i++ )
+		{
+			for( int j=0; j<RamaMap.NumSamplesPerAngle; j++ )
+			{
+				double sample = map.getSample( RamaMap.mapIndexToDegrees( i ), RamaMap.mapIndexToDegrees( j ) );
+				m_counts[( i + 1 )*n + j + 1] = ( sample >= cutoff ? 1 : 0 )
+					+ m_counts[i*n + j + 1] + m_counts[( i + 1 )*n + j] - m_counts[i*n + j];
+			}
+		}
+	}
+	
+	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public RamaMap getMap( )
+	{
+		return m_map;
+	}
+	
+	public double getCutoff( )
+	{
+		return m_cutoff;
+	}
+	
+	
+	/**************************
+	 *   Methods
+	 **************************/
+	
+	public boolean isBoxAbove( double minPhiDegrees, double maxPhiDegrees, double minPsiDegrees, double maxPsiDegrees )
+	{
+		// boxes whose min is past their max (after mapping to (-180,180]) only get their corners checked
+		return isBoxAbove( minPhiDegrees, maxPhiDegrees, minPsiDegrees, maxPsiDegrees, false );
+	}
+	
+	public boolean isBoxCompletelyAbove( double minPhiDegrees, double maxPhiDegrees, double minPsiDegrees, double maxPsiDegrees )
+	{
+		return isBoxCompletelyAbove( minPhiDegrees, maxPhiDegrees, minPsiDegrees, maxPsiDegrees, false );
+	}
+	
+	public boolean isWrappedBoxAbove( double minPhiDegrees, double maxPhiDegrees, double minPsiDegrees, double maxPsiDegrees )
+	{
+		// boxes run from min to max in the increasing direction, crossing the +-180 seam if needed
+		return isBoxAbove( minPhiDegrees, maxPhiDegrees, minPsiDegrees, maxPsiDegrees, true );
+	}
+	
+	public boolean isWrappedBoxCompletelyAbove( double minPhiDegrees, double maxPhiDegrees, double minPsiDegrees, double maxPsiDegrees )
+	{
+		return isBoxCompletelyAbove( minPhiDegrees, maxPhiDegrees, minPsiDegrees, maxPsiDegrees, true );
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private boolean isBoxAbove( double minPhiDegrees, double maxPhiDegrees, double minPsiDegrees, double maxPsiDegrees, boolean wrap )
+	{
+		// are any of the corners allowed?
+		if( m_map.isSampleAbove( minPhiDegrees, minPsiDegrees, m_cutoff )
+			|| m_map.isSampleAbove( maxPhiDegrees, minPsiDegrees, m_cutoff )
+			|| m_map.isSampleAbove( maxPhiDegrees, maxPsiDegrees, m_cutoff )
+			|| m_map.isSampleAbove( minPhiDegrees, maxPsiDegrees, m_cutoff ) )
+		{
+			return true;
+		}
+		
+		// check the samples in the box
+		int[] ranges = new int[8];
+		getBoxRanges( ranges, minPhiDegrees, maxPhiDegrees, minPsiDegrees, maxPsiDegrees, wrap );
+		return countAbove( ranges ) > 0;
+	}
+	
+	private boolean isBoxCompletelyAbove( double minPhiDegrees, double maxPhiDegrees, double minPsiDegrees, double maxPsiDegrees, boolean wrap )
+	{
+		// are any of the corners disallowed?
+		if( !m_map.isSampleAbove( minPhiDegrees, minPsiDegrees, m_cutoff )
+			|| !m_map.isSampleAbove( maxPhiDegrees, minPsiDegrees, m_cutoff )
+			|| !m_map.isSampleAbove( maxPhiDegrees, maxPsiDegrees, m_cutoff )
+			|| !m_map.isSampleAbove( minPhiDegrees, maxPsiDegrees, m_cutoff ) )
+		{
+			return false;
+		}
+		
+		// check the samples in the box
+		int[] ranges = new int[8];
+		int numSamples = getBoxRanges( ranges, minPhiDegrees, maxPhiDegrees, minPsiDegrees, maxPsiDegrees, wrap );
+		return countAbove( ranges ) == numSamples;
+	}
+	
+	private int getBoxRanges( int[] out, double minPhiDegrees, double maxPhiDegrees, double minPsiDegrees, double maxPsiDegrees, boolean wrap )
+	{
+		// out gets phi ranges in [0,4) and psi ranges in [4,8), as (first index, last index) pairs
+		int numPhi = getIndexRanges( out, 0, minPhiDegrees, maxPhiDegrees, wrap );
+		int numPsi = getIndexRanges( out, 4, minPsiDegrees, maxPsiDegrees, wrap );
+		return numPhi*numPsi;
+	}
+	
+	private int getIndexRanges( int[] out, int offset, double minDegrees, double maxDegrees, boolean wrap )
+	{
+		// boxes that cover the whole circle
+		if( maxDegrees - minDegrees >= 360.0 )
+		{
+			setRange( out, offset, 0, RamaMap.NumSamplesPerAngle - 1 );
+			setRange( out, offset + 2, 0, -1 );
+			return RamaMap.NumSamplesPerAngle;
+		}
+		
+		// map the bounds to the grid, but don't wrap across the +-180 seam yet
+		minDegrees = RamaMap.mapMinus180To180( minDegrees );
+		maxDegrees = RamaMap.mapMinus180To180( maxDegrees );
+		int min = getUnwrappedIndex( minDegrees );
+		if( !m_map.isOnGrid( minDegrees ) )
+		{
+			min++;
+		}
+		int max = getUnwrappedIndex( maxDegrees );
+		
+		if( minDegrees <= maxDegrees )
+		{
+			setRange( out, offset, Math.max( min, 0 ), Math.min( max, RamaMap.NumSamplesPerAngle - 1 ) );
+			setRange( out, offset + 2, 0, -1 );
+		}
+		else if( wrap )
+		{
+			// the box wraps around the seam, so split it in two
+			setRange( out, offset, min, RamaMap.NumSamplesPerAngle - 1 );
+			setRange( out, offset + 2, 0, max );
+		}
+		else
+		{
+			setRange( out, offset, 0, -1 );
+			setRange( out, offset + 2, 0, -1 );
+		}
+		return getRangeSize( out, offset ) + getRangeSize( out, offset + 2 );
+	}
+	
+	private int countAbove( int[] ranges )
+	{
+		int count = 0;
+		for( int a=0; a<4; a+=2 )
+		{
+			for( int b=4; b<8; b+=2 )
+			{
+				count += countAbove( ranges[a], ranges[a + 1], ranges[b], ranges[b + 1] );
+			}
+		}
+		return count;
+	}
+	
+	private int countAbove( int mini, int maxi, int minj, int maxj )
+	{
+		if( mini > maxi || minj > maxj )
+		{
+			return 0;
+		}
+		int n = RamaMap.NumSamplesPerAngle + 1;
+		return m_counts[( maxi + 1 )*n + maxj + 1] - m_counts[mini*n + maxj + 1] - m_counts[( maxi + 1 )*n + minj] + m_counts[mini*n + minj];
+	}
+	
+	private static void setRange( int[] out, int offset, int first, int last )
+	{
+		out[offset] = first;
+		out[offset + 1] = last;
+	}
+	
+	private static int getRangeSize( int[] ranges, int offset )
+	{
+		return Math.max( 0, ranges[offset + 1] - ranges[offset] + 1 );
+	}
+	
+	private static int getUnwrappedIndex( double degrees )
+	{
+		// like RamaMap.mapDegreesToIndex(), but degrees just above -180 map to -1 instead of 179
+		if( degrees < -179.0 )
+		{
+			return -1;
+		}
+		return RamaMap.mapDegreesToIndex( degrees );
+	}
+}
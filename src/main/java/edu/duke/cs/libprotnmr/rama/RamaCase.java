@@ -28,6 +28,8 @@ package edu.duke.cs.libprotnmr.rama;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
 
 import edu.duke.cs.libprotnmr.protein.AminoAcid;
 import edu.duke.cs.libprotnmr.protein.Sequence;
@@ -54,6 +56,7 @@ public enum RamaCase
 	private double m_favoredCutoff;
 	private double m_allowedCutoff;
 	private RamaMap m_map;
+	private volatile Map<RamaSatisfaction,RamaBoxCounts> m_boxCounts;
 	
 	
 	/**************************
@@ -66,6 +69,7 @@ public enum RamaCase
 		m_favoredCutoff = favoredCutoff;
 		m_allowedCutoff = allowedCutoff;
 		m_map = null;
+		m_boxCounts = null;
 	}
 	
 	
@@ -90,11 +94,19 @@ public enum RamaCase
 	
 	public RamaMap getMap( )
 	{
-		if( m_map == null )
+		checkLoaded();
+		return m_map;
+	}
+	
+	public RamaBoxCounts getBoxCounts( RamaSatisfaction satisfaction )
+	{
+		checkLoaded();
+		RamaBoxCounts boxCounts = m_boxCounts.get( satisfaction );
+		if( boxCounts == null )
 		{
-			m_map = loadMap();
+			throw new IllegalArgumentException( "No cutoff for " + satisfaction );
 		}
-		return m_map;
+		return boxCounts;
 	}
 	
 	
@@ -144,12 +156,12 @@ public enum RamaCase
 	
 	public boolean isAllowed( double minPhiDegrees, double maxPhiDegrees, double minPsiDegrees, double maxPsiDegrees )
 	{
-		return getMap().isBoxAbove( minPhiDegrees, maxPhiDegrees, minPsiDegrees, maxPsiDegrees, m_allowedCutoff );
+		return getBoxCounts( RamaSatisfaction.Allowed ).isBoxAbove( minPhiDegrees, maxPhiDegrees, minPsiDegrees, maxPsiDegrees );
 	}
 	
 	public boolean isCompletelyAllowed( double minPhiDegrees, double maxPhiDegrees, double minPsiDegrees, double maxPsiDegrees )
 	{
-		return getMap().isBoxCompletelyAbove( minPhiDegrees, maxPhiDegrees, minPsiDegrees, maxPsiDegrees, m_allowedCutoff );
+		return getBoxCounts( RamaSatisfaction.Allowed ).isBoxCompletelyAbove( minPhiDegrees, maxPhiDegrees, minPsiDegrees, maxPsiDegrees );
 	}
 	
 	public RamaSatisfaction getSatisfaction( double phiDegrees, double psiDegrees )
@@ -170,6 +182,28 @@ public enum RamaCase
 	 *   Functions
 	 **************************/
 	
+	private void checkLoaded( )
+	{
+		// build the box tables for every cutoff up front, then publish them all at once
+		// so concurrent box queries never need a lock
+		if( m_boxCounts != null )
+		{
+			return;
+		}
+		synchronized( this )
+		{
+			if( m_boxCounts == null )
+			{
+				RamaMap map = loadMap();
+				Map<RamaSatisfaction,RamaBoxCounts> boxCounts = new EnumMap<RamaSatisfaction,RamaBoxCounts>( RamaSatisfaction.class );
+				boxCounts.put( RamaSatisfaction.Favored, new RamaBoxCounts( map, m_favoredCutoff ) );
+				boxCounts.put( RamaSatisfaction.Allowed, new RamaBoxCounts( map, m_allowedCutoff ) );
+				m_map = map;
+				m_boxCounts = boxCounts;
+			}
+		}
+	}
+	
 	private RamaMap loadMap( )
 	{
 		InputStream in = RamaCase.class.getResourceAsStream( m_path );
@@ -35,7 +35,7 @@ public class RamaMap implements Iterable<RamaSample>
 	 **************************/
 	
 	protected static final int NumSamplesPerAngle = 180;
-	private static final double DeltaDegrees = 2.0;
+	public static final double DeltaDegrees = 2.0;
 	
 	private static enum BoundSide
 	{
@@ -95,6 +95,14 @@ public class RamaMap implements Iterable<RamaSample>
 		return interpolateValue( phiDegrees, psiDegrees ) >= cutoff;
 	}
 	
+	public void getInterpolatedValues( double[] out, double[] phiDegrees, double[] psiDegrees, int[] indices )
+	{
+		for( int i : indices )
+		{
+			out[i] = interpolateValue( phiDegrees[i], psiDegrees[i] );
+		}
+	}
+	
 	public boolean isBoxAbove( double minPhiDegrees, double maxPhiDegrees, double minPsiDegrees, double maxPsiDegrees, double cutoff )
 	{
 		minPhiDegrees = mapMinus180To180( minPhiDegrees );
@@ -242,12 +250,12 @@ public class RamaMap implements Iterable<RamaSample>
 		return degrees % 2.0 == 0.0;
 	}
 
-	protected static double mapIndexToDegrees( int index )
+	public static double mapIndexToDegrees( int index )
 	{
 		return (double)( index * 2 - 179 );
 	}
 	
-	private static double mapMinus180To180( double degrees )
+	protected static double mapMinus180To180( double degrees )
 	{
 		while( degrees > 180.0 )
 		{
@@ -29,6 +29,9 @@ package edu.duke.cs.libprotnmr.xplor;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import edu.duke.cs.libprotnmr.io.StreamConsumer;
 import edu.duke.cs.libprotnmr.pdb.ProteinWriter;
@@ -44,6 +47,7 @@ public class EnergyCalculator extends XplorBase
 	 **************************/
 	
 	private static final URL DefaultScriptTemplate = EnergyCalculator.class.getResource( Resources.getPath("xplor/vdw.py.tmpl") );
+	private static final URL DefaultBatchScriptTemplate = EnergyCalculator.class.getResource( Resources.getPath("xplor/vdwBatch.py.tmpl") );
 	private static final String PdbInName = "in.pdb";
 	
 	private enum Tags
@@ -57,6 +61,7 @@ public class EnergyCalculator extends XplorBase
 	 **************************/
 	
 	private URL m_scriptTemplate;
+	private URL m_batchScriptTemplate;
 	private EnergyMonitor m_energyMonitor;
 	
 	
@@ -81,10 +86,21 @@ public class EnergyCalculator extends XplorBase
 		m_scriptTemplate = scriptTemplate;
 		
 		// init defaults
+		m_batchScriptTemplate = DefaultBatchScriptTemplate;
 		m_energyMonitor = null;
 	}
 	
 	
+	/**************************
+	 *   Accessors
+	 **************************/
+	
+	public void setBatchScriptTemplate( URL value )
+	{
+		m_batchScriptTemplate = value;
+	}
+	
+	
 	/**************************
 	 *   Events
 	 **************************/
@@ -130,4 +146,108 @@ public class EnergyCalculator extends XplorBase
 		
 		return m_energyMonitor.getEnergy();
 	}
+	
+	public List<Double> getEnergies( List<Protein> structures, int numProcesses )
+	throws IOException, XplorException
+	{
+		if( structures.isEmpty() )
+		{
+			return new ArrayList<Double>();
+		}
+		
+		// partition the structures so each xplor process gets one multi-model file
+		numProcesses = Math.max( 1, Math.min( numProcesses, structures.size() ) );
+		List<EnergyCalculator> batches = new ArrayList<EnergyCalculator>( numProcesses );
+		List<Integer> firstIndices = new ArrayList<Integer>( numProcesses );
+		try
+		{
+			for( int i=0; i<numProcesses; i++ )
+			{
+				int startIndex = i*structures.size()/numProcesses;
+				int stopIndex = ( i + 1 )*structures.size()/numProcesses;
+				EnergyCalculator batch = new EnergyCalculator( getWorkDir(), m_batchScriptTemplate );
+				batch.setXplorCommand( getXplorCommand() );
+				batches.add( batch );
+				firstIndices.add( startIndex );
+				batch.startBatch( structures.subList( startIndex, stopIndex ), i );
+			}
+			
+			// wait for all the processes before reporting any errors, so we don't leave any running
+			Exception error = null;
+			for( EnergyCalculator batch : batches )
+			{
+				try
+				{
+					batch.waitForXplor();
+				}
+				catch( Exception ex )
+				{
+					if( error == null )
+					{
+						error = ex;
+					}
+				}
+			}
+			if( error instanceof XplorException )
+			{
+				throw (XplorException)error;
+			}
+			else if( error instanceof IOException )
+			{
+				throw (IOException)error;
+			}
+			else if( error != null )
+			{
+				throw (RuntimeException)error;
+			}
+			
+			// collect the energies in order
+			List<Double> energies = new ArrayList<Double>( structures.size() );
+			for( int i=0; i<numProcesses; i++ )
+			{
+				EnergyCalculator batch = batches.get( i );
+				Map<Integer,Double> modelEnergies = batch.m_energyMonitor.getModelEnergies();
+				int numModels = ( i + 1 < numProcesses ? firstIndices.get( i + 1 ) : structures.size() ) - firstIndices.get( i );
+				for( int j=0; j<numModels; j++ )
+				{
+					Double energy = modelEnergies.get( j );
+					if( energy == null )
+					{
+						throw new XplorException( "Xplor didn't report an energy for structure " + ( firstIndices.get( i ) + j ) );
+					}
+					energies.add( energy );
+				}
+			}
+			return energies;
+		}
+		finally
+		{
+			// if a launch or a wait failed, some processes could still be running,
+			// so stop them before deleting their files (this does nothing to finished processes)
+			for( EnergyCalculator batch : batches )
+			{
+				batch.destroyXplor();
+				batch.cleanupTempFiles();
+			}
+		}
+	}
+	
+	
+	/**************************
+	 *   Functions
+	 **************************/
+	
+	private void startBatch( List<Protein> structures, int batchId )
+	throws IOException
+	{
+		// write all the structures into one multi-model PDB file
+		File pdbInFile = addTempFile( new File( getWorkDir(), "in." + batchId + ".pdb" ) );
+		new ProteinWriter().write( structures, pdbInFile );
+		
+		setTag( Tags.pdbInPath, quote( pdbInFile.getName() ) );
+		
+		// launch xplor, but don't wait for it
+		File scriptFile = addTempFile( emitFile( m_scriptTemplate, "vdwBatch." + batchId + ".py" ) );
+		runScript( scriptFile );
+	}
 }
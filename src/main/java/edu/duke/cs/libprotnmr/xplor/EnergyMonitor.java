@@ -26,6 +26,9 @@
 
 package edu.duke.cs.libprotnmr.xplor;
 
+import java.util.Map;
+import java.util.TreeMap;
+
 import edu.duke.cs.libprotnmr.io.FilterMatchListener;
 import edu.duke.cs.libprotnmr.io.StreamConsumer;
 
@@ -37,12 +40,16 @@ public class EnergyMonitor implements FilterMatchListener
 	
 	private static final String PrefixRegex = "van der Waals energy:";
 	
+	// batch scripts report one energy per model, eg "model 3 van der Waals energy: 12.5"
+	private static final String ModelPrefixRegex = "model \\d+ ";
+	
 	
 	/**************************
 	 *   Data Members
 	 **************************/
 	
 	private double m_energy;
+	private TreeMap<Integer,Double> m_modelEnergies;
 	
 	
 	/**************************
@@ -53,9 +60,10 @@ public class EnergyMonitor implements FilterMatchListener
 	{
 		// init defaults
 		m_energy = Double.POSITIVE_INFINITY;
+		m_modelEnergies = new TreeMap<Integer,Double>();
 		
 		// attach to the stream consumer
-		streamConsumer.setFilter( PrefixRegex + ".*", this );
+		streamConsumer.setFilter( "(" + ModelPrefixRegex + ")?" + PrefixRegex + ".*", this );
 	}
 	
 	
@@ -68,18 +76,35 @@ public class EnergyMonitor implements FilterMatchListener
 		return m_energy;
 	}
 	
+	public synchronized Map<Integer,Double> getModelEnergies( )
+	{
+		return new TreeMap<Integer,Double>( m_modelEnergies );
+	}
+	
 	
 	/**************************
 	 *   Methods
 	 **************************/
 	
 	@Override
-	public void filterMatch( String line )
+	public synchronized void filterMatch( String line )
 	{
+		// grab the model index if there is one
+		Integer modelIndex = null;
+		if( line.startsWith( "model " ) )
+		{
+			modelIndex = Integer.parseInt( line.substring( 6, line.indexOf( ' ', 6 ) ) );
+			line = line.replaceFirst( ModelPrefixRegex, "" );
+		}
+		
 		// remove the prefix and trim the result
 		line = line.replaceFirst( PrefixRegex, "" ).trim();
 		
 		// the rest should just be a number
 		m_energy = Double.parseDouble( line );
+		if( modelIndex != null )
+		{
+			m_modelEnergies.put( modelIndex, m_energy );
+		}
 	}
 }
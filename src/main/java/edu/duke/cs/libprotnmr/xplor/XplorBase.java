@@ -61,6 +61,7 @@ public abstract class XplorBase
 	 **************************/
 	
 	private File m_workDir;
+	private String m_xplorCommand;
 	private File m_logFile;
 	private Process m_process;
 	private StreamConsumer m_outConsumer;
@@ -86,6 +87,7 @@ public abstract class XplorBase
 		m_workDir = workDir;
 		
 		// init defaults
+		m_xplorCommand = XplorName;
 		m_logFile = null;
 		m_process = null;
 		m_outConsumer = null;
@@ -121,6 +123,15 @@ public abstract class XplorBase
 		return m_workDir;
 	}
 	
+	public String getXplorCommand( )
+	{
+		return m_xplorCommand;
+	}
+	public void setXplorCommand( String value )
+	{
+		m_xplorCommand = value;
+	}
+	
 	
 	/**************************
 	 *   Events
@@ -164,17 +175,17 @@ public abstract class XplorBase
 	protected void runScript( File scriptFile )
 	throws IOException
 	{
-		// NOTE: assumes XplorName is in $PATH
+		// NOTE: assumes the xplor command is in $PATH
 		assert( m_workDir.equals( scriptFile.getParentFile() ) );
-		String command = String.format( "%s -v %s", XplorName, scriptFile.getName() );
+		String command = String.format( "%s -v %s", m_xplorCommand, scriptFile.getName() );
 		try
 		{
 			m_process = Runtime.getRuntime().exec( command, getEnv(), m_workDir );
 		}
 		catch( IOException ex )
 		{
-			String message = "Unable to find Xplor! output of `which " + XplorName + "`:\n"
-				+ getRunOut( "which " + XplorName ) + "\nPATH=" + System.getenv().get( "PATH" );
+			String message = "Unable to find Xplor! output of `which " + m_xplorCommand + "`:\n"
+				+ getRunOut( "which " + m_xplorCommand ) + "\nPATH=" + System.getenv().get( "PATH" );
 			throw new IOException( message, ex );
 		}
 		
@@ -228,13 +239,50 @@ public abstract class XplorBase
 		}
 	}
 	
+	protected void destroyXplor( )
+	{
+		// stop xplor if it's still running, so nothing else touches its files
+		if( m_process == null )
+		{
+			return;
+		}
+		m_process.destroy();
+		try
+		{
+			m_process.waitFor();
+			m_outConsumer.waitFor();
+			m_errConsumer.waitFor();
+		}
+		catch( InterruptedException ex )
+		{
+			Thread.currentThread().interrupt();
+		}
+		if( m_logWriter != null )
+		{
+			try
+			{
+				m_logWriter.close();
+			}
+			catch( IOException ex )
+			{
+				// we're only cleaning up, so there's nothing more to do
+			}
+		}
+	}
+	
 	protected File emitFile( URL file )
 	throws IOException
 	{
 		// get the output filename
 		String[] parts = file.getPath().split( "/" ); 
 		assert( parts.length > 0 );
-		File outFile = new File( m_workDir, parts[parts.length - 1] );
+		return emitFile( file, parts[parts.length - 1] );
+	}
+	
+	protected File emitFile( URL file, String outName )
+	throws IOException
+	{
+		File outFile = new File( m_workDir, outName );
 		
 		// open the outfile for writing
 		BufferedWriter writer = new BufferedWriter( new FileWriter( outFile ) );
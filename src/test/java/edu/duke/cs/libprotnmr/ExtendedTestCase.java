@@ -31,8 +31,10 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
 
 import junit.framework.AssertionFailedError;
@@ -54,13 +56,17 @@ import edu.duke.cs.libprotnmr.math.MultiAxisAlignedBox;
 import edu.duke.cs.libprotnmr.math.MultiVector;
 import edu.duke.cs.libprotnmr.math.Quaternion;
 import edu.duke.cs.libprotnmr.nmr.DistanceRestraint;
+import edu.duke.cs.libprotnmr.pdb.ProteinReader;
 import edu.duke.cs.libprotnmr.protein.Atom;
 import edu.duke.cs.libprotnmr.protein.AtomAddress;
 import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
 import edu.duke.cs.libprotnmr.protein.AtomAddressReadable;
+import edu.duke.cs.libprotnmr.protein.HasAtoms;
 import edu.duke.cs.libprotnmr.protein.Protein;
 import edu.duke.cs.libprotnmr.protein.Residue;
 import edu.duke.cs.libprotnmr.protein.Subunit;
+import edu.duke.cs.libprotnmr.protein.tools.ProteinGeometry;
+import edu.duke.cs.libprotnmr.resources.Resources;
 
 public abstract class ExtendedTestCase extends TestCase
 {
@@ -619,4 +625,37 @@ public abstract class ExtendedTestCase extends TestCase
 	{
 		return m_rand.nextDouble() * ( high - low ) + low;
 	}
+	
+	protected Protein readLargeProtein( )
+	throws IOException
+	{
+		return new ProteinReader().read( Resources.get( "largeProtein.pdb" ) );
+	}
+	
+	protected List<HasAtoms> getJiggledCopies( Protein protein, int numCopies, double minSigma, double maxSigma, boolean moveAround, Random rand )
+	{
+		// copies of the protein with gaussian noise on every atom
+		// the noise level is skewed towards minSigma, so a few copies are much worse than the rest
+		// NOTE: everything comes from rand, so the copies (and any work done on them) are reproducible
+		List<HasAtoms> copies = new ArrayList<HasAtoms>( numCopies );
+		for( int i=0; i<numCopies; i++ )
+		{
+			Protein copy = new Protein( protein );
+			double sigma = minSigma + ( maxSigma - minSigma )*rand.nextDouble()*rand.nextDouble();
+			for( AtomAddressInternal address : copy.atoms() )
+			{
+				copy.getAtom( address ).getPosition().add( new Vector3( rand.nextGaussian()*sigma, rand.nextGaussian()*sigma, rand.nextGaussian()*sigma ) );
+			}
+			if( moveAround )
+			{
+				Quaternion rotation = new Quaternion();
+				Quaternion.getRotation( rotation, new Vector3( rand.nextGaussian(), rand.nextGaussian(), rand.nextGaussian() ), ( rand.nextDouble()*2.0 - 1.0 )*Math.PI );
+				rotation.normalize();
+				ProteinGeometry.rotate( copy, rotation );
+				ProteinGeometry.translate( copy, new Vector3( ( rand.nextDouble()*2.0 - 1.0 )*20.0, ( rand.nextDouble()*2.0 - 1.0 )*20.0, ( rand.nextDouble()*2.0 - 1.0 )*20.0 ) );
+			}
+			copies.add( copy );
+		}
+		return copies;
+	}
 }
@@ -0,0 +1,206 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.analysis.EnsembleAnalyzer.AlignmentScore;
+import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
+import edu.duke.cs.libprotnmr.protein.HasAtoms;
+import edu.duke.cs.libprotnmr.protein.Protein;
+
+
+public class TestEnsembleComparator extends ExtendedTestCase
+{
+	private static final double Epsilon = 1e-8;
+	
+	private List<HasAtoms> m_referenceEnsemble;
+	private List<HasAtoms> m_compareEnsemble;
+	private List<AtomAddressInternal> m_addresses;
+	
+	@Override
+	public void setUp( )
+	throws Exception
+	{
+		Protein protein = readLargeProtein();
+		Random rand = new Random( 12345 );
+		m_referenceEnsemble = getJiggledCopies( protein, 8, 0.1, 3.1, true, rand );
+		
+		// stretched structures have a different shape, so the bounds should be able to skip them
+		Protein stretched = new Protein( protein );
+		for( AtomAddressInternal address : stretched.atoms() )
+		{
+			stretched.getAtom( address ).getPosition().x *= 1.5;
+		}
+		m_compareEnsemble = getJiggledCopies( protein, 15, 0.1, 3.1, true, rand );
+		m_compareEnsemble.addAll( getJiggledCopies( stretched, 15, 0.1, 3.1, true, rand ) );
+		m_addresses = protein.backboneAtoms();
+	}
+	
+	public void testBestMatches( )
+	{
+		List<AlignmentScore> expected = EnsembleAnalyzer.compareEnsembles( m_referenceEnsemble, m_compareEnsemble, m_addresses, m_addresses );
+		EnsembleComparator comparator = new EnsembleComparator( m_referenceEnsemble, m_compareEnsemble, m_addresses, m_addresses );
+		assertScoresEqual( expected, comparator.getBestMatches() );
+		
+		// the shape bounds should skip nearly every pair with a stretched structure, half of all the pairs
+		assertLte( m_referenceEnsemble.size()*m_compareEnsemble.size()*3/5, (int)comparator.getNumRmsdsComputed() );
+	}
+	
+	public void testParallel( )
+	{
+		List<AlignmentScore> expected = EnsembleAnalyzer.compareEnsembles( m_referenceEnsemble, m_compareEnsemble, m_addresses, m_addresses );
+		assertScoresEqual( expected, EnsembleAnalyzer.compareEnsembles( m_referenceEnsemble, m_compareEnsemble, m_addresses, m_addresses, 4 ) );
+	}
+	
+	public void testMatchesWithin( )
+	{
+		// get all the rmsds the slow way
+		double[][] rmsds = getAllRmsds();
+		final double MaxRmsd = 2.5;
+		
+		EnsembleComparator comparator = new EnsembleComparator( m_referenceEnsemble, m_compareEnsemble, m_addresses, m_addresses );
+		comparator.setNumWorkers( 3 );
+		List<AlignmentScore> observed = comparator.getMatchesWithin( MaxRmsd );
+		
+		int numExpected = 0;
+		for( int i=0; i<rmsds.length; i++ )
+		{
+			for( int j=0; j<rmsds[i].length; j++ )
+			{
+				if( rmsds[i][j] <= MaxRmsd )
+				{
+					numExpected++;
+				}
+			}
+		}
+		assertTrue( numExpected > 0 );
+		assertEquals( numExpected, observed.size() );
+		for( AlignmentScore score : observed )
+		{
+			assertEquals( rmsds[score.referenceId][score.compareId], score.rmsd, Epsilon );
+		}
+	}
+	
+	public void testTopMatches( )
+	{
+		double[][] rmsds = getAllRmsds();
+		final int NumMatches = 3;
+		
+		final List<List<AlignmentScore>> observed = new ArrayList<List<AlignmentScore>>();
+		for( int i=0; i<m_referenceEnsemble.size(); i++ )
+		{
+			observed.add( null );
+		}
+		EnsembleComparator comparator = new EnsembleComparator( m_referenceEnsemble, m_compareEnsemble, m_addresses, m_addresses );
+		comparator.setNumWorkers( 2 );
+		comparator.getBestMatches( NumMatches, new EnsembleComparator.Listener( )
+		{
+			@Override
+			public void matchesFound( int referenceId, List<AlignmentScore> scores )
+			{
+				observed.set( referenceId, scores );
+			}
+		} );
+		
+		for( int i=0; i<rmsds.length; i++ )
+		{
+			List<AlignmentScore> scores = observed.get( i );
+			assertEquals( NumMatches, scores.size() );
+			
+			// nothing that got left out can be better than the worst match
+			double worst = scores.get( NumMatches - 1 ).rmsd;
+			int numBetter = 0;
+			for( int j=0; j<rmsds[i].length; j++ )
+			{
+				if( rmsds[i][j] < worst - Epsilon )
+				{
+					numBetter++;
+				}
+			}
+			assertLte( NumMatches - 1, numBetter );
+			for( AlignmentScore score : scores )
+			{
+				assertEquals( rmsds[i][score.compareId], score.rmsd, Epsilon );
+			}
+		}
+	}
+	
+	public void testParallelFailure( )
+	{
+		final IllegalStateException failure = new IllegalStateException( "listener failed" );
+		EnsembleComparator comparator = new EnsembleComparator( m_referenceEnsemble, m_compareEnsemble, m_addresses, m_addresses );
+		comparator.setNumWorkers( 3 );
+		try
+		{
+			comparator.getBestMatches( 1, new EnsembleComparator.Listener( )
+			{
+				@Override
+				public void matchesFound( int referenceId, List<AlignmentScore> scores )
+				{
+					if( referenceId == 3 )
+					{
+						throw failure;
+					}
+				}
+			} );
+			fail( "the listener failure should be propagated" );
+		}
+		catch( RuntimeException ex )
+		{
+			assertSame( failure, ex.getCause() );
+		}
+	}
+	
+	private double[][] getAllRmsds( )
+	{
+		double[][] rmsds = new double[m_referenceEnsemble.size()][m_compareEnsemble.size()];
+		for( int i=0; i<m_referenceEnsemble.size(); i++ )
+		{
+			for( int j=0; j<m_compareEnsemble.size(); j++ )
+			{
+				rmsds[i][j] = EnsembleAnalyzer.getOptimalRmsd( m_referenceEnsemble.get( i ), m_compareEnsemble.get( j ), m_addresses );
+			}
+		}
+		return rmsds;
+	}
+	
+	private void assertScoresEqual( List<AlignmentScore> expected, List<AlignmentScore> observed )
+	{
+		assertEquals( expected.size(), observed.size() );
+		for( int i=0; i<expected.size(); i++ )
+		{
+			assertEquals( expected.get( i ).referenceId, observed.get( i ).referenceId );
+			assertEquals( expected.get( i ).compareId, observed.get( i ).compareId );
+			assertEquals( expected.get( i ).rmsd, observed.get( i ).rmsd, Epsilon );
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
+import edu.duke.cs.libprotnmr.protein.HasAtoms;
+import edu.duke.cs.libprotnmr.protein.Protein;
+import edu.duke.cs.libprotnmr.protein.tools.ProteinGeometry;
+
+
+public class TestMedoidFinder extends ExtendedTestCase
+{
+	private List<HasAtoms> m_ensemble;
+	
+	@Override
+	public void setUp( )
+	throws Exception
+	{
+		Protein protein = readLargeProtein();
+		Random rand = new Random( 12345 );
+		m_ensemble = getJiggledCopies( protein, 24, 0.1, 2.1, true, rand );
+		
+		// a minority of stretched copies are far from everything else, so the bounds should skip all of them
+		Protein stretched = new Protein( protein );
+		for( AtomAddressInternal address : stretched.atoms() )
+		{
+			stretched.getAtom( address ).getPosition().x *= 2.0;
+		}
+		m_ensemble.addAll( getJiggledCopies( stretched, 16, 0.1, 2.1, true, rand ) );
+	}
+	
+	public void testRmsd( )
+	{
+		List<AtomAddressInternal> addresses = m_ensemble.get( 0 ).backboneAtoms();
+		HasAtoms a = m_ensemble.get( 0 ).clone();
+		HasAtoms b = m_ensemble.get( 1 ).clone();
+		ProteinGeometry.center( a, addresses );
+		StructureAligner.alignOptimallyByAtoms( a, b, addresses, addresses );
+		assertEquals(
+			RmsdCalculator.getRmsd( a, b, addresses, addresses ),
+			PackedRmsdCalculator.getRmsd(
+				PackedRmsdCalculator.getCenteredCoords( m_ensemble.get( 0 ), addresses ),
+				PackedRmsdCalculator.getCenteredCoords( m_ensemble.get( 1 ), addresses )
+			),
+			1e-8
+		);
+	}
+	
+	public void testMedoid( )
+	{
+		List<AtomAddressInternal> addresses = m_ensemble.get( 0 ).backboneAtoms();
+		HasAtoms expected = EnsembleAnalyzer.getMedianStructure( m_ensemble, addresses );
+		
+		MedoidFinder finder = new MedoidFinder( m_ensemble, addresses );
+		assertSame( expected, m_ensemble.get( finder.getMedoidIndex() ) );
+		
+		// the bounds should prune at least the stretched copies, a third of the ensemble
+		assertLte( m_ensemble.size()*2/3, finder.getNumRowsComputed() );
+	}
+	
+	public void testParallel( )
+	{
+		List<AtomAddressInternal> addresses = m_ensemble.get( 0 ).atoms();
+		assertSame(
+			m_ensemble.get( new MedoidFinder( m_ensemble, addresses, 1 ).getMedoidIndex() ),
+			EnsembleAnalyzer.getMedoidStructure( m_ensemble, addresses, 4 )
+		);
+	}
+	
+	public void testNearTies( )
+	{
+		// add moved copies of every structure, so every sum has a twin that only differs by QCP rounding
+		List<AtomAddressInternal> addresses = m_ensemble.get( 0 ).backboneAtoms();
+		List<HasAtoms> ensemble = new ArrayList<HasAtoms>( m_ensemble );
+		for( HasAtoms structure : m_ensemble )
+		{
+			HasAtoms twin = structure.clone();
+			ProteinGeometry.rotate( twin, getRandomRotation() );
+			ProteinGeometry.translate( twin, getRandomVector( -20.0, 20.0 ) );
+			ensemble.add( twin );
+		}
+		
+		// the medoid has to be one of the tied structures
+		int index = new MedoidFinder( ensemble, addresses ).getMedoidIndex();
+		double[] sums = new double[ensemble.size()];
+		double minSum = Double.POSITIVE_INFINITY;
+		for( int i=0; i<ensemble.size(); i++ )
+		{
+			double[] coords = PackedRmsdCalculator.getCenteredCoords( ensemble.get( i ), addresses );
+			for( int j=0; j<ensemble.size(); j++ )
+			{
+				if( i != j )
+				{
+					sums[i] += PackedRmsdCalculator.getRmsd( coords, PackedRmsdCalculator.getCenteredCoords( ensemble.get( j ), addresses ) );
+				}
+			}
+			minSum = Math.min( minSum, sums[i] );
+		}
+		assertEquals( minSum, sums[index], 1e-6 );
+	}
+}
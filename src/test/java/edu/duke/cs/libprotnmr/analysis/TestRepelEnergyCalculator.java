@@ -0,0 +1,219 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.analysis;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.atomType.AtomType;
+import edu.duke.cs.libprotnmr.atomType.AtomTypeMap;
+import edu.duke.cs.libprotnmr.bond.BondGraph;
+import edu.duke.cs.libprotnmr.bond.BondGraphBuilder;
+import edu.duke.cs.libprotnmr.bond.BreadthFirstAtomIterator;
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.pdb.ProteinReader;
+import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
+import edu.duke.cs.libprotnmr.protein.Ensemble;
+import edu.duke.cs.libprotnmr.protein.HasAtoms;
+import edu.duke.cs.libprotnmr.protein.Protein;
+import edu.duke.cs.libprotnmr.protein.tools.ProteinGeometry;
+import edu.duke.cs.libprotnmr.resources.Resources;
+
+
+public class TestRepelEnergyCalculator extends ExtendedTestCase
+{
+	public void testKnownPair( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( Resources.get( "largeProtein.pdb" ) );
+		RepelEnergyCalculator calculator = new RepelEnergyCalculator( protein );
+		spreadOut( protein );
+		assertEquals( 0.0, calculator.getEnergy( protein ) );
+		
+		// two alpha carbons (C.3, r=1.65) ten residues apart, 3.0 A apart:
+		//    100*( 3.3^2 - 3.0^2 )^2 = 100*1.89^2 = 357.21
+		Vector3 left = protein.getResidue( 0, 0 ).getAtomByName( "CA" ).getPosition();
+		Vector3 right = protein.getResidue( 0, 10 ).getAtomByName( "CA" ).getPosition();
+		right.set( left.x + 3.0, left.y, left.z );
+		assertEquals( 357.21, calculator.getEnergy( protein ), 1e-9 );
+		
+		// the alpha carbon and the amide nitrogen (N.am, r=1.55) of residue 10 at 2.0 A:
+		//    100*( 3.2^2 - 2.0^2 )^2 = 100*6.24^2 = 3893.76
+		Vector3 nitrogen = protein.getResidue( 0, 10 ).getAtomByName( "N" ).getPosition();
+		nitrogen.set( left.x - 2.0, left.y, left.z );
+		assertEquals( 357.21 + 3893.76, calculator.getEnergy( protein ), 1e-9 );
+		
+		// a bigger scale grows Rmin: 100*( 4.95^2 - 3.0^2 )^2 + 100*( 4.8^2 - 2.0^2 )^2
+		calculator.setRadiusScale( 1.5 );
+		assertEquals( 100.0*15.5025*15.5025 + 100.0*19.04*19.04, calculator.getEnergy( protein ), 1e-6 );
+	}
+	
+	public void testBondedPairsIgnored( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( Resources.get( "largeProtein.pdb" ) );
+		RepelEnergyCalculator calculator = new RepelEnergyCalculator( protein );
+		spreadOut( protein );
+		
+		// N-CA-C-O spans three bonds, so those atoms never clash no matter how close they are
+		Vector3 nitrogen = protein.getResidue( 0, 5 ).getAtomByName( "N" ).getPosition();
+		Vector3 oxygen = protein.getResidue( 0, 5 ).getAtomByName( "O" ).getPosition();
+		oxygen.set( nitrogen.x + 0.5, nitrogen.y, nitrogen.z );
+		assertEquals( 0.0, calculator.getEnergy( protein ) );
+	}
+	
+	public void testHugeExtents( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( Resources.get( "largeProtein.pdb" ) );
+		RepelEnergyCalculator calculator = new RepelEnergyCalculator( protein );
+		calculator.setRadiusScale( 1.5 );
+		double energy = calculator.getEnergy( protein );
+		
+		// far-flung atoms overflow any grid, so the energy should fall back to checking all pairs
+		List<AtomAddressInternal> addresses = protein.atoms();
+		protein.getAtom( addresses.get( 0 ) ).getPosition().set( 1e308, 0, 0 );
+		protein.getAtom( addresses.get( addresses.size() - 1 ) ).getPosition().set( -1e308, 0, 0 );
+		double farEnergy = calculator.getEnergy( protein );
+		assertTrue( farEnergy > 0.0 );
+		assertTrue( farEnergy < energy );
+		
+		protein.getAtom( addresses.get( 0 ) ).getPosition().set( 1e300, 1e300, 1e300 );
+		protein.getAtom( addresses.get( addresses.size() - 1 ) ).getPosition().set( 0, 0, 0 );
+		assertTrue( calculator.getEnergy( protein ) > 0.0 );
+	}
+	
+	public void testCellsMatchAllPairs( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( Resources.get( "largeProtein.pdb" ) );
+		RepelEnergyCalculator calculator = new RepelEnergyCalculator( protein );
+		
+		// use a bigger scale so there's plenty of overlap to sum
+		for( double scale : new double[] { 1.0, 1.5 } )
+		{
+			calculator.setRadiusScale( scale );
+			double expected = getAllPairsEnergy( protein, scale );
+			assertTrue( expected > 0.0 );
+			assertEquals( expected, calculator.getEnergy( protein ), expected*1e-12 );
+		}
+	}
+	
+	public void testTranslationInvariance( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( Resources.get( "largeProtein.pdb" ) );
+		RepelEnergyCalculator calculator = new RepelEnergyCalculator( protein );
+		calculator.setRadiusScale( 1.5 );
+		double energy = calculator.getEnergy( protein );
+		ProteinGeometry.translate( protein, new Vector3( 1234.5, -67.8, 9.1 ) );
+		assertEquals( energy, calculator.getEnergy( protein ), energy*1e-9 );
+	}
+	
+	public void testParallelMatchesSerial( )
+	throws Exception
+	{
+		List<Protein> proteins = new ArrayList<Protein>();
+		for( HasAtoms copy : getJiggledCopies( readLargeProtein(), 6, 1.0, 1.0, false, new Random( 12345 ) ) )
+		{
+			proteins.add( (Protein)copy );
+		}
+		Ensemble ensemble = new Ensemble( proteins );
+		RepelEnergyCalculator calculator = new RepelEnergyCalculator( ensemble );
+		calculator.setRadiusScale( 1.5 );
+		List<Double> serial = calculator.getEnergies( ensemble.getProteins(), 1 );
+		List<Double> parallel = calculator.getModelEnergies( ensemble, 4 );
+		assertEquals( ensemble.getNumModels(), serial.size() );
+		assertEquals( serial, parallel );
+	}
+	
+	private void spreadOut( Protein protein )
+	{
+		// put every atom on its own point of a 100 A grid, far beyond any interaction
+		int n = 0;
+		for( AtomAddressInternal address : protein.atoms() )
+		{
+			protein.getAtom( address ).getPosition().set( 100.0*( n % 20 ), 100.0*( ( n/20 ) % 20 ), 100.0*( n/400 ) );
+			n++;
+		}
+	}
+	
+	private double getAllPairsEnergy( Protein protein, double scale )
+	{
+		AtomTypeMap atomTypeMap = AtomTypeMap.getInstance();
+		List<BondGraph> bondGraphs = BondGraphBuilder.getInstance().build( protein );
+		List<AtomAddressInternal> addresses = protein.atoms();
+		double energy = 0.0;
+		for( int i=0; i<addresses.size(); i++ )
+		{
+			AtomAddressInternal left = addresses.get( i );
+			AtomType leftType = atomTypeMap.getAtomType( protein, left );
+			if( protein.getAtom( left ).isPseudoatom() || leftType == null || leftType == AtomType.Unknown )
+			{
+				continue;
+			}
+			Set<AtomAddressInternal> excluded = getWithinThreeBonds( bondGraphs, left );
+			for( int j=i+1; j<addresses.size(); j++ )
+			{
+				AtomAddressInternal right = addresses.get( j );
+				AtomType rightType = atomTypeMap.getAtomType( protein, right );
+				if( protein.getAtom( right ).isPseudoatom() || rightType == null || rightType == AtomType.Unknown )
+				{
+					continue;
+				}
+				if( excluded.contains( right ) )
+				{
+					continue;
+				}
+				double minDist = ( leftType.getRadius() + rightType.getRadius() )*scale;
+				double dist = protein.getAtom( left ).getPosition().getDistance( protein.getAtom( right ).getPosition() );
+				if( dist < minDist )
+				{
+					double overlap = minDist*minDist - dist*dist;
+					energy += RepelEnergyCalculator.DefaultForceConstant*overlap*overlap;
+				}
+			}
+		}
+		return energy;
+	}
+	
+	private Set<AtomAddressInternal> getWithinThreeBonds( List<BondGraph> bondGraphs, AtomAddressInternal address )
+	{
+		Set<AtomAddressInternal> addresses = new HashSet<AtomAddressInternal>();
+		BreadthFirstAtomIterator iter = new BreadthFirstAtomIterator( bondGraphs.get( address.getSubunitId() ), address );
+		for( int level=1; level<=3 && iter.hasNext(); level++ )
+		{
+			addresses.addAll( iter.next() );
+		}
+		return addresses;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.analysis;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.protein.AtomAddressInternal;
+import edu.duke.cs.libprotnmr.protein.HasAtoms;
+import edu.duke.cs.libprotnmr.protein.Protein;
+
+
+public class TestStructureAccumulator extends ExtendedTestCase
+{
+	private static final double Epsilon = 1e-9;
+	
+	private List<HasAtoms> m_ensemble;
+	
+	@Override
+	public void setUp( )
+	throws Exception
+	{
+		m_ensemble = getJiggledCopies( readLargeProtein(), 10, 1.0, 1.0, false, new Random( 12345 ) );
+	}
+	
+	public void testMeanStructure( )
+	{
+		StructureAccumulator accumulator = new StructureAccumulator( m_ensemble.get( 0 ) );
+		accumulator.add( m_ensemble );
+		assertEquals( m_ensemble.size(), accumulator.getCount() );
+		
+		HasAtoms expected = EnsembleAnalyzer.getMeanStructure( m_ensemble );
+		HasAtoms observed = accumulator.getMeanStructure();
+		for( AtomAddressInternal address : expected.atoms() )
+		{
+			assertEquals( expected.getAtom( address ).getPosition(), observed.getAtom( address ).getPosition(), Epsilon );
+		}
+	}
+	
+	public void testVariances( )
+	{
+		List<AtomAddressInternal> addresses = m_ensemble.get( 0 ).backboneAtoms();
+		StructureAccumulator accumulator = new StructureAccumulator( m_ensemble.get( 0 ), addresses );
+		accumulator.add( m_ensemble );
+		
+		double sum = 0.0;
+		for( int i=0; i<addresses.size(); i++ )
+		{
+			LinkedList<Vector3> points = new LinkedList<Vector3>();
+			for( HasAtoms structure : m_ensemble )
+			{
+				points.add( structure.getAtom( addresses.get( i ) ).getPosition() );
+			}
+			double variance = VarianceCalculator.Metric.Variance.evaluate( points );
+			assertEquals( variance, accumulator.getVariance( i ), Epsilon );
+			assertEquals( Math.sqrt( variance ), accumulator.getRmsf( i ), Epsilon );
+			sum += Math.sqrt( variance );
+		}
+		assertEquals( sum/addresses.size(), accumulator.getAverageRmsf(), Epsilon );
+		
+		List<Protein> proteins = new ArrayList<Protein>();
+		for( HasAtoms structure : m_ensemble )
+		{
+			proteins.add( (Protein)structure );
+		}
+		assertEquals( VarianceCalculator.getAverageBackboneVariance( proteins ), accumulator.getAverageVariance(), Epsilon );
+	}
+	
+	public void testMerge( )
+	{
+		StructureAccumulator all = new StructureAccumulator( m_ensemble.get( 0 ) );
+		all.add( m_ensemble );
+		
+		StructureAccumulator first = new StructureAccumulator( m_ensemble.get( 0 ) );
+		first.add( m_ensemble.subList( 0, 3 ) );
+		StructureAccumulator second = new StructureAccumulator( m_ensemble.get( 0 ) );
+		second.add( m_ensemble.subList( 3, m_ensemble.size() ) );
+		first.merge( second );
+		
+		assertAccumulatorsEqual( all, first );
+	}
+	
+	public void testParallel( )
+	{
+		List<AtomAddressInternal> addresses = m_ensemble.get( 0 ).atoms();
+		StructureAccumulator serial = StructureAccumulator.accumulate( m_ensemble, addresses, 1 );
+		StructureAccumulator parallel = StructureAccumulator.accumulate( m_ensemble, addresses, 4 );
+		assertAccumulatorsEqual( serial, parallel );
+	}
+	
+	public void testAllMissing( )
+	{
+		List<HasAtoms> structures = new ArrayList<HasAtoms>();
+		structures.add( null );
+		structures.add( null );
+		for( int numWorkers : new int[] { 1, 2 } )
+		{
+			try
+			{
+				StructureAccumulator.accumulate( structures, m_ensemble.get( 0 ).atoms(), numWorkers );
+				fail( "there's nothing to accumulate" );
+			}
+			catch( IllegalArgumentException ex )
+			{
+				// expected
+			}
+		}
+	}
+	
+	public void testParallelFailure( )
+	{
+		// a structure that's missing atoms should fail the whole accumulation, not just its chunk
+		List<HasAtoms> structures = new ArrayList<HasAtoms>( m_ensemble );
+		structures.add( new Protein() );
+		try
+		{
+			StructureAccumulator.accumulate( structures, m_ensemble.get( 0 ).atoms(), 4 );
+			fail( "the empty structure should fail" );
+		}
+		catch( RuntimeException ex )
+		{
+			assertNotNull( ex.getCause() );
+		}
+	}
+	
+	private void assertAccumulatorsEqual( StructureAccumulator expected, StructureAccumulator observed )
+	{
+		assertEquals( expected.getCount(), observed.getCount() );
+		Vector3 expectedMean = new Vector3();
+		Vector3 observedMean = new Vector3();
+		for( int i=0; i<expected.getAddresses().size(); i++ )
+		{
+			expected.getMean( expectedMean, i );
+			observed.getMean( observedMean, i );
+			assertEquals( expectedMean, observedMean, Epsilon );
+			assertEquals( expected.getVariance( i ), observed.getVariance( i ), Epsilon );
+		}
+	}
+}
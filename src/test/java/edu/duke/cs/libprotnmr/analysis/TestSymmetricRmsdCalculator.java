@@ -0,0 +1,106 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.analysis;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.math.Quaternion;
+import edu.duke.cs.libprotnmr.pdb.ProteinReader;
+import edu.duke.cs.libprotnmr.protein.Protein;
+import edu.duke.cs.libprotnmr.protein.Subunit;
+import edu.duke.cs.libprotnmr.protein.tools.ProteinGeometry;
+import edu.duke.cs.libprotnmr.resources.Resources;
+
+
+public class TestSymmetricRmsdCalculator extends ExtendedTestCase
+{
+	public void testRelabeledCopy( )
+	throws Exception
+	{
+		Protein reference = new ProteinReader().read( Resources.get( "1ZLL.oligomer.protein" ) );
+		
+		// relabel the subunits (reference subunit 0 becomes computed subunit 3) and move the copy somewhere else
+		Protein computed = getRelabeled( reference, new int[] { 2, 3, 4, 0, 1 } );
+		Quaternion q = new Quaternion();
+		Quaternion.getRotation( q, Vector3.getUnitY(), 1.0 );
+		ProteinGeometry.rotate( computed, q );
+		ProteinGeometry.translate( computed, new Vector3( 10, -20, 30 ) );
+		
+		SymmetricRmsdCalculator.Result result = SymmetricRmsdCalculator.getBackboneRmsd( reference, computed, false );
+		assertEquals( 0.0, result.rmsd, 1e-5 );
+		assertEquals( 3, result.subunitOrder[0] );
+		assertEquals( 2, result.subunitOrder[4] );
+		
+		// reflections should find the same answer
+		assertEquals( result.rmsd, SymmetricRmsdCalculator.getBackboneRmsd( reference, computed, true ).rmsd, 1e-12 );
+	}
+	
+	public void testMatchesRealignment( )
+	throws Exception
+	{
+		Protein reference = new ProteinReader().read( Resources.get( "1ZLL.oligomer.protein" ) );
+		Protein computed = new ProteinReader().read( Resources.get( "1ZLL.oligomer.protein" ) );
+		
+		// perturb the copy so no relabeling is perfect
+		for( Subunit subunit : computed.getSubunits() )
+		{
+			ProteinGeometry.translate( subunit, new Vector3( m_rand.nextGaussian(), m_rand.nextGaussian(), m_rand.nextGaussian() ) );
+		}
+		
+		// brute force: re-align a relabeled copy for each cyclic relabeling
+		int numSubunits = reference.getSubunits().size();
+		double minRmsd = Double.POSITIVE_INFINITY;
+		for( int shift=0; shift<numSubunits; shift++ )
+		{
+			int[] order = new int[numSubunits];
+			for( int i=0; i<numSubunits; i++ )
+			{
+				order[i] = ( i + shift )%numSubunits;
+			}
+			Protein relabeled = getRelabeled( computed, order );
+			Protein centeredReference = new Protein( reference );
+			ProteinGeometry.center( centeredReference );
+			StructureAligner.alignOptimally( centeredReference, relabeled );
+			minRmsd = Math.min( minRmsd, RmsdCalculator.getRmsd( centeredReference, relabeled ) );
+		}
+		
+		assertEquals( minRmsd, SymmetricRmsdCalculator.getRmsd( reference, computed, false ).rmsd, 1e-6 );
+	}
+	
+	private Protein getRelabeled( Protein protein, int[] order )
+	{
+		Protein relabeled = new Protein();
+		for( int i=0; i<order.length; i++ )
+		{
+			Subunit subunit = new Subunit( protein.getSubunit( order[i] ) );
+			subunit.setName( protein.getSubunit( i ).getName() );
+			relabeled.addSubunit( subunit );
+		}
+		return relabeled;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.cgal.curves;
+
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.math.IndexPair;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestBoundingConeTree
+{
+	@Test
+	public void testMatchesBruteForce( )
+	{
+		Random rand = new Random( 12345 );
+		for( int i=0; i<50; i++ )
+		{
+			CircularCurve a = new CircularCurve( getRandomUnitVector( rand ), Math.PI*rand.nextDouble() );
+			CircularCurve b = new CircularCurve( getRandomUnitVector( rand ), Math.PI*rand.nextDouble() );
+			BoundingConeTree aTree = new BoundingConeTree( a.samplePoints( Math.toRadians( 2.0 ) ) );
+			BoundingConeTree bTree = new BoundingConeTree( b.samplePoints( Math.toRadians( 3.0 ) ) );
+			
+			List<IndexPair> expected = getOverlappingArcsBruteForce( aTree, bTree );
+			List<IndexPair> observed = aTree.getOverlappingArcs( bTree );
+			assertEquals( expected, observed );
+		}
+	}
+	
+	@Test
+	public void testPrunes( )
+	{
+		// two small far-apart circles shouldn't need any leaf tests
+		CircularCurve a = new CircularCurve( Vector3.getUnitZ(), Math.toRadians( 10.0 ) );
+		CircularCurve b = new CircularCurve( Vector3.getUnitX(), Math.toRadians( 10.0 ) );
+		BoundingConeTree aTree = new BoundingConeTree( a.samplePoints( Math.toRadians( 1.0 ) ) );
+		BoundingConeTree bTree = new BoundingConeTree( b.samplePoints( Math.toRadians( 1.0 ) ) );
+		assertEquals( 2*aTree.getNumArcs() - 1, aTree.getNumNodes() );
+		assertTrue( aTree.getOverlappingArcs( bTree ).isEmpty() );
+	}
+	
+	private List<IndexPair> getOverlappingArcsBruteForce( BoundingConeTree aTree, BoundingConeTree bTree )
+	{
+		List<IndexPair> pairs = new ArrayList<IndexPair>();
+		for( int i=0; i<aTree.getNumArcs(); i++ )
+		{
+			GeodesicCurveArc aArc = aTree.getArc( i );
+			Vector3 aAxis = aArc.getMidpoint();
+			double aAngle = Math.acos( aArc.getSource().getDot( aArc.getTarget() ) );
+			for( int j=0; j<bTree.getNumArcs(); j++ )
+			{
+				GeodesicCurveArc bArc = bTree.getArc( j );
+				Vector3 bAxis = bArc.getMidpoint();
+				double bAngle = Math.acos( bArc.getSource().getDot( bArc.getTarget() ) );
+				double angle = Math.acos( Math.max( -1.0, Math.min( 1.0, aAxis.getDot( bAxis ) ) ) );
+				if( angle - aAngle - bAngle <= 0 )
+				{
+					pairs.add( new IndexPair( i, j ) );
+				}
+			}
+		}
+		return pairs;
+	}
+	
+	private static Vector3 getRandomUnitVector( Random rand )
+	{
+		Vector3 v = new Vector3( rand.nextGaussian(), rand.nextGaussian(), rand.nextGaussian() );
+		v.normalize();
+		return v;
+	}
+}
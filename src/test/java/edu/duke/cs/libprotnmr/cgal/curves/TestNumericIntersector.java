@@ -0,0 +1,172 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.cgal.curves;
+
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.math.Matrix3;
+import edu.duke.cs.libprotnmr.nmr.AlignmentTensor;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestNumericIntersector
+{
+	private static final int NumCircles = 200;
+	private static final int NumSamples = 20000;
+	
+	private static AlignmentTensor m_tensor;
+	private static Intersector.Backend m_oldBackend;
+	
+	@BeforeClass
+	public static void setup( )
+	{
+		Vector3 axis = new Vector3( 1.0, 2.0, 3.0 );
+		axis.normalize();
+		Matrix3 rotPofToMol = new Matrix3();
+		Matrix3.getRotation( rotPofToMol, axis, Math.toRadians( 40.0 ) );
+		m_tensor = AlignmentTensor.newTensorWithRotation( -3.0, -7.0, 10.0, rotPofToMol );
+		
+		m_oldBackend = Intersector.getBackend();
+		Intersector.setBackend( Intersector.Backend.Java );
+	}
+	
+	@AfterClass
+	public static void cleanup( )
+	{
+		Intersector.setBackend( m_oldBackend );
+	}
+	
+	@Test
+	public void testRdcCircular( )
+	{
+		Random rand = new Random( 12345 );
+		for( int i=0; i<NumCircles; i++ )
+		{
+			double d = -7.0 + 17.0*rand.nextDouble();
+			CircularCurve circle = new CircularCurve( getRandomUnitVector( rand ), Math.PI*rand.nextDouble() );
+			checkIntersections( d, circle );
+		}
+	}
+	
+	@Test
+	public void testRdcGeodesic( )
+	{
+		Random rand = new Random( 54321 );
+		for( int i=0; i<NumCircles; i++ )
+		{
+			double d = -7.0 + 17.0*rand.nextDouble();
+			GeodesicCurve geodesic = new GeodesicCurve( getRandomUnitVector( rand ) );
+			int numPoints = 0;
+			for( int arcnum=0; arcnum<=1; arcnum++ )
+			{
+				RdcCurve rdcCurve = new RdcCurve( m_tensor, d, arcnum );
+				for( Vector3 p : Intersector.getIntersectionPoints( rdcCurve, geodesic ) )
+				{
+					assertTrue( rdcCurve.containsPoint( p ) );
+					assertTrue( geodesic.containsPoint( p ) );
+					numPoints++;
+				}
+			}
+			assertEquals( countSignChanges( d, new CircularCurve( geodesic ) ), numPoints );
+		}
+	}
+	
+	@Test
+	public void testRdcCircularBatch( )
+	{
+		Random rand = new Random( 67890 );
+		List<RdcCurve> rdcCurves = new ArrayList<RdcCurve>();
+		List<CircularCurve> circles = new ArrayList<CircularCurve>();
+		for( int i=0; i<NumCircles; i++ )
+		{
+			rdcCurves.add( new RdcCurve( m_tensor, -7.0 + 17.0*rand.nextDouble(), i % 2 ) );
+			circles.add( new CircularCurve( getRandomUnitVector( rand ), Math.PI*rand.nextDouble() ) );
+		}
+		
+		// use a small batch so it has to grow
+		IntersectionBatch batch = new IntersectionBatch( Intersector.RdcCircularBatchParams, 1 );
+		Intersector.getIntersectionPoints( batch, rdcCurves, circles );
+		assertEquals( NumCircles, batch.getNumPairs() );
+		for( int i=0; i<NumCircles; i++ )
+		{
+			List<Vector3> expected = Intersector.getIntersectionPoints( rdcCurves.get( i ), circles.get( i ) );
+			List<Vector3> observed = batch.getPoints( i );
+			assertEquals( expected.size(), observed.size() );
+			for( int j=0; j<expected.size(); j++ )
+			{
+				assertTrue( expected.get( j ).approximatelyEquals( observed.get( j ) ) );
+			}
+		}
+	}
+	
+	private void checkIntersections( double d, CircularCurve circle )
+	{
+		int numPoints = 0;
+		for( int arcnum=0; arcnum<=1; arcnum++ )
+		{
+			RdcCurve rdcCurve = new RdcCurve( m_tensor, d, arcnum );
+			for( Vector3 p : Intersector.getIntersectionPoints( rdcCurve, circle ) )
+			{
+				assertTrue( rdcCurve.containsPoint( p ) );
+				assertTrue( circle.containsPoint( p ) );
+				numPoints++;
+			}
+		}
+		assertEquals( countSignChanges( d, circle ), numPoints );
+	}
+	
+	private int countSignChanges( double d, CircularCurve circle )
+	{
+		// brute force: sample the rdc value around the circle
+		int numChanges = 0;
+		double lastSign = Math.signum( m_tensor.backComputeRdc( circle.getPoint( 0.0 ) ) - d );
+		for( int i=1; i<=NumSamples; i++ )
+		{
+			double sign = Math.signum( m_tensor.backComputeRdc( circle.getPoint( 2.0*Math.PI*i/NumSamples ) ) - d );
+			if( sign != lastSign )
+			{
+				numChanges++;
+			}
+			lastSign = sign;
+		}
+		return numChanges;
+	}
+	
+	private static Vector3 getRandomUnitVector( Random rand )
+	{
+		Vector3 v = new Vector3( rand.nextGaussian(), rand.nextGaussian(), rand.nextGaussian() );
+		v.normalize();
+		return v;
+	}
+}
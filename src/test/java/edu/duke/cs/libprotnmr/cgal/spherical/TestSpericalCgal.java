@@ -27,6 +27,7 @@
 package edu.duke.cs.libprotnmr.cgal.spherical;
 
 import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.cgal.CgalArena;
 import edu.duke.cs.libprotnmr.geom.Vector3;
 
 public class TestSpericalCgal extends ExtendedTestCase
@@ -62,4 +63,55 @@ public class TestSpericalCgal extends ExtendedTestCase
 		assertEquals( new Vector3( 1.0, 1.0, 7.0 ), arc.getSupportingCircle().getCenter() );
 		assertEquals( 4.0, arc.getSupportingCircle().getSquaredRadius() );
 	}
+	
+	public void testArena( )
+	{
+		Circle3 kept;
+		try( CgalArena arena = SphericalCgal.getInstance().openArena() )
+		{
+			Circle3 circle = new Circle3(
+				new Vector3( 3.0, 1.0, 7.0 ),
+				new Vector3( 1.0, 3.0, 7.0 ),
+				new Vector3( -1.0, 1.0, 7.0 )
+			);
+			CircularArc3 arc = new CircularArc3( circle, new Vector3( 3.0, 1.0, 7.0 ), new Vector3( 1.0, 3.0, 7.0 ) );
+			kept = arc.getSupportingCircle();
+			assertEquals( 3, arena.size() );
+			
+			arena.keep( kept );
+			assertEquals( 2, arena.size() );
+		}
+		
+		// the kept circle should still be usable
+		assertEquals( 4.0, kept.getSquaredRadius() );
+	}
+	
+	public void testNestedArenas( )
+	{
+		SphericalCgal cgal = SphericalCgal.getInstance();
+		CgalArena outer = cgal.openArena();
+		CgalArena inner = cgal.openArena();
+		new Circle3(
+			new Vector3( 3.0, 1.0, 7.0 ),
+			new Vector3( 1.0, 3.0, 7.0 ),
+			new Vector3( -1.0, 1.0, 7.0 )
+		);
+		assertEquals( 0, outer.size() );
+		assertEquals( 1, inner.size() );
+		
+		try
+		{
+			outer.close();
+			fail( "closed arenas out of order" );
+		}
+		catch( IllegalStateException ex )
+		{
+			// expected
+		}
+		
+		inner.close();
+		outer.close();
+		assertTrue( inner.isClosed() );
+		assertTrue( outer.isClosed() );
+	}
 }
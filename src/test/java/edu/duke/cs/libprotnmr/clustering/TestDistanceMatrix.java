@@ -26,12 +26,16 @@
 
 package edu.duke.cs.libprotnmr.clustering;
 
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.util.Random;
 
 import edu.duke.cs.libprotnmr.ExtendedTestCase;
 import edu.duke.cs.libprotnmr.clustering.distance.DistanceMatrix;
 import edu.duke.cs.libprotnmr.clustering.distance.DistanceMatrixReader;
 import edu.duke.cs.libprotnmr.clustering.distance.DistanceMatrixWriter;
+import edu.duke.cs.libprotnmr.io.Compression;
 import edu.duke.cs.libprotnmr.math.IndexPair;
 import edu.duke.cs.libprotnmr.math.IndexPairIterator;
 
@@ -199,4 +203,57 @@ public class TestDistanceMatrix extends ExtendedTestCase
 		// cleanup
 		file.delete();
 	}
+	
+	public void testReadWriteCompressed( )
+	throws Exception
+	{
+		Random rand = new Random( 12345 );
+		DistanceMatrix m = new DistanceMatrix( 300 );
+		for( int r=1; r<m.getNumPoints(); r++ )
+		{
+			for( int c=0; c<r; c++ )
+			{
+				m.set( r, c, Math.round( rand.nextDouble()*100 )/10.0 );
+			}
+		}
+		
+		File file = new File( DistanceMatrixPath + ".gz" );
+		DistanceMatrixWriter.write( file, m );
+		
+		// the file should be compressed, but still readable
+		assertTrue( Compression.isCompressed( file ) );
+		assertTrue( file.length() < 8L*300*299/2 );
+		assertEquals( 300, DistanceMatrixReader.getNumPoints( file ) );
+		assertEquals( m, DistanceMatrixReader.read( file ) );
+		
+		// cleanup
+		file.delete();
+	}
+	
+	public void testReadTruncatedCompressed( )
+	throws Exception
+	{
+		// 7 distances isn't a triangular number, so the last row is incomplete
+		File file = new File( DistanceMatrixPath + ".gz" );
+		DataOutputStream out = new DataOutputStream( Compression.openOutput( file ) );
+		for( int i=0; i<7; i++ )
+		{
+			out.writeDouble( i );
+		}
+		out.close();
+		
+		try
+		{
+			DistanceMatrixReader.read( file );
+			fail( "incomplete matrices should be rejected" );
+		}
+		catch( IOException ex )
+		{
+			// expected
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
 }
@@ -30,6 +30,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import edu.duke.cs.libprotnmr.geom.Vector3;
 
 import org.junit.Test;
@@ -175,4 +180,100 @@ public class TestFuzzyVector3Map
 		assertFalse( map.containsKey( c ) );
 		assertEquals( 2, map.get( b ).intValue() );
 	}
+	
+	@Test
+	public void testCellBoundary( )
+	{
+		FuzzyMap<Vector3,Integer> map = new FuzzyMap<Vector3,Integer>( Delta );
+		
+		// a and c land in different grid cells, but are still close
+		Vector3 a = new Vector3( Delta - Epsilon, 0.0, 0.0 );
+		Vector3 b = new Vector3( 5.0*Delta, 0.0, 0.0 );
+		Vector3 c = new Vector3( Delta + Epsilon, 0.0, 0.0 );
+		
+		map.put( a, 1 );
+		map.put( b, 2 );
+		
+		assertTrue( map.containsKey( c ) );
+		assertEquals( 1, map.get( c ).intValue() );
+		
+		map.put( c, 3 );
+		
+		assertEquals( 2, map.size() );
+		assertEquals( 3, map.get( a ).intValue() );
+	}
+	
+	@Test
+	public void testEntryIteratorRemove( )
+	{
+		FuzzyMap<Vector3,Integer> map = new FuzzyMap<Vector3,Integer>( Delta );
+		
+		Vector3 a = new Vector3( 1.0, 2.0, 3.0 );
+		Vector3 b = new Vector3( 2.0, 3.0, 4.0 );
+		
+		map.put( a, 1 );
+		map.put( b, 2 );
+		
+		Iterator<Map.Entry<Vector3,Integer>> iter = map.entrySet().iterator();
+		while( iter.hasNext() )
+		{
+			if( iter.next().getValue() == 1 )
+			{
+				iter.remove();
+			}
+		}
+		
+		assertEquals( 1, map.size() );
+		assertFalse( map.containsKey( a ) );
+		assertTrue( map.containsKey( b ) );
+	}
+	
+	@Test
+	public void testConcurrentGets( )
+	throws Exception
+	{
+		final int NumKeys = 1000;
+		final int NumThreads = 4;
+		
+		final FuzzyMap<Vector3,Integer> map = new FuzzyMap<Vector3,Integer>( Delta );
+		final Vector3[] keys = new Vector3[NumKeys];
+		Random rand = new Random( 12345 );
+		for( int i=0; i<NumKeys; i++ )
+		{
+			keys[i] = new Vector3( rand.nextDouble(), rand.nextDouble(), rand.nextDouble() );
+			map.put( keys[i], i );
+		}
+		
+		// read-only lookups from several threads at once should never interfere with each other
+		final AtomicInteger numMisses = new AtomicInteger( 0 );
+		Thread[] threads = new Thread[NumThreads];
+		for( int t=0; t<NumThreads; t++ )
+		{
+			threads[t] = new Thread( )
+			{
+				@Override
+				public void run( )
+				{
+					for( int r=0; r<20; r++ )
+					{
+						for( int i=0; i<NumKeys; i++ )
+						{
+							Integer value = map.get( keys[i] );
+							if( value == null || value != i )
+							{
+								numMisses.incrementAndGet();
+							}
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for( Thread thread : threads )
+		{
+			thread.join();
+		}
+		
+		assertEquals( 0, numMisses.get() );
+	}
 }
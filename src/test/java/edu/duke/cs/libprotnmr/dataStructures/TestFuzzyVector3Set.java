@@ -28,6 +28,10 @@ package edu.duke.cs.libprotnmr.dataStructures;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import edu.duke.cs.libprotnmr.geom.Vector3;
 
 import org.junit.Test;
@@ -163,4 +167,60 @@ public class TestFuzzyVector3Set
 		assertTrue( set.contains( b ) );
 		assertFalse( set.contains( c ) );
 	}
+	
+	@Test
+	public void testMatchesLinearScan( )
+	{
+		FuzzySet<Vector3> set = new FuzzySet<Vector3>( Delta );
+		List<Vector3> linear = new ArrayList<Vector3>();
+		
+		// crowd points onto a coarse lattice so lots of them collide across cell boundaries
+		Random rand = new Random( 12345 );
+		for( int i=0; i<2000; i++ )
+		{
+			Vector3 point = new Vector3(
+				rand.nextInt( 5 )*Delta + ( rand.nextDouble() - 0.5 )*Delta,
+				rand.nextInt( 5 )*Delta + ( rand.nextDouble() - 0.5 )*Delta,
+				rand.nextInt( 5 )*Delta + ( rand.nextDouble() - 0.5 )*Delta
+			);
+			
+			boolean isNew = true;
+			for( Vector3 other : linear )
+			{
+				if( point.approximatelyEquals( other, Delta ) )
+				{
+					isNew = false;
+					break;
+				}
+			}
+			if( isNew )
+			{
+				linear.add( point );
+			}
+			
+			assertEquals( isNew, set.add( point ) );
+		}
+		
+		assertEquals( linear.size(), set.size() );
+		int i = 0;
+		for( Vector3 point : set )
+		{
+			assertTrue( point == linear.get( i++ ) );
+		}
+	}
+	
+	@Test
+	public void testDefaultEpsilon( )
+	{
+		FuzzySet<Vector3> set = new FuzzySet<Vector3>();
+		
+		Vector3 a = new Vector3( 1.0, 2.0, 3.0 );
+		Vector3 b = new Vector3( 1.0 + Epsilon, 2.0, 3.0 );
+		
+		set.add( a );
+		
+		assertTrue( set.contains( b ) );
+		assertFalse( set.add( b ) );
+		assertEquals( 1, set.size() );
+	}
 }
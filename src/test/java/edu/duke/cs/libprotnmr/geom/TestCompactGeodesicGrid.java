@@ -0,0 +1,151 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.geom;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+
+public class TestCompactGeodesicGrid extends ExtendedTestCase
+{
+	private static final double Epsilon = 1e-12;
+	
+	public void testCounts( )
+	{
+		for( int i=0; i<=4; i++ )
+		{
+			CompactGeodesicGrid grid = new CompactGeodesicGrid( i );
+			GeodesicGrid oldGrid = new GeodesicGrid( i );
+			assertEquals( oldGrid.getNumFaces(), grid.getNumFaces() );
+			assertEquals( oldGrid.vertices().size(), grid.getNumVertices() );
+		}
+	}
+	
+	public void testMatchesGeodesicGrid( )
+	{
+		CompactGeodesicGrid grid = new CompactGeodesicGrid( 3 );
+		GeodesicGrid oldGrid = new GeodesicGrid( 3 );
+		
+		// faces should come out in the same order
+		Vector3 midpoint = new Vector3();
+		int face = 0;
+		for( GeodesicGrid.Face oldFace : oldGrid )
+		{
+			grid.getFaceMidpoint( midpoint, face++ );
+			assertEquals( 0.0, midpoint.getDistance( oldFace.getMidpoint() ), Epsilon );
+		}
+	}
+	
+	public void testNeighbors( )
+	{
+		CompactGeodesicGrid grid = new CompactGeodesicGrid( 3 );
+		for( int face=0; face<grid.getNumFaces(); face++ )
+		{
+			for( int i=0; i<3; i++ )
+			{
+				int neighbor = grid.getNeighbor( face, i );
+				assertTrue( neighbor != face );
+				
+				// the neighbor should point back and share the edge
+				int source = grid.getFaceVertex( face, i );
+				int target = grid.getFaceVertex( face, ( i + 1 )%3 );
+				boolean pointsBack = false;
+				for( int j=0; j<3; j++ )
+				{
+					if( grid.getNeighbor( neighbor, j ) == face )
+					{
+						pointsBack = true;
+						assertEquals( target, grid.getFaceVertex( neighbor, j ) );
+						assertEquals( source, grid.getFaceVertex( neighbor, ( j + 1 )%3 ) );
+					}
+				}
+				assertTrue( pointsBack );
+			}
+		}
+	}
+	
+	public void testFaceIndexMidpoints( )
+	{
+		CompactGeodesicGrid grid = new CompactGeodesicGrid( 4 );
+		Vector3 midpoint = new Vector3();
+		for( int face=0; face<grid.getNumFaces(); face++ )
+		{
+			grid.getFaceMidpoint( midpoint, face );
+			midpoint.normalize();
+			assertEquals( face, grid.getFaceIndex( midpoint ) );
+		}
+	}
+	
+	public void testFaceIndexMatchesLinearScan( )
+	{
+		CompactGeodesicGrid grid = new CompactGeodesicGrid( 3 );
+		GeodesicGrid oldGrid = new GeodesicGrid( 3 );
+		List<GeodesicGrid.Face> oldFaces = new ArrayList<GeodesicGrid.Face>();
+		for( GeodesicGrid.Face face : oldGrid )
+		{
+			oldFaces.add( face );
+		}
+		
+		Random rand = new Random( 12345 );
+		for( int i=0; i<1000; i++ )
+		{
+			Vector3 q = new Vector3( rand.nextGaussian(), rand.nextGaussian(), rand.nextGaussian() );
+			q.normalize();
+			
+			// the old test projects onto the flat faces, so it can miss points near edges
+			// but whenever it finds exactly one face, it should be ours
+			int face = grid.getFaceIndex( q );
+			int numOldFaces = 0;
+			int oldFace = -1;
+			for( int j=0; j<oldFaces.size(); j++ )
+			{
+				if( oldFaces.get( j ).containsPoint( q ) )
+				{
+					numOldFaces++;
+					oldFace = j;
+				}
+			}
+			if( numOldFaces == 1 )
+			{
+				assertEquals( oldFace, face );
+			}
+			
+			BitSet faces = new BitSet();
+			faces.set( face );
+			assertTrue( grid.isPointInFaces( faces, q ) );
+		}
+	}
+	
+	public void testCache( )
+	{
+		assertSame( CompactGeodesicGrid.get( 2 ), CompactGeodesicGrid.get( 2 ) );
+		assertNotSame( CompactGeodesicGrid.get( 2 ), CompactGeodesicGrid.get( 3 ) );
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+public class TestCompression
+{
+	@Test
+	public void testRoundTrip( )
+	throws IOException
+	{
+		Random rand = new Random( 12345 );
+		for( int size : new int[] { 0, 1, 999, 1000, 1001, 12345 } )
+		{
+			// make some compressible data
+			byte[] data = new byte[size];
+			for( int i=0; i<size; i++ )
+			{
+				data[i] = (byte)( 'a' + rand.nextInt( 4 ) );
+			}
+			
+			// use tiny blocks so we get lots of members
+			ByteArrayOutputStream buf = new ByteArrayOutputStream();
+			ParallelGzipOutputStream out = new ParallelGzipOutputStream( buf, 3, 1000, 6 );
+			out.write( data, 0, size/2 );
+			for( int i=size/2; i<size; i++ )
+			{
+				out.write( data[i] );
+			}
+			out.close();
+			byte[] compressed = buf.toByteArray();
+			
+			// the JDK should read all the members
+			assertArrayEquals( data, readAll( new GZIPInputStream( new ByteArrayInputStream( compressed ) ) ) );
+			
+			// and we should detect the compression
+			assertArrayEquals( data, readAll( Compression.decompress( new ByteArrayInputStream( compressed ) ) ) );
+		}
+	}
+	
+	@Test
+	public void testUncompressedPassesThrough( )
+	throws IOException
+	{
+		byte[] data = "ATOM      1  N   MET A   1".getBytes();
+		assertArrayEquals( data, readAll( Compression.decompress( new ByteArrayInputStream( data ) ) ) );
+		assertArrayEquals( new byte[0], readAll( Compression.decompress( new ByteArrayInputStream( new byte[0] ) ) ) );
+		assertArrayEquals( new byte[] { 0x1f }, readAll( Compression.decompress( new ByteArrayInputStream( new byte[] { 0x1f } ) ) ) );
+	}
+	
+	@Test
+	public void testFlushDoesNotSplitMembers( )
+	throws IOException
+	{
+		byte[] data = new byte[5000];
+		for( int i=0; i<data.length; i++ )
+		{
+			data[i] = (byte)( 'a' + i % 4 );
+		}
+		
+		// flushing after every byte should still make one member
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		ParallelGzipOutputStream out = new ParallelGzipOutputStream( buf, 2, data.length, 6 );
+		for( byte b : data )
+		{
+			out.write( b );
+			out.flush();
+		}
+		out.close();
+		byte[] compressed = buf.toByteArray();
+		
+		assertEquals( 1, countMembers( compressed ) );
+		assertArrayEquals( data, readAll( new GZIPInputStream( new ByteArrayInputStream( compressed ) ) ) );
+	}
+	
+	private int countMembers( byte[] compressed )
+	{
+		// good enough for data that can't contain the magic bytes itself
+		int count = 0;
+		for( int i=0; i<compressed.length - 2; i++ )
+		{
+			if( compressed[i] == 0x1f && compressed[i + 1] == (byte)0x8b && compressed[i + 2] == 8 )
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	private byte[] readAll( InputStream in )
+	throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[4096];
+		int numRead = 0;
+		while( ( numRead = in.read( buf ) ) >= 0 )
+		{
+			out.write( buf, 0, numRead );
+		}
+		in.close();
+		return out.toByteArray();
+	}
+}
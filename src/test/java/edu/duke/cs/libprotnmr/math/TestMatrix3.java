@@ -26,9 +26,13 @@
 
 package edu.duke.cs.libprotnmr.math;
 
+import java.util.Arrays;
+
 import edu.duke.cs.libprotnmr.ExtendedTestCase;
 import edu.duke.cs.libprotnmr.geom.Vector3;
 
+import Jama.Matrix;
+
 public class TestMatrix3 extends ExtendedTestCase
 {
 	public void testDefaultConstructor( )
@@ -285,4 +289,64 @@ public class TestMatrix3 extends ExtendedTestCase
 		
 		assertEquals( m, n );
 	}
+	
+	public void testEigenSymmetric( )
+	{
+		for( int i=0; i<1000; i++ )
+		{
+			// build a random symmetric matrix
+			double a = getRandomDouble( -10.0, 10.0 );
+			double b = getRandomDouble( -10.0, 10.0 );
+			double c = getRandomDouble( -10.0, 10.0 );
+			double d = getRandomDouble( -10.0, 10.0 );
+			double e = getRandomDouble( -10.0, 10.0 );
+			double f = getRandomDouble( -10.0, 10.0 );
+			assertEigenSymmetric( new Matrix3( a, b, c, b, d, e, c, e, f ) );
+		}
+	}
+	
+	public void testEigenSymmetricDegenerate( )
+	{
+		assertEigenSymmetric( new Matrix3( 1, 0, 0, 0, 1, 0, 0, 0, 1 ) );
+		assertEigenSymmetric( new Matrix3( 0, 0, 0, 0, 0, 0, 0, 0, 0 ) );
+		assertEigenSymmetric( new Matrix3( 3, 0, 0, 0, -1, 0, 0, 0, 2 ) );
+		assertEigenSymmetric( new Matrix3( 2, 1, 1, 1, 2, 1, 1, 1, 2 ) );
+		assertEigenSymmetric( new Matrix3( 1, 1e-12, 0, 1e-12, 1, 0, 0, 0, 5 ) );
+	}
+	
+	private void assertEigenSymmetric( Matrix3 m )
+	{
+		double[] eigenvalues = new double[3];
+		Matrix3 eigenvectors = new Matrix3();
+		m.getEigenSymmetric( eigenvalues, eigenvectors );
+		
+		// eigenvalues should match Jama
+		Matrix jama = new Matrix( 3, 3 );
+		m.toJama( jama );
+		double[] expected = jama.eig().getRealEigenvalues();
+		Arrays.sort( expected );
+		double scale = Math.max( 1.0, Math.abs( expected[0] ) + Math.abs( expected[2] ) );
+		for( int i=0; i<3; i++ )
+		{
+			assertEquals( expected[i], eigenvalues[i], 1e-12*scale );
+		}
+		
+		// eigenvectors should be orthonormal and satisfy Av = lambda*v
+		Vector3 v = new Vector3();
+		Vector3 w = new Vector3();
+		for( int i=0; i<3; i++ )
+		{
+			eigenvectors.getAxis( v, i );
+			assertEquals( 1.0, v.getLength(), 1e-12 );
+			for( int j=0; j<i; j++ )
+			{
+				eigenvectors.getAxis( w, j );
+				assertEquals( 0.0, v.getDot( w ), 1e-12 );
+			}
+			w.set( v );
+			m.multiply( w );
+			v.scale( eigenvalues[i] );
+			assertEquals( v, w, 1e-12*scale );
+		}
+	}
 }
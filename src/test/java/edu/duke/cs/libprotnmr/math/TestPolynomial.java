@@ -0,0 +1,109 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.math;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+
+import java.util.List;
+
+public class TestPolynomial extends ExtendedTestCase
+{
+	private static final double Epsilon = 1e-10;
+	
+	public void testEvaluate( )
+	{
+		double[] p = { 1.0, -2.0, 3.0 };
+		assertEquals( 1.0, Polynomial.evaluate( p, 0.0 ) );
+		assertEquals( 2.0, Polynomial.evaluate( p, 1.0 ) );
+		assertEquals( 9.0, Polynomial.evaluate( p, 2.0 ) );
+	}
+	
+	public void testDerivative( )
+	{
+		double[] d = Polynomial.getDerivative( new double[] { 1.0, -2.0, 3.0, 4.0 } );
+		assertEquals( 3, d.length );
+		assertEquals( -2.0, d[0] );
+		assertEquals( 6.0, d[1] );
+		assertEquals( 12.0, d[2] );
+	}
+	
+	public void testSolveCubic( )
+	{
+		// (x - 1)(x - 2)(x + 3) = x^3 - 7x + 6
+		List<Double> roots = Polynomial.solve( new double[] { 6.0, -7.0, 0.0, 1.0 } );
+		assertEquals( 3, roots.size() );
+		assertEquals( -3.0, roots.get( 0 ), Epsilon );
+		assertEquals( 1.0, roots.get( 1 ), Epsilon );
+		assertEquals( 2.0, roots.get( 2 ), Epsilon );
+	}
+	
+	public void testSolveQuarticCloseRoots( )
+	{
+		// (x - 0.5)(x - 0.501)(x + 4)(x - 10)
+		double[] p = multiply( multiply( new double[] { -0.5, 1.0 }, new double[] { -0.501, 1.0 } ), multiply( new double[] { 4.0, 1.0 }, new double[] { -10.0, 1.0 } ) );
+		List<Double> roots = Polynomial.solve( p );
+		assertEquals( 4, roots.size() );
+		assertEquals( -4.0, roots.get( 0 ), Epsilon );
+		assertEquals( 0.5, roots.get( 1 ), Epsilon );
+		assertEquals( 0.501, roots.get( 2 ), Epsilon );
+		assertEquals( 10.0, roots.get( 3 ), Epsilon );
+	}
+	
+	public void testSolveNoRealRoots( )
+	{
+		// x^4 + x^2 + 1
+		List<Double> roots = Polynomial.solve( new double[] { 1.0, 0.0, 1.0, 0.0, 1.0 } );
+		assertEquals( 0, roots.size() );
+	}
+	
+	public void testSolveRepeatedRoot( )
+	{
+		// (x - 1)^2 (x + 2) is degenerate
+		double[] p = multiply( multiply( new double[] { -1.0, 1.0 }, new double[] { -1.0, 1.0 } ), new double[] { 2.0, 1.0 } );
+		assertNull( Polynomial.solve( p ) );
+	}
+	
+	public void testSolveInterval( )
+	{
+		List<Double> roots = Polynomial.solve( new double[] { 6.0, -7.0, 0.0, 1.0 }, 0.0, 1.5 );
+		assertEquals( 1, roots.size() );
+		assertEquals( 1.0, roots.get( 0 ), Epsilon );
+	}
+	
+	private double[] multiply( double[] a, double[] b )
+	{
+		double[] out = new double[a.length + b.length - 1];
+		for( int i=0; i<a.length; i++ )
+		{
+			for( int j=0; j<b.length; j++ )
+			{
+				out[i+j] += a[i]*b[j];
+			}
+		}
+		return out;
+	}
+}
@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.io.ParseException;
 import edu.duke.cs.libprotnmr.io.Transformer;
 import edu.duke.cs.libprotnmr.protein.AtomAddressReadable;
 
@@ -210,6 +211,33 @@ public class TestAssignReader extends ExtendedTestCase
 		assertEquals( Transformer.toArrayList( 4.0, -2.2, 4.0 ), assign.getNumbers() );
 	}
 
+	public void testNumbers( )
+	throws Exception
+	{
+		Assign assign = getAssign(
+			"assign (resid 7 and name ha1 and segid A)(resid 15 and name hd# and segid C) 4 .5 -0.25 3. 0.1234567890123456789 1e5\n"
+		);
+		
+		assertEquals( Transformer.toArrayList( 4.0, 0.5, -0.25, 3.0, 0.1234567890123456789 ), assign.getNumbers() );
+	}
+	
+	public void testErrorsHaveLineNumbers( )
+	throws Exception
+	{
+		try
+		{
+			getAssigns(
+				"assign (resid 7 and name ha1 and segid A)\n"
+				+ "(resid x and name hd# and segid C) 4.0 -2.2 4.0\n"
+			);
+			fail( "bad residue number should not parse" );
+		}
+		catch( ParseException ex )
+		{
+			assertTrue( ex.getMessage().startsWith( "Line 2:" ) );
+		}
+	}
+	
 	private Assign getAssign( String in )
 	throws Exception
 	{
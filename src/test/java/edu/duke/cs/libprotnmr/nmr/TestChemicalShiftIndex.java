@@ -0,0 +1,123 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.nmr;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.protein.AtomAddressReadable;
+
+public class TestChemicalShiftIndex extends ExtendedTestCase
+{
+	public void testEmpty( )
+	{
+		List<ChemicalShift<AtomAddressReadable>> shifts = new ArrayList<ChemicalShift<AtomAddressReadable>>();
+		List<ChemicalShiftPair<AtomAddressReadable>> pairs = new ArrayList<ChemicalShiftPair<AtomAddressReadable>>();
+		assertEquals( 0, DistanceRestraintReassigner.getAddressesNearShift1D( new ChemicalShiftIndex<AtomAddressReadable>( shifts ), 1.0, 1.0 ).size() );
+		assertEquals( 0, DistanceRestraintReassigner.getAddressesNearShift2D( new ChemicalShiftPairIndex<AtomAddressReadable>( pairs ), 1.0, 1.0, 1.0, 1.0 ).size() );
+	}
+	
+	public void test1DMatchesLinearScan( )
+	{
+		Random rand = new Random( 12345 );
+		for( int numShifts : new int[] { 1, 2, 7, 100, 1000 } )
+		{
+			List<ChemicalShift<AtomAddressReadable>> shifts = getRandomShifts( rand, numShifts, 0, 10 );
+			ChemicalShiftIndex<AtomAddressReadable> index = new ChemicalShiftIndex<AtomAddressReadable>( shifts );
+			for( int i=0; i<500; i++ )
+			{
+				// query on existing shift values too, so we hit the window edges exactly
+				double value = rand.nextBoolean() ? shifts.get( rand.nextInt( numShifts ) ).getValue() : rand.nextDouble()*10;
+				double windowWidth = rand.nextDouble()*0.5;
+				assertEquals(
+					DistanceRestraintReassigner.getAddressesNearShift1D( shifts, value, windowWidth ),
+					DistanceRestraintReassigner.getAddressesNearShift1D( index, value, windowWidth )
+				);
+			}
+		}
+	}
+	
+	public void test2DMatchesLinearScan( )
+	{
+		Random rand = new Random( 12345 );
+		for( int numPairs : new int[] { 1, 2, 7, 100, 1000 } )
+		{
+			List<ChemicalShift<AtomAddressReadable>> hydrogenShifts = getRandomShifts( rand, numPairs, 0, 10 );
+			List<ChemicalShift<AtomAddressReadable>> heavyShifts = getRandomShifts( rand, numPairs, 10, 70 );
+			List<ChemicalShiftPair<AtomAddressReadable>> pairs = new ArrayList<ChemicalShiftPair<AtomAddressReadable>>();
+			for( int i=0; i<numPairs; i++ )
+			{
+				pairs.add( new ChemicalShiftPair<AtomAddressReadable>( hydrogenShifts.get( i ), heavyShifts.get( i ) ) );
+			}
+			ChemicalShiftPairIndex<AtomAddressReadable> index = new ChemicalShiftPairIndex<AtomAddressReadable>( pairs );
+			for( int i=0; i<500; i++ )
+			{
+				ChemicalShiftPair<AtomAddressReadable> pair = pairs.get( rand.nextInt( numPairs ) );
+				double hydrogenValue = rand.nextBoolean() ? pair.getHydrogenShift().getValue() : rand.nextDouble()*10;
+				double heavyValue = rand.nextBoolean() ? pair.getHeavyShift().getValue() : 10 + rand.nextDouble()*60;
+				double hydrogenWindowWidth = rand.nextDouble()*2;
+				double heavyWindowWidth = rand.nextDouble()*10;
+				HashSet<AtomAddressReadable> expected = DistanceRestraintReassigner.getAddressesNearShift2D( pairs, hydrogenValue, heavyValue, hydrogenWindowWidth, heavyWindowWidth );
+				assertEquals(
+					expected,
+					DistanceRestraintReassigner.getAddressesNearShift2D( index, hydrogenValue, heavyValue, hydrogenWindowWidth, heavyWindowWidth )
+				);
+			}
+		}
+	}
+	
+	public void testNaNShiftsAreIgnored( )
+	{
+		List<ChemicalShift<AtomAddressReadable>> shifts = getRandomShifts( new Random( 12345 ), 3, 0, 10 );
+		shifts.get( 1 ).setValue( Double.NaN );
+		ChemicalShiftIndex<AtomAddressReadable> index = new ChemicalShiftIndex<AtomAddressReadable>( shifts );
+		assertEquals( 2, index.size() );
+		double value = shifts.get( 2 ).getValue();
+		assertEquals(
+			DistanceRestraintReassigner.getAddressesNearShift1D( shifts, value, 0.1 ),
+			DistanceRestraintReassigner.getAddressesNearShift1D( index, value, 0.1 )
+		);
+	}
+	
+	private List<ChemicalShift<AtomAddressReadable>> getRandomShifts( Random rand, int numShifts, double min, double max )
+	{
+		List<ChemicalShift<AtomAddressReadable>> shifts = new ArrayList<ChemicalShift<AtomAddressReadable>>();
+		for( int i=0; i<numShifts; i++ )
+		{
+			ChemicalShift<AtomAddressReadable> shift = new ChemicalShift<AtomAddressReadable>();
+			shift.setAddress( new AtomAddressReadable( i + 1, "H" ) );
+			
+			// round the values so some shifts collide
+			shift.setValue( min + Math.round( rand.nextDouble()*( max - min )*100 )/100.0 );
+			shifts.add( shift );
+		}
+		return shifts;
+	}
+}
@@ -26,8 +26,10 @@
 
 package edu.duke.cs.libprotnmr.nmr;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import junit.framework.AssertionFailedError;
@@ -191,6 +193,75 @@ public class TestDistanceRestraintReassigner extends ExtendedTestCase
 		);
 	}
 	
+	public void testParallelMatchesSerial( )
+	throws Exception
+	{
+		Map<AtomAddressReadable,ChemicalShift<AtomAddressReadable>> hydrogenLookup = ChemicalShiftMapper.buildShiftLookup( m_hydrogenShifts );
+		List<ChemicalShiftPair<AtomAddressReadable>> carbonPairs = ChemicalShiftMapper.associatePairs( m_sequence, hydrogenLookup, ChemicalShiftMapper.buildShiftLookup( m_carbonShifts ) );
+		List<ChemicalShiftPair<AtomAddressReadable>> nitrogenPairs = ChemicalShiftMapper.associatePairs( m_sequence, hydrogenLookup, ChemicalShiftMapper.buildShiftLookup( m_nitrogenShifts ) );
+		
+		// use enough restraints to span several chunks
+		List<DistanceRestraint<AtomAddressReadable>> restraints = new ArrayList<DistanceRestraint<AtomAddressReadable>>();
+		while( restraints.size() < 1000 )
+		{
+			restraints.addAll( m_restraints );
+		}
+		
+		List<DistanceRestraint<AtomAddressReadable>> serialRestraints = DistanceRestraintReassigner.reassignDouble2DWithPairs(
+			m_sequence, restraints, m_hydrogenShifts, carbonPairs, nitrogenPairs,
+			HydrogenWindowWidth, CarbonWindowWidth, NitrogenWindowWidth
+		);
+		List<DistanceRestraint<AtomAddressReadable>> parallelRestraints = DistanceRestraintReassigner.reassignDouble2DWithPairs(
+			m_sequence, restraints, m_hydrogenShifts, carbonPairs, nitrogenPairs,
+			HydrogenWindowWidth, CarbonWindowWidth, NitrogenWindowWidth,
+			4
+		);
+		assertSameRestraints( serialRestraints, parallelRestraints );
+	}
+	
+	public void testParallelFailures( )
+	throws Exception
+	{
+		Map<AtomAddressReadable,ChemicalShift<AtomAddressReadable>> hydrogenLookup = ChemicalShiftMapper.buildShiftLookup( m_hydrogenShifts );
+		List<ChemicalShiftPair<AtomAddressReadable>> carbonPairs = ChemicalShiftMapper.associatePairs( m_sequence, hydrogenLookup, ChemicalShiftMapper.buildShiftLookup( m_carbonShifts ) );
+		List<ChemicalShiftPair<AtomAddressReadable>> nitrogenPairs = ChemicalShiftMapper.associatePairs( m_sequence, hydrogenLookup, ChemicalShiftMapper.buildShiftLookup( m_nitrogenShifts ) );
+		
+		// use many more chunks than the workers can have in flight, and break one of the early ones
+		List<DistanceRestraint<AtomAddressReadable>> restraints = new ArrayList<DistanceRestraint<AtomAddressReadable>>();
+		while( restraints.size() < 10000 )
+		{
+			restraints.addAll( m_restraints );
+		}
+		restraints.set( 300, null );
+		try
+		{
+			DistanceRestraintReassigner.reassignDouble2DWithPairs(
+				m_sequence, restraints, m_hydrogenShifts, carbonPairs, nitrogenPairs,
+				HydrogenWindowWidth, CarbonWindowWidth, NitrogenWindowWidth,
+				2
+			);
+			fail( "the failure should reach the calling thread" );
+		}
+		catch( RuntimeException ex )
+		{
+			assertTrue( ex.getCause() instanceof NullPointerException );
+		}
+		
+		try
+		{
+			DistanceRestraintReassigner.reassignDouble2DWithPairs(
+				m_sequence, m_restraints, m_hydrogenShifts, carbonPairs, nitrogenPairs,
+				HydrogenWindowWidth, CarbonWindowWidth, NitrogenWindowWidth,
+				0
+			);
+			fail( "zero workers should be rejected" );
+		}
+		catch( IllegalArgumentException ex )
+		{
+			// expected
+		}
+	}
+	
 	private void assertSameRestraints( List<DistanceRestraint<AtomAddressReadable>> expected, List<DistanceRestraint<AtomAddressReadable>> observed )
 	{
 		assertEquals( expected.size(), observed.size() );
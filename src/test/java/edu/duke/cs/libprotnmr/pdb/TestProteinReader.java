@@ -77,6 +77,27 @@ public class TestProteinReader extends ExtendedTestCase
 		assertTinyProtein2( proteins.get( 1 ) );
 	}
 	
+	public void testTinyMultiProteinListener( )
+	throws Exception
+	{
+		ProteinReader reader = new ProteinReader();
+		final ArrayList<Protein> proteins = new ArrayList<Protein>();
+		int numModels = reader.readAll( getClass().getResourceAsStream( Resources.getPath("tinyMultiProtein.pdb") ), new ModelReadListener( )
+		{
+			@Override
+			public void modelRead( int modelId, Protein protein )
+			{
+				assertEquals( proteins.size(), modelId );
+				proteins.add( protein );
+			}
+		} );
+		
+		assertEquals( 2, numModels );
+		assertEquals( 2, proteins.size() );
+		assertTinyProtein1( proteins.get( 0 ) );
+		assertTinyProtein2( proteins.get( 1 ) );
+	}
+	
 	public void testTinyMultiProtein1( )
 	throws Exception
 	{
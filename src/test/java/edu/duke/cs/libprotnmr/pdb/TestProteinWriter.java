@@ -27,9 +27,15 @@
 package edu.duke.cs.libprotnmr.pdb;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Random;
 
 import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.io.Compression;
+import edu.duke.cs.libprotnmr.protein.Ensemble;
 import edu.duke.cs.libprotnmr.protein.Protein;
 import edu.duke.cs.libprotnmr.resources.Resources;
 
@@ -57,4 +63,88 @@ public class TestProteinWriter extends ExtendedTestCase
 		// cleanup
 		new File( ObservedOutPath ).delete();
 	}
+	
+	public void testEnsembleMatchesModels( )
+	throws IOException
+	{
+		List<Protein> proteins = new ProteinReader().readAll( Resources.get( "tinyMultiProtein.pdb" ) );
+		String modelsPath = "/tmp/test.models.protein";
+		String ensemblePath = "/tmp/test.ensemble.protein";
+		Ensemble ensemble = new Ensemble( proteins );
+		
+		// NOTE: ensembles share one topology, so compare against the models it gives back
+		new ProteinWriter().write( ensemble.getProteins(), modelsPath );
+		new ProteinWriter().write( ensemble, ensemblePath );
+		
+		assertEqualsTextFile( new FileInputStream( modelsPath ), ensemblePath );
+		
+		// cleanup
+		new File( modelsPath ).delete();
+		new File( ensemblePath ).delete();
+	}
+	
+	public void testCompressed( )
+	throws IOException
+	{
+		List<Protein> proteins = new ProteinReader().readAll( Resources.get( "tinyMultiProtein.pdb" ) );
+		String plainPath = "/tmp/test.protein";
+		String compressedPath = "/tmp/test.protein.gz";
+		new ProteinWriter().write( proteins, plainPath );
+		new ProteinWriter().write( proteins, compressedPath );
+		
+		// the gzip file should decompress to the plain file, and read back the same models
+		assertTrue( Compression.isCompressed( new File( compressedPath ) ) );
+		assertEqualsTextFile( Compression.openInput( new File( compressedPath ) ), plainPath );
+		String rewrittenPath = "/tmp/test.rewritten.protein";
+		new ProteinWriter().write( new ProteinReader().readAll( compressedPath ), rewrittenPath );
+		assertEqualsTextFile( new FileInputStream( plainPath ), rewrittenPath );
+		
+		// cleanup
+		new File( plainPath ).delete();
+		new File( compressedPath ).delete();
+		new File( rewrittenPath ).delete();
+	}
+	
+	public void testFixedFormatting( )
+	{
+		Random rand = new Random( 12345 );
+		PdbLineBuffer line = new PdbLineBuffer();
+		for( int i=0; i<100000; i++ )
+		{
+			double value = ( rand.nextDouble() - 0.5 )*Math.pow( 10, rand.nextInt( 10 ) - 3 );
+			if( rand.nextBoolean() )
+			{
+				// land on a rounding tie
+				value = Math.round( value*1000 )/1000.0 + 0.0005;
+			}
+			line.clear();
+			line.appendFixed( value, 8, 3 );
+			assertEquals( String.format( "%8.3f", value ), getText( line ) );
+			
+			int intValue = rand.nextInt();
+			line.clear();
+			line.appendInt( intValue, 7 );
+			assertEquals( String.format( "%7d", intValue ), getText( line ) );
+		}
+		for( double value : new double[] { 0.0, -0.0, -0.0001, 0.0005, 1.0005, 2.0005, Double.NaN, Double.POSITIVE_INFINITY, 1e20 } )
+		{
+			line.clear();
+			line.appendFixed( value, 6, 2 );
+			assertEquals( String.format( "%6.2f", value ), getText( line ) );
+		}
+	}
+	
+	private String getText( PdbLineBuffer line )
+	{
+		StringWriter writer = new StringWriter();
+		try
+		{
+			line.writeTo( writer );
+		}
+		catch( IOException ex )
+		{
+			throw new Error( ex );
+		}
+		return writer.toString();
+	}
 }
@@ -0,0 +1,199 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.protein;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.mapping.NameMapper;
+import edu.duke.cs.libprotnmr.mapping.NameScheme;
+import edu.duke.cs.libprotnmr.pdb.ProteinReader;
+import edu.duke.cs.libprotnmr.resources.Resources;
+
+
+public class TestAtomNameIndex extends ExtendedTestCase
+{
+	private static final String[] Queries = { "N", "ca", "HA", "HB#", "HB*", "hg#", "HD1#", "HD#", "H#", "QB", "XX" };
+	
+	public void testMatchesScan( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( getClass().getResourceAsStream( Resources.getPath( "largeProtein.pdb" ) ) );
+		for( Subunit subunit : protein.getSubunits() )
+		{
+			AtomNameIndex index = subunit.getAtomNameIndex();
+			for( Residue residue : subunit.getResidues() )
+			{
+				for( String query : Queries )
+				{
+					assertEquals( getAtomIdByScan( residue, query ), index.getAtomId( residue.getId(), query ) );
+					assertEquals( getAmbiguousAtomIdsByScan( residue, query ), index.getAmbiguousAtomIds( residue.getId(), query ) );
+				}
+				for( Atom atom : residue.getAtoms() )
+				{
+					assertEquals( Integer.valueOf( atom.getId() ), index.getAtomId( residue.getId(), atom.getName().toLowerCase() ) );
+				}
+			}
+			assertNull( index.getAtomId( -1, "N" ) );
+			assertNull( index.getAmbiguousAtomIds( subunit.getResidues().size(), "N" ) );
+		}
+	}
+	
+	public void testNewAtoms( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( getClass().getResourceAsStream( Resources.getPath( "largeProtein.pdb" ) ) );
+		Subunit subunit = protein.getSubunit( 0 );
+		Residue residue = subunit.getResidue( 0 );
+		assertNull( subunit.getAtomNameIndex().getAtomId( 0, "QQ" ) );
+		
+		Atom atom = new Atom();
+		atom.setName( "QQ" );
+		residue.getAtoms().add( atom );
+		subunit.updateAtomIndices();
+		
+		assertEquals( Integer.valueOf( atom.getId() ), subunit.getAtomNameIndex().getAtomId( 0, "QQ" ) );
+		assertEquals( new AtomAddressInternal( subunit, residue, atom ), subunit.getAtomNameIndex().getAddress( residue.getNumber(), "QQ" ) );
+	}
+	
+	public void testUpdateAtomIndices( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( getClass().getResourceAsStream( Resources.getPath( "largeProtein.pdb" ) ) );
+		Subunit subunit = protein.getSubunit( 0 );
+		Atom atom = subunit.getResidue( 0 ).getAtomByName( "CA" );
+		assertEquals( Integer.valueOf( atom.getId() ), subunit.getAtomNameIndex().getAtomId( 0, "CA" ) );
+		
+		atom.setName( "CX" );
+		subunit.updateAtomIndices();
+		
+		assertNull( subunit.getAtomNameIndex().getAtomId( 0, "CA" ) );
+		assertEquals( Integer.valueOf( atom.getId() ), subunit.getAtomNameIndex().getAtomId( 0, "CX" ) );
+	}
+	
+	public void testNameMapper( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( getClass().getResourceAsStream( Resources.getPath( "largeProtein.pdb" ) ) );
+		Subunit subunit = protein.getSubunit( 0 );
+		Residue residue = subunit.getResidue( 1 );
+		Atom atom = residue.getAtomByName( "H" );
+		assertEquals( new AtomAddressInternal( subunit, residue, atom ), subunit.getAtomNameIndex().getAddress( residue.getNumber(), "H" ) );
+		
+		// renaming the atom should throw away the stale index
+		new NameMapper( NameScheme.New, NameScheme.Old ).mapAtom( subunit, residue, atom );
+		assertEquals( "HN", atom.getName() );
+		
+		assertNull( subunit.getAtomNameIndex().getAddress( residue.getNumber(), "H" ) );
+		assertEquals( new AtomAddressInternal( subunit, residue, atom ), subunit.getAtomNameIndex().getAddress( residue.getNumber(), "HN" ) );
+		assertEquals( getAmbiguousAtomIdsByScan( residue, "H*" ), subunit.getAtomNameIndex().getAmbiguousAtomIds( 1, "H*" ) );
+	}
+	
+	public void testAddresses( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( getClass().getResourceAsStream( Resources.getPath( "largeProtein.pdb" ) ) );
+		for( Subunit subunit : protein.getSubunits() )
+		{
+			AtomNameIndex index = subunit.getAtomNameIndex();
+			for( Residue residue : subunit.getResidues() )
+			{
+				for( String query : Queries )
+				{
+					Integer atomId = getAtomIdByScan( residue, query );
+					if( atomId == null )
+					{
+						assertNull( index.getAddress( residue.getNumber(), query ) );
+					}
+					else
+					{
+						assertEquals( new AtomAddressInternal( subunit.getId(), residue.getId(), atomId ), index.getAddress( residue.getNumber(), query ) );
+					}
+					
+					ArrayList<AtomAddressInternal> addresses = new ArrayList<AtomAddressInternal>();
+					for( Integer id : getAmbiguousAtomIdsByScan( residue, query ) )
+					{
+						addresses.add( new AtomAddressInternal( subunit.getId(), residue.getId(), id ) );
+					}
+					assertEquals( addresses, index.getAmbiguousAddresses( residue.getNumber(), query ) );
+				}
+			}
+			assertNull( index.getAddress( Integer.MIN_VALUE, "N" ) );
+			assertEquals( 0, index.getAmbiguousAddresses( Integer.MIN_VALUE, "N" ).size() );
+		}
+	}
+	
+	public void testUnmodifiable( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( getClass().getResourceAsStream( Resources.getPath( "largeProtein.pdb" ) ) );
+		AtomNameIndex index = protein.getSubunit( 0 ).getAtomNameIndex();
+		for( String query : Arrays.asList( "N", "HB#", "XX" ) )
+		{
+			List<Integer> ids = index.getAmbiguousAtomIds( 0, query );
+			assertSame( ids, index.getAmbiguousAtomIds( 0, query ) );
+			try
+			{
+				ids.add( 0 );
+				fail( "ids should be unmodifiable" );
+			}
+			catch( UnsupportedOperationException ex )
+			{
+				// expected
+			}
+		}
+	}
+	
+	private Integer getAtomIdByScan( Residue residue, String atomName )
+	{
+		for( Atom atom : residue.getAtoms() )
+		{
+			if( atom.getName().equalsIgnoreCase( atomName ) )
+			{
+				return atom.getId();
+			}
+		}
+		return null;
+	}
+	
+	private ArrayList<Integer> getAmbiguousAtomIdsByScan( Residue residue, String atomName )
+	{
+		Pattern regex = Pattern.compile( "^" + atomName.replaceAll( "[#\\*]", "\\\\d+" ) + "$", Pattern.CASE_INSENSITIVE );
+		ArrayList<Integer> atomIds = new ArrayList<Integer>();
+		for( Atom atom : residue.getAtoms() )
+		{
+			if( regex.matcher( atom.getName() ).matches() )
+			{
+				atomIds.add( atom.getId() );
+			}
+		}
+		return atomIds;
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.protein;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.math.Quaternion;
+import edu.duke.cs.libprotnmr.rama.RamaMap;
+
+
+public class TestDipeptideTable extends ExtendedTestCase
+{
+	private static final double Epsilon = 1e-10;
+	
+	private static DipeptideTable m_table;
+	
+	@Override
+	public void setUp( )
+	{
+		if( m_table == null )
+		{
+			m_table = DipeptideTable.newRamaMapTable();
+		}
+	}
+	
+	public void testGrid( )
+	{
+		assertEquals( RamaMap.DeltaDegrees, m_table.getResolutionDegrees() );
+		assertEquals( 180, m_table.getNumSamplesPerAngle() );
+		assertTrue( m_table.isOnGrid( Math.toRadians( -179.0 ), Math.toRadians( 179.0 ) ) );
+		assertTrue( m_table.isOnGrid( Math.toRadians( -65.0 ), Math.toRadians( 541.0 ) ) );
+		assertFalse( m_table.isOnGrid( Math.toRadians( -64.0 ), Math.toRadians( 41.0 ) ) );
+		assertFalse( m_table.isOnGrid( Math.toRadians( -65.3 ), Math.toRadians( 41.0 ) ) );
+	}
+	
+	public void testBadResolution( )
+	{
+		try
+		{
+			new DipeptideTable( 7.0 );
+			fail( "resolution should be rejected" );
+		}
+		catch( IllegalArgumentException ex )
+		{
+			// expected
+		}
+	}
+	
+	public void testCwardsOnGrid( )
+	{
+		for( int i=0; i<100; i++ )
+		{
+			double phi = Math.toRadians( getGridDegrees() );
+			double psi = Math.toRadians( getGridDegrees() );
+			PeptidePlane plane = getRandomPlane();
+			
+			Dipeptide expected = new Dipeptide();
+			expected.setNwardsPlane( plane );
+			expected.updateCwardsPlane( phi, psi );
+			
+			Dipeptide observed = new Dipeptide();
+			observed.setTable( m_table );
+			observed.setNwardsPlane( plane );
+			observed.updateCwardsPlane( phi, psi );
+			
+			assertEquals( expected, observed );
+		}
+	}
+	
+	public void testNwardsOnGrid( )
+	{
+		for( int i=0; i<100; i++ )
+		{
+			double phi = Math.toRadians( getGridDegrees() );
+			double psi = Math.toRadians( getGridDegrees() );
+			PeptidePlane plane = getRandomPlane();
+			
+			Dipeptide expected = new Dipeptide();
+			expected.setCwardsPlane( plane );
+			expected.updateNwardsPlane( phi, psi );
+			
+			Dipeptide observed = new Dipeptide();
+			observed.setTable( m_table );
+			observed.setCwardsPlane( plane );
+			observed.updateNwardsPlane( phi, psi );
+			
+			assertEquals( expected, observed );
+		}
+	}
+	
+	public void testOffGrid( )
+	{
+		double phi = Math.toRadians( -65.3 );
+		double psi = Math.toRadians( -39.4 );
+		
+		Dipeptide expected = new Dipeptide();
+		expected.setNwardsPlane( new PeptidePlane() );
+		expected.updateCwardsPlane( phi, psi );
+		
+		Dipeptide observed = new Dipeptide();
+		observed.setTable( m_table );
+		observed.setNwardsPlane( new PeptidePlane() );
+		observed.updateCwardsPlane( phi, psi );
+		
+		assertEquals( expected, observed );
+	}
+	
+	public void testAngles( )
+	{
+		for( int i=0; i<100; i++ )
+		{
+			double phi = Math.toRadians( getGridDegrees() );
+			double psi = Math.toRadians( getGridDegrees() );
+			for( BondType aType : BondType.values() )
+			{
+				for( BondType bType : BondType.values() )
+				{
+					for( ChainDirection aDirection : ChainDirection.values() )
+					{
+						for( ChainDirection bDirection : ChainDirection.values() )
+						{
+							assertEquals(
+								Dipeptide.getAngle( aType, aDirection, bType, bDirection, phi, psi ),
+								m_table.getAngle( aType, aDirection, bType, bDirection, phi, psi )
+							);
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	public void testCustomResolution( )
+	{
+		DipeptideTable table = new DipeptideTable( 10.0 );
+		assertEquals( 36, table.getNumSamplesPerAngle() );
+		assertTrue( table.isOnGrid( Math.toRadians( -60.0 ), Math.toRadians( 130.0 ) ) );
+		assertFalse( table.isOnGrid( Math.toRadians( -65.0 ), Math.toRadians( 130.0 ) ) );
+		
+		double phi = Math.toRadians( -60.0 );
+		double psi = Math.toRadians( 130.0 );
+		Dipeptide expected = new Dipeptide();
+		expected.setNwardsPlane( new PeptidePlane() );
+		expected.updateCwardsPlane( phi, psi );
+		
+		Dipeptide observed = new Dipeptide();
+		observed.setTable( table );
+		observed.setNwardsPlane( new PeptidePlane() );
+		observed.updateCwardsPlane( phi, psi );
+		
+		assertEquals( expected, observed );
+	}
+	
+	private double getGridDegrees( )
+	{
+		return m_table.getGridDegrees( m_rand.nextInt( m_table.getNumSamplesPerAngle() ) );
+	}
+	
+	private PeptidePlane getRandomPlane( )
+	{
+		// a rigid motion of the default plane
+		PeptidePlane plane = new PeptidePlane();
+		Quaternion q = getRandomRotation();
+		Vector3 t = getRandomVector( -10.0, 10.0 );
+		for( Vector3 pos : new Vector3[] { plane.getCapAtom(), plane.getCAtom(), plane.getOAtom(), plane.getNAtom(), plane.getHAtom(), plane.getCanAtom() } )
+		{
+			pos.rotate( q );
+			pos.add( t );
+		}
+		return plane;
+	}
+	
+	private void assertEquals( Dipeptide expected, Dipeptide observed )
+	{
+		for( int i=0; i<expected.getNumAtoms(); i++ )
+		{
+			assertEquals( expected.getAtom( 0, 0, i ).getPosition(), observed.getAtom( 0, 0, i ).getPosition(), Epsilon );
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.protein;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.io.ParseException;
+import edu.duke.cs.libprotnmr.pdb.ProteinReader;
+import edu.duke.cs.libprotnmr.resources.Resources;
+
+
+public class TestEnsemble extends ExtendedTestCase
+{
+	public void testModels( )
+	throws Exception
+	{
+		List<Protein> proteins = new ProteinReader().readAll( Resources.get( "tinyMultiProtein.pdb" ) );
+		Ensemble ensemble = new Ensemble( proteins );
+		
+		assertEquals( proteins.size(), ensemble.getNumModels() );
+		assertEquals( proteins.get( 0 ).getNumAtoms(), ensemble.getNumAtoms() );
+		assertEquals( proteins.size()*proteins.get( 0 ).getNumAtoms()*3, ensemble.getCoordinates().length );
+		
+		Vector3 position = new Vector3();
+		for( Ensemble.Model model : ensemble )
+		{
+			Protein protein = proteins.get( model.getModelId() );
+			Protein copy = model.getProtein();
+			assertEquals( protein.getNumAtoms(), copy.getNumAtoms() );
+			for( AtomAddressInternal address : protein.atoms() )
+			{
+				model.getPosition( position, address );
+				assertEquals( protein.getAtom( address ).getPosition(), position );
+				assertEquals( protein.getAtom( address ).getPosition(), copy.getAtom( address ).getPosition() );
+				assertEquals( protein.getAtom( address ).getName(), copy.getAtom( address ).getName() );
+			}
+		}
+	}
+	
+	public void testProteins( )
+	throws Exception
+	{
+		List<Protein> proteins = new ProteinReader().readAll( Resources.get( "tinyMultiProtein.pdb" ) );
+		Ensemble ensemble = new Ensemble( proteins );
+		
+		List<Protein> copies = ensemble.getProteins();
+		assertEquals( proteins.size(), copies.size() );
+		for( int i=0; i<proteins.size(); i++ )
+		{
+			for( AtomAddressInternal address : proteins.get( i ).atoms() )
+			{
+				assertEquals( proteins.get( i ).getAtom( address ).getPosition(), copies.get( i ).getAtom( address ).getPosition() );
+			}
+		}
+	}
+	
+	public void testSetPosition( )
+	throws Exception
+	{
+		List<Protein> proteins = new ProteinReader().readAll( Resources.get( "tinyMultiProtein.pdb" ) );
+		Ensemble ensemble = new Ensemble( proteins );
+		AtomAddressInternal address = proteins.get( 0 ).atoms().get( 0 );
+		
+		ensemble.getModel( 1 ).setPosition( address, new Vector3( 1, 2, 3 ) );
+		
+		Vector3 position = new Vector3();
+		ensemble.getModel( 1 ).getPosition( position, address );
+		assertEquals( new Vector3( 1, 2, 3 ), position );
+		ensemble.getModel( 0 ).getPosition( position, address );
+		assertEquals( proteins.get( 0 ).getAtom( address ).getPosition(), position );
+	}
+	
+	public void testDifferentTopology( )
+	throws Exception
+	{
+		List<Protein> proteins = new ProteinReader().readAll( Resources.get( "tinyMultiProtein.pdb" ) );
+		proteins.get( 1 ).getAtom( proteins.get( 1 ).atoms().get( 0 ) ).setName( "XX" );
+		try
+		{
+			new Ensemble( proteins );
+			fail( "different topologies should be rejected" );
+		}
+		catch( IllegalArgumentException ex )
+		{
+			// expected
+		}
+	}
+	
+	public void testReadEnsemble( )
+	throws Exception
+	{
+		List<Protein> proteins = new ProteinReader().readAll( Resources.get( "tinyMultiProtein.pdb" ) );
+		Ensemble ensemble = new ProteinReader().readEnsemble( Resources.get( "tinyMultiProtein.pdb" ) );
+		
+		assertEquals( proteins.size(), ensemble.getNumModels() );
+		assertEquals( proteins.get( 0 ).getNumAtoms(), ensemble.getNumAtoms() );
+		assertEquals( proteins.size()*proteins.get( 0 ).getNumAtoms()*3, ensemble.getCoordinates().length );
+		Vector3 position = new Vector3();
+		for( Ensemble.Model model : ensemble )
+		{
+			Protein protein = proteins.get( model.getModelId() );
+			for( AtomAddressInternal address : protein.atoms() )
+			{
+				model.getPosition( position, address );
+				assertEquals( protein.getAtom( address ).getPosition(), position );
+			}
+		}
+	}
+	
+	public void testAddModel( )
+	throws Exception
+	{
+		List<Protein> proteins = new ProteinReader().readAll( Resources.get( "tinyMultiProtein.pdb" ) );
+		Ensemble ensemble = new Ensemble( proteins.get( 0 ) );
+		for( int i=0; i<5; i++ )
+		{
+			assertEquals( i + 1, ensemble.addModel( proteins.get( i % proteins.size() ) ) );
+		}
+		
+		assertEquals( 6, ensemble.getNumModels() );
+		assertTrue( ensemble.getCoordinates().length >= 6*ensemble.getNumAtoms()*3 );
+		ensemble.trimToSize();
+		assertEquals( 6*ensemble.getNumAtoms()*3, ensemble.getCoordinates().length );
+		AtomAddressInternal address = proteins.get( 0 ).atoms().get( 0 );
+		Vector3 position = new Vector3();
+		ensemble.getModel( 5 ).getPosition( position, address );
+		assertEquals( proteins.get( 4 % proteins.size() ).getAtom( address ).getPosition(), position );
+	}
+	
+	public void testReadEnsembleDifferentTopology( )
+	throws Exception
+	{
+		// drop the last atom of the second model
+		String pdb = readString( Resources.get( "tinyMultiProtein.pdb" ) );
+		int start = pdb.lastIndexOf( "ATOM      7" );
+		pdb = pdb.substring( 0, start ) + pdb.substring( pdb.indexOf( "\n", start ) + 1 );
+		try
+		{
+			new ProteinReader().readEnsemble( new ByteArrayInputStream( pdb.getBytes( "UTF-8" ) ) );
+			fail( "different topologies should be rejected" );
+		}
+		catch( IllegalArgumentException ex )
+		{
+			// expected
+		}
+	}
+	
+	public void testReadEnsembleErrorLine( )
+	throws Exception
+	{
+		// garble the x coordinate of an atom in the last model
+		String pdb = readString( Resources.get( "tinyMultiProtein.pdb" ) );
+		int start = pdb.lastIndexOf( "ATOM      3" );
+		pdb = pdb.substring( 0, start + 30 ) + "  abc.de" + pdb.substring( start + 38 );
+		int lineNum = pdb.substring( 0, start ).split( "\n", -1 ).length;
+		try
+		{
+			new ProteinReader().readEnsemble( new ByteArrayInputStream( pdb.getBytes( "UTF-8" ) ) );
+			fail( "the garbled atom should not parse" );
+		}
+		catch( ParseException ex )
+		{
+			// the line should be counted from the start of the file, not the start of the model
+			assertTrue( ex.getMessage(), ex.getMessage().startsWith( "Line " + lineNum + ":" ) );
+		}
+	}
+	
+	private String readString( InputStream in )
+	throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[4096];
+		int numBytes;
+		while( ( numBytes = in.read( buf ) ) > 0 )
+		{
+			out.write( buf, 0, numBytes );
+		}
+		in.close();
+		return out.toString( "UTF-8" );
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.protein;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.analysis.DistanceRestraintCalculator;
+import edu.duke.cs.libprotnmr.analysis.SymmetryAxisCalculator;
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.nmr.DistanceRestraint;
+import edu.duke.cs.libprotnmr.pdb.ProteinReader;
+import edu.duke.cs.libprotnmr.resources.Resources;
+
+
+public class TestSymmetricOligomer extends ExtendedTestCase
+{
+	private Protein m_protein;
+	private SymmetricOligomer m_oligomer;
+	
+	@Override
+	public void setUp( )
+	throws Exception
+	{
+		m_protein = new ProteinReader().read( Resources.get( "1ZLL.oligomer.protein" ) );
+		m_oligomer = SymmetryAxisCalculator.getSymmetricOligomer( m_protein );
+	}
+	
+	public void testViews( )
+	{
+		assertEquals( m_protein.getSubunits().size(), m_oligomer.getNumSubunits() );
+		assertEquals( m_protein.getNumAtoms(), m_oligomer.getNumAtoms() );
+		assertEquals( getList( m_protein.atoms() ), m_oligomer.atoms() );
+		assertEquals( getList( m_protein.backboneAtoms() ), m_oligomer.backboneAtoms() );
+		
+		// the generated subunits should land near the real ones
+		double sum = 0.0;
+		for( AtomAddressInternal address : m_protein.backboneAtoms() )
+		{
+			Vector3 position = m_oligomer.getAtom( address ).getPosition();
+			sum += position.getSquaredDistance( m_protein.getAtom( address ).getPosition() );
+		}
+		assertTrue( Math.sqrt( sum/m_protein.getNumBackboneAtoms() ) < 2.0 );
+		
+		// the views should match the expanded protein
+		Protein expanded = m_oligomer.getProtein();
+		Vector3 position = new Vector3();
+		for( AtomAddressInternal address : expanded.atoms() )
+		{
+			assertTrue( m_oligomer.getPosition( position, address ) );
+			assertEquals( expanded.getAtom( address ).getPosition(), position );
+		}
+	}
+	
+	public void testRestraintViolations( )
+	{
+		// simulate some restraints, then tighten them so some are violated
+		Protein expanded = m_oligomer.getProtein();
+		List<DistanceRestraint<AtomAddressInternal>> restraints = DistanceRestraintCalculator.getSimulatedIntersubunitRestraints( m_oligomer, 6.0, 0.5 );
+		assertFalse( restraints.isEmpty() );
+		for( DistanceRestraint<AtomAddressInternal> restraint : restraints )
+		{
+			restraint.setMaxDistance( restraint.getMaxDistance() - 0.75 );
+		}
+		
+		Map<DistanceRestraint<AtomAddressInternal>,Double> expected = DistanceRestraintCalculator.getViolations( expanded, restraints );
+		Map<DistanceRestraint<AtomAddressInternal>,Double> observed = DistanceRestraintCalculator.getViolations( m_oligomer, restraints );
+		assertEquals( restraints.size(), observed.size() );
+		assertEquals( expected.keySet(), observed.keySet() );
+		for( DistanceRestraint<AtomAddressInternal> restraint : expected.keySet() )
+		{
+			assertEquals( expected.get( restraint ), observed.get( restraint ), 1e-9 );
+		}
+	}
+	
+	public void testContacts( )
+	{
+		// the contacts from the unique subunit pairs should match the contacts from every pair
+		checkContacts( m_oligomer, 6.0 );
+	}
+	
+	public void testContactsEven( )
+	{
+		// with an even number of subunits, the opposite subunit is its own mirror offset
+		// NOTE: use a longer cutoff so the subunits across the axis have contacts too
+		for( int numSubunits : new int[] { 2, 4 } )
+		{
+			SymmetricOligomer oligomer = new SymmetricOligomer( m_oligomer.getAsymmetricUnit(), m_oligomer.getAxis(), numSubunits );
+			List<DistanceRestraint<AtomAddressInternal>> restraints = checkContacts( oligomer, 20.0 );
+			int numOpposite = 0;
+			for( DistanceRestraint<AtomAddressInternal> restraint : restraints )
+			{
+				int leftSubunitId = restraint.getLefts().iterator().next().getSubunitId();
+				int rightSubunitId = restraint.getRights().iterator().next().getSubunitId();
+				if( oligomer.getSubunitOffset( leftSubunitId, rightSubunitId ) == numSubunits/2 )
+				{
+					numOpposite++;
+				}
+			}
+			assertTrue( numOpposite > 0 );
+		}
+	}
+	
+	private List<DistanceRestraint<AtomAddressInternal>> checkContacts( SymmetricOligomer oligomer, double maxDistance )
+	{
+		Protein expanded = oligomer.getProtein();
+		Map<String,DistanceRestraint<AtomAddressInternal>> expected = new HashMap<String,DistanceRestraint<AtomAddressInternal>>();
+		for( int i=0; i<expanded.getSubunits().size(); i++ )
+		{
+			for( int j=i+1; j<expanded.getSubunits().size(); j++ )
+			{
+				for( DistanceRestraint<AtomAddressInternal> restraint : DistanceRestraintCalculator.getSimulatedIntersubunitRestraints( i, j, expanded, maxDistance, 0.5 ) )
+				{
+					expected.put( getKey( restraint ), restraint );
+				}
+			}
+		}
+		
+		List<DistanceRestraint<AtomAddressInternal>> observed = DistanceRestraintCalculator.getSimulatedIntersubunitRestraints( oligomer, maxDistance, 0.5 );
+		assertFalse( observed.isEmpty() );
+		assertEquals( expected.size(), observed.size() );
+		for( DistanceRestraint<AtomAddressInternal> restraint : observed )
+		{
+			DistanceRestraint<AtomAddressInternal> match = expected.get( getKey( restraint ) );
+			assertNotNull( match );
+			assertEquals( match.getMinDistance(), restraint.getMinDistance(), 1e-9 );
+			assertEquals( match.getMaxDistance(), restraint.getMaxDistance(), 1e-9 );
+		}
+		return observed;
+	}
+	
+	private List<AtomAddressInternal> getList( List<AtomAddressInternal> addresses )
+	{
+		List<AtomAddressInternal> list = new ArrayList<AtomAddressInternal>();
+		for( AtomAddressInternal address : addresses )
+		{
+			list.add( address );
+		}
+		return list;
+	}
+	
+	private String getKey( DistanceRestraint<AtomAddressInternal> restraint )
+	{
+		return restraint.getLefts().toString() + restraint.getRights().toString();
+	}
+}
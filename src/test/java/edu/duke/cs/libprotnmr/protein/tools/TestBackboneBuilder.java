@@ -0,0 +1,141 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.protein.tools;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.protein.Atom;
+import edu.duke.cs.libprotnmr.protein.Dipeptide;
+import edu.duke.cs.libprotnmr.protein.IdealGeometry;
+import edu.duke.cs.libprotnmr.protein.PeptidePlane;
+import edu.duke.cs.libprotnmr.protein.Subunit;
+
+
+public class TestBackboneBuilder extends ExtendedTestCase
+{
+	private static final double Epsilon = 1e-9;
+	
+	public void testHelix( )
+	{
+		final int NumResidues = 20;
+		double[] angles = new double[NumResidues*2];
+		for( int i=0; i<NumResidues; i++ )
+		{
+			angles[i*2] = IdealGeometry.HelixPhi;
+			angles[i*2 + 1] = IdealGeometry.HelixPsi;
+		}
+		BackboneBuilder builder = new BackboneBuilder( NumResidues );
+		builder.build( angles );
+		
+		assertEquals( PolypeptideGenerator.newHelix( NumResidues ), builder.newSubunit(), Epsilon );
+	}
+	
+	public void testRandomAngles( )
+	{
+		final int NumResidues = 30;
+		double[] angles = getRandomAngles( NumResidues );
+		BackboneBuilder builder = new BackboneBuilder( NumResidues );
+		builder.build( angles );
+		
+		// compare against the dipeptide kinematics one residue at a time
+		Dipeptide dipeptide = new Dipeptide();
+		dipeptide.setCwardsPlane( new PeptidePlane() );
+		Vector3 pos = new Vector3();
+		for( int i=0; i<NumResidues; i++ )
+		{
+			dipeptide.setNwardsPlane( dipeptide.getCwardsPlane() );
+			dipeptide.updateCwardsPlane( angles[i*2], angles[i*2 + 1] );
+			
+			builder.getPosition( pos, i, BackboneBuilder.H );
+			assertEquals( dipeptide.getNwardsHAtom(), pos, Epsilon );
+			builder.getPosition( pos, i, BackboneBuilder.N );
+			assertEquals( dipeptide.getNwardsNAtom(), pos, Epsilon );
+			builder.getPosition( pos, i, BackboneBuilder.CA );
+			assertEquals( dipeptide.getCaAtom(), pos, Epsilon );
+			builder.getPosition( pos, i, BackboneBuilder.HA );
+			assertEquals( dipeptide.getHaAtom(), pos, Epsilon );
+			builder.getPosition( pos, i, BackboneBuilder.C );
+			assertEquals( dipeptide.getCwardsCAtom(), pos, Epsilon );
+			builder.getPosition( pos, i, BackboneBuilder.O );
+			assertEquals( dipeptide.getCwardsOAtom(), pos, Epsilon );
+		}
+	}
+	
+	public void testIncrementalRebuild( )
+	{
+		final int NumResidues = 25;
+		double[] angles = getRandomAngles( NumResidues );
+		BackboneBuilder builder = new BackboneBuilder( NumResidues );
+		builder.build( angles );
+		
+		// change a residue in the middle and only rebuild from there
+		final int ChangedResidueId = 12;
+		double phi = getRandomDouble( -Math.PI, Math.PI );
+		double psi = getRandomDouble( -Math.PI, Math.PI );
+		builder.setAngles( ChangedResidueId, phi, psi );
+		builder.build();
+		
+		angles[ChangedResidueId*2] = phi;
+		angles[ChangedResidueId*2 + 1] = psi;
+		BackboneBuilder expected = new BackboneBuilder( NumResidues );
+		expected.build( angles );
+		
+		double[] expectedCoords = expected.getCoordinates();
+		double[] observedCoords = builder.getCoordinates();
+		assertEquals( expectedCoords.length, observedCoords.length );
+		for( int i=0; i<expectedCoords.length; i++ )
+		{
+			assertEquals( expectedCoords[i], observedCoords[i], Epsilon );
+		}
+	}
+	
+	private double[] getRandomAngles( int numResidues )
+	{
+		double[] angles = new double[numResidues*2];
+		for( int i=0; i<angles.length; i++ )
+		{
+			angles[i] = getRandomDouble( -Math.PI, Math.PI );
+		}
+		return angles;
+	}
+	
+	private void assertEquals( Subunit expected, Subunit observed, double epsilon )
+	{
+		assertEquals( expected.getResidues().size(), observed.getResidues().size() );
+		for( int i=0; i<expected.getResidues().size(); i++ )
+		{
+			for( int j=0; j<expected.getResidue( i ).getAtoms().size(); j++ )
+			{
+				Atom expectedAtom = expected.getAtom( i, j );
+				Atom observedAtom = observed.getAtom( i, j );
+				assertEquals( expectedAtom.getName(), observedAtom.getName() );
+				assertEquals( expectedAtom.getPosition(), observedAtom.getPosition(), epsilon );
+			}
+		}
+	}
+}
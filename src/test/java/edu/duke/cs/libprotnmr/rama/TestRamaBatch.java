@@ -0,0 +1,141 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.rama;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.pdb.ProteinReader;
+import edu.duke.cs.libprotnmr.protein.Protein;
+import edu.duke.cs.libprotnmr.protein.Residue;
+import edu.duke.cs.libprotnmr.protein.Subunit;
+import edu.duke.cs.libprotnmr.resources.Resources;
+
+public class TestRamaBatch extends ExtendedTestCase
+{
+	public void testMatchesPerResidue( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( getClass().getResourceAsStream( Resources.getPath( "largeProtein.pdb" ) ) );
+		RamaBatch batch = new RamaBatch( protein );
+		
+		double[] phis = new double[batch.getNumResidues()];
+		double[] psis = new double[batch.getNumResidues()];
+		RamaSatisfaction[] satisfactions = new RamaSatisfaction[batch.getNumResidues()];
+		batch.getAngles( phis, psis, protein );
+		batch.getSatisfactions( satisfactions, protein );
+		
+		int i = 0;
+		Map<RamaSatisfaction,Integer> expectedCounts = getEmptyCounts();
+		for( Subunit subunit : protein.getSubunits() )
+		{
+			for( Residue residue : subunit.getResidues() )
+			{
+				if( residue.getId() == 0 || residue.getId() == subunit.getResidues().size() - 1 )
+				{
+					continue;
+				}
+				
+				double phi = Math.toDegrees( subunit.getPhiAngle( residue.getId() ) );
+				double psi = Math.toDegrees( subunit.getPsiAngle( residue.getId() ) );
+				RamaCase ramaCase = RamaCase.getCaseByNumber( subunit.getSequence(), residue.getNumber() );
+				RamaSatisfaction satisfaction = ramaCase.getSatisfaction( phi, psi );
+				
+				assertEquals( residue.getNumber(), batch.getResidueNumber( i ) );
+				assertEquals( ramaCase, batch.getCase( i ) );
+				assertEquals( phi, phis[i], 1e-9 );
+				assertEquals( psi, psis[i], 1e-9 );
+				assertEquals( satisfaction, satisfactions[i] );
+				expectedCounts.put( satisfaction, expectedCounts.get( satisfaction ) + 1 );
+				i++;
+			}
+		}
+		assertEquals( i, batch.getNumResidues() );
+		assertEquals( expectedCounts, batch.getSatisfactionCounts( protein ) );
+	}
+	
+	public void testParallel( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( getClass().getResourceAsStream( Resources.getPath( "largeProtein.pdb" ) ) );
+		List<Protein> ensemble = Arrays.asList( protein, new Protein( protein ), new Protein( protein ), new Protein( protein ) );
+		RamaBatch batch = new RamaBatch( protein );
+		
+		assertEquals( batch.getSatisfactionCounts( ensemble ), batch.getSatisfactionCounts( ensemble, 2 ) );
+	}
+	
+	public void testDifferentTopology( )
+	throws Exception
+	{
+		Protein protein = new ProteinReader().read( getClass().getResourceAsStream( Resources.getPath( "largeProtein.pdb" ) ) );
+		RamaBatch batch = new RamaBatch( protein );
+		
+		// drop an atom from the middle of a copy
+		Protein shorter = new Protein( protein );
+		Residue residue = shorter.getResidue( 0, 10 );
+		residue.getAtoms().remove( residue.getAtoms().size() - 1 );
+		shorter.getSubunit( 0 ).updateAtomIndices();
+		for( int numWorkers : new int[] { 1, 2 } )
+		{
+			try
+			{
+				batch.getSatisfactionCounts( Arrays.asList( protein, shorter ), numWorkers );
+				fail( "different topologies should be rejected" );
+			}
+			catch( IllegalArgumentException ex )
+			{
+				// expected
+			}
+		}
+		
+		// renaming a backbone atom keeps the atom count, but the model still doesn't match
+		Protein renamed = new Protein( protein );
+		renamed.getResidue( 0, 5 ).getAtomByName( "CA" ).setName( "CB" );
+		try
+		{
+			batch.getSatisfactionCounts( renamed );
+			fail( "different topologies should be rejected" );
+		}
+		catch( IllegalArgumentException ex )
+		{
+			// expected
+		}
+	}
+	
+	private Map<RamaSatisfaction,Integer> getEmptyCounts( )
+	{
+		Map<RamaSatisfaction,Integer> counts = new TreeMap<RamaSatisfaction,Integer>();
+		for( RamaSatisfaction satisfaction : RamaSatisfaction.values() )
+		{
+			counts.put( satisfaction, 0 );
+		}
+		return counts;
+	}
+}
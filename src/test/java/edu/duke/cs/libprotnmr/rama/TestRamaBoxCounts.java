@@ -0,0 +1,229 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.rama;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+
+public class TestRamaBoxCounts extends ExtendedTestCase
+{
+	private static final double Cutoff = 0.5;
+	
+	public void testBoxesMatchScan( )
+	{
+		Random rand = new Random( 12345 );
+		for( int m=0; m<5; m++ )
+		{
+			RamaMap map = getRandomMap( rand, 0.1*( m + 1 ) );
+			RamaBoxCounts boxCounts = new RamaBoxCounts( map, Cutoff );
+			for( int b=0; b<2000; b++ )
+			{
+				// keep the boxes away from the seam
+				double minPhi = rand.nextInt( 318 ) - 179 + 0.5*rand.nextInt( 2 );
+				double minPsi = rand.nextInt( 318 ) - 179 + 0.5*rand.nextInt( 2 );
+				double maxPhi = minPhi + rand.nextInt( 40 );
+				double maxPsi = minPsi + rand.nextInt( 40 );
+				
+				assertEquals(
+					map.isBoxAbove( minPhi, maxPhi, minPsi, maxPsi, Cutoff ),
+					boxCounts.isBoxAbove( minPhi, maxPhi, minPsi, maxPsi )
+				);
+				assertEquals(
+					map.isBoxCompletelyAbove( minPhi, maxPhi, minPsi, maxPsi, Cutoff ),
+					boxCounts.isBoxCompletelyAbove( minPhi, maxPhi, minPsi, maxPsi )
+				);
+			}
+		}
+	}
+	
+	public void testWrappedBoxesMatchBruteForce( )
+	{
+		Random rand = new Random( 12345 );
+		for( int m=0; m<5; m++ )
+		{
+			RamaMap map = getRandomMap( rand, 0.1*( m + 1 ) );
+			RamaBoxCounts boxCounts = new RamaBoxCounts( map, Cutoff );
+			for( int b=0; b<2000; b++ )
+			{
+				// keep the min bounds off the seam, but let the boxes wrap around it
+				double minPhi = rand.nextInt( 358 ) - 179 + 0.5*rand.nextInt( 2 );
+				double minPsi = rand.nextInt( 358 ) - 179 + 0.5*rand.nextInt( 2 );
+				double maxPhi = minPhi + rand.nextInt( 40 );
+				double maxPsi = minPsi + rand.nextInt( 40 );
+				
+				assertEquals(
+					isBoxAboveBruteForce( map, minPhi, maxPhi, minPsi, maxPsi ),
+					boxCounts.isWrappedBoxAbove( minPhi, maxPhi, minPsi, maxPsi )
+				);
+				assertEquals(
+					isBoxCompletelyAboveBruteForce( map, minPhi, maxPhi, minPsi, maxPsi ),
+					boxCounts.isWrappedBoxCompletelyAbove( minPhi, maxPhi, minPsi, maxPsi )
+				);
+			}
+		}
+	}
+	
+	public void testWraparound( )
+	{
+		RamaMap map = new RamaMap();
+		map.setSample( 179, 0, 1.0 );
+		map.setSample( -179, 0, 1.0 );
+		RamaBoxCounts boxCounts = new RamaBoxCounts( map, Cutoff );
+		
+		assertTrue( boxCounts.isWrappedBoxAbove( 178.5, 181.5, -0.5, 0.5 ) );
+		assertTrue( boxCounts.isWrappedBoxAbove( 178.5, -178.5, -0.5, 0.5 ) );
+		assertFalse( boxCounts.isWrappedBoxAbove( 170.5, 172.5, -0.5, 0.5 ) );
+		assertTrue( boxCounts.isWrappedBoxAbove( -180, 180, -180, 180 ) );
+		assertFalse( boxCounts.isWrappedBoxCompletelyAbove( -180, 180, -180, 180 ) );
+	}
+	
+	public void testInvertedBoxes( )
+	{
+		// boxes with min past max only get their corners checked unless wrapping is asked for
+		RamaMap map = new RamaMap();
+		map.setSample( 179, 0, 1.0 );
+		RamaBoxCounts boxCounts = new RamaBoxCounts( map, Cutoff );
+		
+		assertFalse( map.isBoxAbove( 176.2, -176.2, -2.5, 1.5, Cutoff ) );
+		assertFalse( boxCounts.isBoxAbove( 176.2, -176.2, -2.5, 1.5 ) );
+		assertTrue( boxCounts.isWrappedBoxAbove( 176.2, -176.2, -2.5, 1.5 ) );
+	}
+	
+	public void testRamaCase( )
+	{
+		RamaCase ramaCase = RamaCase.General;
+		RamaMap map = ramaCase.getMap();
+		Random rand = new Random( 12345 );
+		for( int b=0; b<2000; b++ )
+		{
+			double minPhi = rand.nextInt( 318 ) - 179 + 0.5*rand.nextInt( 2 );
+			double minPsi = rand.nextInt( 318 ) - 179 + 0.5*rand.nextInt( 2 );
+			double maxPhi = minPhi + rand.nextInt( 40 );
+			double maxPsi = minPsi + rand.nextInt( 40 );
+			
+			assertEquals(
+				map.isBoxAbove( minPhi, maxPhi, minPsi, maxPsi, ramaCase.getAllowedCutoff() ),
+				ramaCase.isAllowed( minPhi, maxPhi, minPsi, maxPsi )
+			);
+			assertEquals(
+				map.isBoxCompletelyAbove( minPhi, maxPhi, minPsi, maxPsi, ramaCase.getAllowedCutoff() ),
+				ramaCase.isCompletelyAllowed( minPhi, maxPhi, minPsi, maxPsi )
+			);
+		}
+	}
+	
+	private RamaMap getRandomMap( Random rand, double density )
+	{
+		double[][] samples = new double[RamaMap.NumSamplesPerAngle][RamaMap.NumSamplesPerAngle];
+		for( int i=0; i<RamaMap.NumSamplesPerAngle; i++ )
+		{
+			for( int j=0; j<RamaMap.NumSamplesPerAngle; j++ )
+			{
+				samples[i][j] = rand.nextDouble() < density ? Cutoff + rand.nextDouble() : rand.nextDouble()*Cutoff;
+			}
+		}
+		return new RamaMap( samples );
+	}
+	
+	private boolean isBoxAboveBruteForce( RamaMap map, double minPhi, double maxPhi, double minPsi, double maxPsi )
+	{
+		if( map.isSampleAbove( minPhi, minPsi, Cutoff ) || map.isSampleAbove( maxPhi, minPsi, Cutoff )
+			|| map.isSampleAbove( maxPhi, maxPsi, Cutoff ) || map.isSampleAbove( minPhi, maxPsi, Cutoff ) )
+		{
+			return true;
+		}
+		for( int i : getIndices( map, minPhi, maxPhi ) )
+		{
+			for( int j : getIndices( map, minPsi, maxPsi ) )
+			{
+				if( map.getSample( RamaMap.mapIndexToDegrees( i ), RamaMap.mapIndexToDegrees( j ) ) >= Cutoff )
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	private boolean isBoxCompletelyAboveBruteForce( RamaMap map, double minPhi, double maxPhi, double minPsi, double maxPsi )
+	{
+		if( !map.isSampleAbove( minPhi, minPsi, Cutoff ) || !map.isSampleAbove( maxPhi, minPsi, Cutoff )
+			|| !map.isSampleAbove( maxPhi, maxPsi, Cutoff ) || !map.isSampleAbove( minPhi, maxPsi, Cutoff ) )
+		{
+			return false;
+		}
+		for( int i : getIndices( map, minPhi, maxPhi ) )
+		{
+			for( int j : getIndices( map, minPsi, maxPsi ) )
+			{
+				if( map.getSample( RamaMap.mapIndexToDegrees( i ), RamaMap.mapIndexToDegrees( j ) ) < Cutoff )
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	private List<Integer> getIndices( RamaMap map, double min, double max )
+	{
+		// walk the grid cells the slow way, wrapping around the seam if needed
+		if( min > 180.0 )
+		{
+			min -= 360.0;
+		}
+		if( max > 180.0 )
+		{
+			max -= 360.0;
+		}
+		int first = RamaMap.mapDegreesToIndex( min );
+		if( !map.isOnGrid( min ) )
+		{
+			first++;
+		}
+		int last = RamaMap.mapDegreesToIndex( max );
+		List<Integer> indices = new ArrayList<Integer>();
+		if( min <= max )
+		{
+			for( int i=first; i<=last; i++ )
+			{
+				indices.add( i );
+			}
+		}
+		else
+		{
+			for( int i=first; i!=( last + 1 )%RamaMap.NumSamplesPerAngle; i=( i + 1 )%RamaMap.NumSamplesPerAngle )
+			{
+				indices.add( i );
+			}
+		}
+		return indices;
+	}
+}
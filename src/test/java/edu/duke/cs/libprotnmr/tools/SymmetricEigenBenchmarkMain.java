@@ -0,0 +1,113 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+package edu.duke.cs.libprotnmr.tools;
+
+import java.util.Random;
+
+import edu.duke.cs.libprotnmr.math.Matrix3;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+
+public class SymmetricEigenBenchmarkMain
+{
+	public static void main( String[] args )
+	{
+		final int NumMatrices = 10000;
+		final int NumRounds = 20;
+		
+		// make some random symmetric matrices
+		Random rand = new Random( 12345 );
+		Matrix3[] matrices = new Matrix3[NumMatrices];
+		for( int i=0; i<NumMatrices; i++ )
+		{
+			double a = rand.nextGaussian();
+			double b = rand.nextGaussian();
+			double c = rand.nextGaussian();
+			double d = rand.nextGaussian();
+			double e = rand.nextGaussian();
+			double f = rand.nextGaussian();
+			matrices[i] = new Matrix3(
+				a, b, c,
+				b, d, e,
+				c, e, f
+			);
+		}
+		
+		// run both a few times first so the JIT has a chance to warm up
+		double checksum = 0;
+		for( int i=0; i<NumRounds; i++ )
+		{
+			checksum += runJama( matrices ) + runMatrix3( matrices );
+		}
+		
+		long jamaNs = 0;
+		long matrix3Ns = 0;
+		for( int i=0; i<NumRounds; i++ )
+		{
+			long startNs = System.nanoTime();
+			checksum += runJama( matrices );
+			jamaNs += System.nanoTime() - startNs;
+			
+			startNs = System.nanoTime();
+			checksum += runMatrix3( matrices );
+			matrix3Ns += System.nanoTime() - startNs;
+		}
+		
+		long numOps = (long)NumMatrices*NumRounds;
+		System.out.println( String.format( "Jama:    %.1f ns per matrix", (double)jamaNs/numOps ) );
+		System.out.println( String.format( "Matrix3: %.1f ns per matrix", (double)matrix3Ns/numOps ) );
+		System.out.println( String.format( "Speedup: %.1fx", (double)jamaNs/matrix3Ns ) );
+		System.out.println( "(checksum " + checksum + ")" );
+	}
+	
+	private static double runJama( Matrix3[] matrices )
+	{
+		double sum = 0;
+		Matrix jama = new Matrix( 3, 3 );
+		for( Matrix3 matrix : matrices )
+		{
+			matrix.toJama( jama );
+			EigenvalueDecomposition eig = jama.eig();
+			sum += eig.getRealEigenvalues()[0] + eig.getV().get( 0, 0 );
+		}
+		return sum;
+	}
+	
+	private static double runMatrix3( Matrix3[] matrices )
+	{
+		double sum = 0;
+		double[] eigenvalues = new double[3];
+		Matrix3 eigenvectors = new Matrix3();
+		for( Matrix3 matrix : matrices )
+		{
+			matrix.getEigenSymmetric( eigenvalues, eigenvectors );
+			sum += eigenvalues[0] + eigenvectors.data[0][0];
+		}
+		return sum;
+	}
+}
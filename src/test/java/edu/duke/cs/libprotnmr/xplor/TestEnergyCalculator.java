@@ -0,0 +1,169 @@
+/*
+ * This file is part of LibProtNMR
+ *
+ * Copyright (C) 2020 Bruce Donald Lab, Duke University
+ *
+ * LibProtNMR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LibProtNMR.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact Info:
+ *    Bruce Donald
+ *    Duke University
+ *    Department of Computer Science
+ *    Levine Science Research Center (LSRC)
+ *    Durham
+ *    NC 27708-0129
+ *    USA
+ *    e-mail: www.cs.duke.edu/brd/
+ *
+ * <signature of Bruce Donald>, February, 2020
+ * Bruce Donald, Professor of Computer Science
+ */
+
+
+package edu.duke.cs.libprotnmr.xplor;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.duke.cs.libprotnmr.ExtendedTestCase;
+import edu.duke.cs.libprotnmr.geom.Vector3;
+import edu.duke.cs.libprotnmr.pdb.ProteinReader;
+import edu.duke.cs.libprotnmr.protein.Protein;
+import edu.duke.cs.libprotnmr.protein.tools.ProteinGeometry;
+import edu.duke.cs.libprotnmr.resources.Resources;
+
+
+public class TestEnergyCalculator extends ExtendedTestCase
+{
+	// stands in for xplor: reports the x coord of the first atom of each model as its energy
+	private static final String FakeXplor =
+		"#!/bin/sh\n"
+		+ "pdb=$(sed -n 's/^pdbInPath = \"\\(.*\\)\"$/\\1/p' \"$2\")\n"
+		+ "awk '/^MODEL/ { n++; first = 1 }\n"
+		+ "/^ATOM/ && ( first || ( n == 0 && !done ) ) {\n"
+		+ "	x = substr( $0, 31, 8 ) + 0\n"
+		+ "	if( n > 0 ) printf \"model %d van der Waals energy: %f\\n\", n - 1, x\n"
+		+ "	else printf \"van der Waals energy: %f\\n\", x\n"
+		+ "	first = 0; done = 1\n"
+		+ "}' \"$pdb\"\n";
+	
+	private File m_workDir;
+	private EnergyCalculator m_calculator;
+	
+	@Override
+	public void setUp( )
+	throws Exception
+	{
+		m_workDir = File.createTempFile( "xplor.", ".work" );
+		m_workDir.delete();
+		m_workDir.mkdirs();
+		
+		File fakeXplor = new File( m_workDir, "fakeXplor.sh" );
+		FileWriter writer = new FileWriter( fakeXplor );
+		writer.write( FakeXplor );
+		writer.close();
+		fakeXplor.setExecutable( true );
+		
+		m_calculator = new EnergyCalculator( m_workDir );
+		m_calculator.setXplorCommand( fakeXplor.getAbsolutePath() );
+	}
+	
+	@Override
+	public void tearDown( )
+	{
+		for( File file : m_workDir.listFiles() )
+		{
+			file.delete();
+		}
+		m_workDir.delete();
+	}
+	
+	public void testBatchMatchesSingle( )
+	throws Exception
+	{
+		List<Protein> proteins = getProteins( 7 );
+		List<Double> expected = new ArrayList<Double>();
+		for( Protein protein : proteins )
+		{
+			expected.add( m_calculator.getEnergy( protein ) );
+		}
+		
+		for( int numProcesses : new int[] { 1, 3, 7, 20 } )
+		{
+			assertEquals( expected, m_calculator.getEnergies( proteins, numProcesses ) );
+		}
+		
+		// the batch files should have been cleaned up
+		assertEquals( 1, m_workDir.listFiles().length );
+	}
+	
+	public void testEnergiesAreInOrder( )
+	throws Exception
+	{
+		List<Protein> proteins = getProteins( 5 );
+		List<Double> energies = m_calculator.getEnergies( proteins, 2 );
+		assertEquals( proteins.size(), energies.size() );
+		for( int i=1; i<energies.size(); i++ )
+		{
+			assertEquals( 10.0, energies.get( i ) - energies.get( i - 1 ), 1e-6 );
+		}
+	}
+	
+	public void testLaunchFailure( )
+	throws Exception
+	{
+		// a slow xplor that leaves a file behind if it's allowed to finish
+		File slowXplor = new File( m_workDir, "slowXplor.sh" );
+		FileWriter writer = new FileWriter( slowXplor );
+		writer.write( "#!/bin/sh\nsleep 2\ntouch finished.$$\n" );
+		writer.close();
+		slowXplor.setExecutable( true );
+		m_calculator.setXplorCommand( slowXplor.getAbsolutePath() );
+		
+		// the second batch can't write its input file, so it fails after the first one is launched
+		File blocker = new File( m_workDir, "in.1.pdb" );
+		blocker.mkdir();
+		try
+		{
+			m_calculator.getEnergies( getProteins( 4 ), 2 );
+			fail( "the second batch should fail to launch" );
+		}
+		catch( IOException ex )
+		{
+			// expected
+		}
+		blocker.delete();
+		
+		// the first batch's files should be gone, and it shouldn't still be running
+		String[] names = m_workDir.list();
+		Thread.sleep( 3000 );
+		assertEquals( names.length, m_workDir.list().length );
+		for( String name : m_workDir.list() )
+		{
+			assertFalse( name, name.startsWith( "in." ) || name.startsWith( "vdwBatch." ) || name.startsWith( "finished." ) );
+		}
+	}
+	
+	private List<Protein> getProteins( int numProteins )
+	throws IOException
+	{
+		// shift each copy so the fake energies are different
+		Protein protein = new ProteinReader().read( Resources.get( "tinyProtein.pdb" ) );
+		List<Protein> proteins = new ArrayList<Protein>();
+		for( int i=0; i<numProteins; i++ )
+		{
+			Protein copy = new Protein( protein );
+			ProteinGeometry.translate( copy, new Vector3( 10.0*i, 0, 0 ) );
+			proteins.add( copy );
+		}
+		return proteins;
+	}
+}